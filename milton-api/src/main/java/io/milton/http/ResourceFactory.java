@@ -19,9 +19,15 @@
 
 package io.milton.http;
 
+import io.milton.common.Path;
+import io.milton.resource.CollectionResource;
 import io.milton.resource.Resource;
 import io.milton.http.exceptions.BadRequestException;
 import io.milton.http.exceptions.NotAuthorizedException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * Implementations of ResourceFactory translate URLs to instances of Resource
@@ -65,6 +71,48 @@ public interface ResourceFactory {
      * @return the associated Resource object, or null if there is none.
      */
     Resource getResource(String host, String path) throws NotAuthorizedException, BadRequestException;
-    
-    
+
+    /**
+     * Locate resources for a number of paths on the same host, such as for
+     * a multiget report.
+     * <P/>
+     * The default implementation groups paths by their parent, locates each
+     * parent once with getResource and then looks up children by name. If
+     * the parent is not a collection, or doesn't have the child, the path is
+     * located with getResource. Implementations can override this with a
+     * more efficient bulk lookup
+     *
+     * @param host
+     * @param paths
+     * @return - a map keyed on each of the given paths, in the same order, with
+     * null values for paths with no resource
+     */
+    default Map<String, Resource> getResources(String host, Collection<String> paths) throws NotAuthorizedException, BadRequestException {
+        Map<String, Resource> results = new LinkedHashMap<>();
+        Map<String, CollectionResource> parents = new HashMap<>();
+        for (String sPath : paths) {
+            Path path = Path.path(sPath);
+            Path parentPath = path.getParent();
+            Resource r = null;
+            if (parentPath != null && path.getName() != null) {
+                String key = parentPath.isRoot() ? "/" : parentPath.toString();
+                CollectionResource parent;
+                if (parents.containsKey(key)) {
+                    parent = parents.get(key);
+                } else {
+                    Resource rParent = getResource(host, key);
+                    parent = rParent instanceof CollectionResource ? (CollectionResource) rParent : null;
+                    parents.put(key, parent);
+                }
+                if (parent != null) {
+                    r = parent.child(path.getName());
+                }
+            }
+            if (r == null) {
+                r = getResource(host, sPath);
+            }
+            results.put(sPath, r);
+        }
+        return results;
+    }
 }
@@ -19,7 +19,13 @@
 
 package io.milton.http;
 
+import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
@@ -44,7 +50,9 @@ public interface Response {
 
     enum ContentEncoding {
 
-        GZIP( "gzip" );
+        GZIP( "gzip" ),
+        BROTLI( "br" ),
+        ZSTD( "zstd" );
         public final String code;
 
         ContentEncoding( String code ) {
@@ -234,6 +242,33 @@ public interface Response {
 
     OutputStream getOutputStream();
 
+    /**
+     * Write part of a file to the response body, as an alternative to copying
+     * it to getOutputStream().
+     *
+     * The default transfers from a FileChannel, which avoids reading through
+     * an InputStream. Adapters for servers which can send files without
+     * copying them through the JVM, ie with sendfile, should override this
+     *
+     * @param path - the file to send
+     * @param position - the first byte to send
+     * @param length - the number of bytes to send
+     * @throws IOException
+     */
+    default void sendFile( Path path, long position, long length ) throws IOException {
+        WritableByteChannel out = Channels.newChannel( getOutputStream() );
+        try( FileChannel in = FileChannel.open( path, StandardOpenOption.READ ) ) {
+            long end = position + length;
+            while( position < end ) {
+                long n = in.transferTo( position, end - position, out );
+                if( n <= 0 ) {
+                    break; // file was truncated
+                }
+                position += n;
+            }
+        }
+    }
+
     void setLocationHeader( String redirectUrl );
 
     /**
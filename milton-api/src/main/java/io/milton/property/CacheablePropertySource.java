@@ -0,0 +1,49 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.milton.property;
+
+import io.milton.resource.Resource;
+
+/**
+ * A PropertySource whose answer from getPropertyMetaData can be cached against
+ * the class of the resource. PROPFIND uses this to remember which source
+ * answers each property, so that later resources of the same class skip the
+ * search through all property sources.
+ *
+ * PropertySources which do not implement this interface are always asked
+ * directly.
+ *
+ * @author brad
+ */
+public interface CacheablePropertySource extends PropertySource {
+
+	/**
+	 * Return false if the metadata for this resource depends on the state of
+	 * the resource instance, or on the current request, in which case this
+	 * source will be asked directly for this resource.
+	 *
+	 * This is called for every resource, so it should be cheap
+	 *
+	 * @param r
+	 * @return - true if getPropertyMetaData for this resource gives the same
+	 * answer as for any other resource of the same class
+	 */
+	boolean isPropertyMetaDataCacheable(Resource r);
+}
@@ -0,0 +1,42 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.milton.resource;
+
+import java.nio.file.Path;
+
+/**
+ * A GetableResource whose content is held, unmodified, in a local file.
+ *
+ * Allows the file to be sent with Response.sendFile, which can use
+ * FileChannel.transferTo or the server's sendfile support, instead of
+ * copying content through sendContent
+ *
+ * @author brad
+ */
+public interface FileChannelResource extends GetableResource {
+
+    /**
+     * The file which holds exactly the content that sendContent would write,
+     * or null if that is not currently the case, in which case sendContent is
+     * used
+     *
+     * @return
+     */
+    Path getContentPath();
+}
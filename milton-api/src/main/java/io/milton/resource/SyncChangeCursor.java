@@ -0,0 +1,78 @@
+/*
+ *
+ * Copyright 2014 McEvoy Software Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.milton.resource;
+
+import java.net.URI;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Changes to a {@link SyncCollectionResource} since a sync-token, read one at
+ * a time so that large collections do not need to be loaded into memory.
+ *
+ * Each entry is href -> Resource, with removed members given as
+ * {@link RemovedResource}.
+ *
+ * @author brad
+ */
+public interface SyncChangeCursor extends Iterator<Map.Entry<String, Resource>> {
+
+  /**
+   * A sync-token which covers exactly the changes returned by next() so far,
+   * so that a later request using it will continue from the following change.
+   *
+   * Used to truncate the sync-collection report as per RFC 6578 section 3.6.
+   * Return null if the cursor cannot resume from its current position, in
+   * which case the report will not be truncated there. If the client's
+   * DAV:limit can't be met at a point where this returns a token, the report
+   * fails with DAV:number-of-matches-within-limits (section 3.7)
+   *
+   * @return
+   */
+  URI getResumeToken();
+
+  /**
+   * Adapt a map of changes, as returned by
+   * {@link SyncCollectionResource#findResourcesBySyncToken(URI)}. The
+   * resulting cursor can only resume once all changes have been read, so a
+   * report with a client DAV:limit below the number of changes will fail
+   *
+   * @param changes - href -> Resource
+   * @param finalToken - the sync-token once all changes have been read
+   * @return
+   */
+  static SyncChangeCursor of(Map<String, Resource> changes, final URI finalToken) {
+    final Iterator<Map.Entry<String, Resource>> it = changes.entrySet().iterator();
+    return new SyncChangeCursor() {
+      @Override
+      public URI getResumeToken() {
+        return it.hasNext() ? null : finalToken;
+      }
+
+      @Override
+      public boolean hasNext() {
+        return it.hasNext();
+      }
+
+      @Override
+      public Map.Entry<String, Resource> next() {
+        return it.next();
+      }
+    };
+  }
+}
@@ -40,6 +40,21 @@ public interface SyncCollectionResource extends CollectionResource {
    */
   Map<String, Resource> findResourcesBySyncToken(URI syncToken) throws NotAuthorizedException, BadRequestException;
 
+  /**
+   * Changes since the given sync-token as a cursor, so the sync-collection
+   * report can stream them and truncate large results.
+   *
+   * The default adapts findResourcesBySyncToken. Implementations with many
+   * members should override this to read changes incrementally and to give
+   * resume tokens part way through
+   *
+   * @param syncToken - null for an initial sync
+   * @return
+   */
+  default SyncChangeCursor findChangesBySyncToken(URI syncToken) throws NotAuthorizedException, BadRequestException {
+    return SyncChangeCursor.of(findResourcesBySyncToken(syncToken), getSyncToken());
+  }
+
   /* 3.4.  Types of Changes Reported on Initial Synchronization
 
    When the DAV:sync-collection request contains an empty DAV:sync-token
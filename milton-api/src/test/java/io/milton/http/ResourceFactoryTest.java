@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.milton.http;
+
+import io.milton.http.exceptions.BadRequestException;
+import io.milton.http.exceptions.NotAuthorizedException;
+import io.milton.resource.CollectionResource;
+import io.milton.resource.Resource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import junit.framework.TestCase;
+import static org.easymock.EasyMock.*;
+
+/**
+ *
+ * @author brad
+ */
+public class ResourceFactoryTest extends TestCase {
+
+	private final List<String> located = new ArrayList<>();
+
+	public void testGetResources_LocatesParentOnce() throws Exception {
+		ResourceFactory rf = (host, path) -> {
+			located.add(path);
+			if (path.equals("/cal")) {
+				return collection("cal");
+			}
+			return null;
+		};
+		Map<String, Resource> map = rf.getResources("host", Arrays.asList("/cal/a.ics", "/cal/b.ics", "/cal/missing.ics", "/other/c.ics"));
+		assertEquals(Arrays.asList("/cal/a.ics", "/cal/b.ics", "/cal/missing.ics", "/other/c.ics"), new ArrayList<>(map.keySet()));
+		assertEquals("a.ics", map.get("/cal/a.ics").getName());
+		assertEquals("b.ics", map.get("/cal/b.ics").getName());
+		assertNull(map.get("/cal/missing.ics"));
+		assertNull(map.get("/other/c.ics"));
+		// parents once, then anything not found as a child is tried directly
+		assertEquals(Arrays.asList("/cal", "/cal/missing.ics", "/other", "/other/c.ics"), located);
+	}
+
+	private CollectionResource collection(String name) throws NotAuthorizedException, BadRequestException {
+		CollectionResource col = createNiceMock(CollectionResource.class);
+		expect(col.getName()).andStubReturn(name);
+		expect(col.child(anyObject(String.class))).andStubAnswer(() -> {
+			String childName = (String) getCurrentArguments()[0];
+			return childName.startsWith("missing") ? null : resource(childName);
+		});
+		replay(col);
+		return col;
+	}
+
+	private Resource resource(String name) {
+		Resource r = createNiceMock(Resource.class);
+		expect(r.getName()).andStubReturn(name);
+		replay(r);
+		return r;
+	}
+}
@@ -24,11 +24,17 @@ import io.milton.cache.LocalCacheManager;
 import io.milton.common.FileUtils;
 import io.milton.common.Stoppable;
 import io.milton.context.RootContext;
+import io.milton.event.DeleteEvent;
 import io.milton.event.EventManager;
 import io.milton.event.EventManagerImpl;
+import io.milton.event.MoveEvent;
+import io.milton.event.NewFolderEvent;
+import io.milton.event.PropPatchEvent;
+import io.milton.event.PutEvent;
 import io.milton.http.AuthenticationHandler;
 import io.milton.http.AuthenticationService;
 import io.milton.http.AuthorisationListener;
+import io.milton.http.CompressedContentCache;
 import io.milton.http.CompressingResponseHandler;
 import io.milton.http.Filter;
 import io.milton.http.HandlerHelper;
@@ -40,11 +46,13 @@ import io.milton.http.ResourceHandlerHelper;
 import io.milton.http.StandardFilter;
 import io.milton.http.UrlAdapter;
 import io.milton.http.UrlAdapterImpl;
+import io.milton.http.annotated.AnnoResourceCache;
 import io.milton.http.annotated.AnnotationResourceFactory;
 import io.milton.http.entity.DefaultEntityTransport;
 import io.milton.http.entity.EntityTransport;
 import io.milton.http.fck.FckResourceFactory;
 import io.milton.http.fs.FileContentService;
+import io.milton.http.fs.FileMetadataCache;
 import io.milton.http.fs.FileSystemResourceFactory;
 import io.milton.http.fs.SimpleFileContentService;
 import io.milton.http.fs.SimpleSecurityManager;
@@ -59,7 +67,9 @@ import io.milton.http.http11.Http11Protocol;
 import io.milton.http.http11.Http11ResponseHandler;
 import io.milton.http.http11.MatchHelper;
 import io.milton.http.http11.PartialGetHelper;
+import io.milton.http.http11.ResumableUploadManager;
 import io.milton.http.http11.SimpleContentGenerator;
+import io.milton.http.http11.auth.AuthenticationResultCache;
 import io.milton.http.http11.auth.BasicAuthHandler;
 import io.milton.http.http11.auth.CookieAuthenticationHandler;
 import io.milton.http.http11.auth.DigestAuthenticationHandler;
@@ -70,6 +80,7 @@ import io.milton.http.http11.auth.LoginResponseHandler.LoginPageTypeHandler;
 import io.milton.http.http11.auth.Nonce;
 import io.milton.http.http11.auth.NonceProvider;
 import io.milton.http.http11.auth.OAuth2AuthenticationHandler;
+import io.milton.http.http11.auth.SignedNonceProvider;
 import io.milton.http.http11.auth.SimpleMemoryNonceProvider;
 import io.milton.http.json.JsonPropFindHandler;
 import io.milton.http.json.JsonPropPatchHandler;
@@ -118,6 +129,9 @@ import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.inject.Inject;
 
@@ -161,17 +175,20 @@ public class HttpManagerBuilder {
 	protected ResourceFactory mainResourceFactory;
 	protected ResourceFactory outerResourceFactory;
 	protected FileContentService fileContentService = new SimpleFileContentService(); // Used for FileSystemResourceFactory
+	protected FileMetadataCache fileMetadataCache; // Used for FileSystemResourceFactory, null to read the file system on each request
 	protected DefaultHttp11ResponseHandler.BUFFERING buffering;
 	protected List<AuthenticationHandler> authenticationHandlers;
 	protected List<AuthenticationHandler> extraAuthenticationHandlers;
 	protected List<AuthenticationHandler> cookieDelegateHandlers;
 	protected DigestAuthenticationHandler digestHandler;
 	protected BasicAuthHandler basicHandler;
+	protected AuthenticationResultCache authenticationResultCache;
 	protected CookieAuthenticationHandler cookieAuthenticationHandler;
 	protected FormAuthenticationHandler formAuthenticationHandler;
 	protected Map<UUID, Nonce> nonces = new ConcurrentHashMap<>();
 	protected int nonceValiditySeconds = 60 * 60 * 24;
 	protected NonceProvider nonceProvider;
+	protected boolean enableSignedNonces = false;
 	protected AuthenticationService authenticationService;
 	protected ExpiredNonceRemover expiredNonceRemover;
 	protected List<Stoppable> shutdownHandlers = new CopyOnWriteArrayList<>();
@@ -203,6 +220,9 @@ public class HttpManagerBuilder {
 	protected ResourceHandlerHelper resourceHandlerHelper;
 	protected boolean initDone;
 	protected boolean enableCompression = true;
+	protected CompressedContentCache compressedContentCache;
+	protected boolean enableCompressionStreaming = false;
+	protected AnnoResourceCache annoResourceCache;
 	protected boolean enabledJson = true;
 	protected boolean enableBasicAuth = true;
 	protected boolean enableDigestAuth = true;
@@ -229,9 +249,12 @@ public class HttpManagerBuilder {
 	protected boolean webdavEnabled = true;
 	protected MatchHelper matchHelper;
 	protected PartialGetHelper partialGetHelper;
+	protected ResumableUploadManager resumableUploadManager;
 	protected LoginResponseHandler loginResponseHandler;
 	protected LoginResponseHandler.LoginPageTypeHandler loginPageTypeHandler = new LoginResponseHandler.ContentTypeLoginPageTypeHandler();
 	protected boolean enableExpectContinue = false;
+	protected boolean enablePropFindStreaming = false;
+	protected int propFindParallelism = 0;
 	protected String controllerPackagesToScan;
 	protected String controllerClassNames;
 	protected List controllers = new ArrayList();
@@ -305,6 +328,7 @@ public class HttpManagerBuilder {
 			log.info("Using FileSystemResourceFactory with context path: {}", contextPath);
 			FileSystemResourceFactory fsResourceFactory = new FileSystemResourceFactory(rootDir, securityManager(), contextPath);
 			fsResourceFactory.setContentService(fileContentService);
+			fsResourceFactory.setMetadataCache(fileMetadataCache);
 			mainResourceFactory = fsResourceFactory;
 			log.info("Using file system with root directory: {}", rootDir.getAbsolutePath());
 		}
@@ -324,8 +348,19 @@ public class HttpManagerBuilder {
 					}
 				}
 				if (basicHandler != null) {
+					if (authenticationResultCache != null && basicHandler.getResultCache() == null) {
+						basicHandler.setResultCache(authenticationResultCache);
+						if (basicHandler.getPrincipalResourceFactory() == null) {
+							basicHandler.setPrincipalResourceFactory(mainResourceFactory);
+						}
+					}
 					authenticationHandlers.add(basicHandler);
 				}
+				if (nonceProvider == null && enableSignedNonces) {
+					initCookieSigningKeys();
+					nonceProvider = new SignedNonceProvider(nonceValiditySeconds, cookieSigningKeys);
+					showLog("nonceProvider", nonceProvider);
+				}
 				if (nonceProvider == null) {
 					if (expiredNonceRemover == null) {
 						expiredNonceRemover = new ExpiredNonceRemover(nonces, nonceValiditySeconds);
@@ -464,6 +499,8 @@ public class HttpManagerBuilder {
 		if (enableCompression) {
 			final CompressingResponseHandler compressingResponseHandler = new CompressingResponseHandler(webdavResponseHandler);
 			compressingResponseHandler.setBuffering(buffering);
+			compressingResponseHandler.setCompressedContentCache(compressedContentCache);
+			compressingResponseHandler.setStreamCompression(enableCompressionStreaming);
 			outerWebdavResponseHandler = compressingResponseHandler;
 			showLog("webdavResponseHandler", webdavResponseHandler);
 		}
@@ -538,6 +575,14 @@ public class HttpManagerBuilder {
 			}
 		}
 
+		if (fileMetadataCache != null && !shutdownHandlers.contains(fileMetadataCache)) {
+			// stops its watch thread
+			shutdownHandlers.add(fileMetadataCache);
+		}
+		if (compressedContentCache != null && !shutdownHandlers.contains(compressedContentCache)) {
+			// deletes its temporary files
+			shutdownHandlers.add(compressedContentCache);
+		}
 		if (expiredNonceRemover != null) {
 			shutdownHandlers.add(expiredNonceRemover);
 			log.info("Starting {} this will remove Digest nonces from memory when they expire", expiredNonceRemover);
@@ -612,6 +657,13 @@ public class HttpManagerBuilder {
 			}
 
 			Http11Protocol http11Protocol = new Http11Protocol(webdavResponseHandler, handlerHelper, resourceHandlerHelper, enableOptionsAuth, matchHelper, partialGetHelper);
+			if (resumableUploadManager != null) {
+				if (resumableUploadManager.getUploadDir() == null && mainResourceFactory instanceof FileSystemResourceFactory) {
+					// so completed uploads can be moved into place
+					resumableUploadManager.setUploadDir(ResumableUploadManager.uploadDirFor(((FileSystemResourceFactory) mainResourceFactory).getRoot()));
+				}
+				http11Protocol.setResumableUploadManager(resumableUploadManager);
+			}
 			protocols.add(http11Protocol);
 			initDefaultPropertySources(resourceTypeHelper);
 			if (extraPropertySources != null) {
@@ -647,6 +699,10 @@ public class HttpManagerBuilder {
 		}
 		if (webDavProtocol == null && webdavEnabled) {
 			webDavProtocol = new WebDavProtocol(handlerHelper, resourceTypeHelper, webdavResponseHandler, propertySources, quotaDataAccessor, propPatchSetter, initPropertyAuthoriser(), eTagGenerator, urlAdapter, resourceHandlerHelper, userAgentHelper(), propFindRequestFieldParser(), propFindPropertyBuilder(), displayNameFormatter, enableTextContentProperty);
+			if (enablePropFindStreaming) {
+				log.info("PROPFIND responses will be streamed");
+				webDavProtocol.getPropFindHandler().setStreaming(true);
+			}
 		}
 	}
 
@@ -785,6 +841,21 @@ public class HttpManagerBuilder {
 		this.nonceProvider = nonceProvider;
 	}
 
+	/**
+	 * If true, and no nonceProvider has been set, nonces are signed with the
+	 * cookie signing keys instead of being stored in memory. This allows
+	 * nonces to be validated by any server in a cluster which shares the keys
+	 *
+	 * @return
+	 */
+	public boolean isEnableSignedNonces() {
+		return enableSignedNonces;
+	}
+
+	public void setEnableSignedNonces(boolean enableSignedNonces) {
+		this.enableSignedNonces = enableSignedNonces;
+	}
+
 	public AuthenticationService getAuthenticationService() {
 		return authenticationService;
 	}
@@ -982,6 +1053,53 @@ public class HttpManagerBuilder {
 		this.enableCompression = enableCompression;
 	}
 
+	/**
+	 * Optional cache of compressed content, only used if compression is
+	 * enabled. Only set this if compressible content, eg css and js, is the same
+	 * for every user. See CompressingResponseHandler
+	 *
+	 * @return
+	 */
+	public CompressedContentCache getCompressedContentCache() {
+		return compressedContentCache;
+	}
+
+	public void setCompressedContentCache(CompressedContentCache compressedContentCache) {
+		this.compressedContentCache = compressedContentCache;
+	}
+
+	/**
+	 * If true, compressed content which is not cached is streamed to the
+	 * client with chunked encoding, instead of being buffered to find its
+	 * Content-Length. Defaults to false
+	 *
+	 * @return
+	 */
+	public boolean isEnableCompressionStreaming() {
+		return enableCompressionStreaming;
+	}
+
+	public void setEnableCompressionStreaming(boolean enableCompressionStreaming) {
+		this.enableCompressionStreaming = enableCompressionStreaming;
+	}
+
+	/**
+	 * If set, and the main resource factory is an AnnotationResourceFactory,
+	 * the source objects which paths resolve to are cached across requests
+	 * for read-only methods, and checked against the cache's VersionSource
+	 * on each use. The cache is registered with the event manager so changes
+	 * made through milton invalidate it. Defaults to null, ie no caching
+	 *
+	 * @return
+	 */
+	public AnnoResourceCache getAnnoResourceCache() {
+		return annoResourceCache;
+	}
+
+	public void setAnnoResourceCache(AnnoResourceCache annoResourceCache) {
+		this.annoResourceCache = annoResourceCache;
+	}
+
 	public boolean isEnabledJson() {
 		return enabledJson;
 	}
@@ -1047,6 +1165,22 @@ public class HttpManagerBuilder {
 		this.basicHandler = basicHandler;
 	}
 
+	/**
+	 * If set, is used by the basic auth handler to remember successful logins
+	 * for a short time, so passwords are not checked on every request. Only
+	 * the principal's url is remembered, and the principal is located from the
+	 * mainResourceFactory on each request. Null by default
+	 *
+	 * @return
+	 */
+	public AuthenticationResultCache getAuthenticationResultCache() {
+		return authenticationResultCache;
+	}
+
+	public void setAuthenticationResultCache(AuthenticationResultCache authenticationResultCache) {
+		this.authenticationResultCache = authenticationResultCache;
+	}
+
 	public OAuth2AuthenticationHandler getoAuth2Handler() {
 		return oAuth2Handler;
 	}
@@ -1290,6 +1424,22 @@ public class HttpManagerBuilder {
 		this.partialGetHelper = partialGetHelper;
 	}
 
+	/**
+	 * If set, PUT requests with an Upload-Session header are treated as chunks
+	 * of a resumable upload. Null, the default, disables resumable uploads. If
+	 * it has no upload directory and the file system is being served, one is
+	 * set beside the root directory
+	 *
+	 * @return
+	 */
+	public ResumableUploadManager getResumableUploadManager() {
+		return resumableUploadManager;
+	}
+
+	public void setResumableUploadManager(ResumableUploadManager resumableUploadManager) {
+		this.resumableUploadManager = resumableUploadManager;
+	}
+
 	public boolean isMultiNamespaceCustomPropertySourceEnabled() {
 		return multiNamespaceCustomPropertySourceEnabled;
 	}
@@ -1330,6 +1480,14 @@ public class HttpManagerBuilder {
 		this.fileContentService = fileContentService;
 	}
 
+	public FileMetadataCache getFileMetadataCache() {
+		return fileMetadataCache;
+	}
+
+	public void setFileMetadataCache(FileMetadataCache fileMetadataCache) {
+		this.fileMetadataCache = fileMetadataCache;
+	}
+
 	public CacheControlHelper getCacheControlHelper() {
 		return cacheControlHelper;
 	}
@@ -1360,6 +1518,38 @@ public class HttpManagerBuilder {
 		return enableExpectContinue;
 	}
 
+	/**
+	 * If true, PROPFIND responses are written to the client as each resource
+	 * is resolved, using chunked transfer encoding, instead of being built in
+	 * memory to set a content length. This keeps memory flat for very large
+	 * collections. Defaults to false
+	 *
+	 * @return
+	 */
+	public boolean isEnablePropFindStreaming() {
+		return enablePropFindStreaming;
+	}
+
+	public void setEnablePropFindStreaming(boolean enablePropFindStreaming) {
+		this.enablePropFindStreaming = enablePropFindStreaming;
+	}
+
+	/**
+	 * If greater then zero, the default PropFindPropertyBuilder resolves the
+	 * properties of children and multiget resources on a pool of this many
+	 * threads. Only useful when property sources do slow IO, and they must be
+	 * thread safe. Defaults to zero, ie sequential
+	 *
+	 * @return
+	 */
+	public int getPropFindParallelism() {
+		return propFindParallelism;
+	}
+
+	public void setPropFindParallelism(int propFindParallelism) {
+		this.propFindParallelism = propFindParallelism;
+	}
+
 	public WebDavResponseHandler getOuterWebdavResponseHandler() {
 		return outerWebdavResponseHandler;
 	}
@@ -1628,6 +1818,15 @@ public class HttpManagerBuilder {
 					// init the default, statically configured sm
 					arf.setSecurityManager(securityManager());
 				}
+				if (annoResourceCache != null && arf.getResourceCache() == null) {
+					log.info("Enabled cross request resource cache for annotations resources");
+					arf.setResourceCache(annoResourceCache);
+					eventManager.registerEventListener(annoResourceCache, PutEvent.class);
+					eventManager.registerEventListener(annoResourceCache, DeleteEvent.class);
+					eventManager.registerEventListener(annoResourceCache, MoveEvent.class);
+					eventManager.registerEventListener(annoResourceCache, NewFolderEvent.class);
+					eventManager.registerEventListener(annoResourceCache, PropPatchEvent.class);
+				}
 				setDisplayNameFormatter(new AnnotationResourceFactory.AnnotationsDisplayNameFormatter(getDisplayNameFormatter()));
 			}
 		} catch (CreationException | ClassNotFoundException | IOException e) {
@@ -1647,7 +1846,19 @@ public class HttpManagerBuilder {
 			if (propertySources == null) {
 				propertySources = new ArrayList<>();
 			}
-			propFindPropertyBuilder = new DefaultPropFindPropertyBuilder(propertySources);
+			DefaultPropFindPropertyBuilder b = new DefaultPropFindPropertyBuilder(propertySources);
+			if (propFindParallelism > 0) {
+				final AtomicInteger count = new AtomicInteger();
+				final ExecutorService executor = Executors.newFixedThreadPool(propFindParallelism, r -> {
+					Thread t = new Thread(r, "milton-propfind-" + count.incrementAndGet());
+					t.setDaemon(true);
+					return t;
+				});
+				b.setChildExecutor(executor);
+				shutdownHandlers.add(executor::shutdown);
+				log.info("PROPFIND properties will be resolved on {} threads", propFindParallelism);
+			}
+			propFindPropertyBuilder = b;
 		}
 		return propFindPropertyBuilder;
 	}
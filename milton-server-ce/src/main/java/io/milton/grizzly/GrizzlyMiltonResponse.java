@@ -8,6 +8,7 @@ import io.milton.http.Cookie;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.file.Path;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -73,6 +74,32 @@ public class GrizzlyMiltonResponse extends AbstractResponse {
 
     }
 
+    /**
+     * Uses grizzly's sendfile support when it is enabled, which it is not for
+     * secure connections
+     */
+    @Override
+    public void sendFile(Path path, long position, long length) throws IOException {
+        if (canSendFile(r.isSendFileEnabled(), r.getRequest().isSecure(), length)) {
+            try {
+                r.getOutputBuffer().sendfile(path.toFile(), position, length, null);
+                return;
+            } catch (IllegalStateException e) {
+                log.debug("Could not use sendfile, will copy content instead", e);
+            }
+        }
+        super.sendFile(path, position, length);
+    }
+
+    /**
+     * Grizzly's sendfile replaces the Content-Length header with the length
+     * of the transfer as an int, so files of 2GB or more would be sent with
+     * the wrong length and must be copied instead
+     */
+    static boolean canSendFile(boolean sendFileEnabled, boolean secure, long length) {
+        return sendFileEnabled && !secure && length <= Integer.MAX_VALUE;
+    }
+
     @Override
     public void close() {
     }
@@ -26,6 +26,7 @@ import io.milton.http.Response.Status;
 import io.milton.http.exceptions.BadRequestException;
 import io.milton.http.exceptions.NotFoundException;
 import io.milton.http.quota.StorageChecker.StorageErrorReason;
+import java.net.URISyntaxException;
 import java.util.List;
 import java.util.Map;
 
@@ -35,7 +36,9 @@ import org.slf4j.LoggerFactory;
 import io.milton.http.exceptions.NotAuthorizedException;
 import io.milton.http.http11.Bufferable;
 import io.milton.http.http11.DefaultHttp11ResponseHandler.BUFFERING;
+import io.milton.http.webdav.PropFindPropertyBuilder;
 import io.milton.http.webdav.PropFindResponse;
+import io.milton.http.webdav.PropertiesRequest;
 import io.milton.http.webdav.WebDavResponseHandler;
 
 /**
@@ -200,6 +203,11 @@ public abstract class AbstractWrappingResponseHandler implements WebDavResponseH
 		wrapped.respondPropFind(propFindResponses, response, request, r);
 	}
 
+	@Override
+	public void respondPropFind(PropFindableResource pfr, int depth, PropertiesRequest parseResult, String url, PropFindPropertyBuilder propertyBuilder, Response response, Request request) throws URISyntaxException, NotAuthorizedException, BadRequestException {
+		wrapped.respondPropFind(pfr, depth, parseResult, url, propertyBuilder, response, request);
+	}
+
 	@Override
 	public void respondServerError(Request request, Response response, String reason) {
 		wrapped.respondServerError(request, response, reason);
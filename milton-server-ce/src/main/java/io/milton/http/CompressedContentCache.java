@@ -0,0 +1,385 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.milton.http;
+
+import io.milton.common.Stoppable;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Holds compressed copies of content, so that the same version of a resource
+ * (eg a css or js file) is only compressed once rather than on every GET.
+ *
+ * Small entries are held in memory and larger ones in temporary files. Each
+ * tier is bounded by its total size, and the least recently used entries are
+ * evicted first. Entries larger than maxEntrySize are not cached.
+ *
+ * Entries are looked up by a key which must identify the exact content, see
+ * CompressingResponseHandler
+ *
+ * The temporary file of an evicted entry is deleted once any streams open on
+ * it are closed. Stopping the cache removes all entries, so register it as a
+ * shutdown handler to remove the temporary files
+ *
+ * @author brad
+ */
+public class CompressedContentCache implements Stoppable {
+
+	private static final Logger log = LoggerFactory.getLogger(CompressedContentCache.class);
+
+	private long maxMemorySize = 10 * 1024 * 1024;
+	private long maxDiskSize = 100 * 1024 * 1024;
+	private int maxMemoryEntrySize = 256 * 1024;
+	private long maxEntrySize = 20 * 1024 * 1024;
+	private File directory;
+
+	private final LinkedHashMap<String, Entry> memory = new LinkedHashMap<>(16, 0.75f, true);
+	private final LinkedHashMap<String, Entry> disk = new LinkedHashMap<>(16, 0.75f, true);
+	private long memoryBytes;
+	private long diskBytes;
+
+	/**
+	 *
+	 * @param key
+	 * @return - the cached entry, or null if there is none
+	 */
+	public synchronized Entry get(String key) {
+		Entry e = memory.get(key);
+		if (e == null) {
+			e = disk.get(key);
+		}
+		return e;
+	}
+
+	/**
+	 * Store the given content, which is read and closed. The caller must check
+	 * that size is not greater then maxEntrySize
+	 *
+	 * @param key
+	 * @param in - the compressed content
+	 * @param size - the number of bytes in the stream
+	 * @return - the new entry
+	 * @throws IOException
+	 */
+	public Entry put(String key, InputStream in, long size) throws IOException {
+		Entry e = create(in, size);
+		add(key, e);
+		return e;
+	}
+
+	/**
+	 * Store the given content, as put, and open the new entry. The stream is
+	 * opened before the entry can be evicted, so it can be read even if the
+	 * entry is evicted at once, eg because it is larger than maxDiskSize or
+	 * by a concurrent put
+	 *
+	 * @param key
+	 * @param in - the compressed content
+	 * @param size - the number of bytes in the stream
+	 * @return - the content of the new entry
+	 * @throws IOException
+	 */
+	public InputStream putAndOpen(String key, InputStream in, long size) throws IOException {
+		Entry e = create(in, size);
+		InputStream content = e.openStream();
+		add(key, e);
+		return content;
+	}
+
+	private Entry create(InputStream in, long size) throws IOException {
+		Entry e;
+		try {
+			if (size <= maxMemoryEntrySize) {
+				e = new Entry(IOUtils.toByteArray(in), null);
+			} else {
+				File f = File.createTempFile("milton-compressed", ".cache", directory);
+				try (OutputStream out = new FileOutputStream(f)) {
+					IOUtils.copyLarge(in, out);
+				} catch (IOException ex) {
+					delete(f);
+					throw ex;
+				}
+				e = new Entry(null, f);
+			}
+		} finally {
+			IOUtils.closeQuietly(in);
+		}
+		return e;
+	}
+
+	private void add(String key, Entry e) {
+		for (Entry old : store(key, e)) {
+			old.discard();
+		}
+	}
+
+	private synchronized List<Entry> store(String key, Entry e) {
+		List<Entry> evicted = new ArrayList<>();
+		Entry old = memory.remove(key);
+		if (old == null) {
+			old = disk.remove(key);
+		}
+		if (old != null) {
+			release(old);
+			evicted.add(old);
+		}
+		if (e.data != null) {
+			memory.put(key, e);
+			memoryBytes += e.size;
+			evict(memory, maxMemorySize, evicted);
+		} else {
+			disk.put(key, e);
+			diskBytes += e.size;
+			evict(disk, maxDiskSize, evicted);
+		}
+		return evicted;
+	}
+
+	private void evict(LinkedHashMap<String, Entry> map, long max, List<Entry> evicted) {
+		Iterator<Map.Entry<String, Entry>> it = map.entrySet().iterator();
+		while (it.hasNext() && (map == memory ? memoryBytes : diskBytes) > max) {
+			Entry e = it.next().getValue();
+			it.remove();
+			release(e);
+			evicted.add(e);
+		}
+	}
+
+	private void release(Entry e) {
+		if (e.data != null) {
+			memoryBytes -= e.size;
+		} else {
+			diskBytes -= e.size;
+		}
+	}
+
+	/**
+	 * Remove all entries, deleting any temporary files
+	 */
+	public void clear() {
+		List<Entry> removed;
+		synchronized (this) {
+			removed = new ArrayList<>(disk.values());
+			memory.clear();
+			disk.clear();
+			memoryBytes = 0;
+			diskBytes = 0;
+		}
+		for (Entry e : removed) {
+			e.discard();
+		}
+	}
+
+	/**
+	 * Removes all entries, see clear
+	 */
+	@Override
+	public void stop() {
+		clear();
+	}
+
+	private static void delete(File f) {
+		if (f.exists() && !f.delete()) {
+			log.warn("Couldnt delete cached compressed file: " + f.getAbsolutePath());
+		}
+	}
+
+	public synchronized long getMemoryBytes() {
+		return memoryBytes;
+	}
+
+	public synchronized long getDiskBytes() {
+		return diskBytes;
+	}
+
+	public long getMaxMemorySize() {
+		return maxMemorySize;
+	}
+
+	/**
+	 * Total size of entries held in memory. Default 10MB
+	 *
+	 * @param maxMemorySize
+	 */
+	public void setMaxMemorySize(long maxMemorySize) {
+		this.maxMemorySize = maxMemorySize;
+	}
+
+	public long getMaxDiskSize() {
+		return maxDiskSize;
+	}
+
+	/**
+	 * Total size of entries held in temporary files. Default 100MB
+	 *
+	 * @param maxDiskSize
+	 */
+	public void setMaxDiskSize(long maxDiskSize) {
+		this.maxDiskSize = maxDiskSize;
+	}
+
+	public int getMaxMemoryEntrySize() {
+		return maxMemoryEntrySize;
+	}
+
+	/**
+	 * Entries larger then this are held on disk. Default 256KB
+	 *
+	 * @param maxMemoryEntrySize
+	 */
+	public void setMaxMemoryEntrySize(int maxMemoryEntrySize) {
+		this.maxMemoryEntrySize = maxMemoryEntrySize;
+	}
+
+	public long getMaxEntrySize() {
+		return maxEntrySize;
+	}
+
+	/**
+	 * Entries larger then this are not cached. Default 20MB
+	 *
+	 * @param maxEntrySize
+	 */
+	public void setMaxEntrySize(long maxEntrySize) {
+		this.maxEntrySize = maxEntrySize;
+	}
+
+	public File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Where to create temporary files. Null, the default, means the system
+	 * temporary directory
+	 *
+	 * @param directory
+	 */
+	public void setDirectory(File directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * A cached compressed variant
+	 */
+	public static class Entry {
+
+		private final byte[] data;
+		private final File file;
+		private final long size;
+		private int readers;
+		private boolean discarded;
+
+		private Entry(byte[] data, File file) {
+			this.data = data;
+			this.file = file;
+			this.size = data != null ? data.length : file.length();
+		}
+
+		public long getSize() {
+			return size;
+		}
+
+		public boolean isInMemory() {
+			return data != null;
+		}
+
+		/**
+		 * Open the content. Fails if the entry has since been evicted from disk
+		 *
+		 * @return
+		 * @throws IOException
+		 */
+		public InputStream openStream() throws IOException {
+			if (data != null) {
+				return new ByteArrayInputStream(data);
+			}
+			synchronized (this) {
+				if (discarded) {
+					throw new FileNotFoundException("Evicted: " + file.getAbsolutePath());
+				}
+				readers++;
+			}
+			try {
+				return new BufferedInputStream(new FileInputStream(file) {
+					private boolean closed;
+
+					@Override
+					public void close() throws IOException {
+						try {
+							super.close();
+						} finally {
+							if (!closed) {
+								closed = true;
+								closeReader();
+							}
+						}
+					}
+				});
+			} catch (IOException ex) {
+				closeReader();
+				throw ex;
+			}
+		}
+
+		private void closeReader() {
+			boolean delete;
+			synchronized (this) {
+				readers--;
+				delete = discarded && readers == 0;
+			}
+			if (delete) {
+				delete(file);
+			}
+		}
+
+		/**
+		 * Called when removed from the cache. The file is deleted now, or when
+		 * the last stream open on it is closed
+		 */
+		private void discard() {
+			if (file == null) {
+				return;
+			}
+			boolean delete;
+			synchronized (this) {
+				discarded = true;
+				delete = readers == 0;
+			}
+			if (delete) {
+				delete(file);
+			}
+		}
+	}
+}
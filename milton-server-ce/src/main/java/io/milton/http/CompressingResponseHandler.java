@@ -18,16 +18,23 @@
  */
 package io.milton.http;
 
+import io.milton.resource.BufferingControlResource;
 import io.milton.resource.GetableResource;
 import io.milton.resource.Resource;
 import io.milton.http.entity.CompressedResourceEntity;
+import io.milton.http.entity.CompressingEntity;
 import io.milton.http.entity.InputStreamEntity;
 import io.milton.http.exceptions.NotFoundException;
 import io.milton.http.http11.DefaultHttp11ResponseHandler;
 import io.milton.http.exceptions.BadRequestException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.zip.GZIPOutputStream;
+import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -47,6 +54,18 @@ import java.util.Date;
  * Usually, this will wrap a DefaultResponseHandler, but custom implementations
  * can be wrapped as well.
  *
+ * Content is compressed if its content type matches compressibleContentTypes,
+ * using the first of the configured codecs which the client accepts.
+ *
+ * If a CompressedContentCache is set then compressed content is cached, keyed
+ * on the resource's unique id, etag (or modified date), content type and
+ * encoding. Only set a cache if compressible content is the same for every
+ * user who can see it, such as static css and js files.
+ *
+ * Content which is not cached is buffered so the Content-Length can be set,
+ * unless streamCompression is enabled, in which case it is compressed as it is
+ * sent, without a Content-Length, so the response is chunked.
+ *
  * @author brad
  */
 public class CompressingResponseHandler extends AbstractWrappingResponseHandler {
@@ -57,6 +76,12 @@ public class CompressingResponseHandler extends AbstractWrappingResponseHandler
 	 */
 	private int maxMemorySize = 100000;
 	private CacheControlHelper cacheControlHelper = new DefaultCacheControlHelper();
+	private List<String> compressibleContentTypes = new ArrayList<>(Arrays.asList(
+			"text/*", "application/javascript", "application/x-javascript", "application/ecmascript",
+			"application/json", "application/xml", "application/xhtml+xml", "image/svg+xml"));
+	private List<CompressionCodec> codecs = new ArrayList<>(Arrays.<CompressionCodec>asList(new GzipCompressionCodec()));
+	private CompressedContentCache compressedContentCache;
+	private boolean streamCompression;
 
 	public CompressingResponseHandler() {
 	}
@@ -105,37 +130,74 @@ public class CompressingResponseHandler extends AbstractWrappingResponseHandler
 				}
 			}
 
-			if (canCompress(r, contentType, acceptableEncodings)) {
+			CompressionCodec codec = isCompressible(contentType) ? selectCodec(acceptableEncodings) : null;
+			if (codec != null) {
 				log.trace("respondContent: compressable");
 
-				// get the zipped content before sending so we can determine its
-				// compressed size
-				BufferingOutputStream tempOut = new BufferingOutputStream(maxMemorySize);
-				try {
-					OutputStream gzipOut = new GZIPOutputStream(tempOut);
-					r.sendContent(gzipOut, null, params, contentType);
-					gzipOut.flush();
-					gzipOut.close();
-					tempOut.flush();
-				} catch (NotFoundException e) {
-					tempOut.deleteTempFileIfExists();
-					throw e;
-				} catch (IOException ex) {
-					tempOut.deleteTempFileIfExists();
-					throw new RuntimeException(ex);
-				} finally {
-					FileUtils.close(tempOut);
+				String cacheKey = cacheKey(r, contentType, codec, params);
+				if (cacheKey == null && streamCompression && !isBufferingRequired(r)) {
+					log.trace("respondContent: stream compressed content");
+					setRespondContentCommonHeaders(response, resource, Response.Status.SC_OK, request.getAuthorization());
+					response.setContentEncodingHeader(codec.getEncoding());
+					response.setVaryHeader("Accept-Encoding");
+					response.setContentTypeHeader(contentType);
+					cacheControlHelper.setCacheControl(r, response, request.getAuthorization());
+					response.setEntity(new CompressingEntity(r, params, contentType, codec));
+					return;
+				}
+				InputStream content = null;
+				long contentLength = 0;
+				if (cacheKey != null) {
+					CompressedContentCache.Entry cached = compressedContentCache.get(cacheKey);
+					if (cached != null) {
+						try {
+							content = cached.openStream();
+							contentLength = cached.getSize();
+						} catch (IOException ex) {
+							log.warn("Couldnt open cached compressed content, probably evicted: " + ex.getMessage());
+						}
+					}
+				}
+
+				if (content == null) {
+					// get the zipped content before sending so we can determine its
+					// compressed size
+					BufferingOutputStream tempOut = new BufferingOutputStream(maxMemorySize);
+					try {
+						OutputStream compressedOut = codec.compress(tempOut);
+						r.sendContent(compressedOut, null, params, contentType);
+						compressedOut.flush();
+						compressedOut.close();
+						tempOut.flush();
+					} catch (NotFoundException e) {
+						tempOut.deleteTempFileIfExists();
+						throw e;
+					} catch (IOException ex) {
+						tempOut.deleteTempFileIfExists();
+						throw new RuntimeException(ex);
+					} finally {
+						FileUtils.close(tempOut);
+					}
+					contentLength = tempOut.getSize();
+					content = tempOut.getInputStream();
+					if (cacheKey != null && contentLength <= compressedContentCache.getMaxEntrySize()) {
+						try {
+							// opened before it can be evicted, so this can't fail once cached
+							content = compressedContentCache.putAndOpen(cacheKey, content, contentLength);
+						} catch (IOException ex) {
+							throw new RuntimeException(ex);
+						}
+					}
 				}
 
 				log.trace("respondContent-compressed: " + resource.getClass());
 				setRespondContentCommonHeaders(response, resource, Response.Status.SC_OK, request.getAuthorization());
-				response.setContentEncodingHeader(Response.ContentEncoding.GZIP);
+				response.setContentEncodingHeader(codec.getEncoding());
 				response.setVaryHeader("Accept-Encoding");
-				long contentLength = tempOut.getSize();
 				response.setContentLengthHeader(contentLength);
 				response.setContentTypeHeader(contentType);
 				cacheControlHelper.setCacheControl(r, response, request.getAuthorization());
-				response.setEntity(new InputStreamEntity(tempOut.getInputStream()));
+				response.setEntity(new InputStreamEntity(content));
 			} else {
 				log.trace("respondContent: not compressable");
 				// We really should set this header, but it causes IE to not cache files (eg images)
@@ -159,23 +221,159 @@ public class CompressingResponseHandler extends AbstractWrappingResponseHandler
 		}
 	}
 
-	private boolean canCompress(GetableResource r, String contentType, String acceptableEncodings) {
-		log.trace("canCompress: contentType: " + contentType + " acceptable-encodings: " + acceptableEncodings);
-		if (contentType != null) {
-			contentType = contentType.toLowerCase();
-			// We don't want to compress things like jpg's, mp3's, video files, etc, since they're already compressed
-			// and attempting to compress compressed data is just dumb
-			// This list really should be from a parameter - TODO
-			boolean contentIsCompressable = contentType.contains("text") || contentType.contains("css") || contentType.contains("js") || contentType.contains("javascript");
-			if (contentIsCompressable) {
-				boolean supportsGzip = (acceptableEncodings != null && acceptableEncodings.toLowerCase().contains("gzip"));
-				log.trace("supports gzip: " + supportsGzip);
-				return supportsGzip;
+	/**
+	 * Whether the given content type is in compressibleContentTypes. Already
+	 * compressed formats like jpg's, mp3's, video files, etc should not be listed
+	 *
+	 * @param contentType
+	 * @return
+	 */
+	protected boolean isCompressible(String contentType) {
+		if (contentType == null) {
+			return false;
+		}
+		String ct = contentType.toLowerCase();
+		int pos = ct.indexOf(';');
+		if (pos >= 0) {
+			ct = ct.substring(0, pos);
+		}
+		ct = ct.trim();
+		for (String s : compressibleContentTypes) {
+			if (s.endsWith("/*")) {
+				if (ct.startsWith(s.substring(0, s.length() - 1))) {
+					return true;
+				}
+			} else if (ct.equals(s)) {
+				return true;
 			}
 		}
 		return false;
 	}
 
+	/**
+	 * Find the first codec whose encoding is in the Accept-Encoding header,
+	 * ignoring encodings with a zero quality
+	 *
+	 * @param acceptableEncodings
+	 * @return - null if none are acceptable
+	 */
+	protected CompressionCodec selectCodec(String acceptableEncodings) {
+		log.trace("selectCodec: acceptable-encodings: " + acceptableEncodings);
+		if (acceptableEncodings == null) {
+			return null;
+		}
+		Set<String> accepted = new HashSet<>();
+		for (String part : acceptableEncodings.toLowerCase().split(",")) {
+			String[] bits = part.split(";");
+			boolean refused = false;
+			for (int i = 1; i < bits.length; i++) {
+				String param = bits[i].trim();
+				if (param.startsWith("q=")) {
+					try {
+						refused = Double.parseDouble(param.substring(2)) <= 0;
+					} catch (NumberFormatException e) {
+						log.trace("Invalid quality: " + param);
+					}
+				}
+			}
+			if (!refused) {
+				accepted.add(bits[0].trim());
+			}
+		}
+		for (CompressionCodec codec : codecs) {
+			if (accepted.contains(codec.getEncoding().code)) {
+				return codec;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Build the key to cache compressed content under, or null if it should
+	 * not be cached
+	 */
+	private String cacheKey(GetableResource r, String contentType, CompressionCodec codec, Map<String, String> params) {
+		if (compressedContentCache == null || (params != null && !params.isEmpty())) {
+			return null;
+		}
+		String uniqueId = r.getUniqueId();
+		if (uniqueId == null) {
+			return null;
+		}
+		String version = wrapped.generateEtag(r);
+		if (version == null) {
+			Date modDate = r.getModifiedDate();
+			if (modDate == null) {
+				return null;
+			}
+			version = Long.toString(modDate.getTime());
+		}
+		return uniqueId + "|" + version + "|" + contentType + "|" + codec.getEncoding().code;
+	}
+
+	public List<String> getCompressibleContentTypes() {
+		return compressibleContentTypes;
+	}
+
+	/**
+	 * Content types to compress, eg application/json. Entries ending with /*
+	 * match all subtypes, eg text/*
+	 *
+	 * @param compressibleContentTypes
+	 */
+	public void setCompressibleContentTypes(List<String> compressibleContentTypes) {
+		this.compressibleContentTypes = compressibleContentTypes;
+	}
+
+	public List<CompressionCodec> getCodecs() {
+		return codecs;
+	}
+
+	/**
+	 * Codecs in order of preference. Defaults to just gzip
+	 *
+	 * @param codecs
+	 */
+	public void setCodecs(List<CompressionCodec> codecs) {
+		this.codecs = codecs;
+	}
+
+	private boolean isBufferingRequired(GetableResource r) {
+		if (r instanceof BufferingControlResource) {
+			return Boolean.TRUE.equals(((BufferingControlResource) r).isBufferingRequired());
+		}
+		return false;
+	}
+
+	public boolean isStreamCompression() {
+		return streamCompression;
+	}
+
+	/**
+	 * If true, content which is not cached is compressed as it is sent, with
+	 * chunked transfer encoding instead of a Content-Length. This avoids
+	 * buffering and temporary files, and the client starts receiving content
+	 * immediately. Default is false
+	 *
+	 * @param streamCompression
+	 */
+	public void setStreamCompression(boolean streamCompression) {
+		this.streamCompression = streamCompression;
+	}
+
+	public CompressedContentCache getCompressedContentCache() {
+		return compressedContentCache;
+	}
+
+	/**
+	 * Optional, null by default. See class comments
+	 *
+	 * @param compressedContentCache
+	 */
+	public void setCompressedContentCache(CompressedContentCache compressedContentCache) {
+		this.compressedContentCache = compressedContentCache;
+	}
+
 	public void setMaxMemorySize(int maxMemorySize) {
 		this.maxMemorySize = maxMemorySize;
 	}
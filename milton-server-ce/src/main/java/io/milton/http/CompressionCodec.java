@@ -0,0 +1,54 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.milton.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Compresses content for a particular Content-Encoding. Used by
+ * CompressingResponseHandler, which picks the first codec that the client
+ * accepts.
+ *
+ * Only gzip is built in, since the JDK has no brotli or zstd encoder.
+ * Implement this over an optional codec library to support them.
+ *
+ * @author brad
+ */
+public interface CompressionCodec {
+
+	/**
+	 *
+	 * @return - the encoding to send in the Content-Encoding header
+	 */
+	Response.ContentEncoding getEncoding();
+
+	/**
+	 * Wrap the given stream, so that data written to the returned stream is
+	 * compressed to the given stream. Closing the returned stream must finish
+	 * the compressed data, and must release any resources held by the codec
+	 * even if finishing fails
+	 *
+	 * @param out
+	 * @return
+	 * @throws IOException
+	 */
+	OutputStream compress(OutputStream out) throws IOException;
+}
@@ -41,6 +41,19 @@ public interface DeleteHelper {
      */
     boolean isLockedOut(Request req, Resource r) throws NotAuthorizedException, BadRequestException;
 
+    /**
+     * As above, but also given the path of the resource, which allows
+     * implementations to check locks by path instead of walking the tree
+     *
+     * @param req
+     * @param r
+     * @param path - the decoded path of r, which might not be the request path
+     * @return
+     */
+    default boolean isLockedOut(Request req, Resource r, String path) throws NotAuthorizedException, BadRequestException {
+        return isLockedOut(req, r);
+    }
+
     /**
      * Delete the resource and any child resources
 	 * 
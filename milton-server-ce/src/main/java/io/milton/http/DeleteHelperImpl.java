@@ -22,6 +22,7 @@ import io.milton.resource.DeletableCollectionResource;
 import io.milton.resource.CollectionResource;
 import io.milton.resource.DeletableResource;
 import io.milton.resource.Resource;
+import io.milton.common.Path;
 import io.milton.http.exceptions.BadRequestException;
 import io.milton.http.exceptions.ConflictException;
 import io.milton.http.exceptions.NotAuthorizedException;
@@ -40,6 +41,10 @@ import org.slf4j.LoggerFactory;
  * CollectionResource, and finally will just call handlerHelper.isLockedOut
  * otherwise
  *
+ * If the HandlerHelper has a lock index and the path is given, the index is
+ * checked first. Collections are only walked if the index might not hold
+ * every lock
+ *
  */
 public class DeleteHelperImpl implements DeleteHelper {
 
@@ -50,6 +55,23 @@ public class DeleteHelperImpl implements DeleteHelper {
 		this.handlerHelper = handlerHelper;
 	}
 
+	@Override
+	public boolean isLockedOut(Request req, Resource r, String path) throws NotAuthorizedException, BadRequestException {
+		IndexedLockManager index = handlerHelper.getLockIndex();
+		if (index != null && path != null) {
+			boolean isCollection = r instanceof CollectionResource;
+			if (handlerHelper.isLockedOut(req, Path.path(path), isCollection)) {
+				log.info("isLocked, as reported by lock index: {}", path);
+				return true;
+			}
+			if (isCollection && index.isIndexComplete()) {
+				// the index has every lock, so nothing under the collection is locked
+				return handlerHelper.isLockedOut(req, r);
+			}
+		}
+		return isLockedOut(req, r);
+	}
+
 	@Override
 	public boolean isLockedOut(Request req, Resource r) throws NotAuthorizedException, BadRequestException {
 		if (r instanceof DeletableCollectionResource) {
@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.milton.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Gzip compression, with a configurable level and buffer size. The buffer is
+ * larger than GZIPOutputStream's default of 512 bytes, which means fewer,
+ * larger writes when streaming to the response
+ *
+ * @author brad
+ */
+public class GzipCompressionCodec implements CompressionCodec {
+
+	private int level = Deflater.DEFAULT_COMPRESSION;
+	private int bufferSize = 8192;
+
+	@Override
+	public Response.ContentEncoding getEncoding() {
+		return Response.ContentEncoding.GZIP;
+	}
+
+	@Override
+	public OutputStream compress(OutputStream out) throws IOException {
+		final int l = level;
+		return new GZIPOutputStream(out, bufferSize) {
+			{
+				def.setLevel(l);
+			}
+
+			@Override
+			public void close() throws IOException {
+				try {
+					super.close();
+				} finally {
+					// GZIPOutputStream doesnt end its Deflater if finishing fails
+					def.end();
+				}
+			}
+		};
+	}
+
+	public int getLevel() {
+		return level;
+	}
+
+	/**
+	 * Deflater compression level, 1 (fastest) to 9 (smallest). Defaults to
+	 * Deflater.DEFAULT_COMPRESSION, ie 6
+	 *
+	 * @param level
+	 */
+	public void setLevel(int level) {
+		this.level = level;
+	}
+
+	public int getBufferSize() {
+		return bufferSize;
+	}
+
+	public void setBufferSize(int bufferSize) {
+		this.bufferSize = bufferSize;
+	}
+}
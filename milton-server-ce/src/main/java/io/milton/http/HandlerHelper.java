@@ -31,6 +31,7 @@ import io.milton.http.quota.StorageChecker.StorageErrorReason;
 import io.milton.common.LogUtils;
 import io.milton.http.exceptions.BadRequestException;
 import io.milton.http.exceptions.NotAuthorizedException;
+import java.net.URI;
 import java.util.ArrayList;
 import java.util.List;
 import org.slf4j.Logger;
@@ -47,6 +48,7 @@ public class HandlerHelper {
 	private final List<StorageChecker> storageCheckers;
 	private final AuthorisationListener authorisationListener;
 	private boolean enableExpectContinue = true;
+	private IndexedLockManager lockIndex;
 
 	public HandlerHelper(AuthenticationService authenticationService, List<StorageChecker> storageCheckers) {
 		this.authenticationService = authenticationService;
@@ -201,7 +203,49 @@ public class HandlerHelper {
 			return false;
 		}
 		LockableResource lr = (LockableResource) inResource;
-		LockToken token = lr.getCurrentLock();
+		return isLockedOut(inRequest, lr.getCurrentLock());
+	}
+
+	/**
+	 * Check locks in the lock index, if one has been set. This finds depth
+	 * infinity locks on ancestors of the path and, if withinPath is true,
+	 * locks on the path or anything under it.
+	 *
+	 * @param inRequest
+	 * @param path
+	 * @param withinPath
+	 * @return - true if any of the locks found are not held by the current
+	 * user or identified in the request. Always false if there is no lock
+	 * index
+	 */
+	public boolean isLockedOut(Request inRequest, Path path, boolean withinPath) {
+		if (lockIndex == null || path == null) {
+			return false;
+		}
+		for (LockToken token : lockIndex.getCoveringLocks(path)) {
+			if (isLockedOut(inRequest, token)) {
+				return true;
+			}
+		}
+		if (withinPath) {
+			for (LockToken token : lockIndex.getLocksWithin(path)) {
+				if (isLockedOut(inRequest, token)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Check if the given lock prevents the current request from modifying the
+	 * locked resource
+	 *
+	 * @param inRequest
+	 * @param token - may be null
+	 * @return
+	 */
+	public boolean isLockedOut(Request inRequest, LockToken token) {
 		if (token != null) {
 			Auth auth = inRequest.getAuthorization();
 			String sUser = null;
@@ -268,8 +312,16 @@ public class HandlerHelper {
 	}
 
 	public StorageErrorReason checkStorageOnReplace(Request request, CollectionResource parentCol, Resource replaced, String host) {
+		return checkStorageOnReplace(request, parentCol, replaced, host, request.getContentLengthHeader());
+	}
+
+	/**
+	 * Check storage for new content whose length may not be the request's
+	 * content length, eg a resumable upload
+	 */
+	public StorageErrorReason checkStorageOnReplace(Request request, CollectionResource parentCol, Resource replaced, String host, Long newContentLength) {
 		for (StorageChecker sc : storageCheckers) {
-			StorageErrorReason res = sc.checkStorageOnReplace(request, parentCol, replaced, host);
+			StorageErrorReason res = sc.checkStorageOnReplace(request, parentCol, replaced, host, newContentLength);
 			if (res != null) {
 				log.warn("insufficient storage reason: " + res + " reported by: " + sc.getClass());
 				return res;
@@ -279,8 +331,12 @@ public class HandlerHelper {
 	}
 
 	public StorageErrorReason checkStorageOnAdd(Request request, CollectionResource nearestParent, Path parentPath, String host) {
+		return checkStorageOnAdd(request, nearestParent, parentPath, host, request.getContentLengthHeader());
+	}
+
+	public StorageErrorReason checkStorageOnAdd(Request request, CollectionResource nearestParent, Path parentPath, String host, Long newContentLength) {
 		for (StorageChecker sc : storageCheckers) {
-			StorageErrorReason res = sc.checkStorageOnAdd(request, nearestParent, parentPath, host);
+			StorageErrorReason res = sc.checkStorageOnAdd(request, nearestParent, parentPath, host, newContentLength);
 			if (res != null) {
 				log.warn("insufficient storage reason: " + res + " reported by: " + sc.getClass());
 				return res;
@@ -315,5 +371,62 @@ public class HandlerHelper {
 		this.enableExpectContinue = enableExpectContinue;
 	}
 
+	/**
+	 * Tell the lock index, if any, that the resource at the given decoded
+	 * path has been moved
+	 *
+	 * @param from
+	 * @param to
+	 */
+	public void onMoved(String from, String to) {
+		if (lockIndex != null && from != null && to != null) {
+			lockIndex.onMoved(Path.path(from), Path.path(to));
+		}
+	}
+
+	/**
+	 * Tell the lock index, if any, that the resource at the given decoded
+	 * path has been deleted
+	 *
+	 * @param path
+	 */
+	public void onDeleted(String path) {
+		if (lockIndex != null && path != null) {
+			lockIndex.onDeleted(Path.path(path));
+		}
+	}
+
+	/**
+	 *
+	 * @param request
+	 * @return - the decoded path of the request, as used in the lock index
+	 */
+	public static String getDecodedPath(Request request) {
+		return HttpManager.decodeUrl(request.getAbsolutePath());
+	}
+
+	/**
+	 *
+	 * @param request - a MOVE or COPY request
+	 * @return - the decoded path of the Destination header, whatever its scheme
+	 */
+	public static String getDecodedDestinationPath(Request request) {
+		return URI.create(request.getDestinationHeader()).getPath();
+	}
+
+	public IndexedLockManager getLockIndex() {
+		return lockIndex;
+	}
+
+	/**
+	 * If set, used to check locks on whole trees by path, so that deleting a
+	 * collection does not need to walk its children
+	 *
+	 * @param lockIndex
+	 */
+	public void setLockIndex(IndexedLockManager lockIndex) {
+		this.lockIndex = lockIndex;
+	}
+
 
 }
@@ -33,6 +33,7 @@ import io.milton.event.RequestEvent;
 import io.milton.event.ResponseEvent;
 import io.milton.http.Request.Method;
 import java.util.*;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -67,6 +68,32 @@ public class HttpManager {
 	public static Response response() {
 		return tlResponse.get();
 	}
+
+	/**
+	 * Wrap the given task so that request() and response() return the current
+	 * thread's request and response while it runs, even when it is run on a
+	 * different thread. The worker's previous values are restored afterwards
+	 *
+	 * @param <T>
+	 * @param task
+	 * @return
+	 */
+	public static <T> Callable<T> withRequestContext(final Callable<T> task) {
+		final Request request = tlRequest.get();
+		final Response response = tlResponse.get();
+		return () -> {
+			Request prevRequest = tlRequest.get();
+			Response prevResponse = tlResponse.get();
+			tlRequest.set(request);
+			tlResponse.set(response);
+			try {
+				return task.call();
+			} finally {
+				tlRequest.set(prevRequest);
+				tlResponse.set(prevResponse);
+			}
+		};
+	}
 	private final ProtocolHandlers handlers;
 	private final List<Filter> filters;
 	private final List<EventListener> eventListeners = new ArrayList<>();
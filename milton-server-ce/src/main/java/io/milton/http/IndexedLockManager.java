@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.milton.http;
+
+import io.milton.common.Path;
+import java.util.List;
+
+/**
+ * A LockManager which also indexes its locks by the path of the locked
+ * resource, so that locks on a whole tree can be checked without walking it.
+ *
+ * Paths are the decoded paths of the requests which created the locks, and
+ * are kept up to date through onMoved and onDeleted. Locks created outside of
+ * a request are not indexed, in which case isIndexComplete returns false and
+ * callers must fall back to checking resources directly
+ *
+ * @author brad
+ */
+public interface IndexedLockManager extends LockManager {
+
+	/**
+	 * Find current locks on the given path or anything under it
+	 *
+	 * @param path
+	 * @return - never null
+	 */
+	List<LockToken> getLocksWithin(Path path);
+
+	/**
+	 * Find current depth infinity locks on ancestors of the given path, ie
+	 * locks which apply to the path even though it is not locked itself
+	 *
+	 * @param path
+	 * @return - never null
+	 */
+	List<LockToken> getCoveringLocks(Path path);
+
+	/**
+	 *
+	 * @return - true if every current lock is in the index, so that finding
+	 * no locks for a path means nothing there is locked
+	 */
+	boolean isIndexComplete();
+
+	/**
+	 * Called after a resource has been moved, so that locks on it and
+	 * anything under it are indexed under the new path
+	 *
+	 * @param from
+	 * @param to
+	 */
+	void onMoved(Path from, Path to);
+
+	/**
+	 * Called after a resource has been deleted. Locks on it, or anything under
+	 * it, are removed
+	 *
+	 * @param path
+	 */
+	void onDeleted(Path path);
+}
@@ -0,0 +1,225 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.milton.http;
+
+import io.milton.common.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A trie of values, such as locks, keyed on path. Finding values on ancestors
+ * of a path takes time proportional to the length of the path, and so does
+ * finding that there are no values under a path, since each node counts the
+ * values in its subtree.
+ *
+ * Several values may be held at the same path. Values are compared by
+ * identity
+ *
+ * @author brad
+ */
+public class LockPathIndex<T> {
+
+	private final Node<T> root = new Node<>(null, null);
+	private final ReadWriteLock rwLock = new ReentrantReadWriteLock();
+
+	/**
+	 *
+	 * @param path
+	 * @param value
+	 * @param infinite - true if the value applies to everything under the path
+	 */
+	public void add(Path path, T value, boolean infinite) {
+		rwLock.writeLock().lock();
+		try {
+			Node<T> n = root;
+			n.count++;
+			for (String part : path.getParts()) {
+				Node<T> child = n.children.get(part);
+				if (child == null) {
+					child = new Node<>(n, part);
+					n.children.put(part, child);
+				}
+				n = child;
+				n.count++;
+			}
+			n.entries.add(new Entry<>(value, infinite));
+		} finally {
+			rwLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 *
+	 * @param path
+	 * @param value
+	 * @return - true if the value was found and removed
+	 */
+	public boolean remove(Path path, T value) {
+		rwLock.writeLock().lock();
+		try {
+			Node<T> n = find(path);
+			if (n == null || !n.removeEntry(value)) {
+				return false;
+			}
+			for (; n != null; n = n.parent) {
+				n.count--;
+				if (n.count == 0 && n.parent != null) {
+					n.parent.children.remove(n.name);
+				}
+			}
+			return true;
+		} finally {
+			rwLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 *
+	 * @param path
+	 * @return - all values at the path or anywhere under it
+	 */
+	public List<T> findWithin(Path path) {
+		List<T> list = new ArrayList<>();
+		rwLock.readLock().lock();
+		try {
+			Node<T> n = find(path);
+			if (n != null) {
+				collect(n, list);
+			}
+		} finally {
+			rwLock.readLock().unlock();
+		}
+		return list;
+	}
+
+	/**
+	 *
+	 * @param path
+	 * @return - values added with infinite=true on ancestors of the path, not
+	 * including the path itself
+	 */
+	public List<T> findCovering(Path path) {
+		List<T> list = new ArrayList<>();
+		rwLock.readLock().lock();
+		try {
+			Node<T> n = root;
+			for (String part : path.getParts()) {
+				for (Entry<T> e : n.entries) {
+					if (e.infinite) {
+						list.add(e.value);
+					}
+				}
+				n = n.children.get(part);
+				if (n == null) {
+					break;
+				}
+			}
+		} finally {
+			rwLock.readLock().unlock();
+		}
+		return list;
+	}
+
+	/**
+	 *
+	 * @return - the total number of values
+	 */
+	public int size() {
+		rwLock.readLock().lock();
+		try {
+			return root.count;
+		} finally {
+			rwLock.readLock().unlock();
+		}
+	}
+
+	public void clear() {
+		rwLock.writeLock().lock();
+		try {
+			root.children.clear();
+			root.entries.clear();
+			root.count = 0;
+		} finally {
+			rwLock.writeLock().unlock();
+		}
+	}
+
+	private Node<T> find(Path path) {
+		Node<T> n = root;
+		for (String part : path.getParts()) {
+			n = n.children.get(part);
+			if (n == null) {
+				return null;
+			}
+		}
+		return n;
+	}
+
+	private void collect(Node<T> n, List<T> list) {
+		for (Entry<T> e : n.entries) {
+			list.add(e.value);
+		}
+		for (Node<T> child : n.children.values()) {
+			collect(child, list);
+		}
+	}
+
+	private static class Node<T> {
+
+		final Node<T> parent;
+		final String name;
+		final Map<String, Node<T>> children = new HashMap<>();
+		final List<Entry<T>> entries = new ArrayList<>(1);
+		/**
+		 * number of entries in this node and all its descendants
+		 */
+		int count;
+
+		Node(Node<T> parent, String name) {
+			this.parent = parent;
+			this.name = name;
+		}
+
+		boolean removeEntry(T value) {
+			for (int i = 0; i < entries.size(); i++) {
+				if (entries.get(i).value == value) {
+					entries.remove(i);
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	private static class Entry<T> {
+
+		final T value;
+		final boolean infinite;
+
+		Entry(T value, boolean infinite) {
+			this.value = value;
+			this.infinite = infinite;
+		}
+	}
+}
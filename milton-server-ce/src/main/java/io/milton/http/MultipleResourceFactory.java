@@ -20,6 +20,7 @@ import io.milton.http.exceptions.BadRequestException;
 import io.milton.http.exceptions.NotAuthorizedException;
 import io.milton.resource.Resource;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import org.slf4j.Logger;
@@ -62,6 +63,18 @@ public class MultipleResourceFactory implements ResourceFactory {
 		return theResource;
 	}
 
+	@Override
+	public Map<String, Resource> getResources(String host, Collection<String> paths) throws NotAuthorizedException, BadRequestException {
+		ResourceFactory hostRf = null;
+		if (mapOfFactoriesByHost != null) {
+			hostRf = mapOfFactoriesByHost.get(host);
+		}
+		if (hostRf != null) {
+			return hostRf.getResources(host, paths);
+		}
+		return ResourceFactory.super.getResources(host, paths);
+	}
+
 	/**
 	 * Allows factories to be added after construction
 	 *
@@ -23,6 +23,7 @@ import io.milton.resource.Resource;
 import io.milton.common.Path;
 import io.milton.http.exceptions.BadRequestException;
 import io.milton.http.exceptions.NotAuthorizedException;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -90,6 +91,16 @@ public class WellKnownResourceFactory implements ResourceFactory {
 		return wrapped.getResource(host, sPath);
 	}
 	
+	@Override
+	public Map<String, Resource> getResources(String host, Collection<String> paths) throws NotAuthorizedException, BadRequestException {
+		for (String sPath : paths) {
+			if (sPath.startsWith(URI_PREFIX)) {
+				return ResourceFactory.super.getResources(host, paths);
+			}
+		}
+		return wrapped.getResources(host, paths);
+	}
+
 	public final void addHandler(WellKnownHandler handler) {
 		mapOfWellKnownHandlers.put(handler.getWellKnownName(), handler);
 	}
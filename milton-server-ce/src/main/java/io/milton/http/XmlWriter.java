@@ -24,13 +24,24 @@ import java.io.OutputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
 
 /**
  * Lightweight XML generation. Gives the programmer fine grained control of the
  * generated xml, including whitespace.
  * <P/>
  * The XML is not guaranteed to be parseable.
+ * <P/>
+ * By default each fragment is encoded and written to the output stream as soon
+ * as it is appended. If a buffer size is given then fragments are copied into a
+ * char buffer which is reused for the life of the writer, and encoded and
+ * written in large blocks. In that mode nothing is guaranteed to reach the
+ * output stream until flush() is called
  *
  * @author brad
  */
@@ -38,6 +49,10 @@ public class XmlWriter {
 
 	private Logger log = LoggerFactory.getLogger(XmlWriter.class);
 
+	public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+	private static final int MIN_BUFFER_SIZE = 16;
+
 	public static Charset utf8() {
 		return Charset.forName("UTF-8");
 	}
@@ -52,15 +67,44 @@ public class XmlWriter {
 	private boolean allowNewlines = false;
 	protected final OutputStream out;
 	protected final Charset charset;
+	private final char[] chars;
+	private final CharBuffer charBuffer;
+	private final ByteBuffer byteBuffer;
+	private final CharsetEncoder encoder;
+	private int charCount;
 
 	public XmlWriter(OutputStream out, Charset charset) {
-		this.out = out;
-		this.charset = charset;
+		this(out, charset, 0);
 	}
 
 	public XmlWriter(OutputStream out) {
+		this(out, XmlWriter.utf8(), 0);
+	}
+
+	/**
+	 *
+	 * @param out
+	 * @param charset
+	 * @param bufferSize - number of chars to buffer before encoding and writing
+	 * to the output stream. Zero means write each fragment immediately. Callers
+	 * MUST call flush() when finished if this is not zero
+	 */
+	public XmlWriter(OutputStream out, Charset charset, int bufferSize) {
 		this.out = out;
-		this.charset = XmlWriter.utf8();
+		this.charset = charset;
+		if (bufferSize > 0) {
+			this.chars = new char[Math.max(bufferSize, MIN_BUFFER_SIZE)];
+			this.charBuffer = CharBuffer.wrap(chars);
+			this.encoder = charset.newEncoder()
+					.onMalformedInput(CodingErrorAction.REPLACE)
+					.onUnmappableCharacter(CodingErrorAction.REPLACE);
+			this.byteBuffer = ByteBuffer.allocate((int) Math.ceil(chars.length * encoder.maxBytesPerChar()));
+		} else {
+			this.chars = null;
+			this.charBuffer = null;
+			this.encoder = null;
+			this.byteBuffer = null;
+		}
 	}
 
 	/**
@@ -69,11 +113,25 @@ public class XmlWriter {
 	 * @param value
 	 */
 	private void append(String value) {
-		try {
-			byte[] arr = value.getBytes(charset);
-			out.write(arr);
-		} catch (IOException ex) {
-			throw new RuntimeException(ex);
+		if (chars == null) {
+			try {
+				byte[] arr = value.getBytes(charset);
+				out.write(arr);
+			} catch (IOException ex) {
+				throw new RuntimeException(ex);
+			}
+			return;
+		}
+		int len = value.length();
+		int start = 0;
+		while (start < len) {
+			if (charCount == chars.length) {
+				drain();
+			}
+			int n = Math.min(len - start, chars.length - charCount);
+			value.getChars(start, start + n, chars, charCount);
+			charCount += n;
+			start += n;
 		}
 	}
 
@@ -83,13 +141,50 @@ public class XmlWriter {
 	 * @param c
 	 */
 	private void append(char c) {
+		if (chars == null) {
+			try {
+				out.write(c);
+			} catch (IOException ex) {
+				throw new RuntimeException(ex);
+			}
+			return;
+		}
+		if (charCount == chars.length) {
+			drain();
+		}
+		chars[charCount++] = c;
+	}
+
+	/**
+	 * Encode buffered chars and write them to the output stream. A trailing
+	 * high surrogate is kept in the buffer until its pair arrives
+	 */
+	private void drain() {
+		charBuffer.limit(charCount);
+		charBuffer.position(0);
 		try {
-			out.write(c);
+			while (encoder.encode(charBuffer, byteBuffer, false) == CoderResult.OVERFLOW) {
+				writeBytes();
+			}
+			int remaining = charBuffer.remaining();
+			if (remaining > 0) {
+				System.arraycopy(chars, charBuffer.position(), chars, 0, remaining);
+			}
+			charCount = remaining;
+			charBuffer.clear();
+			writeBytes();
 		} catch (IOException ex) {
 			throw new RuntimeException(ex);
 		}
 	}
 
+	private void writeBytes() throws IOException {
+		if (byteBuffer.position() > 0) {
+			out.write(byteBuffer.array(), 0, byteBuffer.position());
+			byteBuffer.clear();
+		}
+	}
+
 	/**
 	 * Convenience method to write a single element containing a piece of text
 	 *
@@ -230,8 +325,9 @@ public class XmlWriter {
 				append(":");
 			}
 			append(name);
-			append(" ");
-			append("xmlns:" + nsPrefix + "=\"");
+			append(" xmlns:");
+			append(nsPrefix);
+			append("=\"");
 			append(uri);
 			append("\"");
 		}
@@ -307,10 +403,16 @@ public class XmlWriter {
 		public Element close(boolean newline) {
 			if (openEnded) {
 				if (nsPrefix != null) {
-					append("</" + nsPrefix + ":" + name + ">");
+					append("</");
+					append(nsPrefix);
+					append(":");
+					append(name);
+					append(">");
 					newLine();
 				} else {
-					append("</" + name + ">");
+					append("</");
+					append(name);
+					append(">");
 					newLine();
 				}
 				if (newline) {
@@ -408,41 +510,59 @@ public class XmlWriter {
 		if ((nsPrefix != null) && (nsPrefix.length() > 0)) {
 			switch (type) {
 				case OPENING:
-					if (nsUrl != null) {
-						append("<" + nsPrefix + ":" + name + " xmlns:" + nsPrefix + "=\"" + nsUrl + "\">");
-					} else {
-						append("<" + nsPrefix + ":" + name + ">");
-					}
+					appendStartTag(nsPrefix, nsUrl, name);
+					append(">");
 					break;
 				case CLOSING:
-					append("</" + nsPrefix + ":" + name + ">");
+					append("</");
+					append(nsPrefix);
+					append(":");
+					append(name);
+					append(">");
 					newLine();
 					break;
 				case NO_CONTENT:
 				default:
-					if (nsUrl != null) {
-						append("<" + nsPrefix + ":" + name + " xmlns:" + nsPrefix + "=\"" + nsUrl + "\"/>");
-					} else {
-						append("<" + nsPrefix + ":" + name + "/>");
-					}
+					appendStartTag(nsPrefix, nsUrl, name);
+					append("/>");
 					break;
 			}
 		} else {
 			switch (type) {
 				case OPENING:
-					append("<" + name + ">");
+					append("<");
+					append(name);
+					append(">");
 					break;
 				case CLOSING:
-					append("</" + name + ">\n");
+					append("</");
+					append(name);
+					append(">\n");
 					break;
 				case NO_CONTENT:
 				default:
-					append("<" + name + "/>");
+					append("<");
+					append(name);
+					append("/>");
 					break;
 			}
 		}
 	}
 
+	private void appendStartTag(String nsPrefix, String nsUrl, String name) {
+		append("<");
+		append(nsPrefix);
+		append(":");
+		append(name);
+		if (nsUrl != null) {
+			append(" xmlns:");
+			append(nsPrefix);
+			append("=\"");
+			append(nsUrl);
+			append("\"");
+		}
+	}
+
 	/**
 	 * Append plain text.
 	 *
@@ -452,13 +572,60 @@ public class XmlWriter {
 		append(text);
 	}
 
+	/**
+	 * Append text, escaping &amp;, &lt; and &gt; as it is written. Quotes are
+	 * not escaped, since they are valid in element content (eg getetag)
+	 *
+	 * @param text Text to append
+	 */
+	public void writeEscapedText(String text) {
+		if (chars == null) {
+			StringBuilder sb = new StringBuilder(text.length() + 16);
+			for (int i = 0; i < text.length(); i++) {
+				char c = text.charAt(i);
+				String e = escape(c);
+				if (e == null) {
+					sb.append(c);
+				} else {
+					sb.append(e);
+				}
+			}
+			append(sb.toString());
+			return;
+		}
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			String e = escape(c);
+			if (e == null) {
+				append(c);
+			} else {
+				append(e);
+			}
+		}
+	}
+
+	private static String escape(char c) {
+		switch (c) {
+			case '&':
+				return "&amp;";
+			case '<':
+				return "&lt;";
+			case '>':
+				return "&gt;";
+			default:
+				return null;
+		}
+	}
+
 	/**
 	 * Write a CDATA segment.
 	 *
 	 * @param data Data to append
 	 */
 	public void writeData(String data) {
-		append("<![CDATA[" + data + "]]>");
+		append("<![CDATA[");
+		append(data);
+		append("]]>");
 	}
 
 	public void writeXMLHeader() {
@@ -469,6 +636,9 @@ public class XmlWriter {
 	 * Send data and reinitializes buffer.
 	 */
 	public void flush() {
+		if (chars != null) {
+			drain();
+		}
 		try {
 			out.flush();
 		} catch (IOException ex) {
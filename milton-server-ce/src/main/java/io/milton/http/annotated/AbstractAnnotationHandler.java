@@ -28,8 +28,12 @@ import io.milton.http.exceptions.NotFoundException;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import org.apache.commons.beanutils.PropertyUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -48,6 +52,16 @@ public abstract class AbstractAnnotationHandler implements AnnotationHandler {
 	 * Map of methods for this annotation, keyed on the class of the source
 	 */
 	final List<ControllerMethod> controllerMethods = new ArrayList<>();
+	/**
+	 * Results of getBestMethod, keyed on everything except the request
+	 * params. Cleared when controllers are parsed
+	 */
+	private final ConcurrentMap<DispatchKey, Dispatch> dispatchCache = new ConcurrentHashMap<>();
+	/**
+	 * Content types named on Get annotations. Other content types all match
+	 * the same methods as null, so are cached under null
+	 */
+	private volatile Set<String> declaredContentTypes = new HashSet<>();
 
 	public AbstractAnnotationHandler(AnnotationResourceFactory outer, Class annoClass, Method... methods) {
 		this.annoResourceFactory = outer;
@@ -72,8 +86,14 @@ public abstract class AbstractAnnotationHandler implements AnnotationHandler {
 				Class sourceType = params[0];
 				ControllerMethod cm = new ControllerMethod(controller, m, sourceType, a);
 				controllerMethods.add(cm);
+				if (a instanceof Get && ((Get) a).contentType().length() > 0) {
+					Set<String> set = new HashSet<>(declaredContentTypes);
+					set.add(((Get) a).contentType());
+					declaredContentTypes = set;
+				}
 			}
 		}
+		dispatchCache.clear();
 	}
 
 	ControllerMethod getBestMethod(Class sourceClass) {
@@ -84,7 +104,53 @@ public abstract class AbstractAnnotationHandler implements AnnotationHandler {
 		return getBestMethod(sourceClass, contentType, null, null);
 	}
 
+	/**
+	 * Find the best matching method. The methods which match the source class,
+	 * content type and return type, and their scores, are cached. So the
+	 * params only need to be checked if one of those methods declares params,
+	 * otherwise this is a single map lookup
+	 */
 	ControllerMethod getBestMethod(Class sourceClass, String contentType, Map<String, String> params, Class returnType) {
+		if (contentType != null && !declaredContentTypes.contains(contentType)) {
+			contentType = null;
+		}
+		DispatchKey key = new DispatchKey(sourceClass, contentType, returnType);
+		Dispatch dispatch = dispatchCache.get(key);
+		if (dispatch == null) {
+			dispatch = buildDispatch(sourceClass, contentType, returnType);
+			dispatchCache.putIfAbsent(key, dispatch);
+		}
+		if (dispatch.best != null || dispatch.candidates == null) {
+			return dispatch.best;
+		}
+		ControllerMethod foundMethod = null;
+		int foundMethodScore = -1;
+		for (int c = 0; c < dispatch.candidates.length; c++) {
+			ControllerMethod cm = dispatch.candidates[c];
+			int i = isParamMatch(params, cm.anno);
+			if (i >= 0) {
+				int score = dispatch.scores[c] + i;
+				if (score > foundMethodScore) {
+					foundMethod = cm;
+					foundMethodScore = score;
+				}
+			}
+		}
+		if (log.isTraceEnabled()) {
+			log.trace("Found high score method: " + foundMethod + " with score: " + foundMethodScore);
+		}
+		return foundMethod;
+	}
+
+	/**
+	 * Find the methods which match the source class, content type and return
+	 * type. If none of them declare params then the best method does not
+	 * depend on params and can be resolved now
+	 */
+	private Dispatch buildDispatch(Class<?> sourceClass, String contentType, Class<?> returnType) {
+		List<ControllerMethod> candidates = new ArrayList<>();
+		List<Integer> scores = new ArrayList<>();
+		boolean hasParams = false;
 		ControllerMethod foundMethod = null;
 		int foundMethodScore = -1;
 		for (ControllerMethod cm : controllerMethods) {
@@ -94,10 +160,13 @@ public abstract class AbstractAnnotationHandler implements AnnotationHandler {
 					int i = contentTypeMatch(contentType, cm.anno);
 					if (i >= 0) {
 						score += i;
-						i = isParamMatch(params, cm.anno);
-						if (i >= 0) {
-							score += i;
-							score = score + SpecificityUtils.sourceSpecifityIndex(cm.sourceType, sourceClass);
+						score = score + SpecificityUtils.sourceSpecifityIndex(cm.sourceType, sourceClass);
+						candidates.add(cm);
+						scores.add(score);
+						i = isParamMatch(null, cm.anno);
+						if (i < 0) {
+							hasParams = true;
+						} else {
 							if (score > foundMethodScore) {
 								foundMethod = cm;
 								foundMethodScore = score;
@@ -114,7 +183,14 @@ public abstract class AbstractAnnotationHandler implements AnnotationHandler {
 				}
 			}
 		}
-		return foundMethod;
+		if (!hasParams) {
+			return new Dispatch(foundMethod, null, null);
+		}
+		int[] arr = new int[scores.size()];
+		for (int i = 0; i < arr.length; i++) {
+			arr[i] = scores.get(i);
+		}
+		return new Dispatch(null, candidates.toArray(new ControllerMethod[candidates.size()]), arr);
 	}
 
 	/**
@@ -269,7 +345,7 @@ public abstract class AbstractAnnotationHandler implements AnnotationHandler {
 			} else {
 				args = annoResourceFactory.buildInvokeArgs(sourceRes, cm.method, values);
 			}
-			return cm.method.invoke(cm.controller, args);
+			return cm.invoke(args);
 
 		} catch(java.lang.reflect.InvocationTargetException e) {
 			Throwable cause = e.getCause();
@@ -307,4 +383,53 @@ public abstract class AbstractAnnotationHandler implements AnnotationHandler {
 	public List<ControllerMethod> getControllerMethods() {
 		return controllerMethods;
 	}
+
+	private static class DispatchKey {
+
+		final Class<?> sourceClass;
+		final String contentType;
+		final Class<?> returnType;
+
+		DispatchKey(Class<?> sourceClass, String contentType, Class<?> returnType) {
+			this.sourceClass = sourceClass;
+			this.contentType = contentType;
+			this.returnType = returnType;
+		}
+
+		@Override
+		public int hashCode() {
+			int h = sourceClass.hashCode();
+			h = 31 * h + (contentType == null ? 0 : contentType.hashCode());
+			h = 31 * h + (returnType == null ? 0 : returnType.hashCode());
+			return h;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof DispatchKey)) {
+				return false;
+			}
+			DispatchKey other = (DispatchKey) obj;
+			return sourceClass == other.sourceClass && returnType == other.returnType
+					&& (contentType == null ? other.contentType == null : contentType.equals(other.contentType));
+		}
+	}
+
+	/**
+	 * Either the best method, if it does not depend on params, or the
+	 * candidate methods in declaration order with their scores excluding
+	 * params
+	 */
+	private static class Dispatch {
+
+		final ControllerMethod best;
+		final ControllerMethod[] candidates;
+		final int[] scores;
+
+		Dispatch(ControllerMethod best, ControllerMethod[] candidates, int[] scores) {
+			this.best = best;
+			this.candidates = candidates;
+			this.scores = scores;
+		}
+	}
 }
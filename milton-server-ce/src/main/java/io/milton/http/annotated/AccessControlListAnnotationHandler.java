@@ -123,7 +123,7 @@ public class AccessControlListAnnotationHandler extends AbstractAnnotationHandle
 
 		Object[] args = annoResourceFactory.buildInvokeArgsExt(res, currentUserSource, true, method, curUser, res, auth);
 
-		Object result = method.invoke(target, args);
+		Object result = MethodBinding.of(method).invoke(target, args);
 		if (result == null) {
 			// ignore
 		} else if (result instanceof Collection) {
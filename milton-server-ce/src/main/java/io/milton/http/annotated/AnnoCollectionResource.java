@@ -83,10 +83,9 @@ public class AnnoCollectionResource extends AnnoResource implements CollectionRe
 
 		// if children list has already been loaded then look for child in there
 		if (children != null) {
-			for (Resource r : children) {
-				if (r.getName().equals(childName)) {
-					return r;
-				}
+			Resource r = children.findFirst(childName);
+			if (r != null) {
+				return r;
 			}
 		}
 
@@ -108,10 +107,7 @@ public class AnnoCollectionResource extends AnnoResource implements CollectionRe
 		} else {
 			// got one!
 			AnnoResource r = (AnnoResource) childTriValue;
-			if (singlyLoadedChildItems == null) {
-				singlyLoadedChildItems = new ResourceList();
-			}
-			singlyLoadedChildItems.add(r);
+			addSinglyLoadedChild(r);
 			return r;
 		}
 
@@ -120,15 +116,31 @@ public class AnnoCollectionResource extends AnnoResource implements CollectionRe
 		// list of children and iterate over it.
 		// We can end up iterating over the list twice, but thats because there
 		// is no guarantee that getChildren is the same as children
-		for (Resource r : getChildren(true)) {
+		List<? extends Resource> list = getChildren(true);
+		if (list instanceof ResourceList) {
+			return ((ResourceList) list).findFirst(childName);
+		}
+		for (Resource r : list) {
 			if (r.getName().equals(childName)) {
 				return r;
 			}
 		}
-
 		return null;
 	}
 
+	/**
+	 * Record a child which has been located by name, so the same object is
+	 * used if the list of children is loaded later
+	 *
+	 * @param r
+	 */
+	void addSinglyLoadedChild(AnnoResource r) {
+		if (singlyLoadedChildItems == null) {
+			singlyLoadedChildItems = new ResourceList();
+		}
+		singlyLoadedChildItems.add(r);
+	}
+
 	@Override
 	public List<? extends Resource> getChildren() throws NotAuthorizedException, BadRequestException {
 		return getResourceList();
@@ -0,0 +1,336 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.milton.http.annotated;
+
+import io.milton.event.Event;
+import io.milton.event.EventListener;
+import io.milton.event.MoveEvent;
+import io.milton.event.ResourceEvent;
+import io.milton.resource.CollectionResource;
+import io.milton.resource.Resource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A bounded, cross-request cache of how paths resolve to source objects, so
+ * that repeated requests for the same path (eg PROPFIND polling) do not need
+ * to re-execute the ChildOf and ChildrenOf methods down the path.
+ *
+ * An entry is an immutable chain of links, one per path segment, each holding
+ * the source object and the type of resource it was wrapped in. Resources are
+ * never shared; a new AnnoResource graph is built from the chain on each
+ * request.
+ *
+ * Entries are keyed on host, path and the authenticated principal, and are
+ * only returned if the version given by the VersionSource, which should be a
+ * cheap lookup on the backing store, is the same as when the entry was made.
+ * Since source objects are held across requests and threads, the
+ * VersionSource must only return a version for paths whose source objects are
+ * safe to share, ie which are immutable or detached from any request bound
+ * session. Entries are also removed after maxAgeMillis, and when a resource
+ * event (PUT, DELETE, MOVE, etc) is received for the resource, its parent or
+ * anything beneath it. Register this with the EventManager to get those
+ * events.
+ *
+ * @author brad
+ */
+public class AnnoResourceCache implements EventListener {
+
+	private static final Logger log = LoggerFactory.getLogger(AnnoResourceCache.class);
+
+	private final VersionSource versionSource;
+	private final int maxEntries;
+	private final long maxAgeMillis;
+	private final LinkedHashMap<Key, Entry> entries;
+
+	public AnnoResourceCache(VersionSource versionSource) {
+		this(versionSource, 10000, 60000);
+	}
+
+	public AnnoResourceCache(VersionSource versionSource, final int maxEntries, long maxAgeMillis) {
+		if (versionSource == null) {
+			throw new IllegalArgumentException("versionSource is required");
+		}
+		this.versionSource = versionSource;
+		this.maxEntries = maxEntries;
+		this.maxAgeMillis = maxAgeMillis;
+		this.entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+				return size() > maxEntries;
+			}
+		};
+	}
+
+	/**
+	 * Get the current version of the resource at the given path from the
+	 * VersionSource. This should be called before the path is resolved, and
+	 * the result passed to get and put, so that a change made while resolving
+	 * can only make the cached entry look older than it is
+	 *
+	 * @param host
+	 * @param path
+	 * @return - null if the path should not be cached
+	 */
+	public String currentVersion(String host, String path) {
+		return versionSource.getVersion(host, normalise(path));
+	}
+
+	/**
+	 * Find the cached chain for a path, if there is one which is not expired
+	 * and was made at the given version
+	 *
+	 * @param host
+	 * @param path
+	 * @param principal - identifies the authenticated user, or null for an
+	 * anonymous request
+	 * @param version - the current version, from currentVersion
+	 * @return - null if not found or out of date
+	 */
+	public List<Link> get(String host, String path, String principal, String version) {
+		if (version == null) {
+			return null;
+		}
+		Key key = new Key(host, normalise(path), principal);
+		synchronized (this) {
+			Entry e = entries.get(key);
+			if (e == null) {
+				return null;
+			}
+			if (System.currentTimeMillis() - e.created > maxAgeMillis || !version.equals(e.version)) {
+				log.trace("get: stale entry for {}", path);
+				entries.remove(key);
+				return null;
+			}
+			return e.chain;
+		}
+	}
+
+	/**
+	 *
+	 * @param host
+	 * @param path
+	 * @param principal
+	 * @param version - the version from currentVersion, read before the path
+	 * was resolved. If null nothing is cached
+	 * @param chain - one link per path segment, from the first segment
+	 * beneath the root to the resource
+	 */
+	public void put(String host, String path, String principal, String version, List<Link> chain) {
+		if (version == null) {
+			return;
+		}
+		Key key = new Key(host, normalise(path), principal);
+		Entry e = new Entry(version, System.currentTimeMillis(), Collections.unmodifiableList(new ArrayList<>(chain)));
+		synchronized (this) {
+			entries.put(key, e);
+		}
+	}
+
+	/**
+	 * Remove entries for the given path, anything beneath it, and its parent
+	 * (since the parent's list of children will have changed)
+	 *
+	 * @param path
+	 */
+	public void invalidate(String path) {
+		String p = normalise(path);
+		String prefix = p + "/";
+		int pos = p.lastIndexOf("/");
+		String parentPath = pos >= 0 ? p.substring(0, pos) : null;
+		synchronized (this) {
+			Iterator<Key> it = entries.keySet().iterator();
+			while (it.hasNext()) {
+				String s = it.next().path;
+				if (s.equals(p) || s.startsWith(prefix) || s.equals(parentPath)) {
+					it.remove();
+				}
+			}
+		}
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	@Override
+	public void onEvent(Event e) {
+		if (!(e instanceof ResourceEvent)) {
+			return;
+		}
+		invalidate(((ResourceEvent) e).getResource());
+		if (e instanceof MoveEvent) {
+			MoveEvent me = (MoveEvent) e;
+			CollectionResource dest = me.getDestCollection();
+			if (dest instanceof AnnoResource) {
+				invalidate(pathOf((AnnoResource) dest) + me.getNewName());
+			} else {
+				clear();
+			}
+		}
+	}
+
+	private void invalidate(Resource r) {
+		if (r instanceof AnnoResource) {
+			invalidate(pathOf((AnnoResource) r));
+		} else {
+			// dont know where it is, so cant be selective
+			clear();
+		}
+	}
+
+	/**
+	 * Entries are keyed on the path within the context, as given to
+	 * AnnotationResourceFactory.getResource, but hrefs begin with the context
+	 * path, so strip it off
+	 *
+	 * @param r
+	 * @return
+	 */
+	private static String pathOf(AnnoResource r) {
+		return r.getAnnoFactory().stripContext(r.getHref());
+	}
+
+	public VersionSource getVersionSource() {
+		return versionSource;
+	}
+
+	public int getMaxEntries() {
+		return maxEntries;
+	}
+
+	public long getMaxAgeMillis() {
+		return maxAgeMillis;
+	}
+
+	private static String normalise(String path) {
+		if (path == null) {
+			return "";
+		}
+		if (path.endsWith("/")) {
+			return path.substring(0, path.length() - 1);
+		}
+		return path;
+	}
+
+	/**
+	 * Looks up the current version of the resource at a path. This is called
+	 * on every cacheable request so should be a cheap query on the backing
+	 * store, such as a version or modified column, and not resolve the path
+	 * through the controllers
+	 */
+	public interface VersionSource {
+
+		/**
+		 *
+		 * @param host
+		 * @param path - the path within the context, without a trailing slash
+		 * @return - a value which changes whenever the resource, or anything
+		 * on the path to it, changes. Or null if the path should not be
+		 * cached
+		 */
+		String getVersion(String host, String path);
+	}
+
+	/**
+	 * One segment of a resolved path
+	 */
+	public static final class Link {
+
+		private final Class<? extends AnnoResource> type;
+		private final Object source;
+		private final String nameOverride;
+
+		public Link(Class<? extends AnnoResource> type, Object source, String nameOverride) {
+			this.type = type;
+			this.source = source;
+			this.nameOverride = nameOverride;
+		}
+
+		public Class<? extends AnnoResource> getType() {
+			return type;
+		}
+
+		public Object getSource() {
+			return source;
+		}
+
+		public String getNameOverride() {
+			return nameOverride;
+		}
+	}
+
+	private static class Entry {
+
+		private final String version;
+		private final long created;
+		private final List<Link> chain;
+
+		Entry(String version, long created, List<Link> chain) {
+			this.version = version;
+			this.created = created;
+			this.chain = chain;
+		}
+	}
+
+	private static class Key {
+
+		private final String host;
+		private final String path;
+		private final String principal;
+
+		Key(String host, String path, String principal) {
+			this.host = host;
+			this.path = path;
+			this.principal = principal;
+		}
+
+		@Override
+		public int hashCode() {
+			int h = path.hashCode();
+			h = 31 * h + (host == null ? 0 : host.hashCode());
+			h = 31 * h + (principal == null ? 0 : principal.hashCode());
+			return h;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return path.equals(other.path) && eq(host, other.host) && eq(principal, other.principal);
+		}
+
+		private static boolean eq(String a, String b) {
+			return a == null ? b == null : a.equals(b);
+		}
+	}
+}
@@ -72,6 +72,7 @@ import io.milton.http.exceptions.NotAuthorizedException;
 import io.milton.http.template.ViewResolver;
 import io.milton.http.values.SupportedCalendarComponentListsSet;
 import io.milton.http.webdav.DisplayNameFormatter;
+import io.milton.principal.DiscretePrincipal;
 import io.milton.resource.CollectionResource;
 import io.milton.resource.PropFindableResource;
 import io.milton.resource.Resource;
@@ -80,14 +81,19 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.lang.annotation.Annotation;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
@@ -104,6 +110,13 @@ import org.slf4j.LoggerFactory;
 public final class AnnotationResourceFactory implements ResourceFactory {
 
 	private static final Logger log = LoggerFactory.getLogger(AnnotationResourceFactory.class);
+	/**
+	 * Resource types which can be rebuilt from the resource cache
+	 */
+	private static final Set<Class<?>> REBUILDABLE = new HashSet<>(Arrays.asList(
+			AnnoPrincipalResource.class, AnnoCalendarHomeResource.class, AnnoCalendarResource.class,
+			AnnoEventResource.class, AnnoAddressBookResource.class, AnnoContactResource.class,
+			AnnoCollectionResource.class, AnnoFileResource.class));
 	private AuthenticationService authenticationService;
 	private CalendarSearchService calendarSearchService;
 	private boolean doEarlyAuth = true;
@@ -112,12 +125,15 @@ public final class AnnotationResourceFactory implements ResourceFactory {
 	private String contextPath;
 	private Collection<Object> controllers;
 	private ViewResolver viewResolver;
+	private AnnoResourceCache resourceCache;
 	/**
 	 * Replace with a suitable cluster enabled Map for cluster support
 	 */
 	private Map<String, List<LockHolder>> mapOfTempResources = new ConcurrentHashMap<>();
 	private final Map<Class, AnnotationHandler> mapOfAnnotationHandlers = new HashMap<>(); // keyed on annotation class
 	private final Map<Method, AnnotationHandler> mapOfAnnotationHandlersByMethod = new EnumMap<>(Method.class); // keyed on http method
+	private final Map<Class<?>, Map<Class<?>, Object>> methodsForAnno = new ConcurrentHashMap<>(); // keyed on source class, then annotation class
+	private static final Object NO_METHOD = new Object();
 	final RootAnnotationHandler rootAnnotationHandler = new RootAnnotationHandler(this);
 	final GetAnnotationHandler getAnnotationHandler = new GetAnnotationHandler(this);
 	final PostAnnotationHandler postAnnotationHandler = new PostAnnotationHandler(this);
@@ -221,7 +237,8 @@ public final class AnnotationResourceFactory implements ResourceFactory {
 			log.trace("getResource: host: " + host + " - url:" + url);
 		}
 
-		AnnoCollectionResource hostRoot = locateHostRoot(host, HttpManager.request());
+		Request request = HttpManager.request();
+		AnnoCollectionResource hostRoot = locateHostRoot(host, request);
 		if (hostRoot == null) {
 			if (rootAnnotationHandler.getControllerMethods().isEmpty()) {
 				log.warn("No @Root methods were found, so i cant find a root resource. Note that controller methods are displayed on startup");
@@ -237,7 +254,29 @@ public final class AnnotationResourceFactory implements ResourceFactory {
 			r = hostRoot;
 		} else {
 			Path path = Path.path(url);
+			String cachePrincipal = null;
+			String cacheVersion = null;
+			if (resourceCache != null && request != null && !request.getMethod().isWrite) {
+				cachePrincipal = findCachePrincipal(hostRoot, request);
+				if (cachePrincipal != null) {
+					cacheVersion = resourceCache.currentVersion(host, url);
+					List<AnnoResourceCache.Link> chain = resourceCache.get(host, url, cachePrincipal, cacheVersion);
+					if (chain != null) {
+						r = rebuild(hostRoot, chain);
+						if (r != null) {
+							log.trace("getResource: rebuilt from resource cache");
+							return r;
+						}
+					}
+				}
+			}
 			r = findFromRoot(hostRoot, path);
+			if (cacheVersion != null && r instanceof AnnoResource) {
+				List<AnnoResourceCache.Link> chain = toChain((AnnoResource) r, hostRoot);
+				if (chain != null) {
+					resourceCache.put(host, url, cachePrincipal, cacheVersion, chain);
+				}
+			}
 			if (log.isTraceEnabled()) {
 				if (r == null) {
 					log.trace("Resource not found: host=" + host + " path=" + path);
@@ -254,6 +293,152 @@ public final class AnnotationResourceFactory implements ResourceFactory {
 		return r;
 	}
 
+	/**
+	 * Identify who resource cache entries are for. If not already done, the
+	 * request is authenticated against the host root first, as for early
+	 * authentication, so entries are only ever keyed on a verified principal.
+	 * The result is kept in the request, so it is not repeated when the
+	 * located resource is authenticated
+	 *
+	 * @param hostRoot
+	 * @param request
+	 * @return - the principal URL, an empty string if the request is
+	 * anonymous, or null if the cache cannot be used for this request
+	 */
+	private String findCachePrincipal(AnnoCollectionResource hostRoot, Request request) {
+		Auth auth = request.getAuthorization();
+		if (authenticationService != null && (auth == null || auth.getTag() == null)) {
+			AuthenticationService.AuthStatus authStatus = authenticationService.authenticate(hostRoot, request);
+			if (!request.getAttributes().containsKey(AuthenticationService.ATT_AUTH_STATUS)) {
+				// we're being called while authenticating, eg to find the user
+				return null;
+			}
+			if (authStatus == null) {
+				return "";
+			}
+			if (authStatus.loginFailed) {
+				return null;
+			}
+			auth = authStatus.auth;
+		}
+		if (auth == null) {
+			return "";
+		}
+		if (auth.getTag() instanceof DiscretePrincipal) {
+			return ((DiscretePrincipal) auth.getTag()).getPrincipalURL();
+		}
+		return null;
+	}
+
+	/**
+	 * Build a new resource graph beneath the host root from a cached chain
+	 *
+	 * @return - null if the chain cannot be rebuilt
+	 */
+	AnnoResource rebuild(AnnoCollectionResource hostRoot, List<AnnoResourceCache.Link> chain) {
+		AnnoCollectionResource parent = hostRoot;
+		AnnoResource r = null;
+		for (AnnoResourceCache.Link link : chain) {
+			if (parent == null) {
+				return null;
+			}
+			r = newResource(link.getType(), link.getSource(), parent);
+			if (r == null) {
+				return null;
+			}
+			r.setNameOverride(link.getNameOverride());
+			parent.addSinglyLoadedChild(r);
+			parent = r instanceof AnnoCollectionResource ? (AnnoCollectionResource) r : null;
+		}
+		return r;
+	}
+
+	/**
+	 * Make the chain of links to cache for a located resource
+	 *
+	 * @return - null if any resource on the path cannot be rebuilt from a link
+	 */
+	List<AnnoResourceCache.Link> toChain(AnnoResource r, AnnoCollectionResource hostRoot) {
+		LinkedList<AnnoResourceCache.Link> chain = new LinkedList<>();
+		AnnoResource ar = r;
+		while (ar != hostRoot) {
+			if (ar == null || !REBUILDABLE.contains(ar.getClass())) {
+				return null;
+			}
+			chain.addFirst(new AnnoResourceCache.Link(ar.getClass(), ar.getSource(), ar.getNameOverride()));
+			ar = ar.getParent();
+		}
+		return chain;
+	}
+
+	/**
+	 * Create a resource of the same type as one created by instantiate
+	 */
+	private AnnoResource newResource(Class<? extends AnnoResource> type, Object source, AnnoCollectionResource parent) {
+		if (type == AnnoPrincipalResource.class) {
+			return new AnnoPrincipalResource(this, source, parent);
+		} else if (type == AnnoCalendarHomeResource.class) {
+			if (parent instanceof AnnoPrincipalResource) {
+				return new AnnoCalendarHomeResource(this, source, (AnnoPrincipalResource) parent, calendarSearchService);
+			}
+			return null;
+		} else if (type == AnnoCalendarResource.class) {
+			return new AnnoCalendarResource(this, source, parent);
+		} else if (type == AnnoEventResource.class) {
+			return new AnnoEventResource(this, source, parent);
+		} else if (type == AnnoAddressBookResource.class) {
+			return new AnnoAddressBookResource(this, source, parent);
+		} else if (type == AnnoContactResource.class) {
+			return new AnnoContactResource(this, source, parent);
+		} else if (type == AnnoCollectionResource.class) {
+			return new AnnoCollectionResource(this, source, parent);
+		} else if (type == AnnoFileResource.class) {
+			return new AnnoFileResource(this, source, parent);
+		}
+		return null;
+	}
+
+	/**
+	 * Locates all paths from a single root, with each common ancestor
+	 * located only once
+	 */
+	@Override
+	public Map<String, Resource> getResources(String host, Collection<String> paths) throws NotAuthorizedException, BadRequestException {
+		AnnoCollectionResource hostRoot = locateHostRoot(host, HttpManager.request());
+		if (hostRoot == null) {
+			return ResourceFactory.super.getResources(host, paths);
+		}
+		Map<String, Resource> results = new LinkedHashMap<>();
+		Map<Path, Resource> located = new HashMap<>();
+		for (String sPath : paths) {
+			String url = stripContext(sPath);
+			Resource r;
+			if (url.equals("/") || url.isEmpty()) {
+				r = hostRoot;
+			} else {
+				r = locate(hostRoot, Path.path(url), located);
+			}
+			results.put(sPath, r);
+		}
+		return results;
+	}
+
+	private Resource locate(AnnoCollectionResource rootFolder, Path p, Map<Path, Resource> located) throws NotAuthorizedException, BadRequestException {
+		if (p == null || p.isRoot()) {
+			return rootFolder;
+		}
+		if (located.containsKey(p)) {
+			return located.get(p);
+		}
+		Resource parent = locate(rootFolder, p.getParent(), located);
+		Resource r = null;
+		if (parent instanceof CollectionResource) {
+			r = ((CollectionResource) parent).child(p.getName());
+		}
+		located.put(p, r);
+		return r;
+	}
+
 	public Resource findFromRoot(AnnoCollectionResource rootFolder, Path p) throws NotAuthorizedException, BadRequestException {
 		CollectionResource col = rootFolder;
 		Resource r = null;
@@ -352,6 +537,21 @@ public final class AnnotationResourceFactory implements ResourceFactory {
 		this.lockManager = lockManager;
 	}
 
+	/**
+	 * If set, the source objects which paths resolve to are cached across
+	 * requests. Only used for requests with methods which do not modify
+	 * resources
+	 *
+	 * @return
+	 */
+	public AnnoResourceCache getResourceCache() {
+		return resourceCache;
+	}
+
+	public void setResourceCache(AnnoResourceCache resourceCache) {
+		this.resourceCache = resourceCache;
+	}
+
 	public void setContextPath(String contextPath) {
 		this.contextPath = contextPath;
 	}
@@ -503,33 +703,15 @@ public final class AnnotationResourceFactory implements ResourceFactory {
 			}
 		}
 
-		Object[] args = new Object[m.getParameterTypes().length];
-		List list = new ArrayList();
+		MethodBinding binding = MethodBinding.of(m);
+		Object[] args = new Object[binding.paramTypes.length];
+		ArgCandidates list = new ArgCandidates(sourceRes, otherValues);
 
-		list.add(sourceRes.getSource()); // First argument MUST be the source object!!!
-
-		// put otherValues on. Note these are more specific then parents so must be added first
-		for (Object s : otherValues) {
-			list.add(s);
-			if (s instanceof AnnoResource) {
-				AnnoResource otherRes = (AnnoResource) s;
-				list.add(otherRes.getSource());
-			}
-		}
-
-		// put this resource's parents on the stack
-		AnnoResource r = sourceRes.getParent();
-		while (r != null) {
-			list.add(r.getSource());
-			list.add(r);
-			r = r.getParent();
-		}
-
-		for (int i = 0; i < m.getParameterTypes().length; i++) {
+		for (int i = 0; i < binding.paramTypes.length; i++) {
 			if (i == 1 && forceUseSecondArg) {
 				args[i] = mandatorySecondArg; // hack for methods which can have a null 2nd arg. Without this any other matching object would be provided
 			} else {
-				if (isPrincipalArg(m, i)) {
+				if (binding.principalArgs[i]) {
 					principal = checkAuthentication(sourceRes, principal);
 					if (principal != null) {
 						args[i] = principal.source;
@@ -538,7 +720,7 @@ public final class AnnotationResourceFactory implements ResourceFactory {
 						args[i] = null;
 					}
 				} else {
-					Class type = m.getParameterTypes()[i];
+					Class<?> type = binding.paramTypes[i];
 					Object argValue;
 					try {
 						argValue = findArgValue(type, request, response, list);
@@ -553,17 +735,33 @@ public final class AnnotationResourceFactory implements ResourceFactory {
 		return args;
 	}
 
-	public java.lang.reflect.Method findMethodForAnno(Class sourceClass, Class annoClass) {
-		for (java.lang.reflect.Method m : sourceClass.getMethods()) {
-			Annotation a = m.getAnnotation(annoClass);
-			if (a != null) {
-				return m;
+	/**
+	 * Find a method on the source class with the given annotation. Results,
+	 * including not finding one, are cached for each class
+	 *
+	 * @param sourceClass
+	 * @param annoClass
+	 * @return - null if none found
+	 */
+	public java.lang.reflect.Method findMethodForAnno(Class<?> sourceClass, Class<?> annoClass) {
+		Map<Class<?>, Object> byAnno = methodsForAnno.computeIfAbsent(sourceClass, k -> new ConcurrentHashMap<>());
+		Object found = byAnno.get(annoClass);
+		if (found == null) {
+			found = NO_METHOD;
+			Class<? extends Annotation> annoType = annoClass.asSubclass(Annotation.class);
+			for (java.lang.reflect.Method m : sourceClass.getMethods()) {
+				Annotation a = m.getAnnotation(annoType);
+				if (a != null) {
+					found = m;
+					break;
+				}
 			}
+			byAnno.put(annoClass, found);
 		}
-		return null;
+		return found == NO_METHOD ? null : (java.lang.reflect.Method) found;
 	}
 
-	private Object findArgValue(Class type, Request request, Response response, List otherAvailValues) throws Exception {
+	private Object findArgValue(Class<?> type, Request request, Response response, ArgCandidates otherAvailValues) throws Exception {
 		if (type == Request.class) {
 			return request;
 		} else if (type == Response.class) {
@@ -572,11 +770,9 @@ public final class AnnotationResourceFactory implements ResourceFactory {
 			InputStream in = (InputStream) findArgValue(InputStream.class, request, response, otherAvailValues);
 			return toBytes(in);
 		} else {
-			for (Object o : otherAvailValues) {
-				if (o != null && type.isAssignableFrom(o.getClass())) {
-					otherAvailValues.remove(o); // remove it so that we dont use same value for next param of same type
-					return o;
-				}
+			Object o = otherAvailValues.take(type);
+			if (o != null) {
+				return o;
 			}
 		}
 		if (log.isInfoEnabled()) {
@@ -585,7 +781,7 @@ public final class AnnotationResourceFactory implements ResourceFactory {
 				log.debug("Available types are:");
 				log.debug(" - " + Request.class);
 				log.debug(" - " + Response.class);
-				for (Object o : otherAvailValues) {
+				for (Object o : otherAvailValues.all()) {
 					if (o != null) {
 						log.debug(" - " + o.getClass());
 					} else {
@@ -758,17 +954,6 @@ public final class AnnotationResourceFactory implements ResourceFactory {
 		return false;
 	}
 
-	private boolean isPrincipalArg(java.lang.reflect.Method m, int i) {
-		Annotation[] arr = m.getParameterAnnotations()[i];
-		Class annoType = io.milton.annotations.Principal.class;
-		for (Annotation a : arr) {
-			if (a.annotationType().equals(annoType)) {
-				return true;
-			}
-		}
-		return false;
-	}
-
 	/**
 	 * Process the source object (which may be a Collection of source objects),
 	 * and for each one instantiate an AnnoResource and append it to the result
@@ -871,4 +1056,68 @@ public final class AnnotationResourceFactory implements ResourceFactory {
 	}
 	
 	
+
+	/**
+	 * The values which can be passed to a controller method, in order of
+	 * preference: the source object, then the other values given, then the
+	 * parents of the source resource and their source objects.
+	 *
+	 * The parents are only walked as far as needed, so methods which only take
+	 * the source, or values near it, do not pay for deep hierarchies
+	 */
+	private static class ArgCandidates {
+
+		private final List<Object> list = new ArrayList<>();
+		private AnnoResource nextParent;
+
+		ArgCandidates(AnnoResource sourceRes, Object[] otherValues) {
+			list.add(sourceRes.getSource()); // First argument MUST be the source object!!!
+
+			// put otherValues on. Note these are more specific then parents so must be added first
+			for (Object s : otherValues) {
+				list.add(s);
+				if (s instanceof AnnoResource) {
+					AnnoResource otherRes = (AnnoResource) s;
+					list.add(otherRes.getSource());
+				}
+			}
+			nextParent = sourceRes.getParent();
+		}
+
+		/**
+		 * Find the first value of the given type, and remove it so that we dont
+		 * use same value for next param of same type
+		 *
+		 * @param type
+		 * @return - null if none found
+		 */
+		Object take(Class<?> type) {
+			for (int i = 0;; i++) {
+				if (i == list.size() && !addParent()) {
+					return null;
+				}
+				Object o = list.get(i);
+				if (o != null && type.isAssignableFrom(o.getClass())) {
+					list.remove(i);
+					return o;
+				}
+			}
+		}
+
+		List<Object> all() {
+			while (addParent()) {
+			}
+			return list;
+		}
+
+		private boolean addParent() {
+			if (nextParent == null) {
+				return false;
+			}
+			list.add(nextParent.getSource());
+			list.add(nextParent);
+			nextParent = nextParent.getParent();
+			return true;
+		}
+	}
 }
@@ -73,7 +73,7 @@ public class AuthenticateAnnotationHandler extends AbstractAnnotationHandler {
 				if (hasParamType(cm.method, String.class)) { // Must have a string parameter for the password
 					try {
 						Object[] args = annoResourceFactory.buildInvokeArgs(userRes, cm.method, requestedPassword);
-						Boolean result = (Boolean) cm.method.invoke(cm.controller, args);
+						Boolean result = (Boolean) cm.invoke(args);
 						if (result != null) {
 							return result;
 						}
@@ -121,7 +121,7 @@ public class AuthenticateAnnotationHandler extends AbstractAnnotationHandler {
 					// if it returns String then it returns a password. Otherwise is authenticate method
 					if (cm.method.getReturnType().equals(String.class)) {
 						Object[] args = annoResourceFactory.buildInvokeArgs(userRes, cm.method, userRes);
-						String result = (String) cm.method.invoke(cm.controller, args);
+						String result = (String) cm.invoke(args);
 						if (result == null) {
 							log.warn("Null password from: " + cm + " for user: " + userRes.getHref());
 							return false;
@@ -137,7 +137,7 @@ public class AuthenticateAnnotationHandler extends AbstractAnnotationHandler {
 						}
 					} else if (cm.method.getReturnType().equals(Boolean.class)) {
 						Object[] args = annoResourceFactory.buildInvokeArgs(userRes, cm.method, digestRequest);
-						Boolean result = (Boolean) cm.method.invoke(cm.controller, args);
+						Boolean result = (Boolean) cm.invoke(args);
 						if (result != null) {
 							return result;
 						}
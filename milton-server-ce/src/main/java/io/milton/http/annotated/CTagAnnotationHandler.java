@@ -92,7 +92,7 @@ public class CTagAnnotationHandler extends AbstractAnnotationHandler {
 
 				}
 			} else {
-				rawId = cm.method.invoke(cm.controller, source);
+				rawId = cm.invoke(source);
 				if (log.isDebugEnabled()) {
 					log.debug("Got ctag from annotated method. ctag=" + rawId);
 				}
@@ -17,6 +17,7 @@
 package io.milton.http.annotated;
 
 import java.lang.annotation.Annotation;
+import java.lang.reflect.InvocationTargetException;
 
 /**
  *
@@ -28,12 +29,26 @@ public class ControllerMethod {
 	final java.lang.reflect.Method method;
 	final Class sourceType;
 	final Annotation anno;
+	final MethodBinding binding;
 
 	public ControllerMethod(Object controller, java.lang.reflect.Method method, Class sourceType, final Annotation anno) {
 		this.controller = controller;
 		this.method = method;
 		this.sourceType = sourceType;
 		this.anno = anno;
+		this.binding = MethodBinding.of(method);
+	}
+
+	/**
+	 * Invoke the method on the controller, as for Method.invoke
+	 *
+	 * @param args
+	 * @return
+	 * @throws IllegalAccessException
+	 * @throws InvocationTargetException
+	 */
+	public Object invoke(Object... args) throws IllegalAccessException, InvocationTargetException {
+		return binding.invoke(controller, args);
 	}
 
 	@Override
@@ -45,7 +45,7 @@ public class DeleteAnnotationHandler extends AbstractAnnotationHandler {
 		}
 		try {
 			Object[] args = annoResourceFactory.buildInvokeArgs(res, cm.method);
-			cm.method.invoke(cm.controller, args);
+			cm.invoke(args);
 		} catch (NotAuthorizedException | ConflictException | BadRequestException e) {
 			throw e;
 		} catch (Exception e) {
@@ -40,7 +40,7 @@ public class DisplayNameAnnotationHandler extends AbstractAnnotationHandler {
 				return res.getName();
 			}
 
-			return (String) cm.method.invoke(cm.controller, source);
+			return (String) cm.invoke(source);
 		} catch (Exception e) {
 			throw new RuntimeException(e);
 		}
@@ -35,7 +35,7 @@ public class DisplayNameSetterAnnotationHandler extends AbstractAnnotationHandle
 			if (cm == null) {
 				boolean b = attemptToSetProperty(source, "displayName", "title");
 			} else {
-				cm.method.invoke(cm.controller, source);
+				cm.invoke(source);
 			}
 		} catch (Exception e) {
 			throw new RuntimeException(e);
@@ -47,7 +47,7 @@ public class MakeCalendarAnnotationHandler extends AbstractAnnotationHandler {
 		}
 		try {
 			Object[] args = annoResourceFactory.buildInvokeArgs(res, cm.method, newName, fieldsToSet);
-			Object o = cm.method.invoke(cm.controller, args);
+			Object o = cm.invoke(args);
 			if( o == null ) {
 				throw new RuntimeException("Method returned null object or void: " + cm.controller.getClass() + "::" + cm.method.getName() + " - should return newly created object");
 			}
@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.milton.http.annotated;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * What is needed to call a controller method, worked out once per method
+ * instead of on every call: the parameter types, which parameters are
+ * annotated with Principal, and a MethodHandle to invoke it with.
+ *
+ * Method.getParameterTypes and getParameterAnnotations copy their arrays on
+ * every call, so they should not be used on the request path
+ *
+ * Bindings are held against the method's declaring class with a ClassValue,
+ * so they do not stop controller classes from being unloaded
+ *
+ * @author brad
+ */
+class MethodBinding {
+
+	private static final Logger log = LoggerFactory.getLogger(MethodBinding.class);
+	private static final ClassValue<ConcurrentMap<Method, MethodBinding>> bindings = new ClassValue<ConcurrentMap<Method, MethodBinding>>() {
+		@Override
+		protected ConcurrentMap<Method, MethodBinding> computeValue(Class<?> type) {
+			return new ConcurrentHashMap<>();
+		}
+	};
+	private static final MethodType INVOKER_TYPE = MethodType.methodType(Object.class, Object.class, Object[].class);
+
+	static MethodBinding of(Method m) {
+		ConcurrentMap<Method, MethodBinding> forClass = bindings.get(m.getDeclaringClass());
+		MethodBinding b = forClass.get(m);
+		if (b == null) {
+			b = forClass.computeIfAbsent(m, MethodBinding::new);
+		}
+		return b;
+	}
+
+	final Method method;
+	final Class<?>[] paramTypes;
+	final boolean[] principalArgs;
+	/**
+	 * Parameter types with primitives replaced by their wrappers, to check
+	 * arguments against
+	 */
+	private final Class<?>[] argTypes;
+	private final boolean isStatic;
+	/**
+	 * Takes the target and an array of arguments. Null if the method could not
+	 * be unreflected, in which case reflection is used
+	 */
+	private final MethodHandle invoker;
+
+	private MethodBinding(Method m) {
+		this.method = m;
+		this.paramTypes = m.getParameterTypes();
+		Annotation[][] paramAnnos = m.getParameterAnnotations();
+		this.principalArgs = new boolean[paramTypes.length];
+		for (int i = 0; i < paramTypes.length; i++) {
+			for (Annotation a : paramAnnos[i]) {
+				if (a.annotationType().equals(io.milton.annotations.Principal.class)) {
+					principalArgs[i] = true;
+				}
+			}
+		}
+		this.argTypes = new Class<?>[paramTypes.length];
+		for (int i = 0; i < paramTypes.length; i++) {
+			argTypes[i] = MethodType.methodType(paramTypes[i]).wrap().returnType();
+		}
+		this.isStatic = Modifier.isStatic(m.getModifiers());
+		this.invoker = createInvoker(m, paramTypes.length);
+	}
+
+	/**
+	 * Same behaviour as Method.invoke. Exceptions thrown by the method are
+	 * wrapped in an InvocationTargetException. Arguments which the method
+	 * handle cannot take directly, eg nulls for primitives or values which
+	 * need widening, are passed to Method.invoke, which converts them or
+	 * throws IllegalArgumentException
+	 *
+	 * @param target
+	 * @param args
+	 * @return
+	 * @throws IllegalAccessException
+	 * @throws InvocationTargetException
+	 */
+	Object invoke(Object target, Object[] args) throws IllegalAccessException, InvocationTargetException {
+		if (invoker == null || !canInvokeExact(target, args)) {
+			return method.invoke(target, args);
+		}
+		Object[] spread = args == null ? new Object[0] : args;
+		try {
+			return (Object) invoker.invokeExact(target, spread);
+		} catch (Throwable e) {
+			throw new InvocationTargetException(e);
+		}
+	}
+
+	private boolean canInvokeExact(Object target, Object[] args) {
+		if (!isStatic && !method.getDeclaringClass().isInstance(target)) {
+			return false;
+		}
+		int count = args == null ? 0 : args.length;
+		if (count != paramTypes.length) {
+			return false;
+		}
+		for (int i = 0; i < count; i++) {
+			Object arg = args[i];
+			if (arg == null ? paramTypes[i].isPrimitive() : !argTypes[i].isInstance(arg)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static MethodHandle createInvoker(Method m, int paramCount) {
+		try {
+			MethodHandle h;
+			try {
+				h = MethodHandles.publicLookup().unreflect(m);
+			} catch (IllegalAccessException e) {
+				// eg a public method on a non-public class
+				m.setAccessible(true);
+				h = MethodHandles.lookup().unreflect(m);
+			}
+			h = h.asFixedArity();
+			if (Modifier.isStatic(m.getModifiers())) {
+				h = MethodHandles.dropArguments(h, 0, Object.class);
+			}
+			return h.asSpreader(Object[].class, paramCount).asType(INVOKER_TYPE);
+		} catch (Exception e) {
+			log.warn("Could not create method handle for: " + m + ", will use reflection. " + e);
+			return null;
+		}
+	}
+}
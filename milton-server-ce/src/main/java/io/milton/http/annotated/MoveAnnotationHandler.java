@@ -51,7 +51,7 @@ public class MoveAnnotationHandler extends AbstractAnnotationHandler {
 				destObject = arDest.getSource();
 			}
 			Object[] args = annoResourceFactory.buildInvokeArgs(res, cm.method, newName, rDest, destObject);
-			cm.method.invoke(cm.controller, args);
+			cm.invoke(args);
 		} catch (NotAuthorizedException | ConflictException | BadRequestException e) {
 			throw e;
 		} catch (Exception e) {
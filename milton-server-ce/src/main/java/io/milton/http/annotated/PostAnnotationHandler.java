@@ -82,7 +82,7 @@ public class PostAnnotationHandler extends AbstractAnnotationHandler {
 
 		try {
 			Object[] args = annoResourceFactory.buildInvokeArgs(resource, cm.method, params);
-            return cm.method.invoke(cm.controller, args);
+            return cm.invoke(args);
 		} catch (NotAuthorizedException | ConflictException | BadRequestException e) {
 			throw e;
 		} catch (Exception e) {
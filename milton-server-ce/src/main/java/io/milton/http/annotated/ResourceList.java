@@ -21,13 +21,25 @@ import java.util.*;
 import io.milton.resource.Resource;
 
 /**
+ * A list of resources which is also indexed by name. The index is kept up to
+ * date as resources are added, and is rebuilt on the next lookup after any
+ * other change to the list, so lookups by name are constant time however the
+ * list was built.
+ *
+ * As for ArrayList, changes must not be made while other threads use the
+ * list, but once built it can be read from any number of threads. A rebuilt
+ * index is a new map, published with a volatile write, so concurrent readers
+ * never see a half built index
+ *
+ * Names are not required to be unique. get(name) returns the last resource
+ * added with that name, and findFirst(name) the first in list order
  *
  * @author brad
  */
 public class ResourceList extends ArrayList<CommonResource> {
 
 	private static final long serialVersionUID = 1L;
-	private final Map<String, CommonResource> map = new HashMap<>();
+	private transient volatile Index index;
 
 	public ResourceList() {
 	}
@@ -68,8 +80,23 @@ public class ResourceList extends ArrayList<CommonResource> {
 		if (e.getName() == null) {
 			throw new NullPointerException("Attempt to add resource with null name: " + e.getClass().getName());
 		}
-		map.put(e.getName(), e);
-		return super.add(e);
+		Index i = index;
+		boolean inSync = i != null && i.modCount == modCount;
+		super.add(e);
+		if (inSync) {
+			if (i.map.put(e.getName(), e) != null) {
+				i.duplicateNames = true;
+			}
+			i.modCount = modCount;
+		}
+		return true;
+	}
+
+	@Override
+	public CommonResource set(int index, CommonResource element) {
+		CommonResource old = super.set(index, element);
+		this.index = null;
+		return old;
 	}
 
 	/**
@@ -85,11 +112,32 @@ public class ResourceList extends ArrayList<CommonResource> {
 	}
 
 	public CommonResource get(String name) {
-		return map.get(name);
+		return index().map.get(name);
+	}
+
+	/**
+	 * Find the first resource in the list with the given name. This is the
+	 * same as get(name) unless names are duplicated
+	 *
+	 * @param name
+	 * @return
+	 */
+	public CommonResource findFirst(String name) {
+		Index i = index();
+		CommonResource r = i.map.get(name);
+		if (r == null || !i.duplicateNames) {
+			return r;
+		}
+		for (CommonResource cr : this) {
+			if (name.equals(cr.getName())) {
+				return cr;
+			}
+		}
+		return null;
 	}
 	
 	public Resource remove(String name ) {
-		CommonResource r = map.remove(name);
+		CommonResource r = get(name);
 		if( r != null ) {
 			super.remove(r);
 		}
@@ -100,15 +148,6 @@ public class ResourceList extends ArrayList<CommonResource> {
 		return get(name) != null;
 	}
 
-	@Override
-	public boolean remove(Object o) {
-		if (o instanceof Resource) {
-			Resource e = (Resource) o;
-			map.remove(e.getName());
-		}
-		return super.remove(o);
-	}
-
 	public Resource getFirst() {
 		if (isEmpty()) {
 			return null;
@@ -287,8 +326,39 @@ public class ResourceList extends ArrayList<CommonResource> {
 	
     
     public Map<String,CommonResource> getMap() {
-        return map;
+        return Collections.unmodifiableMap(index().map);
     }
+
+	/**
+	 * Rebuild the index if the list has changed other than by add
+	 */
+	private Index index() {
+		Index i = index;
+		if (i == null || i.modCount != modCount) {
+			i = new Index(modCount);
+			for (CommonResource cr : this) {
+				if (i.map.put(cr.getName(), cr) != null) {
+					i.duplicateNames = true;
+				}
+			}
+			index = i;
+		}
+		return i;
+	}
+
+	private static class Index {
+
+		final Map<String, CommonResource> map = new HashMap<>();
+		/**
+		 * the list's modCount when the map was last in sync with it
+		 */
+		int modCount;
+		boolean duplicateNames;
+
+		Index(int modCount) {
+			this.modCount = modCount;
+		}
+	}
     	
 	
 //	public ResourceList find(String path, String type) {
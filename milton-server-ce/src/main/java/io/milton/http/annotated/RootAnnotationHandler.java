@@ -37,10 +37,10 @@ public class RootAnnotationHandler implements AnnotationHandler {
 		for (ControllerMethod cm : controllerMethods) {
 			try {
 				Object root;
-				if (cm.method.getParameterTypes().length == 0) {
-					root = cm.method.invoke(cm.controller);
+				if (cm.binding.paramTypes.length == 0) {
+					root = cm.invoke();
 				} else {
-					root = cm.method.invoke(cm.controller, host); // TODO: other args like request, response, etc
+					root = cm.invoke(host); // TODO: other args like request, response, etc
 					// TODO: other args like request, response, etc
 					// TODO: other args like request, response, etc
 				}
@@ -86,7 +86,7 @@ public class SchedulingXmlHelper {
     public String generateXml(List<SchedulingResponseItem> respItems) throws UnsupportedEncodingException {
         log.trace("respondWithSchedulingResults: " + respItems.size());
         ByteArrayOutputStream generatedXml = new ByteArrayOutputStream();
-        XmlWriter writer = new XmlWriter(generatedXml);
+        XmlWriter writer = new XmlWriter(generatedXml, XmlWriter.utf8(), XmlWriter.DEFAULT_BUFFER_SIZE);
         writer.writeXMLHeader();
 
         writer.open("C", "schedule-response " + helper.generateNamespaceDeclarations());
@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.milton.http.entity;
+
+import io.milton.http.CompressionCodec;
+import io.milton.http.Response;
+import io.milton.resource.GetableResource;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+import org.apache.commons.io.output.CloseShieldOutputStream;
+
+/**
+ * Compresses the content of a resource as it is written to the response, so
+ * nothing is buffered and no content length is sent. The container will use
+ * chunked transfer encoding
+ *
+ * @author brad
+ */
+public class CompressingEntity implements Response.Entity {
+
+	private final GetableResource resource;
+	private final Map<String, String> params;
+	private final String contentType;
+	private final CompressionCodec codec;
+
+	public CompressingEntity(GetableResource resource, Map<String, String> params, String contentType, CompressionCodec codec) {
+		this.resource = resource;
+		this.params = params;
+		this.contentType = contentType;
+		this.codec = codec;
+	}
+
+	public GetableResource getResource() {
+		return resource;
+	}
+
+	public CompressionCodec getCodec() {
+		return codec;
+	}
+
+	@Override
+	public void write(Response response, OutputStream outputStream) throws Exception {
+		OutputStream compressedOut = codec.compress(new CloseShieldOutputStream(outputStream));
+		boolean written = false;
+		try {
+			resource.sendContent(compressedOut, null, params, contentType);
+			written = true;
+		} finally {
+			// finishes the compressed data and releases the codec, eg its
+			// Deflater, but leaves the response stream open
+			try {
+				compressedOut.close();
+			} catch (IOException e) {
+				if (written) {
+					throw e;
+				}
+			}
+		}
+		outputStream.flush();
+	}
+}
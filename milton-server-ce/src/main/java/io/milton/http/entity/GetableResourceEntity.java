@@ -18,6 +18,7 @@
  */
 package io.milton.http.entity;
 
+import io.milton.resource.FileChannelResource;
 import io.milton.resource.GetableResource;
 import io.milton.http.Range;
 import io.milton.http.Response;
@@ -26,6 +27,8 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Map;
 
 public class GetableResourceEntity implements Response.Entity {
@@ -68,7 +71,9 @@ public class GetableResourceEntity implements Response.Entity {
 		long l = System.currentTimeMillis();
 		log.trace("sendContent");
 		try {
-			resource.sendContent(outputStream, range, params, contentType);
+			if (!sendFile(response, outputStream)) {
+				resource.sendContent(outputStream, range, params, contentType);
+			}
 			// TODO: The original code didn't flush for partial responses, not sure why...
 
 			// BM: not sure, but i think flushing might be interfering with some connection management stuff
@@ -88,4 +93,37 @@ public class GetableResourceEntity implements Response.Entity {
 			//throw new RuntimeException("IOException", ex); // throw so the container can catch and clean up the connection
 		}
 	}
+
+	/**
+	 * If the resource's content is in a file, send it directly with
+	 * Response.sendFile
+	 *
+	 * @return - false if the content must be sent with sendContent
+	 */
+	private boolean sendFile(Response response, OutputStream outputStream) throws IOException {
+		if (!(resource instanceof FileChannelResource) || outputStream != response.getOutputStream()) {
+			return false;
+		}
+		Path path = ((FileChannelResource) resource).getContentPath();
+		if (path == null) {
+			return false;
+		}
+		long size = Files.size(path);
+		long position = 0;
+		long end = size - 1;
+		if (range != null) {
+			if (range.getStart() == null) {
+				return false; // suffix ranges are left to the resource
+			}
+			position = range.getStart();
+			if (range.getFinish() != null && range.getFinish() < end) {
+				end = range.getFinish();
+			}
+		}
+		if (position <= end) {
+			log.trace("sendFile: {} position={} end={}", path, position, end);
+			response.sendFile(path, position, end - position + 1);
+		}
+		return true;
+	}
 }
@@ -21,13 +21,19 @@ package io.milton.http.entity;
 import io.milton.common.BufferingOutputStream;
 import io.milton.http.Range;
 import io.milton.http.Response;
+import io.milton.http.http11.MultipartByteRangesWriter;
 import io.milton.http.http11.MultipleRangeWritingOutputStream;
+import io.milton.resource.FileChannelResource;
 import io.milton.resource.GetableResource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.List;
 import java.util.Map;
 import org.apache.commons.io.IOUtils;
@@ -65,6 +71,9 @@ public class PartialEntity implements Response.Entity {
 
 	@Override
 	public void write(Response response, OutputStream outputStream) throws Exception {
+		if (writeFromFile(response, outputStream)) {
+			return;
+		}
 
 		Long contentLength = resource.getContentLength();
 		if (contentLength == null) {
@@ -73,10 +82,16 @@ public class PartialEntity implements Response.Entity {
 		}
 
 
+		// content can only be read once, in order, so ranges must be too
+		List<Range> parts = ranges;
+		if (contentLength >= 0) {
+			parts = MultipartByteRangesWriter.sorted(MultipartByteRangesWriter.coalesce(ranges, contentLength));
+		}
+
 		try {
 
 			BufferingOutputStream bufOut = new BufferingOutputStream(100000);
-			MultipleRangeWritingOutputStream multiOut = new MultipleRangeWritingOutputStream(contentLength, bufOut, ranges, multipartBoundary, contentType);
+			MultipleRangeWritingOutputStream multiOut = new MultipleRangeWritingOutputStream(contentLength, bufOut, parts, multipartBoundary, contentType);
 
 			// This will only write content to the buffer, not output to client
 			resource.sendContent(multiOut, null, params, contentType); // do not pass ranges, we need full content to extract ranges
@@ -92,4 +107,34 @@ public class PartialEntity implements Response.Entity {
 			IOUtils.closeQuietly(outputStream);
 		}
 	}
+
+	/**
+	 * If the content is in a file, read each range from its position and stream
+	 * the parts, instead of reading all content into a buffer
+	 *
+	 * @return - false if the content must be read with sendContent
+	 */
+	private boolean writeFromFile(Response response, OutputStream outputStream) throws IOException {
+		if (!(resource instanceof FileChannelResource)) {
+			return false;
+		}
+		Path path = ((FileChannelResource) resource).getContentPath();
+		if (path == null) {
+			return false;
+		}
+		long size = Files.size(path);
+		List<Range> parts = MultipartByteRangesWriter.coalesce(ranges, size);
+		if (parts.isEmpty()) {
+			return false;
+		}
+		MultipartByteRangesWriter writer = new MultipartByteRangesWriter(parts, size, multipartBoundary, contentType);
+		response.setContentLengthHeader(writer.getContentLength());
+		try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+			writer.write(in, outputStream);
+		} catch (IOException ex) {
+			log.warn("IOException writing response: " + ex.getMessage());
+			IOUtils.closeQuietly(outputStream);
+		}
+		return true;
+	}
 }
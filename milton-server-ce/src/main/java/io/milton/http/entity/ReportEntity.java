@@ -0,0 +1,49 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.milton.http.entity;
+
+import io.milton.http.Response;
+import io.milton.http.report.StreamingReport;
+import java.io.OutputStream;
+
+/**
+ * Writes the body of a prepared StreamingReport directly to the response, so
+ * the report body is not buffered
+ *
+ * @author brad
+ */
+public class ReportEntity implements Response.Entity {
+
+	private final StreamingReport.Body body;
+
+	public ReportEntity(StreamingReport.Body body) {
+		this.body = body;
+	}
+
+	public StreamingReport.Body getBody() {
+		return body;
+	}
+
+	@Override
+	public void write(Response response, OutputStream outputStream) throws Exception {
+		body.write(outputStream);
+		outputStream.flush();
+	}
+}
@@ -24,6 +24,8 @@ import io.milton.resource.Resource;
 import io.milton.http.ResourceFactory;
 import io.milton.http.exceptions.BadRequestException;
 import io.milton.http.exceptions.NotAuthorizedException;
+import java.util.Collection;
+import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -53,6 +55,17 @@ public class FckResourceFactory implements ResourceFactory {
 		return wrappedFactory.getResource(host, url);
 	}
 
+	@Override
+	public Map<String, Resource> getResources(String host, Collection<String> paths) throws NotAuthorizedException, BadRequestException {
+		for (String url : paths) {
+			Path path = Path.path(url);
+			if (FckFileManagerResource.URL.equals(path) || FckQuickUploaderResource.URL.equals(path)) {
+				return ResourceFactory.super.getResources(host, paths);
+			}
+		}
+		return wrappedFactory.getResources(host, paths);
+	}
+
 	private CollectionResource getParent(String host, Path path) throws NotAuthorizedException, BadRequestException {
 		Resource r = wrappedFactory.getResource(host, path.toString());
 		if (r instanceof CollectionResource) {
@@ -0,0 +1,243 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package io.milton.http.fs;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.concurrent.ThreadLocalRandom;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes content to a hidden temp file in the same directory, then moves it
+ * over the destination in one step. Readers see either the old content or
+ * the new content, never a partially written file, and a failed or
+ * truncated upload leaves the existing file untouched.
+ *
+ * Content is copied through a per-thread direct buffer. If forceOnWrite is
+ * set the temp file, and then its directory, are flushed to disk before the
+ * new content is visible, so it survives a crash. This costs throughput so
+ * is off by default
+ *
+ * The move gives the file a new inode, so the existing file's permissions are
+ * copied to the temp file first where the file system supports POSIX
+ * permissions. Ownership, ACLs and hard links are not preserved.
+ *
+ * Since content is stored as is, FsFileResource writes partial PUTs
+ * (Content-Range) into the file in place by position. Those writes are not
+ * atomic: a reader can see a partly written range, and a failed request can
+ * leave part of the range written. They are flushed if forceOnWrite is set
+ *
+ * @author brad
+ */
+public class AtomicFileContentService implements FileContentService {
+
+    private static final Logger log = LoggerFactory.getLogger(AtomicFileContentService.class);
+
+    private static final String TEMP_PREFIX = ".milton-";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final ThreadLocal<ByteBuffer> buffers = new ThreadLocal<>();
+    private int bufferSize = 256 * 1024;
+    private boolean forceOnWrite;
+
+    @Override
+    public void setFileContent(File file, InputStream in) throws IOException {
+        setFileContent(file, in, null);
+    }
+
+    @Override
+    public void setFileContent(File file, InputStream in, Long length) throws IOException {
+        Path dest = file.getAbsoluteFile().toPath();
+        Path temp = dest.resolveSibling(TEMP_PREFIX + dest.getFileName() + "." + Long.toHexString(ThreadLocalRandom.current().nextLong()) + TEMP_SUFFIX);
+        boolean moved = false;
+        try {
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                long written = copy(in, out, length);
+                if (length != null && written < length) {
+                    throw new IOException("Upload truncated, expected " + length + " bytes but got " + written + " for: " + file.getAbsolutePath());
+                }
+                if (forceOnWrite) {
+                    out.force(true);
+                }
+            }
+            copyPermissions(dest, temp);
+            move(temp, dest);
+            moved = true;
+            if (forceOnWrite) {
+                forceDirectory(dest.getParent());
+            }
+        } finally {
+            if (!moved) {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    @Override
+    public InputStream getFileContent(File file) throws FileNotFoundException {
+        return new FileInputStream(file);
+    }
+
+    @Override
+    public boolean isDirectAccess() {
+        return getClass() == AtomicFileContentService.class;
+    }
+
+    @Override
+    public boolean isTempFile(File file) {
+        String name = file.getName();
+        return name.startsWith(TEMP_PREFIX) && name.endsWith(TEMP_SUFFIX);
+    }
+
+    private long copy(InputStream in, FileChannel out, Long length) throws IOException {
+        if (in instanceof FileInputStream) {
+            // eg a completed resumable upload, so let the OS copy it
+            FileChannel src = ((FileInputStream) in).getChannel();
+            long count = src.size() - src.position();
+            if (length != null && length < count) {
+                count = length;
+            }
+            long pos = 0;
+            while (pos < count) {
+                long n = out.transferFrom(src, pos, count - pos);
+                if (n <= 0) {
+                    break;
+                }
+                pos += n;
+            }
+            return pos;
+        }
+        ReadableByteChannel src = Channels.newChannel(in);
+        ByteBuffer buf = buffer(length);
+        long total = 0;
+        boolean eof = false;
+        while (!eof) {
+            buf.clear();
+            // fill the buffer before writing, the stream channel only reads a few KB at a time
+            while (buf.hasRemaining()) {
+                if (src.read(buf) < 0) {
+                    eof = true;
+                    break;
+                }
+            }
+            buf.flip();
+            while (buf.hasRemaining()) {
+                total += out.write(buf);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Direct buffers are costly to allocate so are kept per thread. Small
+     * uploads of a known length get a heap buffer of just the right size
+     */
+    private ByteBuffer buffer(Long length) {
+        if (length != null && length < bufferSize) {
+            return ByteBuffer.allocate((int) Math.max(length, 1));
+        }
+        ByteBuffer buf = buffers.get();
+        if (buf == null || buf.capacity() != bufferSize) {
+            buf = ByteBuffer.allocateDirect(bufferSize);
+            buffers.set(buf);
+        }
+        return buf;
+    }
+
+    private void move(Path temp, Path dest) throws IOException {
+        try {
+            Files.move(temp, dest, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            log.warn("Atomic move not supported, falling back to replace: " + dest);
+            Files.move(temp, dest, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Give a file which will replace an existing one the same permissions. Not
+     * all file systems have POSIX permissions, in which case this is skipped
+     */
+    static void copyPermissions(Path existing, Path replacement) {
+        PosixFileAttributeView view = Files.getFileAttributeView(existing, PosixFileAttributeView.class);
+        if (view == null || !Files.exists(existing)) {
+            return;
+        }
+        try {
+            Files.setPosixFilePermissions(replacement, view.readAttributes().permissions());
+        } catch (IOException | UnsupportedOperationException e) {
+            log.debug("Couldnt copy permissions to: " + replacement, e);
+        }
+    }
+
+    /**
+     * Flush the directory entry for the rename. Not all platforms allow a
+     * directory to be opened, eg Windows, in which case this is skipped
+     */
+    static void forceDirectory(Path dir) {
+        try (FileChannel ch = FileChannel.open(dir, StandardOpenOption.READ)) {
+            ch.force(true);
+        } catch (IOException e) {
+            log.debug("Couldnt force directory: " + dir, e);
+        }
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Size of the direct buffer used to copy content, default 256KB
+     *
+     * @param bufferSize
+     */
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    @Override
+    public boolean isForceOnWrite() {
+        return forceOnWrite;
+    }
+
+    /**
+     * If true, content is flushed to disk (fsync) before it replaces the
+     * existing file. Default false
+     *
+     * @param forceOnWrite
+     */
+    public void setForceOnWrite(boolean forceOnWrite) {
+        this.forceOnWrite = forceOnWrite;
+    }
+}
@@ -32,4 +32,50 @@ import java.io.InputStream;
 public interface FileContentService {
 	void setFileContent(File file, InputStream in) throws IOException;
 	InputStream getFileContent(File file) throws FileNotFoundException;
+
+	/**
+	 * Store content when the client has said how long it is, eg from the
+	 * Content-Length header. Implementations may use the length to size
+	 * buffers and to detect truncated uploads. The default ignores it
+	 *
+	 * @param file
+	 * @param in
+	 * @param length - expected number of bytes, or null if not known
+	 * @throws IOException
+	 */
+	default void setFileContent(File file, InputStream in, Long length) throws IOException {
+		setFileContent(file, in);
+	}
+
+	/**
+	 * True if content is stored unchanged in the given file, so it can be
+	 * read and written in place by position (eg for sendfile and partial PUT)
+	 *
+	 * @return
+	 */
+	default boolean isDirectAccess() {
+		return false;
+	}
+
+	/**
+	 * True if content written directly to a file, ie by position for a
+	 * partial PUT or by moving a completed upload into place, must be flushed
+	 * to disk before the request completes. Only used if isDirectAccess
+	 *
+	 * @return
+	 */
+	default boolean isForceOnWrite() {
+		return false;
+	}
+
+	/**
+	 * True if the file is one this service uses while writing content, and
+	 * so should not be listed as a resource
+	 *
+	 * @param file
+	 * @return
+	 */
+	default boolean isTempFile(File file) {
+		return false;
+	}
 }
@@ -0,0 +1,476 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package io.milton.http.fs;
+
+import io.milton.common.Stoppable;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A bounded cache of directory listings and file attributes for
+ * FileSystemResourceFactory, so that resolving and listing files does not
+ * need several stat calls per file on every request.
+ *
+ * Directories are listed with one DirectoryStream pass, reading the
+ * attributes of each entry once. Cached directories are registered with a
+ * WatchService, and any change reported for a directory discards what is
+ * cached for it. Milton's own write paths invalidate directly, so changes
+ * made through milton are seen straight away even where the platform's
+ * WatchService is slow (eg polling implementations). As a safety net entries
+ * also expire after maxAgeMillis.
+ *
+ * The cache is limited to maxEntries files in total, and to maxDirectories
+ * directories, which bounds the number of watch registrations. Least
+ * recently used directories are discarded first. A directory with more
+ * entries than maxEntries is listed each time. Note that the modified date of
+ * a directory, as seen in its parent's listing, is not refreshed when its
+ * children change.
+ *
+ * Call close() or stop() to stop the watch thread. HttpManagerBuilder does
+ * this on shutdown for the cache it is given
+ *
+ * @author brad
+ */
+public class FileMetadataCache implements Closeable, Stoppable {
+
+    private static final Logger log = LoggerFactory.getLogger(FileMetadataCache.class);
+
+    private static final Comparator<Map.Entry<String, BasicFileAttributes>> DIRECTORIES_FIRST
+            = Comparator.comparing((Map.Entry<String, BasicFileAttributes> e) -> !e.getValue().isDirectory())
+                    .thenComparing(Map.Entry::getKey);
+
+    private final Map<Path, DirEntry> dirs = new LinkedHashMap<>(16, 0.75f, true);
+    // the same entries, sorted so that those beneath a directory are a range
+    private final NavigableMap<String, DirEntry> dirsByName = new TreeMap<>();
+    private int maxEntries = 100000;
+    private int maxDirectories = 10000;
+    private long maxAgeMillis = 60000;
+    private boolean watchEnabled = true;
+    private WatchService watchService;
+    private long invalidations;
+    private int entryCount;
+    private boolean closed;
+
+    /**
+     * Get the attributes of the file, or null if it does not exist
+     *
+     * @param file
+     * @return
+     */
+    public BasicFileAttributes getAttributes(File file) {
+        Path path = toPath(file);
+        Path dir = path.getParent();
+        if (dir == null) {
+            return readAttributes(path);
+        }
+        String name = path.getFileName().toString();
+        long version;
+        synchronized (this) {
+            DirEntry e = current(dir);
+            if (e != null) {
+                if (e.listing != null) {
+                    return e.listing.get(name);
+                }
+                BasicFileAttributes attrs = e.attrs.get(name);
+                if (attrs != null) {
+                    return attrs;
+                }
+            }
+            version = invalidations;
+        }
+        BasicFileAttributes attrs = readAttributes(path);
+        if (attrs != null) {
+            synchronized (this) {
+                if (version == invalidations) {
+                    DirEntry e = entryFor(dir);
+                    if (e != null && e.listing == null) {
+                        if (e.attrs.put(name, attrs) == null) {
+                            entryCount++;
+                        }
+                        trim();
+                    }
+                }
+            }
+        }
+        return attrs;
+    }
+
+    /**
+     * List the directory, with directories first and then by name. Returns
+     * an empty map if the directory does not exist
+     *
+     * @param dir
+     * @return - an unmodifiable map of file names to their attributes
+     */
+    public Map<String, BasicFileAttributes> list(File dir) {
+        Path path = toPath(dir);
+        long version;
+        synchronized (this) {
+            DirEntry e = current(path);
+            if (e != null && e.listing != null) {
+                return e.listing;
+            }
+            version = invalidations;
+        }
+        Map<String, BasicFileAttributes> listing = readDirectory(path);
+        synchronized (this) {
+            if (version == invalidations && listing.size() <= maxEntries) {
+                DirEntry e = entryFor(path);
+                if (e != null) {
+                    entryCount -= e.attrs.size();
+                    e.attrs.clear();
+                    e.listing = listing;
+                    entryCount += listing.size();
+                    trim();
+                }
+            }
+        }
+        return listing;
+    }
+
+    /**
+     * Discard anything cached for the file, its parent directory's listing,
+     * and if it is a directory anything cached beneath it. Call after
+     * creating, changing, moving or deleting the file
+     *
+     * @param file
+     */
+    public void invalidate(File file) {
+        invalidate(toPath(file));
+    }
+
+    public synchronized void clear() {
+        invalidations++;
+        for (DirEntry e : dirs.values()) {
+            e.clear();
+        }
+        entryCount = 0;
+    }
+
+    /**
+     * The number of files with cached attributes
+     *
+     * @return
+     */
+    public synchronized int size() {
+        return entryCount;
+    }
+
+    @Override
+    public void stop() {
+        close();
+    }
+
+    @Override
+    public void close() {
+        WatchService ws;
+        synchronized (this) {
+            closed = true;
+            invalidations++;
+            dirs.clear();
+            dirsByName.clear();
+            entryCount = 0;
+            ws = watchService;
+            watchService = null;
+        }
+        if (ws != null) {
+            try {
+                ws.close();
+            } catch (IOException e) {
+                log.warn("Couldnt close watch service", e);
+            }
+        }
+    }
+
+    private synchronized void invalidate(Path path) {
+        invalidations++;
+        Path parent = path.getParent();
+        if (parent != null) {
+            DirEntry e = dirs.get(parent);
+            if (e != null) {
+                clear(e);
+            }
+        }
+        DirEntry e = dirs.get(path);
+        if (e != null) {
+            clear(e);
+        }
+        String s = path.toString();
+        String prefix = s.endsWith(File.separator) ? s : s + File.separator;
+        for (DirEntry child : dirsByName.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values()) {
+            clear(child);
+        }
+    }
+
+    /**
+     * Get the cached entry for the directory, discarding its contents if
+     * they have expired
+     */
+    private DirEntry current(Path dir) {
+        DirEntry e = dirs.get(dir);
+        if (e != null && maxAgeMillis > 0 && System.currentTimeMillis() - e.loaded > maxAgeMillis) {
+            clear(e);
+        }
+        return e;
+    }
+
+    /**
+     * Get or create the entry for the directory. Returns null if it cannot be
+     * watched, in which case nothing should be cached for it
+     */
+    private DirEntry entryFor(Path dir) {
+        if (closed) {
+            return null;
+        }
+        DirEntry e = dirs.get(dir);
+        if (e == null) {
+            WatchKey key = null;
+            if (watchEnabled) {
+                key = register(dir);
+                if (key == null) {
+                    return null;
+                }
+            }
+            e = new DirEntry(key);
+            dirs.put(dir, e);
+            dirsByName.put(dir.toString(), e);
+        }
+        if (e.isEmpty()) {
+            e.loaded = System.currentTimeMillis();
+        }
+        return e;
+    }
+
+    private WatchKey register(Path dir) {
+        try {
+            if (watchService == null) {
+                watchService = dir.getFileSystem().newWatchService();
+                Thread t = new Thread(this::watch, "milton-fs-watch");
+                t.setDaemon(true);
+                t.start();
+            }
+            return dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            log.warn("Couldnt watch directory, so will not cache it: " + dir, e);
+            return null;
+        }
+    }
+
+    private void watch() {
+        WatchService ws;
+        synchronized (this) {
+            ws = watchService;
+        }
+        while (ws != null) {
+            WatchKey key;
+            try {
+                key = ws.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            Path dir = (Path) key.watchable();
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    invalidate(dir);
+                } else {
+                    invalidate(dir.resolve((Path) event.context()));
+                }
+            }
+            if (!key.reset()) {
+                // the directory has gone, or is no longer accessible
+                synchronized (this) {
+                    DirEntry e = dirs.get(dir);
+                    if (e != null && e.key == key) {
+                        invalidations++;
+                        entryCount -= e.size();
+                        dirs.remove(dir);
+                        dirsByName.remove(dir.toString());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Discard least recently used directories until within maxEntries and
+     * maxDirectories. Directories are kept after their contents are cleared
+     * so that they stay watched, and are only discarded here
+     */
+    private void trim() {
+        Iterator<Map.Entry<Path, DirEntry>> it = dirs.entrySet().iterator();
+        while ((entryCount > maxEntries || dirs.size() > maxDirectories) && it.hasNext()) {
+            Map.Entry<Path, DirEntry> en = it.next();
+            DirEntry e = en.getValue();
+            dirsByName.remove(en.getKey().toString());
+            entryCount -= e.size();
+            if (e.key != null) {
+                e.key.cancel();
+            }
+            it.remove();
+        }
+    }
+
+    private void clear(DirEntry e) {
+        entryCount -= e.size();
+        e.clear();
+    }
+
+    private Map<String, BasicFileAttributes> readDirectory(Path dir) {
+        List<Map.Entry<String, BasicFileAttributes>> entries = new ArrayList<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir)) {
+            for (Path p : ds) {
+                BasicFileAttributes attrs = readAttributes(p);
+                if (attrs != null) {
+                    entries.add(new AbstractMap.SimpleImmutableEntry<>(p.getFileName().toString(), attrs));
+                }
+            }
+        } catch (IOException e) {
+            log.debug("Couldnt list directory: " + dir, e);
+        }
+        entries.sort(DIRECTORIES_FIRST);
+        Map<String, BasicFileAttributes> listing = new LinkedHashMap<>(entries.size() * 4 / 3 + 1);
+        for (Map.Entry<String, BasicFileAttributes> en : entries) {
+            listing.put(en.getKey(), en.getValue());
+        }
+        return Collections.unmodifiableMap(listing);
+    }
+
+    private BasicFileAttributes readAttributes(Path path) {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            log.debug("Couldnt read attributes: " + path, e);
+            return null;
+        }
+    }
+
+    private static Path toPath(File file) {
+        return file.getAbsoluteFile().toPath().normalize();
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Maximum number of files to hold attributes for, across all directories.
+     * Default 100000
+     *
+     * @param maxEntries
+     */
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    public int getMaxDirectories() {
+        return maxDirectories;
+    }
+
+    /**
+     * Maximum number of directories to cache and watch, including those whose
+     * contents have been invalidated. Default 10000
+     *
+     * @param maxDirectories
+     */
+    public void setMaxDirectories(int maxDirectories) {
+        this.maxDirectories = maxDirectories;
+    }
+
+    public long getMaxAgeMillis() {
+        return maxAgeMillis;
+    }
+
+    /**
+     * How long cached metadata is used before being read again, even if no
+     * change has been reported. Zero means no limit. Default 60 seconds
+     *
+     * @param maxAgeMillis
+     */
+    public void setMaxAgeMillis(long maxAgeMillis) {
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    public boolean isWatchEnabled() {
+        return watchEnabled;
+    }
+
+    /**
+     * If false, directories are not watched for changes and only milton's own
+     * writes and maxAgeMillis invalidate the cache. Use this only if nothing
+     * else changes the files. Default true
+     *
+     * @param watchEnabled
+     */
+    public void setWatchEnabled(boolean watchEnabled) {
+        this.watchEnabled = watchEnabled;
+    }
+
+    private static class DirEntry {
+
+        private final WatchKey key;
+        private final Map<String, BasicFileAttributes> attrs = new HashMap<>();
+        private Map<String, BasicFileAttributes> listing;
+        private long loaded;
+
+        DirEntry(WatchKey key) {
+            this.key = key;
+        }
+
+        int size() {
+            return listing != null ? listing.size() : attrs.size();
+        }
+
+        boolean isEmpty() {
+            return listing == null && attrs.isEmpty();
+        }
+
+        void clear() {
+            attrs.clear();
+            listing = null;
+        }
+    }
+}
@@ -26,6 +26,11 @@ import io.milton.http.ResourceFactory;
 import io.milton.http.WSManager;
 import io.milton.resource.Resource;
 import java.io.File;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Optional;
 
 import org.slf4j.Logger;
@@ -52,6 +57,7 @@ public final class FileSystemResourceFactory implements ResourceFactory {
     String defaultPage;
     boolean digestAllowed = true;
     private String ssoPrefix;
+    private FileMetadataCache metadataCache;
 
     /**
      * Creates and (optionally) initialises the factory. This looks for a
@@ -131,22 +137,77 @@ public final class FileSystemResourceFactory implements ResourceFactory {
     }
 
 
+    /**
+     * Resolves each parent directory once, then checks for the requested
+     * files directly in it
+     */
+    @Override
+    public Map<String, Resource> getResources(String host, Collection<String> paths) {
+        Map<String, Resource> results = new LinkedHashMap<>();
+        Map<Path, File> dirs = new HashMap<>();
+        for (String url : paths) {
+            Path path = Path.path(stripContext(url));
+            Path parent = path.getParent();
+            if (parent == null || path.getName() == null) {
+                results.put(url, resolveFile(host, resolvePath(root, path.toString())));
+                continue;
+            }
+            File dir = dirs.get(parent);
+            if (dir == null) {
+                dir = resolvePath(root, parent.toString());
+                dirs.put(parent, dir);
+            }
+            results.put(url, resolveFile(host, new File(dir, path.getName())));
+        }
+        return results;
+    }
+
     public FsResource resolveFile(String host, File file) {
-        FsResource r;
-        if (!file.exists()) {
+        BasicFileAttributes attributes = null;
+        if (metadataCache != null) {
+            attributes = metadataCache.getAttributes(file);
+            if (attributes == null) {
+                log.debug("file not found: " + file.getAbsolutePath());
+                return null;
+            }
+        } else if (!file.exists()) {
             log.debug("file not found: " + file.getAbsolutePath());
             return null;
-        } else if (file.isDirectory()) {
-            r = new FsDirectoryResource(host, this, file, contentService);
+        }
+        return resolveFile(host, file, attributes);
+    }
+
+    /**
+     * Create the resource for a file which is known to exist
+     *
+     * @param attributes - the file's attributes if known, otherwise null
+     */
+    FsResource resolveFile(String host, File file, BasicFileAttributes attributes) {
+        FsResource r;
+        if (contentService.isTempFile(file)) {
+            log.debug("not exposing temp file: " + file.getAbsolutePath());
+            return null;
+        } else if (attributes != null ? attributes.isDirectory() : file.isDirectory()) {
+            r = new FsDirectoryResource(host, this, file, contentService, attributes);
         } else {
             r = new FsFileResource(host, this, file, contentService);
         }
-        if (r != null) {
-            r.ssoPrefix = ssoPrefix;
-        }
+        r.attributes = attributes;
+        r.ssoPrefix = ssoPrefix;
         return r;
     }
 
+    /**
+     * Discard any cached metadata for the file. Called after milton changes it
+     *
+     * @param file
+     */
+    void invalidate(File file) {
+        if (metadataCache != null) {
+            metadataCache.invalidate(file);
+        }
+    }
+
     public File resolvePath(File root, String url) {
         Path path = Path.path(url);
         File f = root;
@@ -284,6 +345,20 @@ public final class FileSystemResourceFactory implements ResourceFactory {
         this.contentService = contentService;
     }
 
+    public FileMetadataCache getMetadataCache() {
+        return metadataCache;
+    }
+
+    /**
+     * If set, file attributes and directory listings are read through this
+     * cache. Default is null, so the file system is read on each request
+     *
+     * @param metadataCache
+     */
+    public void setMetadataCache(FileMetadataCache metadataCache) {
+        this.metadataCache = metadataCache;
+    }
+
     public void setWsManager(WSManager wsManager) {
         this.wsManager = wsManager;
     }
@@ -23,6 +23,7 @@ import io.milton.http.*;
 import io.milton.http.exceptions.NotAuthorizedException;
 import io.milton.resource.*;
 import java.io.*;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
 
 import org.apache.commons.io.FileUtils;
@@ -43,8 +44,19 @@ public class FsDirectoryResource extends FsResource implements MakeCollectionabl
     private final FileContentService contentService;
 
     public FsDirectoryResource(String host, FileSystemResourceFactory factory, File dir, FileContentService contentService) {
+        this(host, factory, dir, contentService, null);
+    }
+
+    /**
+     * @param attributes - if given, the directory is known to exist so is not
+     * checked again
+     */
+    FsDirectoryResource(String host, FileSystemResourceFactory factory, File dir, FileContentService contentService, BasicFileAttributes attributes) {
         super(host, factory, dir);
         this.contentService = contentService;
+        if (attributes != null) {
+            return;
+        }
         if (!dir.exists()) {
             throw new IllegalArgumentException("Directory does not exist: " + dir.getAbsolutePath());
         }
@@ -60,6 +72,7 @@ public class FsDirectoryResource extends FsResource implements MakeCollectionabl
         if (!ok) {
             throw new RuntimeException("Failed to create: " + fnew.getAbsolutePath());
         }
+        invalidate(fnew);
         factory.getWsManager().ifPresent(wsManager -> wsManager.notifyCreated(factory.toResourcePath(fnew)));
         return new FsDirectoryResource(host, factory, fnew, contentService);
     }
@@ -74,10 +87,24 @@ public class FsDirectoryResource extends FsResource implements MakeCollectionabl
     @Override
     public List<? extends Resource> getChildren() {
         ArrayList<FsResource> list = new ArrayList<>();
+        FileMetadataCache cache = factory.getMetadataCache();
+        if (cache != null) {
+            // already sorted, and attributes read once per file
+            for (Map.Entry<String, BasicFileAttributes> en : cache.list(file).entrySet()) {
+                FsResource res = factory.resolveFile(this.host, new File(file, en.getKey()), en.getValue());
+                if (res != null) {
+                    list.add(res);
+                }
+            }
+            return list;
+        }
         File[] files = Arrays.stream(Optional.ofNullable(this.file.listFiles()).orElse(new File[0]))
                 .sorted(Comparator.comparing(File::isDirectory).reversed().thenComparing(File::getName))
                 .toArray(File[]::new);
         for (File fchild : files) {
+            if (contentService.isTempFile(fchild)) {
+                continue;
+            }
             FsResource res = factory.resolveFile(this.host, fchild);
             if (res != null) {
                 list.add(res);
@@ -107,7 +134,8 @@ public class FsDirectoryResource extends FsResource implements MakeCollectionabl
     @Override
     public Resource createNew(String name, InputStream in, Long length, String contentType) throws IOException {
 		File dest = new File(this.getFile(), name);
-		contentService.setFileContent(dest, in);
+		contentService.setFileContent(dest, in, length);
+        invalidate(dest);
         factory.getWsManager().ifPresent(wsManager -> wsManager.notifyCreated(factory.toResourcePath(dest)));
         return factory.resolveFile(this.host, dest);
 
@@ -133,6 +161,7 @@ public class FsDirectoryResource extends FsResource implements MakeCollectionabl
     public LockToken createAndLock(String name, LockTimeout timeout, LockInfo lockInfo) throws NotAuthorizedException {
         File dest = new File(this.getFile(), name);
         createEmptyFile(dest);
+        invalidate(dest);
         FsFileResource newRes = new FsFileResource(host, factory, dest, contentService);
         LockResult res = newRes.lock(timeout, lockInfo);
         return res.getLockToken();
@@ -166,7 +195,7 @@ public class FsDirectoryResource extends FsResource implements MakeCollectionabl
     @Override
     public void sendContent(OutputStream out, Range range, Map<String, String> params, String contentType) throws IOException, NotAuthorizedException {
         //String uri = "/" + factory.getContextPath() + subpath;
-        XmlWriter w = new XmlWriter(out);
+        XmlWriter w = new XmlWriter(out, XmlWriter.utf8(), XmlWriter.DEFAULT_BUFFER_SIZE);
         w.open("html");
         w.open("head");
         w.writeText(""
@@ -31,14 +31,27 @@ import io.milton.http.exceptions.BadRequestException;
 import io.milton.http.exceptions.ConflictException;
 import io.milton.http.exceptions.NotAuthorizedException;
 import io.milton.http.exceptions.NotFoundException;
+import io.milton.http.http11.FileReplaceableResource;
+import io.milton.http.http11.PartialllyUpdateableResource;
 import io.milton.property.PropertySource;
 import io.milton.resource.*;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.List;
 import java.util.Map;
 
@@ -52,7 +65,7 @@ import javax.xml.namespace.QName;
 /**
  *
  */
-public class FsFileResource extends FsResource implements CopyableResource, DeletableResource, GetableResource, MoveableResource, PropFindableResource, ReplaceableResource, MultiNamespaceCustomPropertyResource {
+public class FsFileResource extends FsResource implements CopyableResource, DeletableResource, GetableResource, FileChannelResource, MoveableResource, PropFindableResource, ReplaceableResource, PartialllyUpdateableResource, FileReplaceableResource, MultiNamespaceCustomPropertyResource {
 
     private static final Logger log = LoggerFactory.getLogger(FsFileResource.class);
     
@@ -71,7 +84,7 @@ public class FsFileResource extends FsResource implements CopyableResource, Dele
 
     @Override
     public Long getContentLength() {
-        return file.length();
+        return length();
     }
 
     @Override
@@ -111,6 +124,18 @@ public class FsFileResource extends FsResource implements CopyableResource, Dele
         }
     }
 
+    /**
+     * The file can only be sent directly if the content service stores
+     * content as is
+     */
+    @Override
+    public Path getContentPath() {
+        if (contentService.isDirectAccess()) {
+            return file.toPath();
+        }
+        return null;
+    }
+
     /**
      * @{@inheritDoc}
      */
@@ -134,13 +159,109 @@ public class FsFileResource extends FsResource implements CopyableResource, Dele
 	@Override
 	public void replaceContent(InputStream in, Long length) throws BadRequestException, ConflictException, NotAuthorizedException {
 		try {
-			contentService.setFileContent(file, in);
+			contentService.setFileContent(file, in, length);
+            invalidate(file);
             factory.getWsManager().ifPresent(wsManager -> wsManager.notifyUpdated(factory.toResourcePath(file)));
 		} catch (IOException ex) {
 			throw new BadRequestException("Couldnt write to: " + file.getAbsolutePath(), ex);
 		}
 	}
 
+    /**
+     * Writes the range directly into the file, which is not atomic, and
+     * flushes it if the content service's forceOnWrite is set. If the content
+     * service does not store content as is, the content is read, updated and
+     * replaced
+     */
+    @Override
+    public void replacePartialContent(Range range, InputStream in) {
+        if (getContentPath() == null) {
+            replacePartialContentCopy(range, in);
+            return;
+        }
+        ReadableByteChannel src = Channels.newChannel(in);
+        try (FileChannel out = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            long position = range.getStart();
+            long end = range.getFinish() + 1;
+            if (position > out.size()) {
+                // transferFrom won't write beyond the end, so extend the file
+                out.write(ByteBuffer.allocate(1), position - 1);
+            }
+            while (position < end) {
+                long n = out.transferFrom(src, position, end - position);
+                if (n <= 0) {
+                    break; // client sent less than the range
+                }
+                position += n;
+            }
+            if (contentService.isForceOnWrite()) {
+                out.force(true);
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException("Couldnt write to: " + file.getAbsolutePath(), ex);
+        }
+        invalidate(file);
+        factory.getWsManager().ifPresent(wsManager -> wsManager.notifyUpdated(factory.toResourcePath(file)));
+    }
+
+    private void replacePartialContentCopy(Range range, InputStream in) {
+        try {
+            File temp = File.createTempFile("milton-partial", null);
+            try {
+                try (InputStream current = contentService.getFileContent(file)) {
+                    Files.copy(current, temp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+                try (FileChannel out = FileChannel.open(temp.toPath(), StandardOpenOption.WRITE)) {
+                    out.transferFrom(Channels.newChannel(in), range.getStart(), range.getLength());
+                }
+                try (InputStream updated = new BufferedInputStream(new FileInputStream(temp))) {
+                    contentService.setFileContent(file, updated);
+                }
+            } finally {
+                temp.delete();
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException("Couldnt write to: " + file.getAbsolutePath(), ex);
+        }
+        invalidate(file);
+        factory.getWsManager().ifPresent(wsManager -> wsManager.notifyUpdated(factory.toResourcePath(file)));
+    }
+
+    /**
+     * Moves the file into place, so the content changes atomically, with the
+     * existing file's permissions. If that is not possible, eg because it is on
+     * a different file system, it is copied
+     */
+    @Override
+    public void replaceContent(File content) throws BadRequestException, ConflictException, NotAuthorizedException {
+        if (getContentPath() != null) {
+            try {
+                if (contentService.isForceOnWrite()) {
+                    try (FileChannel ch = FileChannel.open(content.toPath(), StandardOpenOption.WRITE)) {
+                        ch.force(true);
+                    }
+                }
+                AtomicFileContentService.copyPermissions(file.toPath(), content.toPath());
+                Files.move(content.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                if (contentService.isForceOnWrite()) {
+                    AtomicFileContentService.forceDirectory(file.getAbsoluteFile().getParentFile().toPath());
+                }
+                invalidate(file);
+                factory.getWsManager().ifPresent(wsManager -> wsManager.notifyUpdated(factory.toResourcePath(file)));
+                return;
+            } catch (AtomicMoveNotSupportedException ex) {
+                log.debug("replaceContent: cannot move, will copy: " + content.getAbsolutePath());
+            } catch (IOException ex) {
+                throw new BadRequestException("Couldnt move to: " + file.getAbsolutePath(), ex);
+            }
+        }
+        try (InputStream in = new BufferedInputStream(new FileInputStream(content))) {
+            replaceContent(in, content.length());
+        } catch (IOException ex) {
+            throw new BadRequestException("Couldnt read: " + content.getAbsolutePath(), ex);
+        }
+    }
+
     @Override
     public Object getProperty(QName name) {
         final PropertyManager propertyManager = factory.getPropertyManager();
@@ -25,6 +25,7 @@ import io.milton.http.exceptions.NotAuthorizedException;
 import io.milton.http.http11.auth.DigestResponse;
 import io.milton.resource.*;
 import java.io.File;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Date;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -39,6 +40,11 @@ public abstract class FsResource implements Resource, MoveableResource, Copyable
     final FileSystemResourceFactory factory;
     final String host;
     String ssoPrefix;
+    /**
+     * Cached attributes from the factory's metadata cache, or null to read
+     * them from the file
+     */
+    BasicFileAttributes attributes;
 
     protected abstract void doCopy(File dest) throws NotAuthorizedException;
 
@@ -54,7 +60,7 @@ public abstract class FsResource implements Resource, MoveableResource, Copyable
 
     @Override
     public String getUniqueId() {
-        String s = file.lastModified() + "_" + file.length() + "_" + file.getAbsolutePath();
+        String s = lastModified() + "_" + length() + "_" + file.getAbsolutePath();
         return s.hashCode() + "";
     }
 
@@ -96,7 +102,28 @@ public abstract class FsResource implements Resource, MoveableResource, Copyable
 
 	@Override
     public Date getModifiedDate() {
-        return new Date(file.lastModified());
+        return new Date(lastModified());
+    }
+
+    long lastModified() {
+        BasicFileAttributes a = attributes;
+        return a != null ? a.lastModifiedTime().toMillis() : file.lastModified();
+    }
+
+    long length() {
+        BasicFileAttributes a = attributes;
+        return a != null ? a.size() : file.length();
+    }
+
+    /**
+     * Called after milton has changed the given file, which is this
+     * resource's file or one beneath it, so cached metadata is not used
+     *
+     * @param changed
+     */
+    void invalidate(File changed) {
+        attributes = null;
+        factory.invalidate(changed);
     }
 
     public Date getCreateDate() {
@@ -115,6 +142,8 @@ public abstract class FsResource implements Resource, MoveableResource, Copyable
             if (!ok) {
                 throw new RuntimeException("Failed to move to: " + dest.getAbsolutePath());
             }
+            invalidate(this.file);
+            invalidate(dest);
             this.file = dest;
             factory.getWsManager().ifPresent(wsManager -> wsManager.notifyMoved(factory.toResourcePath(newFsParent.getFile()), factory.toResourcePath(file)));
         } else {
@@ -127,6 +156,7 @@ public abstract class FsResource implements Resource, MoveableResource, Copyable
             FsDirectoryResource newFsParent = (FsDirectoryResource) newParent;
             File dest = new File(newFsParent.getFile(), newName);
             doCopy(dest);
+            factory.invalidate(dest);
             factory.getWsManager().ifPresent(wsManager -> wsManager.notifyCreated(factory.toResourcePath(dest)));
         } else {
             throw new RuntimeException("Destination is an unknown type. Must be a FsDirectoryResource, is a: " + newParent.getClass());
@@ -138,6 +168,7 @@ public abstract class FsResource implements Resource, MoveableResource, Copyable
         if (!ok) {
             throw new RuntimeException("Failed to delete");
         }
+        invalidate(file);
         factory.getWsManager().ifPresent(wsManager -> wsManager.notifyDeleted(factory.toResourcePath(file)));
     }
 
@@ -0,0 +1,523 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.milton.http.fs;
+
+import io.milton.common.Path;
+import io.milton.common.Stoppable;
+import io.milton.http.Auth;
+import io.milton.http.HttpManager;
+import io.milton.http.IndexedLockManager;
+import io.milton.http.LockInfo;
+import io.milton.http.LockPathIndex;
+import io.milton.http.LockResult;
+import io.milton.http.LockTimeout;
+import io.milton.http.LockToken;
+import io.milton.http.Request;
+import io.milton.http.exceptions.NotAuthorizedException;
+import io.milton.resource.LockableResource;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * In memory lock manager which keys on getUniqueId of the locked resource, like
+ * SimpleLockManager, but which scales to large numbers of locks and concurrent
+ * requests.
+ *
+ * Locks are held in a fixed number of stripes, selected by the hash of the
+ * resource's unique ID, so requests only contend when they lock resources in
+ * the same stripe. Locks are held as objects, not serialised, and are never
+ * evicted, so there is no limit on the number of locks other than memory.
+ *
+ * Expired locks are removed by a timer wheel, which is checked once per tick
+ * by a background thread. Lookups ignore locks which have expired but have not
+ * yet been removed, so the tick length only affects how long memory is held.
+ *
+ * Locks are also indexed by the decoded path of the request which created
+ * them, so locks under a collection, and depth infinity locks above a
+ * resource, can be found without walking the resource tree. The index follows
+ * moves and deletes reported through onMoved and onDeleted.
+ *
+ * Call stop() to end the background thread.
+ *
+ * @author brad
+ */
+public class ShardedLockManager implements IndexedLockManager, Stoppable {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardedLockManager.class);
+
+    public static final int DEFAULT_STRIPES = 64;
+    public static final long DEFAULT_TICK_MILLIS = 1000;
+    private static final int WHEEL_SIZE = 512;
+
+    private final Stripe[] stripes;
+    private final ConcurrentMap<String, LockRecord> locksByToken = new ConcurrentHashMap<>();
+    private final LockPathIndex<LockRecord> pathIndex = new LockPathIndex<>();
+    private final AtomicInteger unindexed = new AtomicInteger();
+    private final TimerWheel wheel;
+    private final ScheduledExecutorService timer;
+
+    public ShardedLockManager() {
+        this(DEFAULT_STRIPES, DEFAULT_TICK_MILLIS);
+    }
+
+    /**
+     *
+     * @param stripes - number of stripes, rounded up to a power of 2
+     * @param tickMillis - how often to check for expired locks
+     */
+    public ShardedLockManager(int stripes, long tickMillis) {
+        int n = 1;
+        while (n < stripes) {
+            n <<= 1;
+        }
+        this.stripes = new Stripe[n];
+        for (int i = 0; i < n; i++) {
+            this.stripes[i] = new Stripe();
+        }
+        this.wheel = new TimerWheel(tickMillis, System.currentTimeMillis());
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "milton-lock-expiry");
+            t.setDaemon(true);
+            return t;
+        });
+        timer.scheduleWithFixedDelay(() -> {
+            try {
+                expireLocks(System.currentTimeMillis());
+            } catch (Throwable e) {
+                log.error("Exception expiring locks", e);
+            }
+        }, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public LockResult lock(LockTimeout timeout, LockInfo lockInfo, LockableResource r) {
+        return lock(timeout, lockInfo, r.getUniqueId());
+    }
+
+    public LockResult lock(LockTimeout timeout, LockInfo lockInfo, String uniqueId) {
+        return lock(timeout, lockInfo, uniqueId, UUID.randomUUID().toString());
+    }
+
+    public LockResult lock(LockTimeout timeout, LockInfo lockInfo, String uniqueId, String token) {
+        Path path = null;
+        Request req = HttpManager.request();
+        if (req != null) {
+            path = Path.path(HttpManager.decodeUrl(req.getAbsolutePath()));
+        }
+        return lock(timeout, lockInfo, uniqueId, token, path);
+    }
+
+    /**
+     *
+     * @param path - the decoded path to index the lock under, or null if not
+     * known, in which case the index is no longer complete
+     */
+    public LockResult lock(LockTimeout timeout, LockInfo lockInfo, String uniqueId, String token, Path path) {
+        String lockedByUser = lockInfo.lockedByUser; // Use this by default, but will normally overwrite with current user
+        Request req = HttpManager.request();
+        if (req != null) {
+            Auth auth = req.getAuthorization();
+            if (auth != null && auth.getUser() != null) {
+                lockedByUser = auth.getUser();
+            }
+        }
+        long now = System.currentTimeMillis();
+        LockRecord newLock = new LockRecord(uniqueId, token, lockInfo, lockedByUser, timeout, now, path);
+        Stripe stripe = stripe(uniqueId);
+        synchronized (stripe) {
+            LockRecord cur = stripe.locks.get(uniqueId);
+            if (cur != null) {
+                if (!cur.isExpired(now)) {
+                    return LockResult.failed(LockResult.FailureReason.ALREADY_LOCKED);
+                }
+                remove(cur);
+            }
+            stripe.locks.put(uniqueId, newLock);
+            locksByToken.put(token, newLock);
+            if (path != null) {
+                pathIndex.add(path, newLock, newLock.isInfinite());
+            } else {
+                unindexed.incrementAndGet();
+            }
+        }
+        wheel.schedule(newLock);
+        log.trace("lock: {} as user {}", uniqueId, lockedByUser);
+        return LockResult.success(newLock.toLockToken());
+    }
+
+    @Override
+    public LockResult refresh(String tokenId, LockTimeout timeout, LockableResource resource) {
+        long now = System.currentTimeMillis();
+        LockRecord cur = locksByToken.get(tokenId);
+        if (cur == null) {
+            // Some clients (yes thats you cadaver) send etags instead of lock tokens in the If header
+            // So if the resource is locked just do a normal refresh
+            cur = currentLock(resource.getUniqueId(), now);
+        }
+        if (cur != null) {
+            Stripe stripe = stripe(cur.uniqueId);
+            synchronized (stripe) {
+                if (stripe.locks.get(cur.uniqueId) == cur && !cur.isExpired(now)) {
+                    cur.refresh(timeout, now);
+                    wheel.schedule(cur);
+                    return LockResult.success(cur.toLockToken());
+                }
+            }
+        }
+
+        log.warn("attempt to refresh missing token/etag: " + tokenId + " on resource: " + resource.getName() + " will create a new lock");
+        String lockedByUser = null;
+        Request req = HttpManager.request();
+        if (req != null && req.getAuthorization() != null) {
+            lockedByUser = req.getAuthorization().getUser();
+        } else {
+            log.warn("No user in context, lock wont be very effective");
+        }
+        LockInfo lockInfo = new LockInfo(LockInfo.LockScope.EXCLUSIVE, LockInfo.LockType.WRITE, lockedByUser, LockInfo.LockDepth.ZERO);
+        return lock(timeout, lockInfo, resource.getUniqueId());
+    }
+
+    @Override
+    public void unlock(String tokenId, LockableResource r) throws NotAuthorizedException {
+        String uniqueId = r.getUniqueId();
+        Stripe stripe = stripe(uniqueId);
+        synchronized (stripe) {
+            LockRecord cur = stripe.locks.get(uniqueId);
+            if (cur == null || cur.isExpired(System.currentTimeMillis())) {
+                log.debug("not locked");
+                return;
+            }
+            if (!cur.tokenId.equals(tokenId)) {
+                throw new NotAuthorizedException("Non-matching tokens: " + tokenId + " != " + cur.tokenId, r);
+            }
+            stripe.locks.remove(uniqueId);
+            remove(cur);
+        }
+    }
+
+    @Override
+    public LockToken getCurrentToken(LockableResource r) {
+        if (r == null) {
+            return null;
+        }
+        if (r.getUniqueId() == null) {
+            log.warn("No uniqueID for resource: " + r.getName() + " :: " + r.getClass());
+            return null;
+        }
+        LockRecord lock = currentLock(r.getUniqueId(), System.currentTimeMillis());
+        if (lock == null) {
+            return null;
+        }
+        return lock.toLockToken();
+    }
+
+    @Override
+    public List<LockToken> getLocksWithin(Path path) {
+        return toTokens(pathIndex.findWithin(path));
+    }
+
+    @Override
+    public List<LockToken> getCoveringLocks(Path path) {
+        return toTokens(pathIndex.findCovering(path));
+    }
+
+    @Override
+    public boolean isIndexComplete() {
+        return unindexed.get() == 0;
+    }
+
+    @Override
+    public void onMoved(Path from, Path to) {
+        int depth = from.getLength();
+        for (LockRecord lock : pathIndex.findWithin(from)) {
+            synchronized (stripe(lock.uniqueId)) {
+                Path old = lock.path;
+                if (locksByToken.get(lock.tokenId) != lock || old == null) {
+                    continue;
+                }
+                Path moved = to;
+                String[] parts = old.getParts();
+                for (int i = depth; i < parts.length; i++) {
+                    moved = moved.child(parts[i]);
+                }
+                // add before removing, so concurrent checks never miss the lock
+                pathIndex.add(moved, lock, lock.isInfinite());
+                pathIndex.remove(old, lock);
+                lock.path = moved;
+            }
+        }
+    }
+
+    @Override
+    public void onDeleted(Path path) {
+        for (LockRecord lock : pathIndex.findWithin(path)) {
+            Stripe stripe = stripe(lock.uniqueId);
+            synchronized (stripe) {
+                if (stripe.locks.get(lock.uniqueId) == lock) {
+                    stripe.locks.remove(lock.uniqueId);
+                }
+                remove(lock);
+            }
+        }
+    }
+
+    /**
+     * Remove all locks which have expired as of the given time. This is
+     * called by the background thread, but can be called directly to force
+     * expired locks out
+     *
+     * @param now
+     */
+    public void expireLocks(long now) {
+        wheel.advance(now, this);
+    }
+
+    /**
+     *
+     * @return - the number of locks held, including expired locks which have
+     * not yet been removed
+     */
+    public int getLockCount() {
+        return locksByToken.size();
+    }
+
+    public void clearLocks() {
+        log.warn("CLEARING LOCKS!!!");
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.locks.clear();
+            }
+        }
+        locksByToken.clear();
+        pathIndex.clear();
+        unindexed.set(0);
+    }
+
+    @Override
+    public void stop() {
+        timer.shutdownNow();
+    }
+
+    private LockRecord currentLock(String uniqueId, long now) {
+        Stripe stripe = stripe(uniqueId);
+        LockRecord cur;
+        synchronized (stripe) {
+            cur = stripe.locks.get(uniqueId);
+        }
+        if (cur == null || cur.isExpired(now)) {
+            return null;
+        }
+        return cur;
+    }
+
+    /**
+     *
+     * @return - false if the lock has been refreshed since it was found to be
+     * expired, in which case it is left in place
+     */
+    private boolean expire(LockRecord lock, long now) {
+        Stripe stripe = stripe(lock.uniqueId);
+        synchronized (stripe) {
+            if (!lock.isExpired(now)) {
+                return false;
+            }
+            if (stripe.locks.get(lock.uniqueId) == lock) {
+                stripe.locks.remove(lock.uniqueId);
+            }
+            remove(lock);
+        }
+        log.trace("expired lock: {}", lock.tokenId);
+        return true;
+    }
+
+    /**
+     * Remove from the token map and the path index. Must be called holding
+     * the lock's stripe
+     */
+    private void remove(LockRecord lock) {
+        if (locksByToken.remove(lock.tokenId, lock)) {
+            if (lock.path != null) {
+                pathIndex.remove(lock.path, lock);
+            } else {
+                unindexed.decrementAndGet();
+            }
+        }
+    }
+
+    private List<LockToken> toTokens(List<LockRecord> locks) {
+        long now = System.currentTimeMillis();
+        List<LockToken> list = new ArrayList<>(locks.size());
+        for (LockRecord lock : locks) {
+            if (!lock.isExpired(now)) {
+                list.add(lock.toLockToken());
+            }
+        }
+        return list;
+    }
+
+    private Stripe stripe(String uniqueId) {
+        int h = uniqueId.hashCode();
+        h ^= (h >>> 16);
+        return stripes[h & (stripes.length - 1)];
+    }
+
+    private static class Stripe {
+
+        final Map<String, LockRecord> locks = new HashMap<>();
+    }
+
+    /**
+     * A current lock. The timeout and from time change on refresh, and the
+     * path changes on move, everything else is fixed
+     */
+    static class LockRecord {
+
+        final String uniqueId;
+        final String tokenId;
+        final LockInfo info;
+        final String lockedByUser;
+        volatile Path path;
+        volatile LockTimeout timeout;
+        volatile long from;
+        volatile long expiresAt;
+        /**
+         * Whether the lock is in the timer wheel. Only set with
+         * compareAndSet, so a lock is never added twice
+         */
+        final AtomicBoolean scheduled = new AtomicBoolean();
+
+        LockRecord(String uniqueId, String tokenId, LockInfo info, String lockedByUser, LockTimeout timeout, long from, Path path) {
+            this.uniqueId = uniqueId;
+            this.tokenId = tokenId;
+            this.info = info;
+            this.lockedByUser = lockedByUser;
+            this.path = path;
+            refresh(timeout, from);
+        }
+
+        final void refresh(LockTimeout timeout, long now) {
+            this.timeout = timeout;
+            this.from = now;
+            Long secs = timeout == null ? null : timeout.getSeconds();
+            if (secs == null || secs > Long.MAX_VALUE / 1000 - now / 1000 - 1) {
+                expiresAt = Long.MAX_VALUE;
+            } else {
+                // same rounding as LockToken.isExpired
+                expiresAt = now + (secs + 1) * 1000;
+            }
+        }
+
+        boolean isExpired(long now) {
+            return now >= expiresAt;
+        }
+
+        boolean isInfinite() {
+            return info.depth == LockInfo.LockDepth.INFINITY;
+        }
+
+        LockToken toLockToken() {
+            LockInfo li = new LockInfo(info.scope, info.type, lockedByUser, info.depth);
+            LockToken token = new LockToken(tokenId, li, timeout);
+            token.setFrom(new Date(from));
+            return token;
+        }
+    }
+
+    /**
+     * Hashed timer wheel. Each slot holds the locks due to expire in ticks
+     * which map to that slot. Locks due in a later revolution, or which have
+     * been refreshed, are put back in the wheel when their slot comes around
+     * instead of being expired
+     */
+    private static class TimerWheel {
+
+        private final long tickMillis;
+        private final List<ConcurrentLinkedQueue<LockRecord>> slots;
+        private volatile long lastTick;
+
+        TimerWheel(long tickMillis, long now) {
+            this.tickMillis = tickMillis;
+            this.slots = new ArrayList<>(WHEEL_SIZE);
+            for (int i = 0; i < WHEEL_SIZE; i++) {
+                slots.add(new ConcurrentLinkedQueue<>());
+            }
+            this.lastTick = now / tickMillis;
+        }
+
+        void schedule(LockRecord lock) {
+            if (lock.expiresAt == Long.MAX_VALUE) {
+                return;
+            }
+            if (lock.scheduled.compareAndSet(false, true)) {
+                add(lock);
+            }
+        }
+
+        private void add(LockRecord lock) {
+            long tick = Math.max((lock.expiresAt + tickMillis - 1) / tickMillis, lastTick + 1);
+            slots.get((int) (tick & (WHEEL_SIZE - 1))).add(lock);
+        }
+
+        synchronized void advance(long now, ShardedLockManager manager) {
+            long nowTick = now / tickMillis;
+            long from = lastTick + 1;
+            // no need to visit a slot more than once
+            long start = Math.max(from, nowTick - WHEEL_SIZE + 1);
+            lastTick = Math.max(lastTick, nowTick);
+            for (long tick = start; tick <= nowTick; tick++) {
+                ConcurrentLinkedQueue<LockRecord> slot = slots.get((int) (tick & (WHEEL_SIZE - 1)));
+                // only visit locks which were in the slot when we started, re-added locks go to the tail
+                for (int n = slot.size(); n > 0; n--) {
+                    LockRecord lock = slot.poll();
+                    if (lock == null) {
+                        break;
+                    }
+                    if (lock.isExpired(now) && manager.expire(lock, now)) {
+                        lock.scheduled.set(false);
+                    } else if (lock.expiresAt == Long.MAX_VALUE) {
+                        // refreshed with infinite timeout. A refresh to a finite timeout
+                        // after the check above would have seen the flag still set and
+                        // not scheduled the lock, so try again now the flag is cleared
+                        lock.scheduled.set(false);
+                        schedule(lock);
+                    } else {
+                        add(lock);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -43,4 +43,13 @@ public class SimpleFileContentService implements FileContentService {
     public InputStream getFileContent(File file) throws FileNotFoundException {
         return new FileInputStream(file);
     }
+
+    /**
+     * Subclasses might transform content on the way in or out, so only
+     * claim direct access for this exact class
+     */
+    @Override
+    public boolean isDirectAccess() {
+        return getClass() == SimpleFileContentService.class;
+    }
 }
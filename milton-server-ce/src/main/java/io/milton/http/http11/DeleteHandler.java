@@ -43,11 +43,13 @@ public class DeleteHandler implements ExistingEntityHandler {
 	private final Logger log = LoggerFactory.getLogger(DeleteHandler.class);
 	private final Http11ResponseHandler responseHandler;
 	private final ResourceHandlerHelper resourceHandlerHelper;
+	private final HandlerHelper handlerHelper;
 	private DeleteHelper deleteHelper;
 
 	public DeleteHandler(Http11ResponseHandler responseHandler, ResourceHandlerHelper resourceHandlerHelper, HandlerHelper handlerHelper) {
 		this.responseHandler = responseHandler;
 		this.resourceHandlerHelper = resourceHandlerHelper;
+		this.handlerHelper = handlerHelper;
 		deleteHelper = new DeleteHelperImpl(handlerHelper);
 	}
 
@@ -89,13 +91,15 @@ public class DeleteHandler implements ExistingEntityHandler {
 
 		DeletableResource r = (DeletableResource) resource;
 
-		if (deleteHelper.isLockedOut(request, r)) {
+		String path = HandlerHelper.getDecodedPath(request);
+		if (deleteHelper.isLockedOut(request, r, path)) {
 			log.info("Could not delete. Is locked");
 			responseHandler.respondDeleteFailed(request, response, r, Status.SC_LOCKED);
 			return;
 		}
 
 		deleteHelper.delete(r, manager.getEventManager());
+		handlerHelper.onDeleted(path);
 		log.debug("deleted ok");
 		responseHandler.respondNoContent(resource, response, request);
 
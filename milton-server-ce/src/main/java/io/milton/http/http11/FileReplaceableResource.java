@@ -0,0 +1,45 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.milton.http.http11;
+
+import io.milton.http.exceptions.BadRequestException;
+import io.milton.http.exceptions.ConflictException;
+import io.milton.http.exceptions.NotAuthorizedException;
+import io.milton.resource.ReplaceableResource;
+
+import java.io.File;
+
+/**
+ * A resource which can take its new content from a complete local file, for
+ * example by moving the file into place, instead of copying from a stream.
+ *
+ * Used when a resumable upload completes, see ResumableUploadManager
+ *
+ * @author brad
+ */
+public interface FileReplaceableResource extends ReplaceableResource {
+    /**
+     * Replace the content with that of the given file. The file is temporary,
+     * so implementations may move it rather than copying it
+     *
+     * @param content - the complete new content
+     */
+    void replaceContent(File content) throws BadRequestException, ConflictException, NotAuthorizedException;
+}
@@ -46,6 +46,7 @@ public class GetHandler implements ExistingEntityHandler {
 	private final ResourceHandlerHelper resourceHandlerHelper;
 	private final PartialGetHelper partialGetHelper;
 	private final MatchHelper matchHelper;
+	private PutHandler resumableUploadHandler;
 
 	public GetHandler(Http11ResponseHandler responseHandler, ResourceHandlerHelper resourceHandlerHelper, MatchHelper matchHelper, PartialGetHelper partialGetHelper) {
 		this.responseHandler = responseHandler;
@@ -57,6 +58,11 @@ public class GetHandler implements ExistingEntityHandler {
 	@Override
 	public void process(HttpManager manager, Request request, Response response) throws NotAuthorizedException, ConflictException, BadRequestException {
 		log.debug("process");
+		if (resumableUploadHandler != null && request.getMethod().equals(Method.HEAD) && ResumableUploadManager.getSessionId(request) != null) {
+			// the resource might not exist yet, so this is answered by the PUT handler
+			resumableUploadHandler.processUploadOffset(manager, request, response);
+			return;
+		}
 		this.resourceHandlerHelper.process(manager, request, response, this);
 	}
 
@@ -229,4 +235,19 @@ public class GetHandler implements ExistingEntityHandler {
 			throw new RuntimeException(e);
 		}
 	}
+
+	/**
+	 * If set, HEAD requests with an Upload-Session header are passed to it to
+	 * respond with the offset of that resumable upload, once the user is
+	 * allowed to PUT there
+	 *
+	 * @return
+	 */
+	public PutHandler getResumableUploadHandler() {
+		return resumableUploadHandler;
+	}
+
+	public void setResumableUploadHandler(PutHandler resumableUploadHandler) {
+		this.resumableUploadHandler = resumableUploadHandler;
+	}
 }
@@ -39,15 +39,31 @@ public class Http11Protocol implements HttpExtension{
 
     private List<CustomPostHandler> customPostHandlers;
 
+    private final GetHandler getHandler;
+
+    private final PutHandler putHandler;
+
     public Http11Protocol(Http11ResponseHandler responseHandler, HandlerHelper handlerHelper, ResourceHandlerHelper resourceHandlerHelper, boolean enableOptionsAuth, MatchHelper matchHelper, PartialGetHelper partialGetHelper) {
         this.handlers = new HashSet<>();
         this.handlerHelper = handlerHelper;
         handlers.add(new OptionsHandler(responseHandler, resourceHandlerHelper, handlerHelper, enableOptionsAuth));
-        handlers.add(new GetHandler(responseHandler, resourceHandlerHelper, matchHelper, partialGetHelper));
+        getHandler = new GetHandler(responseHandler, resourceHandlerHelper, matchHelper, partialGetHelper);
+        handlers.add(getHandler);
         handlers.add(new PostHandler(responseHandler, resourceHandlerHelper));
         handlers.add(new DeleteHandler(responseHandler, resourceHandlerHelper, handlerHelper));
 		PutHelper putHelper = new PutHelper();
-        handlers.add(new PutHandler(responseHandler, handlerHelper, putHelper, matchHelper));
+        putHandler = new PutHandler(responseHandler, handlerHelper, putHelper, matchHelper);
+        handlers.add(putHandler);
+    }
+
+    /**
+     * Enable resumable uploads, see ResumableUploadManager
+     *
+     * @param resumableUploadManager - null to disable
+     */
+    public void setResumableUploadManager(ResumableUploadManager resumableUploadManager) {
+        putHandler.setResumableUploadManager(resumableUploadManager);
+        getHandler.setResumableUploadHandler(resumableUploadManager == null ? null : putHandler);
     }
 
 	@Override
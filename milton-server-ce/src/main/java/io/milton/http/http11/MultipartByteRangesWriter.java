@@ -0,0 +1,180 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.milton.http.http11;
+
+import io.milton.common.RangeUtils;
+import io.milton.common.Utils;
+import io.milton.http.Range;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Writes a multipart/byteranges response body by reading each range directly
+ * from its position in a file, so ranges can be in any order and nothing is
+ * buffered.
+ *
+ * Because each part's headers are known in advance the exact content length
+ * can be given before writing starts
+ *
+ * @author brad
+ */
+public class MultipartByteRangesWriter {
+
+	private final List<Range> parts;
+	private final long totalLength;
+	private final String boundary;
+	private final String contentType;
+
+	/**
+	 *
+	 * @param parts - absolute ranges within the file, as returned by coalesce
+	 * @param totalLength - the length of the file
+	 * @param boundary
+	 * @param contentType - optional
+	 */
+	public MultipartByteRangesWriter(List<Range> parts, long totalLength, String boundary, String contentType) {
+		this.parts = parts;
+		this.totalLength = totalLength;
+		this.boundary = boundary;
+		this.contentType = contentType;
+	}
+
+	/**
+	 * Convert requested ranges to absolute ranges within a resource of the
+	 * given length, and combine any which overlap or are adjacent, as allowed
+	 * by RFC 7233 section 4.1.
+	 *
+	 * Suffix ranges (no start) are the last n bytes, ranges with no finish go
+	 * to the end, finishes beyond the end are truncated and ranges starting
+	 * beyond the end are dropped. Otherwise ranges are kept in the order
+	 * requested, with merged ranges taking the place of the first
+	 *
+	 * @param ranges
+	 * @param totalLength
+	 * @return
+	 */
+	public static List<Range> coalesce(List<Range> ranges, long totalLength) {
+		List<long[]> list = new ArrayList<>();
+		for (Range r : ranges) {
+			long start;
+			long finish;
+			if (r.getStart() == null) {
+				if (r.getFinish() == null) {
+					continue;
+				}
+				start = Math.max(0, totalLength - r.getFinish());
+				finish = totalLength - 1;
+			} else {
+				start = r.getStart();
+				finish = r.getFinish() == null ? totalLength - 1 : Math.min(r.getFinish(), totalLength - 1);
+			}
+			if (start > finish) {
+				continue;
+			}
+			long[] part = {start, finish};
+			int pos = -1;
+			for (int i = 0; i < list.size(); ) {
+				long[] other = list.get(i);
+				if (part[0] <= other[1] + 1 && other[0] <= part[1] + 1) {
+					part = new long[]{Math.min(other[0], part[0]), Math.max(other[1], part[1])};
+					list.remove(i);
+					if (pos < 0 || i < pos) {
+						pos = i;
+					}
+					i = 0; // the merged part might now touch parts already checked
+				} else {
+					i++;
+				}
+			}
+			if (pos < 0) {
+				list.add(part);
+			} else {
+				list.add(pos, part);
+			}
+		}
+		List<Range> result = new ArrayList<>(list.size());
+		for (long[] part : list) {
+			result.add(new Range(part[0], part[1]));
+		}
+		return result;
+	}
+
+	/**
+	 * Ranges sorted by position, for writers which can only read content
+	 * sequentially
+	 *
+	 * @param ranges - absolute ranges, as returned by coalesce
+	 * @return
+	 */
+	public static List<Range> sorted(List<Range> ranges) {
+		List<Range> list = new ArrayList<>(ranges);
+		list.sort(Comparator.comparing(Range::getStart));
+		return list;
+	}
+
+	/**
+	 *
+	 * @return - the exact number of bytes which write will output
+	 */
+	public long getContentLength() {
+		long l = 0;
+		for (Range r : parts) {
+			l += partHeader(r).length + r.getLength();
+		}
+		return l + closeDelimiter().length;
+	}
+
+	public void write(FileChannel in, OutputStream out) throws IOException {
+		WritableByteChannel channel = Channels.newChannel(out);
+		for (Range r : parts) {
+			out.write(partHeader(r));
+			long position = r.getStart();
+			long end = r.getFinish() + 1;
+			while (position < end) {
+				long n = in.transferTo(position, end - position, channel);
+				if (n <= 0) {
+					throw new IOException("File is shorter than expected, could not read from position " + position);
+				}
+				position += n;
+			}
+		}
+		out.write(closeDelimiter());
+		out.flush();
+	}
+
+	private byte[] partHeader(Range r) {
+		StringBuilder sb = new StringBuilder();
+		sb.append("\r\n--").append(boundary).append("\r\n");
+		if (contentType != null) {
+			sb.append("Content-Type: ").append(contentType).append("\r\n");
+		}
+		sb.append("Content-Range: ").append(RangeUtils.toRangeString(r.getStart(), r.getFinish(), totalLength)).append("\r\n\r\n");
+		return sb.toString().getBytes(Utils.UTF8);
+	}
+
+	private byte[] closeDelimiter() {
+		return ("\r\n--" + boundary + "--\r\n").getBytes(Utils.UTF8);
+	}
+}
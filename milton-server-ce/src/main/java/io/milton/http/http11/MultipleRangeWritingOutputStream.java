@@ -39,7 +39,7 @@ public class MultipleRangeWritingOutputStream extends OutputStream {
 	private final String boundary;
 	private final String contentType;
 
-	private int currentByte;
+	private long currentByte;
 	private Range currentRange;
 
 	/**
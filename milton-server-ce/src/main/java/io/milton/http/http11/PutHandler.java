@@ -24,6 +24,8 @@ import io.milton.common.Path;
 import io.milton.common.RandomFileOutputStream;
 import io.milton.event.NewFolderEvent;
 import io.milton.event.PutEvent;
+import io.milton.http.Auth;
+import io.milton.http.AuthenticationService.AuthStatus;
 import io.milton.http.FileItem;
 import io.milton.http.Handler;
 import io.milton.http.HandlerHelper;
@@ -70,6 +72,7 @@ public class PutHandler implements Handler {
 	private final HandlerHelper handlerHelper;
 	private final PutHelper putHelper;
 	private final MatchHelper matchHelper;
+	private ResumableUploadManager resumableUploadManager;
 
 	public PutHandler(Http11ResponseHandler responseHandler, HandlerHelper handlerHelper, PutHelper putHelper, MatchHelper matchHelper) {
 		this.responseHandler = responseHandler;
@@ -128,6 +131,19 @@ public class PutHandler implements Handler {
 		urlToCreateOrUpdate = path.toString();
 
 		Resource existingResource = manager.getResourceFactory().getResource(host, urlToCreateOrUpdate);
+
+		// a resumable upload is checked against its total length, not each chunk's
+		String uploadSession = resumableUploadManager == null ? null : ResumableUploadManager.getSessionId(request);
+		long[] contentRange = null;
+		Long newContentLength = request.getContentLengthHeader();
+		if (uploadSession != null) {
+			contentRange = ResumableUploadManager.parseContentRange(request.getContentRangeHeader());
+			if (contentRange == null) {
+				throw new BadRequestException(existingResource, "A resumable upload requires a Content-Range header with start, finish and total length");
+			}
+			newContentLength = contentRange[2];
+		}
+
 		StorageErrorReason storageErr = null;
 		if (existingResource != null) {
 			if (!handlerHelper.checkAuthorisation(manager, existingResource, request)) {
@@ -155,7 +171,7 @@ public class PutHandler implements Handler {
 			Resource parent = manager.getResourceFactory().getResource(host, path.getParent().toString());
 			if (parent instanceof CollectionResource) {
 				CollectionResource parentCol = (CollectionResource) parent;
-				storageErr = handlerHelper.checkStorageOnReplace(request, parentCol, existingResource, host);
+				storageErr = handlerHelper.checkStorageOnReplace(request, parentCol, existingResource, host, newContentLength);
 			} else {
 				log.warn("parent exists but is not a collection resource: " + path.getParent());
 			}
@@ -185,7 +201,7 @@ public class PutHandler implements Handler {
 				responseHandler.respondUnauthorised(parentCol, response, request);
 				return;
 			}
-			storageErr = handlerHelper.checkStorageOnAdd(request, parentCol, path.getParent(), host);
+			storageErr = handlerHelper.checkStorageOnAdd(request, parentCol, path.getParent(), host, newContentLength);
 		}
 
 		if (storageErr != null) {
@@ -193,6 +209,15 @@ public class PutHandler implements Handler {
 			return;
 		}
 
+		if (uploadSession != null) {
+			if (!resumableUploadManager.hasSpace(host, urlToCreateOrUpdate, uploadSession, contentRange[2])) {
+				respondInsufficientStorage(request, response, StorageErrorReason.SER_DISK_FULL);
+				return;
+			}
+			processResumable(manager, request, response, existingResource, path, uploadSession, contentRange);
+			return;
+		}
+
 		ReplaceableResource replacee;
 		if (existingResource instanceof ReplaceableResource) {
 			replacee = (ReplaceableResource) existingResource;
@@ -244,6 +269,109 @@ public class PutHandler implements Handler {
 		}
 	}
 
+	/**
+	 * Write a chunk of a resumable upload, and once all content has been
+	 * received create or replace the resource with it
+	 */
+	private void processResumable(HttpManager manager, Request request, Response response, Resource existingResource, Path path, String sessionId, long[] contentRange) throws ConflictException, BadRequestException, NotAuthorizedException {
+		String host = request.getHostHeader();
+		String url = path.toString();
+		long offset = resumableUploadManager.getOffset(host, url, sessionId);
+		if (contentRange[0] > offset) {
+			log.info("resumable upload chunk starts at " + contentRange[0] + " but only " + offset + " bytes have been received");
+			response.setNonStandardHeader(ResumableUploadManager.HEADER_OFFSET, Long.toString(offset));
+			response.setStatus(Status.SC_CONFLICT);
+			return;
+		}
+		try {
+			offset = resumableUploadManager.write(host, url, sessionId, contentRange[0], contentRange[1], request.getInputStream());
+		} catch (IOException ex) {
+			log.warn("IOException reading input stream. Probably interrupted upload: " + ex.getMessage());
+			// in case the client is still there, tell it where to resume from
+			response.setNonStandardHeader(ResumableUploadManager.HEADER_OFFSET, Long.toString(resumableUploadManager.getOffset(host, url, sessionId)));
+			response.setStatus(Status.SC_CONFLICT);
+			return;
+		}
+		long total = contentRange[2];
+		if (offset < total) {
+			response.setNonStandardHeader(ResumableUploadManager.HEADER_OFFSET, Long.toString(offset));
+			response.setStatus(Status.SC_ACCEPTED);
+			return;
+		}
+
+		LogUtils.debug(log, "resumable upload complete: ", url, " length: ", total);
+		File content = resumableUploadManager.getFile(host, url, sessionId);
+		try {
+			if (existingResource instanceof ReplaceableResource) {
+				ReplaceableResource replacee = (ReplaceableResource) existingResource;
+				if (replacee instanceof FileReplaceableResource) {
+					((FileReplaceableResource) replacee).replaceContent(content);
+				} else {
+					try (InputStream in = new BufferedInputStream(new FileInputStream(content))) {
+						replacee.replaceContent(in, total);
+					}
+				}
+				manager.getEventManager().fireEvent(new PutEvent(replacee));
+				responseHandler.respondNoContent(replacee, response, request);
+			} else {
+				CollectionResource folder = findOrCreateFolders(manager, host, path.getParent(), request);
+				if (folder instanceof PutableResource) {
+					if (handlerHelper.isLockedOut(request, folder)) {
+						respondLocked(request, response, folder);
+						return;
+					}
+					String ct = putHelper.findContentTypes(request, path.getName());
+					Resource newlyCreated;
+					try (InputStream in = new BufferedInputStream(new FileInputStream(content))) {
+						newlyCreated = ((PutableResource) folder).createNew(path.getName(), in, total, ct);
+					}
+					manager.getEventManager().fireEvent(new PutEvent(newlyCreated));
+					manager.getResponseHandler().respondCreated(newlyCreated, response, request);
+				} else if (folder != null) {
+					manager.getResponseHandler().respondMethodNotImplemented(folder, response, request);
+					return;
+				} else {
+					responseHandler.respondNotFound(response, request);
+					return;
+				}
+			}
+		} catch (IOException ex) {
+			throw new RuntimeException("Could not read completed upload: " + content.getAbsolutePath(), ex);
+		}
+		resumableUploadManager.remove(host, url, sessionId);
+	}
+
+	/**
+	 * Answer a HEAD request for a resumable upload session with the offset to
+	 * resume from. The resource might not exist yet, so the user must be
+	 * allowed to PUT to it, or to its nearest parent if it doesn't exist
+	 */
+	public void processUploadOffset(HttpManager manager, Request request, Response response) throws NotAuthorizedException, ConflictException, BadRequestException {
+		String host = request.getHostHeader();
+		Path path = Path.path(HttpManager.decodeUrl(request.getAbsolutePath()));
+		Resource r = manager.getResourceFactory().getResource(host, path.toString());
+		if (r == null) {
+			r = putHelper.findNearestParent(manager, host, path.getParent());
+			if (r == null) {
+				responseHandler.respondNotFound(response, request);
+				return;
+			}
+		}
+		AuthStatus authStatus = handlerHelper.checkAuthentication(manager, r, request);
+		if (authStatus != null && authStatus.loginFailed) {
+			responseHandler.respondUnauthorised(r, response, request);
+			return;
+		}
+		Auth auth = authStatus == null ? null : authStatus.auth;
+		if (!handlerHelper.checkAuthorisation(manager, r, request, Method.PUT, auth)) {
+			responseHandler.respondUnauthorised(r, response, request);
+			return;
+		}
+		long offset = resumableUploadManager.getOffset(host, path.toString(), ResumableUploadManager.getSessionId(request));
+		response.setNonStandardHeader(ResumableUploadManager.HEADER_OFFSET, Long.toString(offset));
+		response.setStatus(Status.SC_NO_CONTENT);
+	}
+
 	private void processCreate(HttpManager manager, Request request, Response response, PutableResource folder, String newName) throws ConflictException, BadRequestException, NotAuthorizedException {
 
 		LogUtils.debug(log, "process: putting to: ", folder.getName());
@@ -453,6 +581,20 @@ public class PutHandler implements Handler {
 
 	}
 
+	/**
+	 * If set, PUT requests with an Upload-Session header are handled as
+	 * resumable uploads
+	 *
+	 * @return
+	 */
+	public ResumableUploadManager getResumableUploadManager() {
+		return resumableUploadManager;
+	}
+
+	public void setResumableUploadManager(ResumableUploadManager resumableUploadManager) {
+		this.resumableUploadManager = resumableUploadManager;
+	}
+
 	private void respondLocked(Request request, Response response, Resource existingResource) {
 		if (responseHandler instanceof WebDavResponseHandler) {
 			WebDavResponseHandler rh = (WebDavResponseHandler) responseHandler;
@@ -0,0 +1,324 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.milton.http.http11;
+
+import io.milton.http.Request;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import org.apache.commons.codec.binary.Hex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Holds the content of resumable uploads until they are complete.
+ *
+ * A client starts or continues an upload by sending PUT requests with an
+ * Upload-Session header, which is an id it chooses (it should be unguessable,
+ * eg a random UUID), and a Content-Range header giving the position of the
+ * chunk and the total length, eg "bytes 0-4194303/10737418240".
+ *
+ * Chunks are written by position to a session file, and the resource is only
+ * created or replaced once the whole length has been received. Until then PUT
+ * responds with 202 Accepted and an Upload-Offset header, which is the number
+ * of bytes received so far. If a connection is lost the client can find the
+ * offset to resume from with a HEAD request including the Upload-Session
+ * header.
+ *
+ * Chunks must start at or before the current offset, a gap results in a 409
+ * Conflict with the current offset.
+ *
+ * Sessions which have not been written to for maxAgeSeconds are deleted. Use
+ * hasSpace before accepting a chunk to bound the disk space held by sessions.
+ *
+ * When complete, session files are moved into place where the resource allows
+ * it (see FileReplaceableResource), which is only possible if the upload
+ * directory is on the same file system as the resource. So the default
+ * constructor does not choose a directory; HttpManagerBuilder puts it beside
+ * the root of a FileSystemResourceFactory, and otherwise java.io.tmpdir is
+ * used
+ *
+ * @author brad
+ */
+public class ResumableUploadManager {
+
+	private static final Logger log = LoggerFactory.getLogger(ResumableUploadManager.class);
+
+	public static final String HEADER_SESSION = "Upload-Session";
+	public static final String HEADER_OFFSET = "Upload-Offset";
+
+	private volatile File uploadDir;
+	private final long maxAgeMillis;
+	private long maxUploadBytes;
+
+	public ResumableUploadManager(File uploadDir, int maxAgeSeconds) {
+		this.uploadDir = uploadDir;
+		this.maxAgeMillis = maxAgeSeconds * 1000L;
+	}
+
+	public ResumableUploadManager() {
+		this(null, 60 * 60 * 24);
+	}
+
+	/**
+	 * An upload directory beside the given root directory, so that completed
+	 * uploads can be moved into place. This is on the same file system as the
+	 * root unless the root is itself a mount point
+	 *
+	 * @param rootDir
+	 * @return
+	 */
+	public static File uploadDirFor(File rootDir) {
+		File root = rootDir.getAbsoluteFile();
+		File parent = root.getParentFile();
+		if (parent == null) {
+			return new File(root, ".milton-uploads");
+		}
+		return new File(parent, "." + root.getName() + "-uploads");
+	}
+
+	/**
+	 * Find the upload session id given by the client, if any
+	 *
+	 * @param request
+	 * @return
+	 */
+	public static String getSessionId(Request request) {
+		for (Map.Entry<String, String> e : request.getHeaders().entrySet()) {
+			if (HEADER_SESSION.equalsIgnoreCase(e.getKey())) {
+				return e.getValue();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Parse a Content-Range header which gives a start, finish and total
+	 * length
+	 *
+	 * @param header - eg "bytes 0-99/1000"
+	 * @return - start, finish and total, or null if the header is missing or
+	 * does not give all three
+	 */
+	public static long[] parseContentRange(String header) {
+		if (header == null || !header.startsWith("bytes ")) {
+			return null;
+		}
+		String s = header.substring(6).trim();
+		int dashPos = s.indexOf('-');
+		int slashPos = s.indexOf('/');
+		if (dashPos < 1 || slashPos < dashPos) {
+			return null;
+		}
+		try {
+			long start = Long.parseLong(s.substring(0, dashPos));
+			long finish = Long.parseLong(s.substring(dashPos + 1, slashPos));
+			long total = Long.parseLong(s.substring(slashPos + 1));
+			if (start > finish || finish >= total) {
+				return null;
+			}
+			return new long[]{start, finish, total};
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Check that there is room to hold the rest of an upload. The remaining
+	 * bytes must fit in the free space of the upload directory, and if
+	 * maxUploadBytes is set the total, plus what is held for other sessions,
+	 * must not exceed it
+	 *
+	 * @param total - the total length of the upload, from Content-Range
+	 * @return
+	 */
+	public boolean hasSpace(String host, String path, String sessionId, long total) {
+		File dir = dir();
+		File f = getFile(host, path, sessionId);
+		long received = f.exists() ? f.length() : 0;
+		long usable = findExisting(dir).getUsableSpace();
+		if (total - received > usable) {
+			log.warn("not enough disk space for upload of " + total + " bytes, available: " + usable);
+			return false;
+		}
+		if (maxUploadBytes > 0) {
+			long held = 0;
+			File[] files = dir.listFiles();
+			if (files != null) {
+				for (File other : files) {
+					if (!other.equals(f)) {
+						held += other.length();
+					}
+				}
+			}
+			if (held + total > maxUploadBytes) {
+				log.warn("upload of " + total + " bytes would exceed maxUploadBytes, already held: " + held);
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 *
+	 * @return - the number of bytes received for the session, zero if it is
+	 * not known
+	 */
+	public long getOffset(String host, String path, String sessionId) {
+		File f = getFile(host, path, sessionId);
+		return f.exists() ? f.length() : 0;
+	}
+
+	/**
+	 * Write a chunk of content. The caller should check that start is not
+	 * beyond the current offset
+	 *
+	 * @param start - the position of the first byte in the chunk
+	 * @param finish - the position of the last byte in the chunk
+	 * @param in - the chunk content
+	 * @return - the offset after writing, ie the total bytes received
+	 * @throws IOException
+	 */
+	public long write(String host, String path, String sessionId, long start, long finish, InputStream in) throws IOException {
+		File f = getFile(host, path, sessionId);
+		if (!f.exists()) {
+			removeExpired();
+			File dir = dir();
+			if (!dir.exists() && !dir.mkdirs()) {
+				throw new IOException("Could not create upload directory: " + dir.getAbsolutePath());
+			}
+		}
+		ReadableByteChannel src = Channels.newChannel(in);
+		try (FileChannel out = FileChannel.open(f.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+			long position = start;
+			long end = finish + 1;
+			while (position < end) {
+				long n = out.transferFrom(src, position, end - position);
+				if (n <= 0) {
+					break; // client sent less than it said, keep what was received
+				}
+				position += n;
+			}
+			return out.size();
+		}
+	}
+
+	/**
+	 *
+	 * @return - the file holding the session's content. It may not exist
+	 */
+	public File getFile(String host, String path, String sessionId) {
+		return new File(dir(), key(host, path, sessionId));
+	}
+
+	/**
+	 * Discard a session, eg once it has been completed
+	 */
+	public void remove(String host, String path, String sessionId) {
+		File f = getFile(host, path, sessionId);
+		if (f.exists() && !f.delete()) {
+			log.warn("Could not delete upload session file: " + f.getAbsolutePath());
+		}
+	}
+
+	private void removeExpired() {
+		File[] files = dir().listFiles();
+		if (files == null) {
+			return;
+		}
+		long oldest = System.currentTimeMillis() - maxAgeMillis;
+		for (File f : files) {
+			if (f.lastModified() < oldest) {
+				log.debug("removing expired upload session: " + f.getName());
+				f.delete();
+			}
+		}
+	}
+
+	/**
+	 * Session files are named from a digest, so ids and paths given by clients
+	 * can't refer to other files
+	 */
+	private String key(String host, String path, String sessionId) {
+		try {
+			MessageDigest md = MessageDigest.getInstance("SHA-256");
+			md.update(String.valueOf(host).getBytes(StandardCharsets.UTF_8));
+			md.update((byte) 0);
+			md.update(path.getBytes(StandardCharsets.UTF_8));
+			md.update((byte) 0);
+			md.update(sessionId.getBytes(StandardCharsets.UTF_8));
+			return Hex.encodeHexString(md.digest()) + ".upload";
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException("SHA-256", e);
+		}
+	}
+
+	private File dir() {
+		File dir = uploadDir;
+		if (dir == null) {
+			dir = new File(System.getProperty("java.io.tmpdir"), "milton-uploads");
+			log.warn("No upload directory set, using " + dir.getAbsolutePath() + ". Completed uploads will be copied if it is on a different file system to the resources");
+			uploadDir = dir;
+		}
+		return dir;
+	}
+
+	private static File findExisting(File dir) {
+		File f = dir.getAbsoluteFile();
+		while (!f.exists() && f.getParentFile() != null) {
+			f = f.getParentFile();
+		}
+		return f;
+	}
+
+	/**
+	 *
+	 * @return - the directory holding session files, or null if one has not
+	 * been chosen yet
+	 */
+	public File getUploadDir() {
+		return uploadDir;
+	}
+
+	public void setUploadDir(File uploadDir) {
+		this.uploadDir = uploadDir;
+	}
+
+	/**
+	 * The most bytes to hold for all sessions together. Zero, the default,
+	 * means uploads are only limited by the free space in the upload directory
+	 *
+	 * @return
+	 */
+	public long getMaxUploadBytes() {
+		return maxUploadBytes;
+	}
+
+	public void setMaxUploadBytes(long maxUploadBytes) {
+		this.maxUploadBytes = maxUploadBytes;
+	}
+}
@@ -0,0 +1,176 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.milton.http.http11.auth;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.commons.codec.binary.Base64;
+
+/**
+ * Remembers the result of verifying credentials for a short time, so that
+ * clients which send the same credentials on every request (which is all of
+ * them with Basic auth) only cause the password to be checked once per
+ * timeToLiveSeconds.
+ *
+ * Credentials are not held in memory. Entries are keyed on a SHA-256 digest
+ * of the credentials and a random salt generated for each cache instance.
+ *
+ * Only successful results are cached, so failed logins are always checked.
+ * Note that a changed or revoked password will continue to be accepted until
+ * its entry expires, so keep the time to live short
+ *
+ * @author brad
+ */
+public class AuthenticationResultCache {
+
+	private static final ThreadLocal<MessageDigest> DIGEST = ThreadLocal.withInitial(() -> {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException("SHA-256", e);
+		}
+	});
+
+	private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+	private final byte[] salt = new byte[16];
+	private final long timeToLiveMillis;
+	private final int maxEntries;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	public AuthenticationResultCache(int timeToLiveSeconds, int maxEntries) {
+		this.timeToLiveMillis = timeToLiveSeconds * 1000L;
+		this.maxEntries = maxEntries;
+		new SecureRandom().nextBytes(salt);
+	}
+
+	public AuthenticationResultCache() {
+		this(60, 10000);
+	}
+
+	/**
+	 * Create the key to use for the given credentials. Include anything which
+	 * might change the result, such as host and realm
+	 *
+	 * @param parts
+	 * @return
+	 */
+	public String key(String... parts) {
+		MessageDigest md = DIGEST.get();
+		md.reset();
+		md.update(salt);
+		for (String s : parts) {
+			if (s != null) {
+				md.update(s.getBytes(StandardCharsets.UTF_8));
+			}
+			md.update((byte) 0);
+		}
+		return Base64.encodeBase64URLSafeString(md.digest());
+	}
+
+	/**
+	 *
+	 * @param key - from key()
+	 * @return - the cached result, or null if not known or expired
+	 */
+	public Object get(String key) {
+		Entry e = entries.get(key);
+		if (e != null) {
+			if (e.expires > System.currentTimeMillis()) {
+				hits.incrementAndGet();
+				return e.result;
+			}
+			entries.remove(key, e);
+		}
+		misses.incrementAndGet();
+		return null;
+	}
+
+	/**
+	 * Record a successful result. Null results are ignored
+	 *
+	 * @param key
+	 * @param result
+	 */
+	public void put(String key, Object result) {
+		if (result == null) {
+			return;
+		}
+		long now = System.currentTimeMillis();
+		if (entries.size() >= maxEntries) {
+			removeExpired(now);
+			if (entries.size() >= maxEntries) {
+				return;
+			}
+		}
+		entries.put(key, new Entry(result, now + timeToLiveMillis));
+	}
+
+	public void clear() {
+		entries.clear();
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 *
+	 * @return - hits as a fraction of lookups, or zero if there have been none
+	 */
+	public double getHitRate() {
+		long h = hits.get();
+		long total = h + misses.get();
+		return total == 0 ? 0 : (double) h / total;
+	}
+
+	private void removeExpired(long now) {
+		Iterator<Entry> it = entries.values().iterator();
+		while (it.hasNext()) {
+			if (it.next().expires <= now) {
+				it.remove();
+			}
+		}
+	}
+
+	private static class Entry {
+
+		private final Object result;
+		private final long expires;
+
+		Entry(Object result, long expires) {
+			this.result = result;
+			this.expires = expires;
+		}
+	}
+}
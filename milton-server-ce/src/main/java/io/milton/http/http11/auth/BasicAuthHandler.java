@@ -23,6 +23,11 @@ import io.milton.http.Auth;
 import io.milton.http.Auth.Scheme;
 import io.milton.http.AuthenticationHandler;
 import io.milton.http.Request;
+import io.milton.http.ResourceFactory;
+import io.milton.http.exceptions.BadRequestException;
+import io.milton.http.exceptions.NotAuthorizedException;
+import io.milton.principal.DiscretePrincipal;
+import io.milton.principal.Principal.PrincipleId;
 import io.milton.resource.Resource;
 import java.util.List;
 import org.slf4j.Logger;
@@ -36,6 +41,9 @@ public class BasicAuthHandler implements AuthenticationHandler {
 
     private static final Logger log = LoggerFactory.getLogger( BasicAuthHandler.class );
 
+	private AuthenticationResultCache resultCache;
+	private ResourceFactory principalResourceFactory;
+
 	@Override
 	public boolean credentialsPresent(Request request) {
 		return request.getAuthorization() != null;
@@ -64,11 +72,47 @@ public class BasicAuthHandler implements AuthenticationHandler {
     public Object authenticate( Resource resource, Request request ) {
         log.trace( "authenticate" );
         Auth auth = request.getAuthorization();
+		String cacheKey = null;
+		if( resultCache != null && principalResourceFactory != null ) {
+			cacheKey = resultCache.key( "basic", request.getHostHeader(), resource.getRealm(), auth.getUser(), auth.getPassword() );
+			Object cached = resultCache.get( cacheKey );
+			if( cached != null ) {
+				Resource user = findPrincipal( request.getHostHeader(), cached.toString() );
+				if( user != null ) {
+					log.trace( "cached result: {}", cached );
+					return user;
+				}
+			}
+		}
         Object o = resource.authenticate( auth.getUser(), auth.getPassword() );
         log.trace( "result: {}", o );
+		if( cacheKey != null && o instanceof DiscretePrincipal ) {
+			// the result may be bound to this request, so only remember who it was
+			PrincipleId id = ( (DiscretePrincipal) o ).getIdenitifer();
+			if( id != null && id.getValue() != null ) {
+				resultCache.put( cacheKey, id.getValue() );
+			}
+		}
         return o;
     }
 
+	/**
+	 * Locate the principal for a cached user url, so that each request gets
+	 * its own principal object
+	 */
+	private Resource findPrincipal( String host, String userUrl ) {
+		try {
+			Resource r = principalResourceFactory.getResource( host, userUrl );
+			if( r instanceof DiscretePrincipal ) {
+				return r;
+			}
+			log.warn( "Cached user url did not resolve to a principal: {}", userUrl );
+		} catch( NotAuthorizedException | BadRequestException ex ) {
+			log.warn( "Couldnt locate cached user: " + userUrl, ex );
+		}
+		return null;
+	}
+
 	@Override
     public void appendChallenges( Resource resource, Request request, List<String> challenges ) {
 		if( resource == null ) {
@@ -81,4 +125,34 @@ public class BasicAuthHandler implements AuthenticationHandler {
     public boolean isCompatible( Resource resource, Request request ) {
         return true;
     }
+
+	/**
+	 * If set, along with the principalResourceFactory, successful results are
+	 * remembered so the password is not checked again on every request. Only
+	 * the principal's url is cached, and the principal is located again from
+	 * it for each request
+	 *
+	 * @return
+	 */
+	public AuthenticationResultCache getResultCache() {
+		return resultCache;
+	}
+
+	public void setResultCache(AuthenticationResultCache resultCache) {
+		this.resultCache = resultCache;
+	}
+
+	/**
+	 * Used to locate principals by their url when a cached result is found.
+	 * Only results which are a DiscretePrincipal can be cached
+	 *
+	 * @return
+	 */
+	public ResourceFactory getPrincipalResourceFactory() {
+		return principalResourceFactory;
+	}
+
+	public void setPrincipalResourceFactory(ResourceFactory principalResourceFactory) {
+		this.principalResourceFactory = principalResourceFactory;
+	}
 }
@@ -15,9 +15,11 @@
  */
 package io.milton.http.http11.auth;
 
+import java.nio.charset.Charset;
 import java.security.InvalidKeyException;
-import java.security.Key;
 import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
 import org.apache.commons.codec.binary.Base64;
@@ -29,20 +31,56 @@ import org.apache.commons.codec.binary.Base64;
 public class HmacUtils {
 
 	private static final String HMAC_SHA1_ALGORITHM = "HmacSHA1";
-	
-	public static String calcShaHash(String data, String key) {		
-		String result = null;
-		try {
-			Key signingKey = new SecretKeySpec(key.getBytes(), HMAC_SHA1_ALGORITHM);
-			Mac mac = Mac.getInstance(HMAC_SHA1_ALGORITHM);
-			mac.init(signingKey);
-			byte[] rawHmac = mac.doFinal(data.getBytes());
-			result = Base64.encodeBase64URLSafeString(rawHmac);
-		} catch (NoSuchAlgorithmException | IllegalStateException | InvalidKeyException e) {
-			throw new RuntimeException(HMAC_SHA1_ALGORITHM, e);
-		}
 
-        return result;
+	/**
+	 * Limits the number of Mac instances held by each thread, in case keys are
+	 * generated dynamically
+	 */
+	private static final int MAX_MACS_PER_THREAD = 16;
+
+	private static final ThreadLocal<Map<String, Mac>> MACS = ThreadLocal.withInitial(HashMap::new);
+
+	public static String calcShaHash(String data, String key) {
+		byte[] rawHmac = mac(HMAC_SHA1_ALGORITHM, key).doFinal(data.getBytes());
+		return Base64.encodeBase64URLSafeString(rawHmac);
+	}
+
+	/**
+	 * As for mac(algorithm, key, charset), using the platform charset for the
+	 * key as calcShaHash always has, so existing signatures remain valid
+	 */
+	static Mac mac(String algorithm, String key) {
+		return mac(algorithm, key, Charset.defaultCharset());
+	}
+
+	/**
+	 * Get a Mac initialised with the given key for use by the current thread.
+	 * Creating and initialising a Mac is much more expensive than using one,
+	 * so instances are reused. doFinal resets the Mac, so it is ready for
+	 * the next caller
+	 *
+	 * @param algorithm
+	 * @param key
+	 * @param charset - used to convert the key to bytes
+	 * @return
+	 */
+	static Mac mac(String algorithm, String key, Charset charset) {
+		Map<String, Mac> macs = MACS.get();
+		String cacheKey = algorithm + ":" + charset.name() + ":" + key;
+		Mac mac = macs.get(cacheKey);
+		if (mac == null) {
+			try {
+				mac = Mac.getInstance(algorithm);
+				mac.init(new SecretKeySpec(key.getBytes(charset), algorithm));
+			} catch (NoSuchAlgorithmException | IllegalStateException | InvalidKeyException e) {
+				throw new RuntimeException(algorithm, e);
+			}
+			if (macs.size() >= MAX_MACS_PER_THREAD) {
+				macs.clear();
+			}
+			macs.put(cacheKey, mac);
+		}
+		return mac;
 	}
 	
 
@@ -0,0 +1,176 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.milton.http.http11.auth;
+
+import io.milton.http.http11.auth.NonceProvider.NonceValidity;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Records which nonce-count values have been used with each nonce, to detect
+ * replayed requests.
+ *
+ * Clients such as IE send nonce-count values out of order, so rather than
+ * requiring each value to be greater then the last this keeps the highest
+ * value seen plus a bitmap of the 64 values below it, and accepts any value
+ * which has not been seen and is within that window.
+ *
+ * Entries are held in a fixed number of stripes, each with its own lock, and
+ * are discarded once the nonce has expired or when a stripe is full. Memory
+ * use is therefore bounded regardless of the number of clients. Once a nonce's
+ * entry has been discarded its earlier values can't be told apart from new
+ * ones, so a nonce which is not being tracked is only accepted with a
+ * nonce-count of 1, ie on its first use, and only if it was issued after the
+ * last entry discarded from its stripe. Otherwise the client must get a new
+ * nonce
+ *
+ * @author brad
+ */
+public class NonceCountWindow {
+
+	private static final int WINDOW_SIZE = 64;
+
+	private final long validityMillis;
+	private final int maxEntriesPerStripe;
+	private final Stripe[] stripes;
+
+	/**
+	 *
+	 * @param nonceValiditySeconds - entries older than this are discarded
+	 * @param maxEntries - the most nonces to track at once
+	 * @param stripes - the number of independently locked partitions
+	 */
+	public NonceCountWindow(int nonceValiditySeconds, int maxEntries, int stripes) {
+		this.validityMillis = nonceValiditySeconds * 1000L;
+		this.maxEntriesPerStripe = Math.max(1, maxEntries / stripes);
+		this.stripes = new Stripe[stripes];
+		for (int i = 0; i < stripes; i++) {
+			this.stripes[i] = new Stripe();
+		}
+	}
+
+	public NonceCountWindow(int nonceValiditySeconds) {
+		this(nonceValiditySeconds, 100000, 16);
+	}
+
+	/**
+	 * Record the use of a nonce-count value
+	 *
+	 * @param nonce - identifies the nonce
+	 * @param issued - when the nonce was issued, used to expire the entry
+	 * @param nc - the nonce-count given by the client
+	 * @return - OK if the value has not been used, INVALID if it has already
+	 * been used or is more than 64 below the highest value seen, or EXPIRED if
+	 * the nonce is not being tracked and might have been discarded or the
+	 * value is not 1, since it can't be known whether it has been used
+	 */
+	public NonceValidity check(String nonce, long issued, long nc) {
+		if (nc < 1) {
+			return NonceValidity.INVALID;
+		}
+		Stripe stripe = stripes[(nonce.hashCode() & 0x7fffffff) % stripes.length];
+		synchronized (stripe) {
+			stripe.removeExpired(System.currentTimeMillis() - validityMillis);
+			Window w = stripe.get(nonce);
+			if (w == null) {
+				if (nc != 1 || issued <= stripe.discardedIssued) {
+					return NonceValidity.EXPIRED;
+				}
+				w = new Window(issued);
+				stripe.put(nonce, w);
+			}
+			return w.accept(nc) ? NonceValidity.OK : NonceValidity.INVALID;
+		}
+	}
+
+	public int size() {
+		int size = 0;
+		for (Stripe s : stripes) {
+			synchronized (s) {
+				size += s.size();
+			}
+		}
+		return size;
+	}
+
+	private class Stripe extends LinkedHashMap<String, Window> {
+
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * The latest issue time of any entry discarded to make room
+		 */
+		private long discardedIssued;
+
+		/**
+		 * Entries are in the order nonces were first seen, which is close to the
+		 * order they were issued, so stop at the first which has not expired
+		 */
+		void removeExpired(long oldest) {
+			Iterator<Window> it = values().iterator();
+			while (it.hasNext()) {
+				if (it.next().issued >= oldest) {
+					break;
+				}
+				it.remove();
+			}
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Window> eldest) {
+			if (size() > maxEntriesPerStripe) {
+				discardedIssued = Math.max(discardedIssued, eldest.getValue().issued);
+				return true;
+			}
+			return false;
+		}
+	}
+
+	private static class Window {
+
+		private final long issued;
+		private long highest;
+		private long seen;
+
+		Window(long issued) {
+			this.issued = issued;
+		}
+
+		boolean accept(long nc) {
+			if (nc > highest) {
+				long shift = nc - highest;
+				seen = shift >= WINDOW_SIZE ? 0 : seen << shift;
+				seen |= 1;
+				highest = nc;
+				return true;
+			}
+			long diff = highest - nc;
+			if (diff >= WINDOW_SIZE) {
+				return false;
+			}
+			long mask = 1L << diff;
+			if ((seen & mask) != 0) {
+				return false;
+			}
+			seen |= mask;
+			return true;
+		}
+	}
+}
@@ -0,0 +1,191 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.milton.http.http11.auth;
+
+import io.milton.http.Request;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.List;
+import javax.crypto.Mac;
+import org.apache.commons.codec.binary.Base64;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A NonceProvider which keeps no record of issued nonces. Instead each nonce
+ * carries the time it was issued and a HMAC signature, so any server with the
+ * same keys can validate it. This is suitable for server clusters, and memory
+ * use does not depend on the number of clients.
+ *
+ * The format of a nonce is scope + issued + "." + random + "." + signature,
+ * where scope is "u" if the nonce was issued for a particular user, in which
+ * case that user is included in the signature, otherwise "a"
+ *
+ * Keys are used in the same way as cookie signing keys, the last is used to
+ * sign new nonces and all are accepted when validating, so keys can be
+ * rotated.
+ *
+ * Nonce-count checking is optional, and uses a NonceCountWindow which is held
+ * in memory on each server. So replays sent to a different server in a
+ * cluster will not be detected.
+ *
+ * @author brad
+ */
+public class SignedNonceProvider implements NonceProvider {
+
+	private static final Logger log = LoggerFactory.getLogger(SignedNonceProvider.class);
+	private static final String HMAC_ALGORITHM = "HmacSHA256";
+	private static final int SIGNATURE_BYTES = 16;
+
+	private final int nonceValiditySeconds;
+	private final List<String> keys;
+	private final SecureRandom random = new SecureRandom();
+	private NonceCountWindow nonceCountWindow;
+
+	/**
+	 *
+	 * @param nonceValiditySeconds
+	 * @param keys - the last is used to sign new nonces, all are used to
+	 * validate
+	 */
+	public SignedNonceProvider(int nonceValiditySeconds, List<String> keys) {
+		if (keys == null || keys.isEmpty()) {
+			throw new IllegalArgumentException("At least one signing key is required");
+		}
+		this.nonceValiditySeconds = nonceValiditySeconds;
+		this.keys = keys;
+	}
+
+	@Override
+	public String createNonce(Request request) {
+		return createNonce(System.currentTimeMillis(), null);
+	}
+
+	@Override
+	public String createNonce(Request request, String userUrl) {
+		return createNonce(System.currentTimeMillis(), userUrl);
+	}
+
+	String createNonce(long issued, String userId) {
+		String scope = userId == null ? "a" : "u";
+		String message = scope + Long.toHexString(issued) + "." + Long.toHexString(random.nextLong());
+		return message + "." + sign(message, userId, keys.get(keys.size() - 1));
+	}
+
+	@Override
+	public NonceValidity getNonceValidity(String nonce, Long nonceCount) {
+		return getNonceValidity(nonce, nonceCount, null);
+	}
+
+	@Override
+	public NonceValidity getNonceValidity(String nonce, Long nonceCount, String userId) {
+		if (nonce == null) {
+			return NonceValidity.INVALID;
+		}
+		int sigPos = nonce.lastIndexOf('.');
+		int randomPos = nonce.indexOf('.');
+		if (randomPos < 2 || sigPos <= randomPos) {
+			log.debug("nonce is not in the expected format");
+			return NonceValidity.INVALID;
+		}
+		String message = nonce.substring(0, sigPos);
+		String signature = nonce.substring(sigPos + 1);
+		char scope = nonce.charAt(0);
+		String signedUser;
+		if (scope == 'a') {
+			signedUser = null;
+		} else if (scope == 'u' && userId != null) {
+			signedUser = userId;
+		} else {
+			log.debug("nonce was issued for a user, but no user was given");
+			return NonceValidity.INVALID;
+		}
+		if (!isSignatureValid(message, signedUser, signature)) {
+			log.warn("nonce signature is not valid");
+			return NonceValidity.INVALID;
+		}
+		long issued;
+		try {
+			issued = Long.parseLong(nonce.substring(1, randomPos), 16);
+		} catch (NumberFormatException e) {
+			return NonceValidity.INVALID;
+		}
+		long age = System.currentTimeMillis() - issued;
+		if (age < 0 || age / 1000 > nonceValiditySeconds) {
+			log.debug("nonce has expired");
+			return NonceValidity.EXPIRED;
+		}
+		if (nonceCount != null && nonceCountWindow != null) {
+			NonceValidity ncValidity = nonceCountWindow.check(message, issued, nonceCount);
+			if (ncValidity == NonceValidity.EXPIRED) {
+				// not tracked, eg discarded to make room, so have the client get a new nonce
+				log.debug("nonce-count can't be checked for an untracked nonce. nc: " + nonceCount);
+				return NonceValidity.EXPIRED;
+			} else if (ncValidity != NonceValidity.OK) {
+				log.warn("nonce-count has already been used, possible replay attack. nc: " + nonceCount);
+				return NonceValidity.INVALID;
+			}
+		}
+		return NonceValidity.OK;
+	}
+
+	private boolean isSignatureValid(String message, String userId, String signature) {
+		byte[] given = signature.getBytes(StandardCharsets.UTF_8);
+		// check from the newest key, since that is what most nonces will use
+		for (int i = keys.size() - 1; i >= 0; i--) {
+			byte[] expected = sign(message, userId, keys.get(i)).getBytes(StandardCharsets.UTF_8);
+			if (MessageDigest.isEqual(expected, given)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private String sign(String message, String userId, String key) {
+		Mac mac = HmacUtils.mac(HMAC_ALGORITHM, key, StandardCharsets.UTF_8);
+		mac.update(message.getBytes(StandardCharsets.UTF_8));
+		if (userId != null) {
+			mac.update((byte) 0);
+			mac.update(userId.getBytes(StandardCharsets.UTF_8));
+		}
+		byte[] raw = mac.doFinal();
+		byte[] truncated = new byte[SIGNATURE_BYTES];
+		System.arraycopy(raw, 0, truncated, 0, SIGNATURE_BYTES);
+		return Base64.encodeBase64URLSafeString(truncated);
+	}
+
+	public int getNonceValiditySeconds() {
+		return nonceValiditySeconds;
+	}
+
+	/**
+	 * If set, nonce-count values are checked so that each can only be used
+	 * once for a nonce. Null, the default, means nonce-count is not checked
+	 *
+	 * @return
+	 */
+	public NonceCountWindow getNonceCountWindow() {
+		return nonceCountWindow;
+	}
+
+	public void setNonceCountWindow(NonceCountWindow nonceCountWindow) {
+		this.nonceCountWindow = nonceCountWindow;
+	}
+}
@@ -35,7 +35,9 @@ import io.milton.resource.PutableResource;
 import io.milton.resource.Resource;
 
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -99,6 +101,16 @@ public class JsonResourceFactory implements ResourceFactory {
 		return null;
 	}
 
+	@Override
+	public Map<String, Resource> getResources(String host, Collection<String> paths) throws NotAuthorizedException, BadRequestException {
+		for (String sPath : paths) {
+			if (isMatchingPath(Path.path(sPath).getParent()) || isAjaxLoginPath(sPath)) {
+				return ResourceFactory.super.getResources(host, paths);
+			}
+		}
+		return wrapped.getResources(host, paths);
+	}
+
 	private boolean isMatchingPath(Path parent) {
 		return parent != null && parent.getName() != null && parent.getName().equals(DAV_FOLDER);
 	}
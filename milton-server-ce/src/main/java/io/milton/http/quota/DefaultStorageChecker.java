@@ -47,6 +47,11 @@ public class DefaultStorageChecker implements StorageChecker {
 
 	@Override
     public StorageErrorReason checkStorageOnReplace( Request request, CollectionResource parent, Resource replaced, String host ) {
+        return checkStorageOnReplace( request, parent, replaced, host, request.getContentLengthHeader() );
+    }
+
+	@Override
+    public StorageErrorReason checkStorageOnReplace( Request request, CollectionResource parent, Resource replaced, String host, Long newContentLength ) {
         if( parent instanceof QuotaResource ) {
             QuotaResource qr = (QuotaResource) parent;
             Long llAvail = qr.getQuotaAvailable();
@@ -56,7 +61,6 @@ public class DefaultStorageChecker implements StorageChecker {
             }
             if( llAvail <= 0 ) {
                 // new content length must be less then existing
-                Long newContentLength = request.getContentLengthHeader();
                 if( newContentLength == null ) {
                     log.debug( "new content length is not available, cant check quota, reject" );
                     return StorageErrorReason.SER_QUOTA_EXCEEDED;
@@ -82,7 +86,6 @@ public class DefaultStorageChecker implements StorageChecker {
                 }
             } else {
                 // difference of new content to existing must be less then available, but if in doubt allow
-                Long newContentLength = request.getContentLengthHeader();
                 if( newContentLength == null ) {
                     log.debug( "new content length is not available, cant check quota, allow" );
                     return null;
@@ -116,6 +119,11 @@ public class DefaultStorageChecker implements StorageChecker {
     }
 
     public StorageErrorReason checkStorageOnAdd( Request request, CollectionResource nearestParent, Path parentPath, String host ) {
+        return checkStorageOnAdd( request, nearestParent, parentPath, host, request.getContentLengthHeader() );
+    }
+
+	@Override
+    public StorageErrorReason checkStorageOnAdd( Request request, CollectionResource nearestParent, Path parentPath, String host, Long newContentLength ) {
         if( nearestParent instanceof QuotaResource ) {
             QuotaResource qr = (QuotaResource) nearestParent;
             Long llAvail = qr.getQuotaAvailable();
@@ -128,7 +136,6 @@ public class DefaultStorageChecker implements StorageChecker {
                 return StorageErrorReason.SER_QUOTA_EXCEEDED;
             } else {
                 // new content must be less then that available
-                Long newContentLength = request.getContentLengthHeader();
                 if( newContentLength == null ) {
                     log.debug( "new content length is not available, cant check quota, allow" );
                     return null;
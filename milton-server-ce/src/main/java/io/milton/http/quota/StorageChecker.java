@@ -56,6 +56,17 @@ public interface StorageChecker {
      */
     StorageErrorReason checkStorageOnReplace(Request request, CollectionResource parent, Resource replaced, String host);
 
+    /**
+     * As above, but for when the size of the new content is not the request's
+     * content length, eg a resumable upload where each request is one chunk.
+     * Implementations which don't override this check the request as usual
+     *
+     * @param newContentLength - the length of the complete new content
+     */
+    default StorageErrorReason checkStorageOnReplace(Request request, CollectionResource parent, Resource replaced, String host, Long newContentLength) {
+        return checkStorageOnReplace(request, parent, replaced, host);
+    }
+
     /**
      * Check to see if the operation should be allowed, when there is no existing
      * resource. The parent collection may or may not exist, so only its path is
@@ -67,4 +78,13 @@ public interface StorageChecker {
      * @return - null if the operation should proceed, or the reason for the failure
      */
     StorageErrorReason checkStorageOnAdd(Request request, CollectionResource nearestParent, Path parentPath, String host);
+
+    /**
+     * As above, but with the length of the complete new content given
+     *
+     * @param newContentLength - the length of the complete new content
+     */
+    default StorageErrorReason checkStorageOnAdd(Request request, CollectionResource nearestParent, Path parentPath, String host, Long newContentLength) {
+        return checkStorageOnAdd(request, nearestParent, parentPath, host);
+    }
 }
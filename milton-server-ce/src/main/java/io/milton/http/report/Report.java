@@ -23,6 +23,9 @@ import io.milton.resource.Resource;
 import io.milton.http.exceptions.BadRequestException;
 import io.milton.http.exceptions.ConflictException;
 import io.milton.http.exceptions.NotAuthorizedException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 
 /**
  * Represents a known report type, is delegated to by the ReportHandler
@@ -51,4 +54,22 @@ public interface Report {
      * @return the response body, usually xml
      */
     String process(String host, String path, Resource r, org.jdom2.Document doc) throws BadRequestException, ConflictException, NotAuthorizedException;
+
+    /**
+     * Process the requested report body, writing the response body to the
+     * given output stream as UTF-8.
+     *
+     * The default implementation writes the result of the String variant.
+     * See StreamingReport for reports which write directly
+     *
+     * @param host
+     * @param path
+     * @param r
+     * @param doc
+     * @param out
+     */
+    default void process(String host, String path, Resource r, org.jdom2.Document doc, OutputStream out) throws BadRequestException, ConflictException, NotAuthorizedException, IOException {
+        String xml = process(host, path, r, doc);
+        out.write(xml.getBytes(StandardCharsets.UTF_8));
+    }
 }
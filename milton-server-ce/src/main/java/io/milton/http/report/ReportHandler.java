@@ -34,6 +34,7 @@ import io.milton.common.ReadingException;
 import io.milton.common.WritingException;
 import io.milton.resource.ReportableResource;
 import io.milton.http.entity.ByteArrayEntity;
+import io.milton.http.entity.ReportEntity;
 import java.io.IOException;
 import java.util.Map;
 import java.util.logging.Level;
@@ -88,13 +89,22 @@ public class ReportHandler implements ExistingEntityHandler {
 				throw new BadRequestException(resource);
 			} else {
 				log.info("process report: " + reportName + " with : " + r.getClass());
-				String xml = r.process(request.getHostHeader(), request.getAbsolutePath(), resource, doc);
-				if(log.isTraceEnabled()) {
-					log.trace("Report XML:\n" + xml);
+				if (r instanceof StreamingReport) {
+					// Errors found while preparing are reported before the status is set. The
+					// body is then generated as the entity is written, so is only rendered once
+					StreamingReport.Body body = ((StreamingReport) r).prepare(request.getHostHeader(), request.getAbsolutePath(), resource, doc);
+					response.setStatus(body.getStatus());
+					response.setContentTypeHeader("text/xml");
+					response.setEntity(new ReportEntity(body));
+				} else {
+					String xml = r.process(request.getHostHeader(), request.getAbsolutePath(), resource, doc);
+					if(log.isTraceEnabled()) {
+						log.trace("Report XML:\n" + xml);
+					}
+					response.setStatus(Response.Status.SC_MULTI_STATUS);
+					response.setContentTypeHeader("text/xml");
+					response.setEntity(new ByteArrayEntity(xml.getBytes("UTF-8")));
 				}
-				response.setStatus(Response.Status.SC_MULTI_STATUS);
-				response.setContentTypeHeader("text/xml");
-				response.setEntity(new ByteArrayEntity(xml.getBytes("UTF-8")));
 			}
 		} catch (JDOMException ex) {
 			java.util.logging.Logger.getLogger(ReportHandler.class.getName()).log(Level.SEVERE, null, ex);
@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.milton.http.report;
+
+import io.milton.http.Response;
+import io.milton.http.exceptions.BadRequestException;
+import io.milton.http.exceptions.ConflictException;
+import io.milton.http.exceptions.NotAuthorizedException;
+import io.milton.resource.Resource;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A report which writes its response body directly to the output stream, so
+ * the xml is generated once and sent to the client as it is produced.
+ *
+ * Processing is in two steps. prepare is called before the response status is
+ * set, so it should check the request, authorise and do any work which may
+ * fail with a client error. The returned Body is then written as the response
+ * entity, when it is too late to change the status.
+ *
+ * The String variant of process is implemented by buffering the output, for
+ * compatibility with code which calls it directly
+ *
+ * @author brad
+ */
+public interface StreamingReport extends Report {
+
+    /**
+     * Check and process the request, up to the point where the response body
+     * can be written
+     *
+     * @param host
+     * @param path
+     * @param r
+     * @param doc
+     * @return - writes the response body
+     */
+    Body prepare(String host, String path, Resource r, org.jdom2.Document doc) throws BadRequestException, ConflictException, NotAuthorizedException;
+
+    @Override
+    default void process(String host, String path, Resource r, org.jdom2.Document doc, OutputStream out) throws BadRequestException, ConflictException, NotAuthorizedException, IOException {
+        prepare(host, path, r, doc).write(out);
+    }
+
+    @Override
+    default String process(String host, String path, Resource r, org.jdom2.Document doc) throws BadRequestException, ConflictException, NotAuthorizedException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            process(host, path, r, doc, out);
+            return out.toString("UTF-8");
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * The response body of a prepared report
+     */
+    interface Body {
+
+        /**
+         *
+         * @return - the response status, normally 207 Multi-Status
+         */
+        default Response.Status getStatus() {
+            return Response.Status.SC_MULTI_STATUS;
+        }
+
+        void write(OutputStream out) throws BadRequestException, ConflictException, NotAuthorizedException, IOException;
+    }
+}
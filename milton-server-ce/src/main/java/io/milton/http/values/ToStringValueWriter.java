@@ -29,26 +29,15 @@ public class ToStringValueWriter implements ValueWriter {
         return true;
     }
 
-    private String nameEncode( String s ) {
-        //return Utils.encode(href, false); // see MIL-31
-		
-		// Must not escape quotes because they're used in the getetag property
-        //return Utils.escapeXml( s );
-//		s = s.replaceAll("\"", "&quot;");
-		s = s.replaceAll("&", "&amp;");
-//		s = s.replaceAll("'", "&apos;");
-		s = s.replaceAll("<", "&lt;");
-		s = s.replaceAll(">", "&gt;");		
-		return s;
-	}
-
 	@Override
     public void writeValue( XmlWriter writer, String nsUri, String prefix, String localName, Object val, String href, Map<String, String> nsPrefixes ) {
         if( val == null ) {
             writer.writeProperty( prefix, localName );
         } else {
-            String s = nameEncode( val.toString() );
-            writer.writeProperty( prefix, localName, s );
+            // Escape while writing, rather than building an escaped copy of the string
+            writer.writeElement( prefix, localName, XmlWriter.Type.OPENING );
+            writer.writeEscapedText( val.toString() );
+            writer.writeElement( prefix, localName, XmlWriter.Type.CLOSING );
         }
     }
 
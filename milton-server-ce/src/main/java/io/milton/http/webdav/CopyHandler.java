@@ -108,7 +108,7 @@ public class CopyHandler implements ExistingEntityHandler {
 						return;
 					} else {
 						// Overwrite is absent or T, so continue
-						if (deleteHelper.isLockedOut(request, rExisting)) {
+						if (deleteHelper.isLockedOut(request, rExisting, HandlerHelper.getDecodedDestinationPath(request))) {
 							log.info("destination resource exists, and overwrite header IS set, but destination is locked. dest name: " + dest.name + " dest folder: " + colDest.getName());
 							responseHandler.respondPreconditionFailed(request, response, resource);
 							return;
@@ -125,6 +125,7 @@ public class CopyHandler implements ExistingEntityHandler {
 									}
 
 									deleteHelper.delete(dr, manager.getEventManager());
+									handlerHelper.onDeleted(HandlerHelper.getDecodedDestinationPath(request));
 									wasDeleted = true;
 								} else {
 									log.warn("copy destination exists and is a collection so must be deleted, but does not implement: " + DeletableResource.class);
@@ -23,6 +23,7 @@ import io.milton.resource.PropFindableResource;
 import io.milton.resource.Resource;
 import io.milton.http.Response.Status;
 import io.milton.common.Utils;
+import io.milton.http.HttpManager;
 import io.milton.http.exceptions.BadRequestException;
 import io.milton.http.exceptions.NotAuthorizedException;
 import io.milton.http.values.ValueAndType;
@@ -33,6 +34,10 @@ import io.milton.common.LogUtils;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import javax.xml.namespace.QName;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -50,12 +55,23 @@ import org.slf4j.LoggerFactory;
  * This class uses a list of PropertySource's, where each PropertySource
  * represents some mechanism to read properties from a resource.
  *
+ * If an executor is set then the properties of the children of a collection,
+ * or the resources of a multiget, are resolved in parallel. Responses are
+ * still produced in the same order, and the current request is available to
+ * property sources through HttpManager.request(). This is only worthwhile when
+ * property sources are slow, eg hitting a database or remote service, and
+ * they must be safe to call concurrently
+ *
  * @author brad
  */
 public class DefaultPropFindPropertyBuilder implements PropFindPropertyBuilder {
 
 	private static final Logger log = LoggerFactory.getLogger(DefaultPropFindPropertyBuilder.class);
 	private final List<PropertySource> propertySources;
+	private final PropertyResolutionPlans resolutionPlans;
+	private ExecutorService childExecutor;
+	private int parallelThreshold = 8;
+	private int maxInFlight = 64;
 
 	/**
 	 *
@@ -64,6 +80,7 @@ public class DefaultPropFindPropertyBuilder implements PropFindPropertyBuilder {
 	 */
 	public DefaultPropFindPropertyBuilder(List<PropertySource> propertySources) {
 		this.propertySources = propertySources;
+		this.resolutionPlans = new PropertyResolutionPlans(propertySources);
 	}
 
 	/**
@@ -84,10 +101,45 @@ public class DefaultPropFindPropertyBuilder implements PropFindPropertyBuilder {
 		LogUtils.trace(log, "buildProperties: ", pfr.getClass(), "url:", url);
 		url = fixUrlForWindows(url);
 		List<PropFindResponse> propFindResponses = new ArrayList<>();
-		appendResponses(propFindResponses, pfr, depth, parseResult, url);
+		appendResponses(propFindResponses::add, pfr, depth, parseResult, url);
 		return propFindResponses;
 	}
 
+	/**
+	 * Walks the resource and its children (depending on depth), passing each
+	 * PropFindResponse to the listener as soon as it has been built. Responses
+	 * are not retained, so memory use does not depend on the number of
+	 * children.
+	 */
+	@Override
+	public void buildProperties(PropFindableResource pfr, int depth, PropertiesRequest parseResult, String url, PropFindResponseListener listener) throws URISyntaxException, NotAuthorizedException, BadRequestException {
+		LogUtils.trace(log, "buildProperties(streaming): ", pfr.getClass(), "url:", url);
+		url = fixUrlForWindows(url);
+		appendResponses(listener, pfr, depth, parseResult, url);
+	}
+
+	/**
+	 * Builds depth 0 responses for each resource, resolving them in parallel if
+	 * an executor has been set
+	 */
+	@Override
+	public List<PropFindResponse> buildProperties(List<? extends PropFindableResource> resources, List<String> urls, PropertiesRequest parseResult) throws URISyntaxException, NotAuthorizedException, BadRequestException {
+		List<String> hrefs = new ArrayList<>(urls.size());
+		for (int i = 0; i < resources.size(); i++) {
+			String href = suffixSlash(resources.get(i), fixUrlForWindows(urls.get(i)));
+			hrefs.add(new URI(href).toASCIIString());
+		}
+		List<PropFindResponse> list = new ArrayList<>();
+		if (isParallel(resources.size())) {
+			processInParallel(list::add, resources, hrefs, parseResult, 0, 0);
+		} else {
+			for (int i = 0; i < resources.size(); i++) {
+				list.add(buildResponse(resources.get(i), parseResult, hrefs.get(i)));
+			}
+		}
+		return list;
+	}
+
 	@Override
 	public ValueAndType getProperty(QName field, Resource resource) throws NotAuthorizedException, BadRequestException {
 		for (PropertySource source : propertySources) {
@@ -101,7 +153,7 @@ public class DefaultPropFindPropertyBuilder implements PropFindPropertyBuilder {
 		return null;
 	}
 
-	private void appendResponses(List<PropFindResponse> responses, PropFindableResource resource, int requestedDepth, PropertiesRequest parseResult, String encodedCollectionUrl) throws URISyntaxException, NotAuthorizedException, BadRequestException {
+	private void appendResponses(PropFindResponseListener responses, PropFindableResource resource, int requestedDepth, PropertiesRequest parseResult, String encodedCollectionUrl) throws URISyntaxException, NotAuthorizedException, BadRequestException {
 		String collectionHref = suffixSlash(resource, encodedCollectionUrl);
 		URI parentUri = new URI(collectionHref);
 
@@ -112,47 +164,170 @@ public class DefaultPropFindPropertyBuilder implements PropFindPropertyBuilder {
 
 	@Override
 	public void processResource(List<PropFindResponse> responses, PropFindableResource resource, PropertiesRequest parseResult, String href, int requestedDepth, int currentDepth, String collectionHref) throws NotAuthorizedException, BadRequestException {
-		final LinkedHashMap<QName, ValueAndType> knownProperties = new LinkedHashMap<>();
-		final ArrayList<NameAndError> unknownProperties = new ArrayList<>();
+		processResource(responses::add, resource, parseResult, href, requestedDepth, currentDepth, collectionHref);
+	}
 
+	public void processResource(PropFindResponseListener responses, PropFindableResource resource, PropertiesRequest parseResult, String href, int requestedDepth, int currentDepth, String collectionHref) throws NotAuthorizedException, BadRequestException {
 		if (resource instanceof CollectionResource) {
 			if (!href.endsWith("/")) {
 				href = href + "/";
 			}
 		}
+		responses.onResponse(buildResponse(resource, parseResult, href));
+
+		if (requestedDepth > currentDepth && resource instanceof CollectionResource) {
+			processChildren(responses, (CollectionResource) resource, parseResult, href, requestedDepth, currentDepth + 1);
+		}
+	}
+
+	private void processChildren(PropFindResponseListener responses, CollectionResource col, PropertiesRequest parseResult, String href, int requestedDepth, int childDepth) throws NotAuthorizedException, BadRequestException {
+		List<? extends Resource> list = col.getChildren();
+		if (list == null) {
+			return;
+		}
+		List<PropFindableResource> children = new ArrayList<>(list.size());
+		List<String> childHrefs = new ArrayList<>(list.size());
+		for (Resource child : list) {
+			if (child instanceof PropFindableResource) {
+				String childName = child.getName();
+				if (childName == null) {
+					log.warn("null name for resource of type: " + child.getClass() + " in folder: " + href + " WILL NOT be returned in PROPFIND response!!");
+				} else {
+					children.add((PropFindableResource) child);
+					childHrefs.add(href + Utils.percentEncode(childName));
+				}
+			}
+		}
+		if (isParallel(children.size())) {
+			for (int i = 0; i < children.size(); i++) {
+				if (children.get(i) instanceof CollectionResource && !childHrefs.get(i).endsWith("/")) {
+					childHrefs.set(i, childHrefs.get(i) + "/");
+				}
+			}
+			processInParallel(responses, children, childHrefs, parseResult, requestedDepth, childDepth);
+		} else {
+			for (int i = 0; i < children.size(); i++) {
+				// Note that the new collection href, is just the current href
+				processResource(responses, children.get(i), parseResult, childHrefs.get(i), requestedDepth, childDepth, href);
+			}
+		}
+	}
+
+	/**
+	 * Resolve the properties of the given resources on the executor, passing
+	 * responses to the listener in order. At most maxInFlight resources are
+	 * resolved ahead of the listener. Children of collections are processed
+	 * after the collection's own response, as for sequential processing
+	 */
+	private void processInParallel(PropFindResponseListener responses, List<? extends PropFindableResource> resources, List<String> hrefs, PropertiesRequest parseResult, int requestedDepth, int currentDepth) throws NotAuthorizedException, BadRequestException {
+		Deque<Future<PropFindResponse>> pending = new ArrayDeque<>();
+		int window = Math.max(1, maxInFlight);
+		int submitted = 0;
+		try {
+			for (int i = 0; i < resources.size(); i++) {
+				while (submitted < resources.size() && submitted < i + window) {
+					final PropFindableResource r = resources.get(submitted);
+					final String href = hrefs.get(submitted);
+					Callable<PropFindResponse> task = () -> buildResponse(r, parseResult, href);
+					pending.add(childExecutor.submit(HttpManager.withRequestContext(task)));
+					submitted++;
+				}
+				responses.onResponse(await(pending.poll()));
+				PropFindableResource resource = resources.get(i);
+				if (requestedDepth > currentDepth && resource instanceof CollectionResource) {
+					processChildren(responses, (CollectionResource) resource, parseResult, hrefs.get(i), requestedDepth, currentDepth + 1);
+				}
+			}
+		} finally {
+			// Only non-empty if something failed
+			for (Future<PropFindResponse> f : pending) {
+				f.cancel(true);
+			}
+		}
+	}
+
+	private PropFindResponse await(Future<PropFindResponse> f) throws NotAuthorizedException, BadRequestException {
+		try {
+			return f.get();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(ex);
+		} catch (ExecutionException ex) {
+			Throwable cause = ex.getCause();
+			if (cause instanceof NotAuthorizedException) {
+				throw (NotAuthorizedException) cause;
+			} else if (cause instanceof BadRequestException) {
+				throw (BadRequestException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new RuntimeException(cause);
+		}
+	}
+
+	private boolean isParallel(int count) {
+		return childExecutor != null && count >= parallelThreshold;
+	}
+
+	/**
+	 * Resolve the requested properties of a single resource
+	 */
+	private PropFindResponse buildResponse(PropFindableResource resource, PropertiesRequest parseResult, String href) throws NotAuthorizedException, BadRequestException {
+		final LinkedHashMap<QName, ValueAndType> knownProperties = new LinkedHashMap<>();
+		final ArrayList<NameAndError> unknownProperties = new ArrayList<>();
+
 		Set<QName> requestedFields;
 		if (parseResult.isAllProp()) {
 			requestedFields = findAllProps(resource);
 		} else {
 			requestedFields = parseResult.getNames();
 		}
+		boolean trace = log.isTraceEnabled();
+		PropertyResolutionPlans.Plan plan = resolutionPlans.planFor(resource);
 		for (QName field : requestedFields) {
-			LogUtils.trace(log, "processResource: find property:", field);
+			if (trace) {
+				LogUtils.trace(log, "processResource: find property:", field);
+			}
 			if (field.getLocalPart().equals("href")) {
 				knownProperties.put(field, new ValueAndType(href, String.class));
 			} else {
-				boolean found = false;
-				for (PropertySource source : propertySources) {
-					LogUtils.trace(log, "look for field", field, " in property source", source.getClass());
-					PropertyMetaData meta = source.getPropertyMetaData(field, resource);
-					if (meta != null && !meta.isUnknown()) {
-						Object val;
-						try {
-							val = source.getProperty(field, resource);
-							LogUtils.trace(log, "processResource: got value", val, "from source", source.getClass());
-							if (val == null) {
-								knownProperties.put(field, new ValueAndType(val, meta.getValueType())); // null, but we still need type information to write it so use meta
-							} else {
-								knownProperties.put(field, new ValueAndType(val, val.getClass())); // non-null, so use more robust class info
-							}
-						} catch (NotAuthorizedException ex) {
-							unknownProperties.add(new NameAndError(field, "Not authorised"));
-						}
-						found = true;
+				// Sources which can't be cached must be asked first, then the plan gives the answer
+				PropertyResolutionPlans.FieldPlan fieldPlan = plan.get(field, resource);
+				PropertySource source = null;
+				PropertyMetaData meta = null;
+				for (PropertySource s : fieldPlan.uncached) {
+					if (trace) {
+						LogUtils.trace(log, "look for field", field, " in property source", s.getClass());
+					}
+					PropertyMetaData m = s.getPropertyMetaData(field, resource);
+					if (m != null && !m.isUnknown()) {
+						source = s;
+						meta = m;
 						break;
 					}
 				}
-				if (!found) {
+				if (source == null) {
+					source = fieldPlan.source;
+					meta = fieldPlan.meta;
+				}
+				if (source != null) {
+					Object val;
+					try {
+						val = source.getProperty(field, resource);
+						if (trace) {
+							LogUtils.trace(log, "processResource: got value", val, "from source", source.getClass());
+						}
+						if (val == null) {
+							knownProperties.put(field, new ValueAndType(val, meta.getValueType())); // null, but we still need type information to write it so use meta
+						} else {
+							knownProperties.put(field, new ValueAndType(val, val.getClass())); // non-null, so use more robust class info
+						}
+					} catch (NotAuthorizedException ex) {
+						unknownProperties.add(new NameAndError(field, "Not authorised"));
+					}
+				} else {
 					if (log.isDebugEnabled()) {
 						log.debug("property not found in any property source: " + field.toString());
 					}
@@ -173,29 +348,60 @@ public class DefaultPropFindPropertyBuilder implements PropFindPropertyBuilder {
 		//Map<Status, List<NameAndError>> errorProperties = new HashMap<Status, List<NameAndError>>();
 		Map<Status, List<NameAndError>> errorProperties = new EnumMap<>(Status.class);
 		errorProperties.put(Status.SC_NOT_FOUND, unknownProperties);
-		PropFindResponse r = new PropFindResponse(href, knownProperties, errorProperties);
-		responses.add(r);
+		return new PropFindResponse(href, knownProperties, errorProperties);
+	}
 
-		if (requestedDepth > currentDepth && resource instanceof CollectionResource) {
-			CollectionResource col = (CollectionResource) resource;
-			List<? extends Resource> list = col.getChildren();
-			if (list != null) {
-				list = new ArrayList<Resource>(list);
-				for (Resource child : list) {
-					if (child instanceof PropFindableResource) {
-						String childName = child.getName();
-						if (childName == null) {
-							log.warn("null name for resource of type: " + child.getClass() + " in folder: " + href + " WILL NOT be returned in PROPFIND response!!");
-						} else {
-							String childHref = href + Utils.percentEncode(childName);
-							// Note that the new collection href, is just the current href
-							processResource(responses, (PropFindableResource) child, parseResult, childHref, requestedDepth, currentDepth + 1, href);
-						}
-					}
-				}
-			}
-		}
+	/**
+	 * Discard the cached record of which property source answers each property.
+	 * Changes to the list of property sources are detected automatically, so
+	 * this is only needed if a source changes what it will answer for a class
+	 * of resource
+	 */
+	public void clearResolutionPlans() {
+		resolutionPlans.clear();
+	}
+
+	public ExecutorService getChildExecutor() {
+		return childExecutor;
+	}
 
+	/**
+	 * Set an executor to resolve properties of child resources in parallel.
+	 * Null, the default, means resolve sequentially on the request thread. The
+	 * executor is not shut down by this class
+	 *
+	 * @param childExecutor
+	 */
+	public void setChildExecutor(ExecutorService childExecutor) {
+		this.childExecutor = childExecutor;
+	}
+
+	public int getParallelThreshold() {
+		return parallelThreshold;
+	}
+
+	/**
+	 * The minimum number of resources to resolve in parallel. Smaller
+	 * collections are resolved on the request thread. Default is 8
+	 *
+	 * @param parallelThreshold
+	 */
+	public void setParallelThreshold(int parallelThreshold) {
+		this.parallelThreshold = parallelThreshold;
+	}
+
+	public int getMaxInFlight() {
+		return maxInFlight;
+	}
+
+	/**
+	 * The maximum number of resources which may be resolved ahead of the
+	 * response currently being written, which bounds memory use. Default is 64
+	 *
+	 * @param maxInFlight
+	 */
+	public void setMaxInFlight(int maxInFlight) {
+		this.maxInFlight = maxInFlight;
 	}
 
 	private String suffixSlash(PropFindableResource resource, String s) {
@@ -19,6 +19,7 @@
 package io.milton.http.webdav;
 
 import io.milton.resource.GetableResource;
+import io.milton.resource.PropFindableResource;
 import io.milton.http.HrefStatus;
 import io.milton.http.Range;
 import io.milton.http.Request;
@@ -37,10 +38,13 @@ import io.milton.http.quota.StorageChecker.StorageErrorReason;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import javax.xml.namespace.QName;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -218,6 +222,33 @@ public class DefaultWebDavResponseHandler implements WebDavResponseHandler, Buff
 		}
 	}
 
+	/**
+	 * Streams the multistatus document, writing each response as it is built.
+	 * Memory use is independent of the number of resources listed
+	 */
+	@Override
+	public void respondPropFind(PropFindableResource pfr, int depth, PropertiesRequest parseResult, String url, PropFindPropertyBuilder propertyBuilder, Response response, Request request) throws URISyntaxException, NotAuthorizedException, BadRequestException {
+		log.trace("respondPropFind - streaming");
+		response.setStatus(Status.SC_MULTI_STATUS);
+		response.setDateHeader(new Date());
+		List<String> supportedLevels = resourceTypeHelper.getSupportedLevels(pfr);
+		String s = Utils.toCsv(supportedLevels);
+		response.setDavHeader(s);
+
+		Set<QName> expectedFields;
+		if (parseResult.isAllProp()) {
+			expectedFields = propertyBuilder.findAllProps(pfr);
+		} else {
+			expectedFields = parseResult.getNames();
+		}
+		// No content length, so the response is sent chunked
+		OutputStream outputStream = response.getOutputStream();
+		boolean sendErrorProps = !isBriefHeader(request);
+		PropFindXmlGenerator.StreamingWriter writer = propFindXmlGenerator.beginStreaming(outputStream, expectedFields, sendErrorProps);
+		propertyBuilder.buildProperties(pfr, depth, parseResult, url, writer);
+		writer.finish(null);
+	}
+
 	@Override
 	public void respondInsufficientStorage(Request request, Response response, StorageErrorReason storageErrorReason) {
 		response.setStatus(Status.SC_INSUFFICIENT_STORAGE);
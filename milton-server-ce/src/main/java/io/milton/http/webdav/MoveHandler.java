@@ -121,13 +121,14 @@ public class MoveHandler implements ExistingEntityHandler {
 						if (rExisting instanceof DeletableResource) {
 							log.debug("deleting existing resource");
 							DeletableResource drExisting = (DeletableResource) rExisting;
-							if (deleteHelper.isLockedOut(request, drExisting)) {
+							if (deleteHelper.isLockedOut(request, drExisting, HandlerHelper.getDecodedDestinationPath(request))) {
 								log.debug("destination resource exists but is locked");
 								responseHandler.respondLocked(request, response, drExisting);
 								return;
 							}
 							log.debug("deleting pre-existing destination resource");
 							deleteHelper.delete(drExisting, manager.getEventManager());
+							handlerHelper.onDeleted(HandlerHelper.getDecodedDestinationPath(request));
 							wasDeleted = true;
 						} else {
 							log.warn("destination exists, and overwrite header is set, but destination is not a DeletableResource");
@@ -145,6 +146,7 @@ public class MoveHandler implements ExistingEntityHandler {
 				}
 				manager.getEventManager().fireEvent(new MoveEvent(resource, colDest, dest.name));
 				r.moveTo(colDest, dest.name);
+				handlerHelper.onMoved(HandlerHelper.getDecodedPath(request), HandlerHelper.getDecodedDestinationPath(request));
 				manager.getEventManager().fireEvent(new AfterMoveEvent(resource, colDest, dest.name));
 				// See http://www.ettrema.com:8080/browse/MIL-87
 				if (wasDeleted) {
@@ -56,6 +56,7 @@ public class PropFindHandler implements ExistingEntityHandler, PropertyHandler {
     private final WebDavResponseHandler responseHandler;
     private final PropFindPropertyBuilder propertyBuilder;
     private final PropertyAuthoriser permissionService = new DefaultPropertyAuthoriser();
+    private boolean streaming;
 
 //    /**
 //     * 
@@ -143,12 +144,19 @@ public class PropFindHandler implements ExistingEntityHandler, PropertyHandler {
 				}
 				log.trace("---");
 			}
+            if( streaming ) {
+                try {
+                    responseHandler.respondPropFind( pfr, depth, parseResult, url, propertyBuilder, response, request );
+                } catch (URISyntaxException ex) {
+                    throw invalidUrl( request, url, ex );
+                }
+                return;
+            }
             List<PropFindResponse> propFindResponses;
 			try {
 				propFindResponses = propertyBuilder.buildProperties( pfr, depth, parseResult, url );
 			} catch (URISyntaxException ex) {
-				log.error("Exception parsing url. request class: " + request.getClass() + ". Please check the client application is usign percentage encoding (see http://en.wikipedia.org/wiki/Percent-encoding)");
-				throw new RuntimeException("Exception parsing url, indicating the requested URL is not correctly encoded. Please check the client application. Requested url is: " + url, ex);
+				throw invalidUrl( request, url, ex );
 			}
             if( log.isTraceEnabled() ) {
                 log.trace( "responses: " + propFindResponses.size() );
@@ -157,6 +165,11 @@ public class PropFindHandler implements ExistingEntityHandler, PropertyHandler {
         }
     }
 
+    private RuntimeException invalidUrl( Request request, String url, URISyntaxException ex ) {
+        log.error("Exception parsing url. request class: " + request.getClass() + ". Please check the client application is usign percentage encoding (see http://en.wikipedia.org/wiki/Percent-encoding)");
+        return new RuntimeException("Exception parsing url, indicating the requested URL is not correctly encoded. Please check the client application. Requested url is: " + url, ex);
+    }
+
     private Set<QName> getAllFields( PropertiesRequest parseResult, PropFindableResource resource ) throws NotAuthorizedException, BadRequestException {
         Set<QName> set = new HashSet<>();
         if( parseResult.isAllProp() ) {
@@ -171,4 +184,21 @@ public class PropFindHandler implements ExistingEntityHandler, PropertyHandler {
     public PropertyAuthoriser getPermissionService() {
         return permissionService;
     }
+
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    /**
+     * If true, each response element is written to the client as soon as it
+     * is resolved, instead of building the complete multistatus document in
+     * memory first. This keeps memory use flat for large Depth:1 and
+     * Depth:infinity requests, but because the response is committed early
+     * errors while listing children can no longer change the response status
+     *
+     * @param streaming
+     */
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
 }
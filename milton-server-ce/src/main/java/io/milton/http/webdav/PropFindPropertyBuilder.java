@@ -59,6 +59,45 @@ public interface PropFindPropertyBuilder {
 	 */
 	List<PropFindResponse> buildProperties(PropFindableResource pfr, int depth, PropertiesRequest parseResult, String url) throws URISyntaxException, NotAuthorizedException, BadRequestException;
 
+	/**
+	 * Streaming form of buildProperties. Each PropFindResponse is passed to the
+	 * listener as soon as it is resolved, so implementations which support it
+	 * never need to hold the whole result set in memory.
+	 *
+	 * The default implementation just builds the list and then replays it.
+	 *
+	 * @param pfr - the resource to interrogate
+	 * @param depth - the depth header
+	 * @param parseResult - contains the list of fields, or a true boolean indicating all properties
+	 * @param url - the URL of the given resource - MUST be correctly encoded
+	 * @param listener - receives each response in document order
+	 */
+	default void buildProperties(PropFindableResource pfr, int depth, PropertiesRequest parseResult, String url, PropFindResponseListener listener) throws URISyntaxException, NotAuthorizedException, BadRequestException {
+		for (PropFindResponse r : buildProperties(pfr, depth, parseResult, url)) {
+			listener.onResponse(r);
+		}
+	}
+
+	/**
+	 * Build depth 0 responses for several unrelated resources, such as for a
+	 * multiget report. Responses are returned in the same order as the
+	 * resources.
+	 *
+	 * The default implementation calls buildProperties for each resource in turn
+	 *
+	 * @param resources - the resources to interrogate
+	 * @param urls - the URL of each resource - MUST be correctly encoded
+	 * @param parseResult - contains the list of fields, or a true boolean indicating all properties
+	 * @return
+	 */
+	default List<PropFindResponse> buildProperties(List<? extends PropFindableResource> resources, List<String> urls, PropertiesRequest parseResult) throws URISyntaxException, NotAuthorizedException, BadRequestException {
+		List<PropFindResponse> list = new ArrayList<>();
+		for (int i = 0; i < resources.size(); i++) {
+			list.addAll(buildProperties(resources.get(i), 0, parseResult, urls.get(i)));
+		}
+		return list;
+	}
+
 	ValueAndType getProperty(QName field, Resource resource) throws NotAuthorizedException, BadRequestException;
 
 	void processResource(List<PropFindResponse> responses, PropFindableResource resource, PropertiesRequest parseResult, String href, int requestedDepth, int currentDepth, String collectionHref) throws NotAuthorizedException, BadRequestException;
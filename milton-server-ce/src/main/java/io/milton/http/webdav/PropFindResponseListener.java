@@ -0,0 +1,37 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.milton.http.webdav;
+
+/**
+ * Receives PropFindResponse objects one at a time, as they are resolved by a
+ * PropFindPropertyBuilder. Used to stream PROPFIND responses rather than
+ * collecting them all into a list first.
+ *
+ * @author brad
+ */
+public interface PropFindResponseListener {
+
+	/**
+	 * Called once for each resource, in document order
+	 *
+	 * @param response
+	 */
+	void onResponse(PropFindResponse response);
+}
@@ -26,8 +26,10 @@ import io.milton.http.values.ValueWriters;
 import java.io.OutputStream;
 import org.apache.commons.io.output.ByteArrayOutputStream;
 import java.io.UnsupportedEncodingException;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import javax.xml.namespace.QName;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -53,7 +55,7 @@ public class PropFindXmlGenerator {
      */
     public void generate( List<PropFindResponse> propFindResponses, OutputStream responseOutput, boolean writeErrorProps, PropFindXmlFooter footerGenerator ) {
         Map<String, String> mapOfNamespaces = helper.findNameSpaces( propFindResponses );
-        XmlWriter writer = new XmlWriter( responseOutput );
+        XmlWriter writer = new XmlWriter( responseOutput, XmlWriter.utf8(), XmlWriter.DEFAULT_BUFFER_SIZE );
         writer.writeXMLHeader();
         writer.open(WebDavProtocol.NS_DAV.getPrefix() ,"multistatus" + helper.generateNamespaceDeclarations( mapOfNamespaces ) );
         writer.newLine();
@@ -65,6 +67,28 @@ public class PropFindXmlGenerator {
         writer.flush();
     }
 
+    /**
+     * Begin a multistatus document whose responses will be written one at a time,
+     * as they are passed to the returned writer. The namespace declarations on
+     * the multistatus element are derived from the expected fields, since the
+     * responses are not known yet.
+     *
+     * Call finish on the returned writer to complete the document
+     *
+     * @param responseOutput
+     * @param expectedFields - the fields which are expected to be in the responses
+     * @param writeErrorProps
+     * @return
+     */
+    public StreamingWriter beginStreaming( OutputStream responseOutput, Collection<QName> expectedFields, boolean writeErrorProps ) {
+        Map<String, String> mapOfNamespaces = helper.findNameSpaces( expectedFields );
+        XmlWriter writer = new XmlWriter( responseOutput, XmlWriter.utf8(), XmlWriter.DEFAULT_BUFFER_SIZE );
+        writer.writeXMLHeader();
+        writer.open(WebDavProtocol.NS_DAV.getPrefix() ,"multistatus" + helper.generateNamespaceDeclarations( mapOfNamespaces ) );
+        writer.newLine();
+        return new StreamingWriter( writer, mapOfNamespaces, writeErrorProps );
+    }
+
     public void generate( List<PropFindResponse> propFindResponses, OutputStream responseOutput, boolean writeErrorProps ) {
         generate(propFindResponses, responseOutput, writeErrorProps, null);
     }
@@ -74,43 +98,90 @@ public class PropFindXmlGenerator {
     }
 
     public String generate( List<PropFindResponse> propFindResponses, PropFindXmlFooter footerGenerator ) {
-        boolean writeErrorProps = true;
-        Request req = HttpManager.request();
-        if( req != null ) {
-            writeErrorProps = isBriefHeader(req);
-        }
-		
         ByteArrayOutputStream responseOutput = new ByteArrayOutputStream();
-		
-        generate(propFindResponses, responseOutput, writeErrorProps, footerGenerator);
-		
-        Map<String, String> mapOfNamespaces = helper.findNameSpaces( propFindResponses );
-        ByteArrayOutputStream generatedXml = new ByteArrayOutputStream();
-        XmlWriter writer = new XmlWriter( generatedXml );
-        writer.writeXMLHeader();
-        writer.open(WebDavProtocol.NS_DAV.getPrefix() ,"multistatus" + helper.generateNamespaceDeclarations( mapOfNamespaces ) );
-        writer.newLine();
-        helper.appendResponses( writer, propFindResponses, mapOfNamespaces, writeErrorProps );
-        if (footerGenerator != null) {
-            footerGenerator.footer(writer);
+        generate(propFindResponses, responseOutput, footerGenerator);
+        String xml;
+        try {
+            xml = responseOutput.toString("UTF-8");
+        } catch( UnsupportedEncodingException ex ) {
+            throw new RuntimeException( ex );
         }
-        writer.close(WebDavProtocol.NS_DAV.getPrefix(),"multistatus" );
-        writer.flush();
         if(log.isTraceEnabled()) {
             log.trace("---- PROPFIND response START: " + HttpManager.request().getAbsolutePath() + " -----");
-            log.trace( generatedXml.toString() );
+            log.trace( xml );
             log.trace("---- PROPFIND response END -----");
         }
-		
-        try {
-            return responseOutput.toString("UTF-8");
-        } catch( UnsupportedEncodingException ex ) {
-            throw new RuntimeException( ex );
+        return xml;
+    }
+
+    /**
+     * Generate the multistatus document directly to the given output stream,
+     * using the Brief header of the current request to decide whether to write
+     * error properties
+     *
+     * @param propFindResponses
+     * @param responseOutput
+     * @param footerGenerator - optional
+     */
+    public void generate( List<PropFindResponse> propFindResponses, OutputStream responseOutput, PropFindXmlFooter footerGenerator ) {
+        boolean writeErrorProps = true;
+        Request req = HttpManager.request();
+        if( req != null ) {
+            writeErrorProps = isBriefHeader(req);
         }
+        generate(propFindResponses, responseOutput, writeErrorProps, footerGenerator);
     }
 	
     private boolean isBriefHeader(Request request) {
         String b = request.getHeaders().get("Brief");
         return "t".equals(b);
     }
+
+    /**
+     * Writes each response to the output as soon as it is received. Created
+     * by beginStreaming
+     */
+    public class StreamingWriter implements PropFindResponseListener {
+
+        private final XmlWriter writer;
+        private final Map<String, String> mapOfNamespaces;
+        private final boolean writeErrorProps;
+        private int count;
+
+        private StreamingWriter( XmlWriter writer, Map<String, String> mapOfNamespaces, boolean writeErrorProps ) {
+            this.writer = writer;
+            this.mapOfNamespaces = mapOfNamespaces;
+            this.writeErrorProps = writeErrorProps;
+        }
+
+        @Override
+        public void onResponse( PropFindResponse response ) {
+            helper.appendStreamedResponse( writer, response, mapOfNamespaces, writeErrorProps );
+            count++;
+        }
+
+        /**
+         * Write the footer, if given, and close the multistatus element
+         *
+         * @param footerGenerator - optional
+         */
+        public void finish( PropFindXmlFooter footerGenerator ) {
+            if (footerGenerator != null) {
+                footerGenerator.footer(writer);
+            }
+            writer.close(WebDavProtocol.NS_DAV.getPrefix(),"multistatus" );
+            writer.flush();
+            if( log.isTraceEnabled() ) {
+                log.trace( "streamed responses: " + count );
+            }
+        }
+
+        /**
+         *
+         * @return - the number of responses written so far
+         */
+        public int getCount() {
+            return count;
+        }
+    }
 }
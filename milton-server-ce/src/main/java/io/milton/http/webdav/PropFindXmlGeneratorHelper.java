@@ -28,6 +28,7 @@ import io.milton.http.webdav.PropFindResponse.NameAndError;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -55,7 +56,27 @@ public class PropFindXmlGeneratorHelper {
 	 * @return - map where key is the uri, and value is the prefix
 	 */
 	Map<String, String> findNameSpaces(List<PropFindResponse> propFindResponses) {
-		int i = 1;
+		Map<String, String> map = defaultNameSpaces();
+		for (PropFindResponse r : propFindResponses) {
+			addNameSpaces(map, r.getKnownProperties().keySet());
+		}
+		return map;
+	}
+
+	/**
+	 * Used when the responses are not known in advance, ie when streaming. The
+	 * namespaces are found from the fields which are expected to be written
+	 *
+	 * @param fields
+	 * @return - map where key is the uri, and value is the prefix
+	 */
+	Map<String, String> findNameSpaces(Collection<QName> fields) {
+		Map<String, String> map = defaultNameSpaces();
+		addNameSpaces(map, fields);
+		return map;
+	}
+
+	private Map<String, String> defaultNameSpaces() {
 		Map<String, String> map = new HashMap<>();
 		// always add webdav namespace
 		map.put(WebDavProtocol.NS_DAV.getName(), WebDavProtocol.NS_DAV.getPrefix());
@@ -64,16 +85,18 @@ public class PropFindXmlGeneratorHelper {
 		map.put("urn:ietf:params:xml:ns:caldav", "cal");
 		map.put("http://calendarserver.org/ns/", "cs");
 		map.put("urn:ietf:params:xml:ns:carddav", "card");
-		for (PropFindResponse r : propFindResponses) {
-			for (QName p : r.getKnownProperties().keySet()) {
-				String uri = p.getNamespaceURI();
-				//                    if( uri.endsWith( ":" ) ) uri = uri.substring( 0, uri.length() - 1 ); // strip trailing :
-				if (!map.containsKey(uri)) {
-					map.put(uri, "ns" + i++);
-				}
+		return map;
+	}
+
+	private void addNameSpaces(Map<String, String> map, Collection<QName> names) {
+		int i = map.size() - 3; // there are 4 fixed prefixes, so numbering starts at ns1
+		for (QName p : names) {
+			String uri = p.getNamespaceURI();
+			//                    if( uri.endsWith( ":" ) ) uri = uri.substring( 0, uri.length() - 1 ); // strip trailing :
+			if (!map.containsKey(uri)) {
+				map.put(uri, "ns" + i++);
 			}
 		}
-		return map;
 	}
 
 	String generateNamespaceDeclarations(Map<String, String> mapOfNamespaces) {
@@ -93,7 +116,62 @@ public class PropFindXmlGeneratorHelper {
 	}
 
 	public void appendResponse(XmlWriter writer, PropFindResponse r, Map<String, String> mapOfNamespaces, boolean writeErrorProps) {
+		appendResponse(writer, r, mapOfNamespaces, null, writeErrorProps);
+	}
+
+	/**
+	 * Append a response where the namespaces declared on the multistatus element
+	 * might not cover every property, as happens when streaming. Any missing
+	 * namespaces are declared on the response element itself
+	 *
+	 * @param writer
+	 * @param r
+	 * @param mapOfNamespaces - namespaces declared on the document element
+	 * @param writeErrorProps
+	 */
+	void appendStreamedResponse(XmlWriter writer, PropFindResponse r, Map<String, String> mapOfNamespaces, boolean writeErrorProps) {
+		Map<String, String> localNamespaces = null;
+		for (QName qname : r.getKnownProperties().keySet()) {
+			localNamespaces = addLocalNamespace(qname, mapOfNamespaces, localNamespaces);
+		}
+		if (r.getErrorProperties() != null && writeErrorProps) {
+			for (List<NameAndError> props : r.getErrorProperties().values()) {
+				for (NameAndError ne : props) {
+					localNamespaces = addLocalNamespace(ne.getName(), mapOfNamespaces, localNamespaces);
+				}
+			}
+		}
+		if (localNamespaces == null) {
+			appendResponse(writer, r, mapOfNamespaces, null, writeErrorProps);
+		} else {
+			Map<String, String> combined = new HashMap<>(mapOfNamespaces);
+			combined.putAll(localNamespaces);
+			appendResponse(writer, r, combined, localNamespaces, writeErrorProps);
+		}
+	}
+
+	private Map<String, String> addLocalNamespace(QName qname, Map<String, String> mapOfNamespaces, Map<String, String> localNamespaces) {
+		String uri = qname.getNamespaceURI();
+		if (mapOfNamespaces.containsKey(uri)) {
+			return localNamespaces;
+		}
+		if (localNamespaces == null) {
+			localNamespaces = new HashMap<>();
+		}
+		if (!localNamespaces.containsKey(uri)) {
+			// numbered after the document level prefixes so they cant clash
+			localNamespaces.put(uri, "ns" + (mapOfNamespaces.size() + localNamespaces.size() + 1));
+		}
+		return localNamespaces;
+	}
+
+	private void appendResponse(XmlWriter writer, PropFindResponse r, Map<String, String> mapOfNamespaces, Map<String, String> declareNamespaces, boolean writeErrorProps) {
       XmlWriter.Element el = writer.begin(WebDavProtocol.NS_DAV.getPrefix(), "response");
+      if (declareNamespaces != null) {
+          for (Map.Entry<String, String> e : declareNamespaces.entrySet()) {
+              el.writeAtt("xmlns:" + e.getValue(), e.getKey());
+          }
+      }
       el.open();
       writer.writeProperty(WebDavProtocol.NS_DAV.getPrefix(), "href", r.getHref());
       if (r.getStatus() != null) {
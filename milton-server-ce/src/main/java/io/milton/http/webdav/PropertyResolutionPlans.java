@@ -0,0 +1,205 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.milton.http.webdav;
+
+import io.milton.http.exceptions.BadRequestException;
+import io.milton.http.exceptions.NotAuthorizedException;
+import io.milton.property.CacheablePropertySource;
+import io.milton.property.PropertySource;
+import io.milton.property.PropertySource.PropertyMetaData;
+import io.milton.resource.Resource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.xml.namespace.QName;
+
+/**
+ * Remembers which PropertySource answers each property for a given class of
+ * resource, so that PROPFIND does not need to ask every source for the
+ * metadata of every property on every resource.
+ *
+ * Only sources which implement CacheablePropertySource, and say so for the
+ * resource being processed, are cached. Other sources are kept in the plan
+ * and asked directly each time, in their original order, so the result is
+ * always the same as searching the full list.
+ *
+ * Plans are keyed on the resource class plus which sources were cacheable for
+ * that resource. Changes to the list of property sources are detected and
+ * cause all plans to be discarded, and clear() can be called to discard them
+ * explicitly
+ *
+ * @author brad
+ */
+class PropertyResolutionPlans {
+
+	/**
+	 * Limits memory used by clients requesting lots of made up properties.
+	 * Once a plan has this many fields, new fields are resolved but not cached
+	 */
+	private static final int MAX_FIELDS_PER_PLAN = 1000;
+
+	private final List<PropertySource> propertySources;
+	private final ConcurrentMap<PlanKey, Plan> plans = new ConcurrentHashMap<>();
+	private volatile PropertySource[] sources = new PropertySource[0];
+
+	PropertyResolutionPlans(List<PropertySource> propertySources) {
+		this.propertySources = propertySources;
+	}
+
+	/**
+	 * Find, or create, the plan to use for the given resource
+	 *
+	 * @param r
+	 * @return
+	 */
+	Plan planFor(Resource r) {
+		PropertySource[] arr = currentSources();
+		long cacheable = 0;
+		for (int i = 0; i < arr.length && i < 64; i++) {
+			PropertySource s = arr[i];
+			if (s instanceof CacheablePropertySource && ((CacheablePropertySource) s).isPropertyMetaDataCacheable(r)) {
+				cacheable |= 1L << i;
+			}
+		}
+		PlanKey key = new PlanKey(r.getClass(), cacheable);
+		Plan plan = plans.get(key);
+		if (plan == null) {
+			plan = new Plan(arr, cacheable);
+			Plan existing = plans.putIfAbsent(key, plan);
+			if (existing != null) {
+				plan = existing;
+			}
+		}
+		return plan;
+	}
+
+	/**
+	 * Discard all plans, so they will be rebuilt on next use
+	 */
+	void clear() {
+		plans.clear();
+	}
+
+	int size() {
+		return plans.size();
+	}
+
+	private PropertySource[] currentSources() {
+		PropertySource[] arr = sources;
+		// Property sources are often added after construction, eg by protocols, so check for changes
+		boolean changed = arr.length != propertySources.size();
+		for (int i = 0; !changed && i < arr.length; i++) {
+			changed = arr[i] != propertySources.get(i);
+		}
+		if (changed) {
+			synchronized (this) {
+				arr = propertySources.toArray(new PropertySource[propertySources.size()]);
+				sources = arr;
+				plans.clear();
+			}
+		}
+		return arr;
+	}
+
+	/**
+	 * The resolution plan for one class of resource
+	 */
+	static class Plan {
+
+		private final PropertySource[] sources;
+		private final long cacheable;
+		private final ConcurrentMap<QName, FieldPlan> fields = new ConcurrentHashMap<>();
+
+		private Plan(PropertySource[] sources, long cacheable) {
+			this.sources = sources;
+			this.cacheable = cacheable;
+		}
+
+		FieldPlan get(QName field, Resource r) throws NotAuthorizedException, BadRequestException {
+			FieldPlan fp = fields.get(field);
+			if (fp == null) {
+				fp = build(field, r);
+				if (fields.size() < MAX_FIELDS_PER_PLAN) {
+					fields.put(field, fp);
+				}
+			}
+			return fp;
+		}
+
+		private FieldPlan build(QName field, Resource r) throws NotAuthorizedException, BadRequestException {
+			List<PropertySource> uncached = new ArrayList<>();
+			for (int i = 0; i < sources.length; i++) {
+				PropertySource s = sources[i];
+				if (i < 64 && (cacheable & (1L << i)) != 0) {
+					PropertyMetaData meta = s.getPropertyMetaData(field, r);
+					if (meta != null && !meta.isUnknown()) {
+						return new FieldPlan(uncached, s, meta);
+					}
+				} else {
+					uncached.add(s);
+				}
+			}
+			return new FieldPlan(uncached, null, null);
+		}
+	}
+
+	/**
+	 * How to resolve one property. The uncached sources must be asked first,
+	 * in order. If none of them know the property then the cached source, if
+	 * any, is the answer
+	 */
+	static class FieldPlan {
+
+		final PropertySource[] uncached;
+		final PropertySource source;
+		final PropertyMetaData meta;
+
+		private FieldPlan(List<PropertySource> uncached, PropertySource source, PropertyMetaData meta) {
+			this.uncached = uncached.toArray(new PropertySource[uncached.size()]);
+			this.source = source;
+			this.meta = meta;
+		}
+	}
+
+	private static class PlanKey {
+
+		private final Class<?> resourceClass;
+		private final long cacheable;
+
+		PlanKey(Class<?> resourceClass, long cacheable) {
+			this.resourceClass = resourceClass;
+			this.cacheable = cacheable;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * resourceClass.hashCode() + (int) (cacheable ^ (cacheable >>> 32));
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof PlanKey)) {
+				return false;
+			}
+			PlanKey other = (PlanKey) obj;
+			return resourceClass == other.resourceClass && cacheable == other.cacheable;
+		}
+	}
+}
@@ -33,6 +33,7 @@ import io.milton.http.values.SupportedReportSetList;
 import io.milton.http.values.ValueWriters;
 import io.milton.http.webdav.PropertyMap.StandardProperty;
 import io.milton.http.webdav.PropertyMap.WritableStandardProperty;
+import io.milton.property.CacheablePropertySource;
 import io.milton.property.PropertyAuthoriser;
 import io.milton.property.PropertySource;
 import io.milton.resource.CollectionResource;
@@ -67,7 +68,7 @@ import org.slf4j.LoggerFactory;
  *
  * @author brad
  */
-public class WebDavProtocol implements HttpExtension, PropertySource {
+public class WebDavProtocol implements HttpExtension, CacheablePropertySource {
 
 	private static final Logger log = LoggerFactory.getLogger(WebDavProtocol.class);
 	public static final String DAV_URI = "DAV:";
@@ -83,6 +84,7 @@ public class WebDavProtocol implements HttpExtension, PropertySource {
 	private final HandlerHelper handlerHelper;
 	private final UserAgentHelper userAgentHelper;
 	private final DisplayNameFormatter displayNameFormatter;
+	private final PropFindHandler propFindHandler;
 	private final MkColHandler mkColHandler;
 	private final PropPatchHandler propPatchHandler;
 	private List<CustomPostHandler> customPostHandlers;
@@ -142,7 +144,7 @@ public class WebDavProtocol implements HttpExtension, PropertySource {
 			patchSetter = new PropertySourcePatchSetter(propertySources, valueWriters);
 		}
 		//handlers.add(new PropFindHandler(resourceHandlerHelper, resourceTypeHelper, responseHandler, propertySources));
-		PropFindHandler propFindHandler = new PropFindHandler(resourceHandlerHelper, requestFieldParser, responseHandler, propertyBuilder);
+		propFindHandler = new PropFindHandler(resourceHandlerHelper, requestFieldParser, responseHandler, propertyBuilder);
 		handlers.add(propFindHandler);
 		mkColHandler = new MkColHandler(responseHandler, handlerHelper);
 		handlers.add(mkColHandler);
@@ -214,6 +216,15 @@ public class WebDavProtocol implements HttpExtension, PropertySource {
 		return propertyMetaData;
 	}
 
+	/**
+	 * The Nautilus workaround in getPropertyMetaData depends on property
+	 * values, so only cache for other clients
+	 */
+	@Override
+	public boolean isPropertyMetaDataCacheable(Resource r) {
+		return !userAgentHelper.isNautilus(HttpManager.request());
+	}
+
 	@Override
 	public void clearProperty(QName name, Resource r) {
 		throw new UnsupportedOperationException("Not supported. Standard webdav properties are not writable");
@@ -575,6 +586,10 @@ public class WebDavProtocol implements HttpExtension, PropertySource {
 		return propertyMap;
 	}
 
+	public PropFindHandler getPropFindHandler() {
+		return propFindHandler;
+	}
+
 	public MkColHandler getMkColHandler() {
 		return mkColHandler;
 	}
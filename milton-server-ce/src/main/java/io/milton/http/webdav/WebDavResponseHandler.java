@@ -21,10 +21,14 @@ package io.milton.http.webdav;
 
 import io.milton.http.HrefStatus;
 import io.milton.http.Request;
+import io.milton.resource.PropFindableResource;
 import io.milton.resource.Resource;
 import io.milton.http.Response;
 import io.milton.http.http11.Http11ResponseHandler;
+import io.milton.http.exceptions.BadRequestException;
+import io.milton.http.exceptions.NotAuthorizedException;
 import io.milton.http.quota.StorageChecker.StorageErrorReason;
+import java.net.URISyntaxException;
 import java.util.List;
 
 /**
@@ -44,6 +48,30 @@ public interface WebDavResponseHandler extends Http11ResponseHandler{
      */
     void respondPropFind( List<PropFindResponse> propFindResponses, Response response, Request request, Resource r );
 
+    /**
+     * Generate the response for a PROPFIND, where the responses are produced
+     * by the property builder while the response is being written. Each
+     * response element is sent as soon as it is resolved, so no content length
+     * is set and the container will use chunked transfer encoding.
+     *
+     * Note that the response will be committed before all properties have been
+     * resolved, so any exception thrown by the property builder cannot change
+     * the status of the response
+     *
+     * The default implementation builds the full list and calls respondPropFind
+     *
+     * @param pfr - the resource to interrogate
+     * @param depth - the depth header
+     * @param parseResult - the requested fields
+     * @param url - the encoded url of the resource
+     * @param propertyBuilder
+     * @param response
+     * @param request
+     */
+    default void respondPropFind( PropFindableResource pfr, int depth, PropertiesRequest parseResult, String url, PropFindPropertyBuilder propertyBuilder, Response response, Request request ) throws URISyntaxException, NotAuthorizedException, BadRequestException {
+        respondPropFind( propertyBuilder.buildProperties( pfr, depth, parseResult, url ), response, request, pfr );
+    }
+
     void respondInsufficientStorage( Request request, Response response, StorageErrorReason storageErrorReason );
 
     void respondLocked( Request request, Response response, Resource existingResource );
@@ -42,7 +42,7 @@ import org.slf4j.LoggerFactory;
  *
  * @author brad
  */
-public class BeanPropertySource implements PropertySource {
+public class BeanPropertySource implements CacheablePropertySource {
 
 	private static final Logger log = LoggerFactory.getLogger(BeanPropertySource.class);
 	private static final Object[] NOARGS = new Object[0];
@@ -166,6 +166,16 @@ public class BeanPropertySource implements PropertySource {
 		}
 	}
 
+	/**
+	 * Bean properties are determined by the class of the bean, but for
+	 * annotated resources the bean is the source object, which can be a
+	 * different class for each instance
+	 */
+	@Override
+	public boolean isPropertyMetaDataCacheable(Resource r) {
+		return !(r instanceof AnnoResource);
+	}
+
 	@Override
 	public void clearProperty(QName name, Resource r) throws NotAuthorizedException {
 		setProperty(name, null, r);
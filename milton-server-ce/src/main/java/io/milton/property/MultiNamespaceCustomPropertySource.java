@@ -30,7 +30,7 @@ import javax.xml.namespace.QName;
  *
  * @author brad
  */
-public class MultiNamespaceCustomPropertySource implements PropertySource{
+public class MultiNamespaceCustomPropertySource implements CacheablePropertySource{
 
     public Object getProperty( QName name, Resource r ) {
         MultiNamespaceCustomPropertyResource cpr = (MultiNamespaceCustomPropertyResource) r;
@@ -51,6 +51,15 @@ public class MultiNamespaceCustomPropertySource implements PropertySource{
         }
     }
 
+    /**
+     * Custom properties are defined by each resource instance, so can only be
+     * cached for resources which dont support them
+     */
+    @Override
+    public boolean isPropertyMetaDataCacheable( Resource r ) {
+        return !( r instanceof MultiNamespaceCustomPropertyResource );
+    }
+
     /**
      * Just calls setProperty(.. null ..);
      *
@@ -24,6 +24,10 @@ import io.milton.http.Cookie;
 import io.milton.http.Response.Status;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -91,6 +95,25 @@ public class SimpleMiltonResponse extends AbstractResponse{
         }
     }
 
+    /**
+     * Transfers directly to simple's byte channel, rather than wrapping the
+     * output stream
+     */
+    @Override
+    public void sendFile(Path path, long position, long length) throws IOException {
+        WritableByteChannel out = baseResponse.getByteChannel();
+        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+            long end = position + length;
+            while (position < end) {
+                long n = in.transferTo(position, end - position, out);
+                if (n <= 0) {
+                    break;
+                }
+                position += n;
+            }
+        }
+    }
+
     @Override
     public void close() {
         if( disableClose ) {
@@ -0,0 +1,25 @@
+//Copyright Kademi 2015
+
+package io.milton.grizzly;
+
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author brad
+ */
+public class GrizzlyMiltonResponseTest extends TestCase {
+
+    public void testCanSendFile() {
+        assertTrue(GrizzlyMiltonResponse.canSendFile(true, false, 1000));
+        assertTrue(GrizzlyMiltonResponse.canSendFile(true, false, Integer.MAX_VALUE));
+        assertFalse(GrizzlyMiltonResponse.canSendFile(false, false, 1000));
+        assertFalse(GrizzlyMiltonResponse.canSendFile(true, true, 1000));
+    }
+
+    public void testCanSendFile_NotOverIntRange() {
+        // grizzly would send an int Content-Length, so these must be copied
+        assertFalse(GrizzlyMiltonResponse.canSendFile(true, false, Integer.MAX_VALUE + 1L));
+        assertFalse(GrizzlyMiltonResponse.canSendFile(true, false, 5L * 1024 * 1024 * 1024));
+    }
+}
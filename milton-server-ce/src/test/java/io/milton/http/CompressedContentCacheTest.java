@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.milton.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import junit.framework.TestCase;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+/**
+ *
+ * @author brad
+ */
+public class CompressedContentCacheTest extends TestCase {
+
+	private CompressedContentCache cache;
+	private File dir;
+
+	@Override
+	protected void setUp() throws Exception {
+		dir = Files.createTempDirectory("milton-compressed-test").toFile();
+		cache = new CompressedContentCache();
+		cache.setDirectory(dir);
+		cache.setMaxMemoryEntrySize(10);
+		cache.setMaxMemorySize(25);
+		cache.setMaxDiskSize(50);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		cache.clear();
+		FileUtils.deleteDirectory(dir);
+	}
+
+	public void testPut_SmallInMemoryLargeOnDisk() throws Exception {
+		CompressedContentCache.Entry small = put("a", 8);
+		CompressedContentCache.Entry large = put("b", 20);
+		assertTrue(small.isInMemory());
+		assertFalse(large.isInMemory());
+		assertEquals(8, cache.getMemoryBytes());
+		assertEquals(20, cache.getDiskBytes());
+		assertSame(large, cache.get("b"));
+		InputStream in = large.openStream();
+		try {
+			assertEquals(20, IOUtils.toByteArray(in).length);
+		} finally {
+			in.close();
+		}
+	}
+
+	public void testPut_EvictsLeastRecentlyUsed() throws Exception {
+		put("a", 10);
+		put("b", 10);
+		cache.get("a");
+		put("c", 10); // over the 25 byte limit, so evict b
+		assertNotNull(cache.get("a"));
+		assertNull(cache.get("b"));
+		assertNotNull(cache.get("c"));
+		assertEquals(20, cache.getMemoryBytes());
+	}
+
+	public void testPut_ReplacesExisting() throws Exception {
+		put("a", 20);
+		put("a", 30);
+		assertEquals(30, cache.getDiskBytes());
+		assertEquals(30, cache.get("a").getSize());
+	}
+
+	public void testPutAndOpen_ReadableWhenEvictedAtOnce() throws Exception {
+		// larger than maxDiskSize, so evicted as soon as it is stored
+		InputStream in = cache.putAndOpen("a", new ByteArrayInputStream(new byte[60]), 60);
+		try {
+			assertNull(cache.get("a"));
+			assertEquals(60, IOUtils.toByteArray(in).length);
+		} finally {
+			in.close();
+		}
+		assertEquals(0, dir.list().length);
+	}
+
+	public void testOpenStream_FileDeletedWhenLastReaderCloses() throws Exception {
+		CompressedContentCache.Entry e = put("a", 20);
+		InputStream in = e.openStream();
+		cache.clear();
+		assertEquals(1, dir.list().length);
+		in.close();
+		assertEquals(0, dir.list().length);
+		try {
+			e.openStream();
+			fail("evicted entry should not open");
+		} catch (FileNotFoundException expected) {
+		}
+	}
+
+	public void testStop_DeletesFiles() throws Exception {
+		put("a", 20);
+		put("b", 20);
+		assertEquals(2, dir.list().length);
+		cache.stop();
+		assertEquals(0, dir.list().length);
+		assertNull(cache.get("a"));
+	}
+
+	private CompressedContentCache.Entry put(String key, int size) throws Exception {
+		return cache.put(key, new ByteArrayInputStream(new byte[size]), size);
+	}
+}
@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.milton.http;
+
+import io.milton.common.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author brad
+ */
+public class LockPathIndexTest extends TestCase {
+
+	private LockPathIndex<String> index;
+
+	@Override
+	protected void setUp() throws Exception {
+		index = new LockPathIndex<>();
+	}
+
+	public void testFindWithin() {
+		index.add(Path.path("/a/b"), "ab", false);
+		index.add(Path.path("/a/b/c/d"), "abcd", false);
+		index.add(Path.path("/a/x"), "ax", false);
+
+		assertEquals(new HashSet<>(Arrays.asList("ab", "abcd", "ax")), new HashSet<>(index.findWithin(Path.path("/a"))));
+		assertEquals(new HashSet<>(Arrays.asList("ab", "abcd")), new HashSet<>(index.findWithin(Path.path("/a/b"))));
+		assertEquals(Collections.singletonList("abcd"), index.findWithin(Path.path("/a/b/c")));
+		assertTrue(index.findWithin(Path.path("/a/y")).isEmpty());
+		assertTrue(index.findWithin(Path.path("/b")).isEmpty());
+		assertEquals(3, index.findWithin(Path.root).size());
+	}
+
+	public void testFindCovering() {
+		index.add(Path.path("/a"), "a-infinite", true);
+		index.add(Path.path("/a/b"), "ab-zero", false);
+		index.add(Path.path("/a/b/c"), "abc-infinite", true);
+
+		assertEquals(Arrays.asList("a-infinite"), index.findCovering(Path.path("/a/b/c")));
+		assertEquals(Arrays.asList("a-infinite", "abc-infinite"), index.findCovering(Path.path("/a/b/c/d/e")));
+		assertTrue(index.findCovering(Path.path("/a")).isEmpty());
+		assertTrue(index.findCovering(Path.path("/x/y")).isEmpty());
+	}
+
+	public void testRemove() {
+		String v1 = "one";
+		String v2 = new String("one");
+		index.add(Path.path("/a/b"), v1, true);
+		index.add(Path.path("/a/b"), v2, true);
+		assertEquals(2, index.size());
+
+		assertFalse(index.remove(Path.path("/a/c"), v1));
+		assertTrue(index.remove(Path.path("/a/b"), v1));
+		assertEquals(1, index.size());
+		assertSame(v2, index.findWithin(Path.path("/a")).get(0));
+
+		assertTrue(index.remove(Path.path("/a/b"), v2));
+		assertFalse(index.remove(Path.path("/a/b"), v2));
+		assertEquals(0, index.size());
+		assertTrue(index.findWithin(Path.root).isEmpty());
+		assertTrue(index.findCovering(Path.path("/a/b/c")).isEmpty());
+	}
+}
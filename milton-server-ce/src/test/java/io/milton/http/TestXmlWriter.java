@@ -57,4 +57,37 @@ public class TestXmlWriter extends TestCase {
         String s = out.toString();
         System.out.println("actual: \n" + s);
     }
+
+    public void testBuffered_SameAsUnbuffered() throws Exception {
+        ByteArrayOutputStream direct = new ByteArrayOutputStream();
+        write(new XmlWriter(direct));
+        ByteArrayOutputStream buffered = new ByteArrayOutputStream();
+        // small buffer so fragments, and the surrogate pair, span several blocks
+        write(new XmlWriter(buffered, XmlWriter.utf8(), 17));
+        assertEquals(direct.toString("UTF-8"), buffered.toString("UTF-8"));
+    }
+
+    public void testWriteEscapedText() throws Exception {
+        ByteArrayOutputStream direct = new ByteArrayOutputStream();
+        XmlWriter w = new XmlWriter(direct);
+        w.writeEscapedText("a<b>&\"c\"");
+        w.flush();
+        assertEquals("a&lt;b&gt;&amp;\"c\"", direct.toString("UTF-8"));
+    }
+
+    private void write(XmlWriter w) {
+        w.writeXMLHeader();
+        w.open("D", "multistatus xmlns:D=\"DAV:\"");
+        for (int i = 0; i < 20; i++) {
+            XmlWriter.Element el = w.begin("D", "response").open();
+            w.writeProperty("D", "href", "/f\u00e9lix/\ud83d\ude00/" + i);
+            w.writeElement("D", "displayname", XmlWriter.Type.OPENING);
+            w.writeEscapedText("caf\u00e9 & <" + i + ">");
+            w.writeElement("D", "displayname", XmlWriter.Type.CLOSING);
+            w.writeProperty("ns1", "http://example.com/ns", "colour", "red");
+            el.close();
+        }
+        w.close("D", "multistatus");
+        w.flush();
+    }
 }
@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.milton.http;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Compares the unbuffered and buffered XmlWriter modes on a 10k response
+ * multistatus, written the way PropFindXmlGeneratorHelper writes one. This is
+ * a manual benchmark, not a unit test, so run it from the IDE or with
+ * exec:java against the test classpath. Run with -verbose:gc or a profiler
+ * to compare allocation as well as time.
+ *
+ * Both modes write to a BufferedOutputStream over a sink which discards its
+ * input, as a servlet container's response stream would.
+ *
+ * @author brad
+ */
+public class XmlWriterBenchmark {
+
+	private static final int RESPONSES = 10000;
+	private static final int WARMUP = 20;
+	private static final int RUNS = 20;
+
+	public static void main(String[] args) throws IOException {
+		for (int i = 0; i < WARMUP; i++) {
+			run(0);
+			run(XmlWriter.DEFAULT_BUFFER_SIZE);
+		}
+		long unbuffered = 0;
+		long buffered = 0;
+		long bytes = 0;
+		for (int i = 0; i < RUNS; i++) {
+			long t = System.nanoTime();
+			bytes = run(0);
+			unbuffered += System.nanoTime() - t;
+			t = System.nanoTime();
+			run(XmlWriter.DEFAULT_BUFFER_SIZE);
+			buffered += System.nanoTime() - t;
+		}
+		System.out.println("multistatus of " + RESPONSES + " responses, " + bytes + " bytes");
+		System.out.println("unbuffered: " + (unbuffered / RUNS / 1000) + "us per multistatus");
+		System.out.println("buffered:   " + (buffered / RUNS / 1000) + "us per multistatus");
+	}
+
+	/**
+	 *
+	 * @param bufferSize - passed to XmlWriter, zero for the unbuffered mode
+	 * @return - the number of bytes written
+	 */
+	private static long run(int bufferSize) throws IOException {
+		CountingSink sink = new CountingSink();
+		OutputStream out = new BufferedOutputStream(sink);
+		XmlWriter writer = new XmlWriter(out, XmlWriter.utf8(), bufferSize);
+		writer.writeXMLHeader();
+		writer.open("D", "multistatus xmlns:D=\"DAV:\"");
+		writer.newLine();
+		for (int i = 0; i < RESPONSES; i++) {
+			XmlWriter.Element el = writer.begin("D", "response");
+			el.open();
+			writer.writeProperty("D", "href", "/files/folder/document-" + i + ".txt");
+			XmlWriter.Element elPropStat = writer.begin("D", "propstat").open();
+			XmlWriter.Element elProp = writer.begin("D", "prop").open();
+			writer.writeProperty("D", "displayname", "document <" + i + "> & notes.txt");
+			writer.writeProperty("D", "getcontentlength", Integer.toString(i * 31));
+			writer.writeProperty("D", "getlastmodified", "Tue, 13 Oct 2026 10:15:00 GMT");
+			writer.writeProperty("D", "getcontenttype", "text/plain");
+			writer.writeProperty("D", "resourcetype");
+			elProp.close();
+			writer.writeProperty("D", "status", "HTTP/1.1 200 OK");
+			elPropStat.close();
+			el.close();
+		}
+		writer.close("D", "multistatus");
+		writer.flush();
+		out.flush();
+		return sink.count;
+	}
+
+	private static class CountingSink extends OutputStream {
+
+		private long count;
+
+		@Override
+		public void write(int b) {
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			count += len;
+		}
+	}
+}
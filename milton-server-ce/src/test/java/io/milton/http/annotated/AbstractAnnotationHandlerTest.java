@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.milton.http.annotated;
+
+import io.milton.annotations.Get;
+import java.util.Collections;
+import java.util.Map;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author brad
+ */
+public class AbstractAnnotationHandlerTest extends TestCase {
+
+	private GetAnnotationHandler handler;
+
+	@Override
+	protected void setUp() throws Exception {
+		handler = new GetAnnotationHandler(new AnnotationResourceFactory());
+		handler.parseController(new Controller());
+	}
+
+	public void testGetBestMethod_MostSpecificSource() {
+		assertEquals("render", handler.getBestMethod(Object.class).method.getName());
+		assertEquals("renderString", handler.getBestMethod(String.class).method.getName());
+		// cached result is the same
+		assertSame(handler.getBestMethod(String.class), handler.getBestMethod(String.class));
+	}
+
+	public void testGetBestMethod_ContentType() {
+		assertEquals("json", handler.getBestMethod(String.class, "application/json").method.getName());
+		assertEquals("renderString", handler.getBestMethod(String.class, "text/html").method.getName());
+	}
+
+	public void testGetBestMethod_Params() {
+		Map<String, String> edit = Collections.singletonMap("edit", "true");
+		assertEquals("edit", handler.getBestMethod(Integer.class, null, edit, null).method.getName());
+		assertEquals("render", handler.getBestMethod(Integer.class, null, null, null).method.getName());
+		assertEquals("edit", handler.getBestMethod(Integer.class, null, edit, null).method.getName());
+	}
+
+	public void testGetBestMethod_ReturnType() {
+		assertNull(handler.getBestMethod(Object.class, null, null, Integer.class));
+		assertNull(handler.getBestMethod(Object.class, null, null, Integer.class));
+	}
+
+	public static class Controller {
+
+		@Get
+		public String render(Object source) {
+			return null;
+		}
+
+		@Get
+		public String renderString(String source) {
+			return null;
+		}
+
+		@Get(contentType = "application/json")
+		public String json(String source) {
+			return null;
+		}
+
+		@Get(params = "edit")
+		public String edit(Object source) {
+			return null;
+		}
+	}
+}
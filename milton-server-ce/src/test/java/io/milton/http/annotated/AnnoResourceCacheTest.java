@@ -0,0 +1,183 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.milton.http.annotated;
+
+import io.milton.event.DeleteEvent;
+import io.milton.event.MoveEvent;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author brad
+ */
+public class AnnoResourceCacheTest extends TestCase {
+
+	private AnnotationResourceFactory arf;
+	/**
+	 * stands in for the backing store's version column, keyed on path
+	 */
+	private Map<String, String> store;
+
+	@Override
+	protected void setUp() throws Exception {
+		arf = new AnnotationResourceFactory();
+		store = new HashMap<>();
+	}
+
+	public void testGet_ValidatesVersionFromStore() {
+		AnnoResourceCache cache = new AnnoResourceCache((host, path) -> store.get(path), 10, 60000);
+		store.put("/a/b", "v1");
+		List<AnnoResourceCache.Link> chain = chain();
+		cache.put("host", "/a/b/", "/users/joe/", cache.currentVersion("host", "/a/b/"), chain);
+		assertNotNull(cache.get("host", "/a/b", "/users/joe/", cache.currentVersion("host", "/a/b")));
+		assertNull(cache.get("host", "/a/b", "/users/fred/", cache.currentVersion("host", "/a/b")));
+		assertNull(cache.get("other", "/a/b", "/users/joe/", cache.currentVersion("host", "/a/b")));
+
+		// changed in the store, eg by another application
+		store.put("/a/b", "v2");
+		assertNull(cache.get("host", "/a/b", "/users/joe/", cache.currentVersion("host", "/a/b")));
+		assertEquals(0, cache.size());
+	}
+
+	public void testPut_NoVersionNotCached() {
+		AnnoResourceCache cache = new AnnoResourceCache((host, path) -> null, 10, 60000);
+		cache.put("host", "/a", "", cache.currentVersion("host", "/a"), chain());
+		assertEquals(0, cache.size());
+	}
+
+	public void testPut_ChainIsCopied() {
+		AnnoResourceCache cache = new AnnoResourceCache((host, path) -> "v", 10, 60000);
+		List<AnnoResourceCache.Link> chain = chain();
+		cache.put("host", "/a", "", "v", chain);
+		chain.clear();
+		List<AnnoResourceCache.Link> cached = cache.get("host", "/a", "", "v");
+		assertEquals(1, cached.size());
+		try {
+			cached.clear();
+			fail("cached chain should be read only");
+		} catch (UnsupportedOperationException expected) {
+		}
+	}
+
+	public void testGet_Expires() throws Exception {
+		AnnoResourceCache cache = new AnnoResourceCache((host, path) -> "v1", 10, 0);
+		cache.put("host", "/a", "", "v1", chain());
+		Thread.sleep(5);
+		assertNull(cache.get("host", "/a", "", "v1"));
+	}
+
+	public void testPut_EvictsLeastRecentlyUsed() {
+		AnnoResourceCache cache = new AnnoResourceCache((host, path) -> "v", 2, 60000);
+		cache.put("host", "/a", "", "v", chain());
+		cache.put("host", "/b", "", "v", chain());
+		assertNotNull(cache.get("host", "/a", "", "v"));
+		cache.put("host", "/c", "", "v", chain());
+		assertNotNull(cache.get("host", "/a", "", "v"));
+		assertNull(cache.get("host", "/b", "", "v"));
+	}
+
+	public void testInvalidate_PathParentAndDescendants() {
+		AnnoResourceCache cache = new AnnoResourceCache((host, path) -> "v", 10, 60000);
+		for (String p : new String[]{"", "/a", "/a/b", "/a/b/c", "/a/bb", "/x"}) {
+			cache.put("host", p, "", "v", chain());
+		}
+		cache.invalidate("/a/b/");
+		assertNotNull(cache.get("host", "/", "", "v"));
+		assertNull(cache.get("host", "/a", "", "v"));
+		assertNull(cache.get("host", "/a/b", "", "v"));
+		assertNull(cache.get("host", "/a/b/c", "", "v"));
+		assertNotNull(cache.get("host", "/a/bb", "", "v"));
+		assertNotNull(cache.get("host", "/x", "", "v"));
+	}
+
+	public void testOnEvent_RootClearsAll() {
+		AnnoResourceCache cache = new AnnoResourceCache((host, path) -> "v", 10, 60000);
+		cache.put("host", "/a", "", "v", chain());
+		cache.put("host", "/a/b", "", "v", chain());
+		cache.onEvent(new DeleteEvent(new AnnoCollectionResource(arf, new Object(), null)));
+		assertEquals(0, cache.size());
+	}
+
+	public void testOnEvent_StripsContextPath() {
+		arf.setContextPath("/dav");
+		AnnoResourceCache cache = new AnnoResourceCache((host, path) -> "v", 10, 60000);
+		for (String p : new String[]{"/a", "/a/b.txt", "/c", "/c/d.txt", "/x"}) {
+			cache.put("host", p, "", "v", chain());
+		}
+		AnnoCollectionResource root = new AnnoCollectionResource(arf, new Object(), null);
+		AnnoCollectionResource a = new AnnoCollectionResource(arf, new Object(), root);
+		a.setNameOverride("a");
+		AnnoFileResource b = new AnnoFileResource(arf, new Object(), a);
+		b.setNameOverride("b.txt");
+		assertEquals("/dav/a/b.txt", b.getHref());
+
+		cache.onEvent(new DeleteEvent(b));
+		assertNull(cache.get("host", "/a", "", "v"));
+		assertNull(cache.get("host", "/a/b.txt", "", "v"));
+		assertEquals(3, cache.size());
+
+		AnnoCollectionResource c = new AnnoCollectionResource(arf, new Object(), root);
+		c.setNameOverride("c");
+		AnnoFileResource x = new AnnoFileResource(arf, new Object(), root);
+		x.setNameOverride("x");
+		cache.onEvent(new MoveEvent(x, c, "d.txt"));
+		assertNull(cache.get("host", "/x", "", "v"));
+		assertNull(cache.get("host", "/c/d.txt", "", "v"));
+		assertNull(cache.get("host", "/c", "", "v"));
+		assertEquals(0, cache.size());
+	}
+
+	public void testRebuild_NewResourcesOverSameSources() {
+		Object folder = new Object();
+		Object file = new Object();
+		AnnoCollectionResource root = new AnnoCollectionResource(arf, new Object(), null);
+		AnnoCollectionResource col = new AnnoCollectionResource(arf, folder, root);
+		AnnoFileResource res = new AnnoFileResource(arf, file, col);
+		res.setNameOverride("renamed.txt");
+		List<AnnoResourceCache.Link> chain = arf.toChain(res, root);
+		assertEquals(2, chain.size());
+
+		AnnoCollectionResource nextRoot = new AnnoCollectionResource(arf, new Object(), null);
+		AnnoResource rebuilt = arf.rebuild(nextRoot, chain);
+		assertNotSame(res, rebuilt);
+		assertTrue(rebuilt instanceof AnnoFileResource);
+		assertSame(file, rebuilt.getSource());
+		assertEquals("renamed.txt", rebuilt.getName());
+		assertNotSame(col, rebuilt.getParent());
+		assertSame(folder, rebuilt.getParent().getSource());
+		assertSame(nextRoot, rebuilt.getParent().getParent());
+	}
+
+	public void testToChain_UnknownTypeNotCached() {
+		AnnoCollectionResource root = new AnnoCollectionResource(arf, new Object(), null);
+		AnnoPrincipalResource user = new AnnoPrincipalResource(arf, new Object(), root);
+		AnnoSchedulingInboxResource inbox = new AnnoSchedulingInboxResource(arf, new Object(), user);
+		assertNull(arf.toChain(inbox, root));
+		assertEquals(1, arf.toChain(user, root).size());
+	}
+
+	private List<AnnoResourceCache.Link> chain() {
+		return new ArrayList<>(Collections.singletonList(new AnnoResourceCache.Link(AnnoFileResource.class, new Object(), null)));
+	}
+}
@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.milton.http.annotated;
+
+import io.milton.annotations.Principal;
+import java.lang.reflect.InvocationTargetException;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author brad
+ */
+public class MethodBindingTest extends TestCase {
+
+	public void testInvoke() throws Exception {
+		MethodBinding b = MethodBinding.of(Target.class.getMethod("concat", String.class, int.class));
+		assertEquals("a1", b.invoke(new Target(), new Object[]{"a", 1}));
+		assertSame(b, MethodBinding.of(Target.class.getMethod("concat", String.class, int.class)));
+	}
+
+	public void testInvoke_VoidAndStatic() throws Exception {
+		Target t = new Target();
+		assertNull(MethodBinding.of(Target.class.getMethod("touch")).invoke(t, new Object[0]));
+		assertEquals(1, t.touched);
+		assertEquals("x", MethodBinding.of(Target.class.getMethod("echo", Object.class)).invoke(null, new Object[]{"x"}));
+	}
+
+	public void testInvoke_NonPublicClass() throws Exception {
+		MethodBinding b = MethodBinding.of(Hidden.class.getMethod("name"));
+		assertEquals("hidden", b.invoke(new Hidden(), new Object[0]));
+	}
+
+	public void testInvoke_WrapsExceptions() throws Exception {
+		MethodBinding b = MethodBinding.of(Target.class.getMethod("fail"));
+		try {
+			b.invoke(new Target(), new Object[0]);
+			fail("expected exception");
+		} catch (InvocationTargetException e) {
+			assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+	}
+
+	public void testInvoke_BadArgumentsAsForMethodInvoke() throws Exception {
+		MethodBinding b = MethodBinding.of(Target.class.getMethod("concat", String.class, int.class));
+		try {
+			b.invoke(new Target(), new Object[]{"a", null});
+			fail("expected exception");
+		} catch (IllegalArgumentException e) {
+			// null for a primitive
+		}
+		try {
+			b.invoke(new Target(), new Object[]{1, 1});
+			fail("expected exception");
+		} catch (IllegalArgumentException e) {
+			// wrong type
+		}
+		try {
+			b.invoke("not a target", new Object[]{"a", 1});
+			fail("expected exception");
+		} catch (IllegalArgumentException e) {
+			// wrong target
+		}
+		// widening is allowed
+		assertEquals("a7", MethodBinding.of(Target.class.getMethod("widen", String.class, long.class)).invoke(new Target(), new Object[]{"a", 7}));
+	}
+
+	public void testPrincipalArgs() throws Exception {
+		MethodBinding b = MethodBinding.of(Target.class.getMethod("withPrincipal", Object.class, Object.class));
+		assertFalse(b.principalArgs[0]);
+		assertTrue(b.principalArgs[1]);
+	}
+
+	public static class Target {
+
+		int touched;
+
+		public String concat(String s, int i) {
+			return s + i;
+		}
+
+		public String widen(String s, long l) {
+			return s + l;
+		}
+
+		public void touch() {
+			touched++;
+		}
+
+		public static Object echo(Object o) {
+			return o;
+		}
+
+		public void fail() {
+			throw new IllegalStateException("failed");
+		}
+
+		public void withPrincipal(Object source, @Principal Object user) {
+		}
+	}
+
+	static class Hidden {
+
+		public String name() {
+			return "hidden";
+		}
+	}
+}
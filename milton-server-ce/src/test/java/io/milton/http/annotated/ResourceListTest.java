@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.milton.http.annotated;
+
+import io.milton.http.Auth;
+import io.milton.http.Request;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author brad
+ */
+public class ResourceListTest extends TestCase {
+
+	public void testGet_AfterBulkChanges() {
+		ResourceList list = new ResourceList();
+		list.addAll(Arrays.asList(new Res("a"), new Res("b"), new Res("c")));
+		assertEquals("b", list.get("b").getName());
+
+		list.removeIf(r -> r.getName().equals("b"));
+		assertNull(list.get("b"));
+		assertTrue(list.hasChild("c"));
+
+		list.set(0, new Res("x"));
+		assertNull(list.get("a"));
+		assertNotNull(list.get("x"));
+
+		ResourceList copy = new ResourceList(list);
+		assertNotNull(copy.get("x"));
+		assertEquals(2, copy.getMap().size());
+	}
+
+	public void testDuplicateNames() {
+		Res first = new Res("a");
+		Res second = new Res("a");
+		ResourceList list = new ResourceList();
+		list.add(first);
+		list.add(new Res("b"));
+		list.add(second);
+		assertSame(second, list.get("a"));
+		assertSame(first, list.findFirst("a"));
+
+		list.remove("a");
+		assertSame(first, list.get("a"));
+		assertSame(first, list.findFirst("a"));
+		assertNull(list.findFirst("z"));
+	}
+
+	public void testConcurrentLookupsAfterBulkChange() throws Exception {
+		ResourceList list = new ResourceList();
+		for (int i = 0; i < 1000; i++) {
+			list.add(new Res("r" + i));
+		}
+		list.removeIf(r -> r.getName().equals("r0"));
+		ExecutorService exec = Executors.newFixedThreadPool(8);
+		try {
+			List<Callable<Integer>> tasks = new ArrayList<>();
+			for (int t = 0; t < 8; t++) {
+				tasks.add(() -> {
+					int found = 0;
+					for (int i = 1; i < 1000; i++) {
+						if (list.get("r" + i) != null) {
+							found++;
+						}
+					}
+					return found;
+				});
+			}
+			for (Future<Integer> f : exec.invokeAll(tasks)) {
+				assertEquals(999, f.get().intValue());
+			}
+		} finally {
+			exec.shutdown();
+		}
+		try {
+			list.getMap().clear();
+			fail("map should be read only");
+		} catch (UnsupportedOperationException expected) {
+		}
+	}
+
+	private static class Res implements CommonResource {
+
+		private final String name;
+
+		Res(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public boolean is(String type) {
+			return false;
+		}
+
+		@Override
+		public CommonResource getParent() {
+			return null;
+		}
+
+		@Override
+		public String getUniqueId() {
+			return null;
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public Object authenticate(String user, String password) {
+			return null;
+		}
+
+		@Override
+		public boolean authorise(Request request, Request.Method method, Auth auth) {
+			return true;
+		}
+
+		@Override
+		public String getRealm() {
+			return null;
+		}
+
+		@Override
+		public Date getModifiedDate() {
+			return null;
+		}
+
+		@Override
+		public String checkRedirect(Request request) {
+			return null;
+		}
+	}
+}
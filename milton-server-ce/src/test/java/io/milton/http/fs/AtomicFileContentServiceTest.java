@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.milton.http.fs;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Set;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author brad
+ */
+public class AtomicFileContentServiceTest extends TestCase {
+
+    private File dir;
+    private File file;
+    private AtomicFileContentService service;
+
+    @Override
+    protected void setUp() throws Exception {
+        dir = Files.createTempDirectory("milton").toFile();
+        file = new File(dir, "a.txt");
+        Files.write(file.toPath(), "old".getBytes(StandardCharsets.UTF_8));
+        service = new AtomicFileContentService();
+        service.setBufferSize(4);
+        service.setForceOnWrite(true);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        for (File f : dir.listFiles()) {
+            f.delete();
+        }
+        dir.delete();
+    }
+
+    public void testSetFileContent_Replaces() throws Exception {
+        service.setFileContent(file, in("0123456789"), 10L);
+        assertEquals("0123456789", content());
+        service.setFileContent(file, in("abc"));
+        assertEquals("abc", content());
+        assertEquals(1, dir.listFiles().length);
+    }
+
+    public void testSetFileContent_TruncatedLeavesOriginal() throws Exception {
+        try {
+            service.setFileContent(file, in("0123"), 10L);
+            fail("expected truncated upload to fail");
+        } catch (IOException e) {
+            // expected
+        }
+        assertEquals("old", content());
+        assertEquals(1, dir.listFiles().length);
+    }
+
+    public void testSetFileContent_FailedStreamLeavesOriginal() throws Exception {
+        InputStream failing = new InputStream() {
+            private int count;
+
+            @Override
+            public int read() throws IOException {
+                if (count++ > 5) {
+                    throw new IOException("connection reset");
+                }
+                return 'x';
+            }
+        };
+        try {
+            service.setFileContent(file, failing);
+            fail("expected failure");
+        } catch (IOException e) {
+            // expected
+        }
+        assertEquals("old", content());
+        assertEquals(1, dir.listFiles().length);
+    }
+
+    public void testSetFileContent_KeepsPermissions() throws Exception {
+        if (Files.getFileAttributeView(file.toPath(), PosixFileAttributeView.class) == null) {
+            return; // no POSIX permissions on this platform
+        }
+        Set<PosixFilePermission> perms = PosixFilePermissions.fromString("rw-r-----");
+        Files.setPosixFilePermissions(file.toPath(), perms);
+        service.setFileContent(file, in("new"));
+        assertEquals("new", content());
+        assertEquals(perms, Files.getPosixFilePermissions(file.toPath()));
+    }
+
+    public void testTempFilesHidden() throws Exception {
+        File temp = new File(dir, ".milton-a.txt.1234.tmp");
+        Files.write(temp.toPath(), "partial".getBytes(StandardCharsets.UTF_8));
+        assertTrue(service.isTempFile(temp));
+        assertFalse(service.isTempFile(file));
+        FileSystemResourceFactory factory = new FileSystemResourceFactory(dir, null);
+        factory.setContentService(service);
+        FsDirectoryResource root = (FsDirectoryResource) factory.resolveFile("localhost", dir);
+        assertEquals(1, root.getChildren().size());
+        assertNull(factory.resolveFile("localhost", temp));
+    }
+
+    private InputStream in(String s) {
+        return new ByteArrayInputStream(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String content() throws Exception {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+}
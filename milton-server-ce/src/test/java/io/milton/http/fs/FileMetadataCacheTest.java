@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.milton.http.fs;
+
+import io.milton.resource.Resource;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author brad
+ */
+public class FileMetadataCacheTest extends TestCase {
+
+    private File dir;
+    private FileMetadataCache cache;
+    private FileSystemResourceFactory factory;
+
+    @Override
+    protected void setUp() throws Exception {
+        dir = Files.createTempDirectory("milton").toFile();
+        write("b.txt", "bb");
+        write("a.txt", "a");
+        new File(dir, "z").mkdir();
+        cache = new FileMetadataCache();
+        cache.setMaxAgeMillis(0);
+        factory = new FileSystemResourceFactory(dir, null);
+        factory.setMetadataCache(cache);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        cache.close();
+        new File(dir, "z").delete();
+        for (File f : dir.listFiles()) {
+            f.delete();
+        }
+        dir.delete();
+    }
+
+    public void testList_DirectoriesFirstThenName() throws Exception {
+        Map<String, BasicFileAttributes> listing = cache.list(dir);
+        assertEquals(Arrays.asList("z", "a.txt", "b.txt"), new ArrayList<>(listing.keySet()));
+        assertEquals(2, listing.get("b.txt").size());
+        assertSame(listing, cache.list(dir));
+        assertEquals(3, cache.size());
+        // attributes come from the listing, and missing files are known
+        assertSame(listing.get("a.txt"), cache.getAttributes(new File(dir, "a.txt")));
+        assertNull(cache.getAttributes(new File(dir, "missing.txt")));
+    }
+
+    public void testOwnWritesInvalidate() throws Exception {
+        FsDirectoryResource root = (FsDirectoryResource) factory.resolveFile("localhost", dir);
+        assertEquals(3, root.getChildren().size());
+        root.createNew("c.txt", new ByteArrayInputStream("ccc".getBytes(StandardCharsets.UTF_8)), 3L, null);
+        List<? extends Resource> children = root.getChildren();
+        assertEquals(4, children.size());
+        FsFileResource c = (FsFileResource) root.child("c.txt");
+        assertEquals(Long.valueOf(3), c.getContentLength());
+        c.delete();
+        assertNull(root.child("c.txt"));
+        assertEquals(3, root.getChildren().size());
+    }
+
+    public void testWatchInvalidatesExternalChanges() throws Exception {
+        assertEquals(3, cache.list(dir).size());
+        write("d.txt", "d");
+        long until = System.currentTimeMillis() + 20000;
+        while (cache.list(dir).size() != 4 && System.currentTimeMillis() < until) {
+            Thread.sleep(50);
+        }
+        assertEquals(4, cache.list(dir).size());
+    }
+
+    public void testInvalidate_DirectoriesBeneath() throws Exception {
+        File z = new File(dir, "z");
+        File y = new File(z, "y");
+        File z0 = new File(dir, "z0");
+        y.mkdir();
+        z0.mkdir();
+        try {
+            Map<String, BasicFileAttributes> yListing = cache.list(y);
+            Map<String, BasicFileAttributes> z0Listing = cache.list(z0);
+            // z is not cached itself, but a directory beneath it is
+            cache.invalidate(z);
+            assertNotSame(yListing, cache.list(y));
+            assertSame(z0Listing, cache.list(z0));
+        } finally {
+            y.delete();
+            z0.delete();
+        }
+    }
+
+    public void testMaxEntries() throws Exception {
+        cache.setMaxEntries(2);
+        // too big to cache, so listed each time
+        Map<String, BasicFileAttributes> listing = cache.list(dir);
+        assertEquals(3, listing.size());
+        assertNotSame(listing, cache.list(dir));
+        assertEquals(0, cache.size());
+    }
+
+    public void testMaxDirectories() throws Exception {
+        cache.setMaxDirectories(1);
+        File z = new File(dir, "z");
+        Map<String, BasicFileAttributes> listing = cache.list(dir);
+        assertSame(listing, cache.list(dir));
+        // caching another directory discards the least recently used one
+        cache.list(z);
+        assertNotSame(listing, cache.list(dir));
+    }
+
+    public void testStop() throws Exception {
+        cache.list(dir);
+        cache.stop();
+        assertEquals(0, cache.size());
+        // still works, but no longer caches
+        assertEquals(3, cache.list(dir).size());
+        assertEquals(0, cache.size());
+    }
+
+    private void write(String name, String content) throws Exception {
+        Files.write(new File(dir, name).toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+}
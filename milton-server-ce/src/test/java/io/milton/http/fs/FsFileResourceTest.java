@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.milton.http.fs;
+
+import io.milton.http.Range;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Set;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author brad
+ */
+public class FsFileResourceTest extends TestCase {
+
+    private File dir;
+    private File file;
+    private FsFileResource resource;
+
+    @Override
+    protected void setUp() throws Exception {
+        dir = Files.createTempDirectory("milton").toFile();
+        file = new File(dir, "a.txt");
+        Files.write(file.toPath(), "0123456789".getBytes(StandardCharsets.UTF_8));
+        resource = new FsFileResource("localhost", new FileSystemResourceFactory(dir, null), file, new SimpleFileContentService());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        for (File f : dir.listFiles()) {
+            f.delete();
+        }
+        dir.delete();
+    }
+
+    public void testReplacePartialContent() throws Exception {
+        resource.replacePartialContent(new Range(2L, 3L), in("ab"));
+        assertEquals("01ab456789", content());
+        // extending the file
+        resource.replacePartialContent(new Range(10L, 11L), in("cd"));
+        assertEquals("01ab456789cd", content());
+    }
+
+    public void testReplaceContent_MovesFile() throws Exception {
+        File upload = new File(dir, "upload.tmp");
+        Files.write(upload.toPath(), "new".getBytes(StandardCharsets.UTF_8));
+        resource.replaceContent(upload);
+        assertEquals("new", content());
+        assertFalse(upload.exists());
+    }
+
+    public void testReplaceContent_KeepsPermissions() throws Exception {
+        if (Files.getFileAttributeView(file.toPath(), PosixFileAttributeView.class) == null) {
+            return; // no POSIX permissions on this platform
+        }
+        Set<PosixFilePermission> perms = PosixFilePermissions.fromString("rw-r-----");
+        Files.setPosixFilePermissions(file.toPath(), perms);
+        File upload = new File(dir, "upload.tmp");
+        Files.write(upload.toPath(), "new".getBytes(StandardCharsets.UTF_8));
+        resource.replaceContent(upload);
+        assertEquals("new", content());
+        assertEquals(perms, Files.getPosixFilePermissions(file.toPath()));
+    }
+
+    public void testReplacePartialContent_ForceOnWrite() throws Exception {
+        AtomicFileContentService service = new AtomicFileContentService();
+        service.setForceOnWrite(true);
+        resource = new FsFileResource("localhost", new FileSystemResourceFactory(dir, null), file, service);
+        resource.replacePartialContent(new Range(0L, 1L), in("ab"));
+        assertEquals("ab23456789", content());
+    }
+
+    private String content() throws Exception {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+    private ByteArrayInputStream in(String s) {
+        return new ByteArrayInputStream(s.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.milton.http.fs;
+
+import io.milton.cache.LocalCacheManager;
+import io.milton.http.Auth;
+import io.milton.http.LockInfo;
+import io.milton.http.LockManager;
+import io.milton.http.LockResult;
+import io.milton.http.LockTimeout;
+import io.milton.http.LockToken;
+import io.milton.http.Request;
+import io.milton.resource.LockableResource;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Compares SimpleLockManager with ShardedLockManager under contention. Each
+ * thread repeatedly locks, checks and unlocks resources of its own, so the
+ * only contention is inside the lock manager. This is a manual benchmark, not
+ * a unit test, so run it from the IDE or with exec:java against the test
+ * classpath, with logging for io.milton.http.fs above INFO since
+ * SimpleLockManager logs every lock. The thread count can be given as the
+ * first argument
+ *
+ * @author brad
+ */
+public class LockManagerBenchmark {
+
+	private static final int OPS = 20000;
+	private static final int WARMUP = 5;
+	private static final int RUNS = 10;
+
+	public static void main(String[] args) throws Exception {
+		int threads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+		LockInfo lockInfo = new LockInfo(LockInfo.LockScope.EXCLUSIVE, LockInfo.LockType.WRITE, "me", LockInfo.LockDepth.ZERO);
+		List<List<LockableResource>> resources = new ArrayList<>();
+		for (int t = 0; t < threads; t++) {
+			List<LockableResource> list = new ArrayList<>();
+			for (int i = 0; i < 100; i++) {
+				list.add(new Res("t" + t + "_" + i));
+			}
+			resources.add(list);
+		}
+
+		SimpleLockManager simple = new SimpleLockManager(new LocalCacheManager());
+		ShardedLockManager sharded = new ShardedLockManager();
+		ExecutorService exec = Executors.newFixedThreadPool(threads);
+		try {
+			for (int i = 0; i < WARMUP; i++) {
+				run(exec, simple, resources, lockInfo);
+				run(exec, sharded, resources, lockInfo);
+			}
+			long simpleNanos = 0;
+			long shardedNanos = 0;
+			for (int i = 0; i < RUNS; i++) {
+				simpleNanos += run(exec, simple, resources, lockInfo);
+				shardedNanos += run(exec, sharded, resources, lockInfo);
+			}
+			System.out.println(threads + " threads x " + OPS + " lock, getCurrentToken and unlock operations");
+			System.out.println("SimpleLockManager:  " + (simpleNanos / RUNS / 1000000) + "ms per run");
+			System.out.println("ShardedLockManager: " + (shardedNanos / RUNS / 1000000) + "ms per run");
+		} finally {
+			exec.shutdown();
+			sharded.stop();
+		}
+	}
+
+	private static long run(ExecutorService exec, final LockManager lockManager, List<List<LockableResource>> resources, final LockInfo lockInfo) throws Exception {
+		List<Callable<Integer>> tasks = new ArrayList<>();
+		for (final List<LockableResource> list : resources) {
+			tasks.add(() -> {
+				int ok = 0;
+				for (int i = 0; i < OPS; i++) {
+					LockableResource r = list.get(i % list.size());
+					LockResult res = lockManager.lock(new LockTimeout(100L), lockInfo, r);
+					if (res.isSuccessful() && lockManager.getCurrentToken(r) != null) {
+						lockManager.unlock(res.getLockToken().tokenId, r);
+						ok++;
+					}
+				}
+				return ok;
+			});
+		}
+		long start = System.nanoTime();
+		for (Future<Integer> f : exec.invokeAll(tasks)) {
+			if (f.get() != OPS) {
+				throw new IllegalStateException("Not all locks were granted by " + lockManager.getClass());
+			}
+		}
+		return System.nanoTime() - start;
+	}
+
+	private static class Res implements LockableResource {
+
+		private final String uniqueId;
+
+		Res(String uniqueId) {
+			this.uniqueId = uniqueId;
+		}
+
+		@Override
+		public LockResult lock(LockTimeout timeout, LockInfo lockInfo) {
+			return null;
+		}
+
+		@Override
+		public LockResult refreshLock(String token, LockTimeout timeout) {
+			return null;
+		}
+
+		@Override
+		public void unlock(String tokenId) {
+		}
+
+		@Override
+		public LockToken getCurrentLock() {
+			return null;
+		}
+
+		@Override
+		public String getUniqueId() {
+			return uniqueId;
+		}
+
+		@Override
+		public String getName() {
+			return uniqueId;
+		}
+
+		@Override
+		public Object authenticate(String user, String password) {
+			return null;
+		}
+
+		@Override
+		public boolean authorise(Request request, Request.Method method, Auth auth) {
+			return true;
+		}
+
+		@Override
+		public String getRealm() {
+			return null;
+		}
+
+		@Override
+		public Date getModifiedDate() {
+			return null;
+		}
+
+		@Override
+		public String checkRedirect(Request request) {
+			return null;
+		}
+	}
+}
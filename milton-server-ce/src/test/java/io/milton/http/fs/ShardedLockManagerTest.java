@@ -0,0 +1,262 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.milton.http.fs;
+
+import io.milton.common.Path;
+import io.milton.http.Auth;
+import io.milton.http.LockInfo;
+import io.milton.http.LockResult;
+import io.milton.http.LockTimeout;
+import io.milton.http.LockToken;
+import io.milton.http.Request;
+import io.milton.http.exceptions.NotAuthorizedException;
+import io.milton.resource.LockableResource;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author brad
+ */
+public class ShardedLockManagerTest extends TestCase {
+
+    ShardedLockManager lockManager;
+    LockInfo lockInfo;
+    SimpleFileContentService contentService;
+
+    @Override
+    protected void setUp() throws Exception {
+        lockManager = new ShardedLockManager();
+        lockInfo = new LockInfo(LockInfo.LockScope.EXCLUSIVE, LockInfo.LockType.WRITE, "me", LockInfo.LockDepth.ZERO);
+        contentService = new SimpleFileContentService();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        lockManager.stop();
+    }
+
+    public void testLockUnLock() throws NotAuthorizedException {
+        FsResource resource = resource("a");
+        LockResult res = lockManager.lock(new LockTimeout(100L), lockInfo, resource);
+        assertTrue(res.isSuccessful());
+
+        LockToken token = lockManager.getCurrentToken(resource);
+        assertNotNull(token);
+        assertEquals(res.getLockToken().tokenId, token.tokenId);
+        assertEquals("me", token.info.lockedByUser);
+
+        assertFalse(lockManager.lock(new LockTimeout(100L), lockInfo, resource).isSuccessful());
+
+        try {
+            lockManager.unlock("wrong", resource);
+            fail("should not unlock with another token");
+        } catch (NotAuthorizedException e) {
+            // expected
+        }
+
+        lockManager.unlock(token.tokenId, resource);
+        assertNull(lockManager.getCurrentToken(resource));
+        assertEquals(0, lockManager.getLockCount());
+    }
+
+    public void testRefresh() {
+        FsResource resource = resource("a");
+        LockResult res = lockManager.lock(new LockTimeout(1L), lockInfo, resource);
+        LockResult refreshed = lockManager.refresh(res.getLockToken().tokenId, new LockTimeout(1000L), resource);
+        assertTrue(refreshed.isSuccessful());
+        assertEquals(res.getLockToken().tokenId, refreshed.getLockToken().tokenId);
+
+        // would have expired under the original timeout
+        lockManager.expireLocks(System.currentTimeMillis() + 10000);
+        assertEquals(res.getLockToken().tokenId, lockManager.getCurrentToken(resource).tokenId);
+        assertEquals(Long.valueOf(1000), lockManager.getCurrentToken(resource).timeout.getSeconds());
+    }
+
+    public void testExpireLocks() {
+        FsResource a = resource("a");
+        FsResource b = resource("b");
+        lockManager.lock(new LockTimeout(1L), lockInfo, a);
+        lockManager.lock(new LockTimeout(1000L), lockInfo, b);
+        assertEquals(2, lockManager.getLockCount());
+
+        lockManager.expireLocks(System.currentTimeMillis() + 10000);
+        assertEquals(1, lockManager.getLockCount());
+        assertNull(lockManager.getCurrentToken(a));
+        assertNotNull(lockManager.getCurrentToken(b));
+    }
+
+    public void testExpireLocks_RefreshedToInfiniteThenFinite() {
+        FsResource a = resource("a");
+        LockResult res = lockManager.lock(new LockTimeout(1L), lockInfo, a);
+        String token = res.getLockToken().tokenId;
+        long now = System.currentTimeMillis();
+        lockManager.refresh(token, new LockTimeout(null), a);
+        lockManager.expireLocks(now + 10000);
+        assertNotNull(lockManager.getCurrentToken(a));
+
+        // taken out of the wheel while infinite, so must be put back
+        lockManager.refresh(token, new LockTimeout(1L), a);
+        lockManager.expireLocks(now + 20000);
+        assertEquals(0, lockManager.getLockCount());
+    }
+
+    public void testIndexFollowsMoveAndDelete() {
+        LockInfo infinite = new LockInfo(LockInfo.LockScope.EXCLUSIVE, LockInfo.LockType.WRITE, "me", LockInfo.LockDepth.INFINITY);
+        lockManager.lock(new LockTimeout(100L), infinite, "a", "t1", Path.path("/col/a"));
+        lockManager.lock(new LockTimeout(100L), lockInfo, "b", "t2", Path.path("/col/a/b"));
+        assertTrue(lockManager.isIndexComplete());
+        assertEquals(2, lockManager.getLocksWithin(Path.path("/col")).size());
+
+        lockManager.onMoved(Path.path("/col/a"), Path.path("/other/x"));
+        assertTrue(lockManager.getLocksWithin(Path.path("/col")).isEmpty());
+        assertEquals(2, lockManager.getLocksWithin(Path.path("/other/x")).size());
+        assertEquals(1, lockManager.getLocksWithin(Path.path("/other/x/b")).size());
+        assertEquals(1, lockManager.getCoveringLocks(Path.path("/other/x/b")).size());
+
+        lockManager.onDeleted(Path.path("/other/x/b"));
+        assertEquals(1, lockManager.getLockCount());
+        assertNull(lockManager.getCurrentToken(new Res("b")));
+        assertNotNull(lockManager.getCurrentToken(new Res("a")));
+    }
+
+    public void testIndexIncompleteWithoutPath() throws NotAuthorizedException {
+        LockResult res = lockManager.lock(new LockTimeout(100L), lockInfo, "a");
+        assertFalse(lockManager.isIndexComplete());
+        lockManager.unlock(res.getLockToken().tokenId, new Res("a"));
+        assertTrue(lockManager.isIndexComplete());
+    }
+
+    /**
+     * Every lock taken concurrently must be granted and released
+     */
+    public void testConcurrentLockAndUnlock() throws Exception {
+        contend(8, 1000, (uniqueId) -> {
+            LockableResource r = new Res(uniqueId);
+            LockResult res = lockManager.lock(new LockTimeout(100L), lockInfo, r);
+            lockManager.unlock(res.getLockToken().tokenId, r);
+            return res.isSuccessful();
+        });
+        assertEquals(0, lockManager.getLockCount());
+    }
+
+    private void contend(int threads, final int ops, final LockOp op) throws Exception {
+        ExecutorService exec = Executors.newFixedThreadPool(threads);
+        try {
+            List<Callable<Integer>> tasks = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                final int thread = t;
+                tasks.add(() -> {
+                    int ok = 0;
+                    for (int i = 0; i < ops; i++) {
+                        if (op.run("t" + thread + "_" + i)) {
+                            ok++;
+                        }
+                    }
+                    return ok;
+                });
+            }
+            for (Future<Integer> f : exec.invokeAll(tasks)) {
+                assertEquals(ops, f.get().intValue());
+            }
+        } finally {
+            exec.shutdown();
+        }
+    }
+
+    private FsResource resource(String name) {
+        return new FsFileResource(null, null, new File(name), contentService);
+    }
+
+    private interface LockOp {
+
+        boolean run(String uniqueId) throws Exception;
+    }
+
+    private static class Res implements LockableResource {
+
+        private final String uniqueId;
+
+        Res(String uniqueId) {
+            this.uniqueId = uniqueId;
+        }
+
+        @Override
+        public LockResult lock(LockTimeout timeout, LockInfo lockInfo) {
+            return null;
+        }
+
+        @Override
+        public LockResult refreshLock(String token, LockTimeout timeout) {
+            return null;
+        }
+
+        @Override
+        public void unlock(String tokenId) {
+        }
+
+        @Override
+        public LockToken getCurrentLock() {
+            return null;
+        }
+
+        @Override
+        public String getUniqueId() {
+            return uniqueId;
+        }
+
+        @Override
+        public String getName() {
+            return uniqueId;
+        }
+
+        @Override
+        public Object authenticate(String user, String password) {
+            return null;
+        }
+
+        @Override
+        public boolean authorise(Request request, Request.Method method, Auth auth) {
+            return true;
+        }
+
+        @Override
+        public String getRealm() {
+            return null;
+        }
+
+        @Override
+        public Date getModifiedDate() {
+            return null;
+        }
+
+        @Override
+        public String checkRedirect(Request request) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.milton.http.http11;
+
+import io.milton.http.Range;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author brad
+ */
+public class MultipartByteRangesWriterTest extends TestCase {
+
+	public void testCoalesce() {
+		List<Range> parts = MultipartByteRangesWriter.coalesce(Arrays.asList(
+				new Range(50L, 59L),
+				new Range(0L, 9L),
+				new Range(55L, 64L), // overlaps the first
+				new Range(10L, 12L), // adjacent to the second
+				new Range(null, 5L), // last 5 bytes
+				new Range(200L, null) // beyond the end
+		), 100);
+		assertEquals(3, parts.size());
+		assertRange(50, 64, parts.get(0));
+		assertRange(0, 12, parts.get(1));
+		assertRange(95, 99, parts.get(2));
+
+		// a range which joins two earlier ones
+		parts = MultipartByteRangesWriter.coalesce(Arrays.asList(new Range(0L, 9L), new Range(20L, 29L), new Range(5L, 25L)), 100);
+		assertEquals(1, parts.size());
+		assertRange(0, 29, parts.get(0));
+	}
+
+	public void testWrite() throws Exception {
+		File f = File.createTempFile("milton", ".txt");
+		try {
+			Files.write(f.toPath(), "0123456789".getBytes(StandardCharsets.UTF_8));
+			List<Range> parts = MultipartByteRangesWriter.coalesce(Arrays.asList(new Range(7L, 8L), new Range(1L, 2L)), 10);
+			MultipartByteRangesWriter writer = new MultipartByteRangesWriter(parts, 10, "XX", "text/plain");
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			try (FileChannel in = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+				writer.write(in, out);
+			}
+			String expected = "\r\n--XX\r\nContent-Type: text/plain\r\nContent-Range: bytes 7-8/10\r\n\r\n78"
+					+ "\r\n--XX\r\nContent-Type: text/plain\r\nContent-Range: bytes 1-2/10\r\n\r\n12"
+					+ "\r\n--XX--\r\n";
+			assertEquals(expected, out.toString("UTF-8"));
+			assertEquals(out.size(), writer.getContentLength());
+		} finally {
+			f.delete();
+		}
+	}
+
+	private void assertRange(long start, long finish, Range r) {
+		assertEquals(start, (long) r.getStart());
+		assertEquals(finish, (long) r.getFinish());
+	}
+}
@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.milton.http.http11;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author brad
+ */
+public class ResumableUploadManagerTest extends TestCase {
+
+	private File dir;
+	private ResumableUploadManager manager;
+
+	@Override
+	protected void setUp() throws Exception {
+		dir = Files.createTempDirectory("milton-uploads").toFile();
+		manager = new ResumableUploadManager(dir, 60);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		File[] files = dir.listFiles();
+		if (files != null) {
+			for (File f : files) {
+				f.delete();
+			}
+		}
+		dir.delete();
+	}
+
+	public void testParseContentRange() {
+		long[] r = ResumableUploadManager.parseContentRange("bytes 10-19/100");
+		assertEquals(10, r[0]);
+		assertEquals(19, r[1]);
+		assertEquals(100, r[2]);
+		assertNull(ResumableUploadManager.parseContentRange("bytes 10-19/*"));
+		assertNull(ResumableUploadManager.parseContentRange("bytes 10-100/100"));
+		assertNull(ResumableUploadManager.parseContentRange(null));
+	}
+
+	public void testWrite_ResumesAtOffset() throws Exception {
+		assertEquals(0, manager.getOffset("host", "/a.txt", "s1"));
+		assertEquals(4, manager.write("host", "/a.txt", "s1", 0, 3, in("0123")));
+		// connection dropped part way through the next chunk
+		assertEquals(6, manager.write("host", "/a.txt", "s1", 4, 7, in("45")));
+		assertEquals(6, manager.getOffset("host", "/a.txt", "s1"));
+		// other sessions and paths are separate
+		assertEquals(0, manager.getOffset("host", "/a.txt", "s2"));
+		assertEquals(0, manager.getOffset("host", "/b.txt", "s1"));
+
+		assertEquals(10, manager.write("host", "/a.txt", "s1", 6, 9, in("6789")));
+		File f = manager.getFile("host", "/a.txt", "s1");
+		assertEquals("0123456789", new String(Files.readAllBytes(f.toPath()), StandardCharsets.UTF_8));
+		manager.remove("host", "/a.txt", "s1");
+		assertFalse(f.exists());
+	}
+
+	public void testHasSpace_BoundedByMaxUploadBytes() throws Exception {
+		assertTrue(manager.hasSpace("host", "/a.txt", "s1", 1000));
+		manager.setMaxUploadBytes(10);
+		assertTrue(manager.hasSpace("host", "/a.txt", "s1", 10));
+		assertFalse(manager.hasSpace("host", "/a.txt", "s1", 11));
+
+		manager.write("host", "/a.txt", "s1", 0, 5, in("012345"));
+		// only other sessions count against this one
+		assertTrue(manager.hasSpace("host", "/a.txt", "s1", 10));
+		assertTrue(manager.hasSpace("host", "/b.txt", "s1", 4));
+		assertFalse(manager.hasSpace("host", "/b.txt", "s1", 5));
+		// and never more than the disk can hold
+		manager.setMaxUploadBytes(0);
+		assertFalse(manager.hasSpace("host", "/b.txt", "s1", Long.MAX_VALUE));
+	}
+
+	public void testUploadDirFor_BesideRoot() {
+		File root = new File(dir, "webdav");
+		assertEquals(new File(dir, ".webdav-uploads"), ResumableUploadManager.uploadDirFor(root));
+		assertNull(new ResumableUploadManager().getUploadDir());
+	}
+
+	private ByteArrayInputStream in(String s) {
+		return new ByteArrayInputStream(s.getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,61 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.milton.http.http11.auth;
+
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author brad
+ */
+public class AuthenticationResultCacheTest extends TestCase {
+
+	public void testGetAndPut() {
+		AuthenticationResultCache cache = new AuthenticationResultCache(60, 10);
+		String key = cache.key("basic", "host", "joe", "secret");
+		assertEquals(key, cache.key("basic", "host", "joe", "secret"));
+		assertFalse(key.equals(cache.key("basic", "host", "joe", "wrong")));
+		// parts are separated, so moving characters between them changes the key
+		assertFalse(key.equals(cache.key("basic", "host", "joes", "ecret")));
+
+		assertNull(cache.get(key));
+		cache.put(key, "principal");
+		assertEquals("principal", cache.get(key));
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+		assertEquals(0.5, cache.getHitRate(), 0.001);
+
+		// different instances use different salts
+		assertFalse(key.equals(new AuthenticationResultCache().key("basic", "host", "joe", "secret")));
+	}
+
+	public void testExpiryAndLimit() {
+		AuthenticationResultCache expired = new AuthenticationResultCache(0, 10);
+		expired.put("a", "principal");
+		assertNull(expired.get("a"));
+
+		AuthenticationResultCache full = new AuthenticationResultCache(60, 2);
+		full.put("a", "1");
+		full.put("b", "2");
+		full.put("c", "3");
+		full.put("d", null);
+		assertEquals(2, full.size());
+		assertNull(full.get("c"));
+	}
+}
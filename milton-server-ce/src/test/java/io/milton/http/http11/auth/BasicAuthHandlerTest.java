@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.milton.http.http11.auth;
+
+import io.milton.http.Auth;
+import io.milton.http.Request;
+import io.milton.principal.DiscretePrincipal;
+import io.milton.principal.HrefPrincipleId;
+import io.milton.resource.Resource;
+import java.util.concurrent.atomic.AtomicInteger;
+import junit.framework.TestCase;
+import org.apache.commons.codec.binary.Base64;
+import static org.easymock.EasyMock.*;
+
+/**
+ *
+ * @author brad
+ */
+public class BasicAuthHandlerTest extends TestCase {
+
+	private BasicAuthHandler handler;
+	private AtomicInteger passwordChecks;
+	private AtomicInteger lookups;
+
+	@Override
+	protected void setUp() throws Exception {
+		handler = new BasicAuthHandler();
+		handler.setResultCache(new AuthenticationResultCache());
+		passwordChecks = new AtomicInteger();
+		lookups = new AtomicInteger();
+		handler.setPrincipalResourceFactory((host, path) -> {
+			lookups.incrementAndGet();
+			return principal(path);
+		});
+	}
+
+	public void testAuthenticate_CachesIdentityNotResult() {
+		Resource resource = resource();
+		Object first = handler.authenticate(resource, request("joe", "secret"));
+		Object second = handler.authenticate(resource, request("joe", "secret"));
+		assertEquals(1, passwordChecks.get());
+		assertEquals(1, lookups.get());
+		assertNotSame(first, second);
+		assertEquals("/users/joe/", ((DiscretePrincipal) second).getIdenitifer().getValue());
+
+		assertNull(handler.authenticate(resource, request("joe", "wrong")));
+		assertEquals(2, passwordChecks.get());
+	}
+
+	public void testAuthenticate_NotCachedWithoutPrincipalFactory() {
+		handler.setPrincipalResourceFactory(null);
+		Resource resource = resource();
+		handler.authenticate(resource, request("joe", "secret"));
+		handler.authenticate(resource, request("joe", "secret"));
+		assertEquals(2, passwordChecks.get());
+		assertEquals(0, handler.getResultCache().size());
+	}
+
+	private Resource resource() {
+		Resource resource = createNiceMock(Resource.class);
+		expect(resource.getRealm()).andStubReturn("realm");
+		expect(resource.authenticate(anyObject(String.class), anyObject(String.class))).andStubAnswer(() -> {
+			passwordChecks.incrementAndGet();
+			Object[] args = getCurrentArguments();
+			return "secret".equals(args[1]) ? principal("/users/" + args[0] + "/") : null;
+		});
+		replay(resource);
+		return resource;
+	}
+
+	private static Resource principal(String url) {
+		DiscretePrincipal principal = createNiceMock(DiscretePrincipal.class);
+		expect(principal.getIdenitifer()).andStubReturn(new HrefPrincipleId(url));
+		replay(principal);
+		return principal;
+	}
+
+	private static Request request(String user, String password) {
+		Auth auth = new Auth("Basic " + Base64.encodeBase64String((user + ":" + password).getBytes()));
+		Request request = createNiceMock(Request.class);
+		expect(request.getAuthorization()).andStubReturn(auth);
+		expect(request.getHostHeader()).andStubReturn("host");
+		replay(request);
+		return request;
+	}
+}
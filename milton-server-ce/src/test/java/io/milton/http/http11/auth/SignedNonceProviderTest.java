@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.milton.http.http11.auth;
+
+import io.milton.http.http11.auth.NonceProvider.NonceValidity;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author brad
+ */
+public class SignedNonceProviderTest extends TestCase {
+
+	private SignedNonceProvider provider;
+
+	@Override
+	protected void setUp() throws Exception {
+		provider = new SignedNonceProvider(60, Arrays.asList("key1"));
+	}
+
+	public void testValidOnAnotherServerWithSameKeys() {
+		String nonce = provider.createNonce(null);
+		SignedNonceProvider other = new SignedNonceProvider(60, Arrays.asList("key1"));
+		assertEquals(NonceValidity.OK, other.getNonceValidity(nonce, null));
+		assertEquals(NonceValidity.OK, other.getNonceValidity(nonce, 1L, "joe"));
+
+		SignedNonceProvider otherKey = new SignedNonceProvider(60, Arrays.asList("key2"));
+		assertEquals(NonceValidity.INVALID, otherKey.getNonceValidity(nonce, null));
+	}
+
+	public void testTamperedAndExpired() {
+		String nonce = provider.createNonce(null);
+		String tampered = "a" + Long.toHexString(System.currentTimeMillis() + 1) + nonce.substring(nonce.indexOf('.'));
+		assertEquals(NonceValidity.INVALID, provider.getNonceValidity(tampered, null));
+		assertEquals(NonceValidity.INVALID, provider.getNonceValidity("garbage", null));
+
+		String old = provider.createNonce(System.currentTimeMillis() - 61000, null);
+		assertEquals(NonceValidity.EXPIRED, provider.getNonceValidity(old, null));
+	}
+
+	public void testBoundToUser() {
+		String nonce = provider.createNonce(null, "/users/joe");
+		assertEquals(NonceValidity.OK, provider.getNonceValidity(nonce, null, "/users/joe"));
+		assertEquals(NonceValidity.INVALID, provider.getNonceValidity(nonce, null, "/users/fred"));
+		assertEquals(NonceValidity.INVALID, provider.getNonceValidity(nonce, null));
+	}
+
+	public void testKeyRotation() {
+		List<String> keys = new ArrayList<>(Arrays.asList("key1"));
+		SignedNonceProvider p = new SignedNonceProvider(60, keys);
+		String nonce = p.createNonce(null);
+		keys.add("key2");
+		assertEquals(NonceValidity.OK, p.getNonceValidity(nonce, null));
+		assertEquals(NonceValidity.OK, p.getNonceValidity(p.createNonce(null), null));
+	}
+
+	public void testNonceCountWindow() {
+		provider.setNonceCountWindow(new NonceCountWindow(60));
+		String nonce = provider.createNonce(null);
+		assertEquals(NonceValidity.OK, provider.getNonceValidity(nonce, 1L));
+		assertEquals(NonceValidity.OK, provider.getNonceValidity(nonce, 3L));
+		// out of order is ok, but only once
+		assertEquals(NonceValidity.OK, provider.getNonceValidity(nonce, 2L));
+		assertEquals(NonceValidity.INVALID, provider.getNonceValidity(nonce, 2L));
+		assertEquals(NonceValidity.INVALID, provider.getNonceValidity(nonce, 3L));
+		// too far behind the highest to check
+		assertEquals(NonceValidity.OK, provider.getNonceValidity(nonce, 100L));
+		assertEquals(NonceValidity.INVALID, provider.getNonceValidity(nonce, 20L));
+	}
+
+	public void testNonceCountWindow_UntrackedNonceMustStartAtOne() {
+		provider.setNonceCountWindow(new NonceCountWindow(60, 1, 1));
+		String first = provider.createNonce(null);
+		assertEquals(NonceValidity.OK, provider.getNonceValidity(first, 1L));
+		assertEquals(NonceValidity.OK, provider.getNonceValidity(first, 2L));
+		// tracking only one nonce, so this discards the first
+		String second = provider.createNonce(null);
+		assertEquals(NonceValidity.OK, provider.getNonceValidity(second, 1L));
+		// so the first's counts can't be checked, and it must not be replayable
+		assertEquals(NonceValidity.EXPIRED, provider.getNonceValidity(first, 1L));
+		assertEquals(NonceValidity.EXPIRED, provider.getNonceValidity(first, 2L));
+		assertEquals(NonceValidity.EXPIRED, provider.getNonceValidity(first, 3L));
+		assertEquals(NonceValidity.EXPIRED, provider.getNonceValidity(provider.createNonce(null), 5L));
+	}
+}
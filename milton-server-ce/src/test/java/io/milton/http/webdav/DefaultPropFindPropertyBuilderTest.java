@@ -0,0 +1,229 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.milton.http.webdav;
+
+import io.milton.http.Auth;
+import io.milton.http.Request;
+import io.milton.property.CacheablePropertySource;
+import io.milton.property.PropertySource;
+import io.milton.resource.CollectionResource;
+import io.milton.resource.PropFindableResource;
+import io.milton.resource.Resource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.xml.namespace.QName;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author brad
+ */
+public class DefaultPropFindPropertyBuilderTest extends TestCase {
+
+	private static final QName COLOUR = new QName("http://example.com/ns", "colour");
+	private static final QName SIZE = new QName("http://example.com/ns", "size");
+
+	private CountingSource cacheable;
+	private CountingSource uncached;
+	private List<PropertySource> sources;
+	private DefaultPropFindPropertyBuilder builder;
+
+	@Override
+	protected void setUp() throws Exception {
+		cacheable = new CountingSource(SIZE, true);
+		uncached = new CountingSource(COLOUR, false);
+		sources = new ArrayList<>();
+		sources.add(uncached);
+		sources.add(cacheable);
+		builder = new DefaultPropFindPropertyBuilder(sources);
+	}
+
+	public void testProcessResource_CachesMetaDataPerClass() throws Exception {
+		PropertiesRequest req = PropertiesRequest.toProperties(new HashSet<>(Arrays.asList(COLOUR, SIZE)));
+		List<PropFindResponse> responses = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			builder.processResource(responses, new Res("r" + i), req, "/r" + i, 0, 0, "/");
+		}
+		assertEquals(5, responses.size());
+		for (PropFindResponse r : responses) {
+			assertEquals("colour-value", r.getKnownProperties().get(COLOUR).getValue());
+			assertEquals("size-value", r.getKnownProperties().get(SIZE).getValue());
+		}
+		// asked once per field, when the plan was built
+		assertEquals(2, cacheable.metaDataCalls);
+		// asked for both fields on every resource
+		assertEquals(10, uncached.metaDataCalls);
+	}
+
+	public void testProcessResource_DetectsChangedSources() throws Exception {
+		PropertiesRequest req = PropertiesRequest.toProperties(Collections.singleton(SIZE));
+		List<PropFindResponse> responses = new ArrayList<>();
+		builder.processResource(responses, new Res("a"), req, "/a", 0, 0, "/");
+
+		CountingSource replacement = new CountingSource(SIZE, true);
+		sources.add(0, replacement);
+		builder.processResource(responses, new Res("b"), req, "/b", 0, 0, "/");
+		assertEquals("size-value", responses.get(1).getKnownProperties().get(SIZE).getValue());
+		assertEquals(1, replacement.metaDataCalls);
+		assertEquals(1, replacement.valueCalls);
+	}
+
+	public void testProcessResource_ParallelKeepsOrder() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			builder.setChildExecutor(executor);
+			builder.setParallelThreshold(2);
+			builder.setMaxInFlight(3);
+			Col root = new Col("root");
+			for (int i = 0; i < 20; i++) {
+				root.children.add(new Res("c" + i));
+			}
+			PropertiesRequest req = PropertiesRequest.toProperties(Collections.singleton(SIZE));
+			List<PropFindResponse> responses = builder.buildProperties(root, 1, req, "/root");
+			assertEquals(21, responses.size());
+			assertEquals("/root/", responses.get(0).getHref());
+			for (int i = 0; i < 20; i++) {
+				assertEquals("/root/c" + i, responses.get(i + 1).getHref());
+				assertEquals("size-value", responses.get(i + 1).getKnownProperties().get(SIZE).getValue());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private static class CountingSource implements CacheablePropertySource {
+
+		private final QName name;
+		private final boolean cacheable;
+		int metaDataCalls;
+		int valueCalls;
+
+		CountingSource(QName name, boolean cacheable) {
+			this.name = name;
+			this.cacheable = cacheable;
+		}
+
+		@Override
+		public boolean isPropertyMetaDataCacheable(Resource r) {
+			return cacheable;
+		}
+
+		@Override
+		public synchronized Object getProperty(QName name, Resource r) {
+			valueCalls++;
+			return name.getLocalPart() + "-value";
+		}
+
+		@Override
+		public void setProperty(QName name, Object value, Resource r) {
+		}
+
+		@Override
+		public synchronized PropertyMetaData getPropertyMetaData(QName name, Resource r) {
+			metaDataCalls++;
+			if (this.name.equals(name)) {
+				return new PropertyMetaData(PropertyAccessibility.READ_ONLY, String.class);
+			}
+			return PropertyMetaData.UNKNOWN;
+		}
+
+		@Override
+		public void clearProperty(QName name, Resource r) {
+		}
+
+		@Override
+		public List<QName> getAllPropertyNames(Resource r) {
+			return Collections.singletonList(name);
+		}
+	}
+
+	private static class Res implements PropFindableResource {
+
+		private final String name;
+
+		Res(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public Date getCreateDate() {
+			return null;
+		}
+
+		@Override
+		public String getUniqueId() {
+			return name;
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public Object authenticate(String user, String password) {
+			return null;
+		}
+
+		@Override
+		public boolean authorise(Request request, Request.Method method, Auth auth) {
+			return true;
+		}
+
+		@Override
+		public String getRealm() {
+			return null;
+		}
+
+		@Override
+		public Date getModifiedDate() {
+			return null;
+		}
+
+		@Override
+		public String checkRedirect(Request request) {
+			return null;
+		}
+	}
+
+	private static class Col extends Res implements CollectionResource {
+
+		private final List<Resource> children = new ArrayList<>();
+
+		Col(String name) {
+			super(name);
+		}
+
+		@Override
+		public Resource child(String childName) {
+			return null;
+		}
+
+		@Override
+		public List<? extends Resource> getChildren() {
+			return children;
+		}
+	}
+}
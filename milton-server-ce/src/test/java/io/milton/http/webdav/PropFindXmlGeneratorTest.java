@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.milton.http.webdav;
+
+import io.milton.http.Response.Status;
+import io.milton.http.values.ValueAndType;
+import io.milton.http.values.ValueWriters;
+import io.milton.http.webdav.PropFindResponse.NameAndError;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.xml.namespace.QName;
+import junit.framework.TestCase;
+import org.apache.commons.io.output.ByteArrayOutputStream;
+
+/**
+ *
+ * @author brad
+ */
+public class PropFindXmlGeneratorTest extends TestCase {
+
+	private static final QName DISPLAY_NAME = new QName(WebDavProtocol.NS_DAV.getName(), "displayname");
+	private static final QName CUSTOM = new QName("http://example.com/ns", "colour");
+
+	private PropFindXmlGenerator generator;
+
+	@Override
+	protected void setUp() throws Exception {
+		generator = new PropFindXmlGenerator(new ValueWriters());
+	}
+
+	public void testStreaming_SameAsBuffered() throws Exception {
+		List<PropFindResponse> responses = new ArrayList<>();
+		responses.add(response("/a/", "a"));
+		responses.add(response("/a/b", "b"));
+
+		ByteArrayOutputStream buffered = new ByteArrayOutputStream();
+		generator.generate(responses, buffered, true);
+
+		List<QName> fields = new ArrayList<>(responses.get(0).getKnownProperties().keySet());
+		ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+		PropFindXmlGenerator.StreamingWriter writer = generator.beginStreaming(streamed, fields, true);
+		for (PropFindResponse r : responses) {
+			writer.onResponse(r);
+		}
+		writer.finish(null);
+
+		assertEquals(2, writer.getCount());
+		assertEquals(buffered.toString("UTF-8"), streamed.toString("UTF-8"));
+	}
+
+	public void testStreaming_DeclaresUnexpectedNamespaceOnResponse() throws Exception {
+		List<QName> fields = new ArrayList<>();
+		fields.add(DISPLAY_NAME);
+		ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+		PropFindXmlGenerator.StreamingWriter writer = generator.beginStreaming(streamed, fields, true);
+		writer.onResponse(response("/a/", "a"));
+		writer.finish(null);
+
+		String xml = streamed.toString("UTF-8");
+		int multistatus = xml.indexOf("multistatus");
+		int response = xml.indexOf("<" + WebDavProtocol.NS_DAV.getPrefix() + ":response");
+		Matcher m = Pattern.compile("xmlns:(ns\\d+)=\"http://example.com/ns\"").matcher(xml);
+		assertTrue(m.find());
+		assertTrue(m.start() > response);
+		assertTrue(xml.substring(multistatus, response).indexOf("http://example.com/ns") < 0);
+		assertTrue(xml.contains("<" + m.group(1) + ":colour>"));
+	}
+
+	public void testGenerate_StringSameAsStream() throws Exception {
+		List<PropFindResponse> responses = new ArrayList<>();
+		responses.add(response("/a/", "a"));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		generator.generate(responses, out, (PropFindXmlFooter) null);
+		assertEquals(out.toString("UTF-8"), generator.generate(responses));
+	}
+
+	private PropFindResponse response(String href, String name) {
+		Map<QName, ValueAndType> known = new LinkedHashMap<>();
+		known.put(DISPLAY_NAME, new ValueAndType(name, String.class));
+		known.put(CUSTOM, new ValueAndType("red", String.class));
+		Map<Status, List<NameAndError>> errors = new EnumMap<>(Status.class);
+		errors.put(Status.SC_NOT_FOUND, new ArrayList<NameAndError>());
+		return new PropFindResponse(href, known, errors);
+	}
+}
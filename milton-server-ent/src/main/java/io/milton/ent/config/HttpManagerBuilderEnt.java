@@ -5,7 +5,11 @@
 package io.milton.ent.config;
 
 import io.milton.config.HttpManagerBuilder;
+import io.milton.event.DeleteEvent;
+import io.milton.event.MoveEvent;
+import io.milton.event.PutEvent;
 import io.milton.http.HttpExtension;
+import io.milton.http.IndexedLockManager;
 import io.milton.http.LockManager;
 import io.milton.http.ProtocolHandlers;
 import io.milton.http.WellKnownResourceFactory;
@@ -14,16 +18,20 @@ import io.milton.http.acl.AccessControlledResourceTypeHelper;
 import io.milton.http.acl.AnnotationsPrincipalSearchService;
 import io.milton.http.annotated.AnnotationResourceFactory;
 import io.milton.http.caldav.AnnotationsCalendarSearchService;
+import io.milton.http.caldav.CalendarAttendeeIndex;
 import io.milton.http.caldav.CalDavProtocol;
 import io.milton.http.caldav.CalendarResourceTypeHelper;
 import io.milton.http.caldav.CalendarSearchService;
+import io.milton.http.caldav.CalendarTimeRangeIndex;
 import io.milton.http.caldav.DefaultCalendarSearchService;
 import io.milton.http.caldav.ICalFormatter;
+import io.milton.http.caldav.ParsedICalCache;
 import io.milton.http.caldav.SupportedCalendarComponentListValueWriter;
 import io.milton.http.caldav.SupportedCalendarComponentListsSetValueWriter;
 import io.milton.http.carddav.AddressBookResourceTypeHelper;
 import io.milton.http.carddav.CardDavProtocol;
 import io.milton.http.fck.FckResourceFactory;
+import io.milton.http.fs.ShardedLockManager;
 import io.milton.http.fs.SimpleLockManager;
 import io.milton.http.http11.Http11Protocol;
 import io.milton.http.http11.MatchHelper;
@@ -86,10 +94,17 @@ public class HttpManagerBuilderEnt extends HttpManagerBuilder {
     private WebDavLevel2Protocol webDavLevel2Protocol;
     private boolean webdavLevel2Enabled = true;
     private LockManager lockManager;
+    private boolean enableShardedLockManager;
     private ICalFormatter iCalFormatter;
 
     private CalendarSearchService calendarSearchService;
     private AnnotationsCalendarSearchService annotationsCalendarSearchService;
+    private boolean enableParsedICalCache = true;
+    private ParsedICalCache parsedICalCache;
+    private boolean enableCalendarTimeRangeIndex = true;
+    private CalendarTimeRangeIndex calendarTimeRangeIndex;
+    private boolean enableCalendarAttendeeIndex = true;
+    private CalendarAttendeeIndex calendarAttendeeIndex;
 
     private PrincipalSearchService principalSearchService;
     private AnnotationsPrincipalSearchService annotationsPrincipalSearchService;
@@ -103,8 +118,15 @@ public class HttpManagerBuilderEnt extends HttpManagerBuilder {
 
             if (arf.getLockManager() == null) {
                 if (lockManager == null) {                    
-                    lockManager = new SimpleLockManager(getCacheManager());
-                    log.info("Created lock manager: {} with cache manager: {}",lockManager, getCacheManager());
+                    if (enableShardedLockManager) {
+                        ShardedLockManager slm = new ShardedLockManager();
+                        getShutdownHandlers().add(slm);
+                        lockManager = slm;
+                        log.info("Created lock manager: {}", lockManager);
+                    } else {
+                        lockManager = new SimpleLockManager(getCacheManager());
+                        log.info("Created lock manager: {} with cache manager: {}",lockManager, getCacheManager());
+                    }
                 } else {
                     log.info("Using configured cache manager: {}", lockManager);
                 }
@@ -113,6 +135,9 @@ public class HttpManagerBuilderEnt extends HttpManagerBuilder {
             } else {
                 log.info("Using LockManager from AnnotationResourceFactory: {}", arf.getLockManager().getClass());
             }
+            if (arf.getLockManager() instanceof IndexedLockManager && getHandlerHelper().getLockIndex() == null) {
+                getHandlerHelper().setLockIndex((IndexedLockManager) arf.getLockManager());
+            }
             if (annotationsCalendarSearchService != null) {
                 annotationsCalendarSearchService.setAnnotationResourceFactory(arf);
             }
@@ -146,7 +171,34 @@ public class HttpManagerBuilderEnt extends HttpManagerBuilder {
                 if( iCalFormatter == null ) {
                     iCalFormatter = new ICalFormatter();
                 }
+                if (enableParsedICalCache && iCalFormatter.getParsedCache() == null) {
+                    if (parsedICalCache == null) {
+                        parsedICalCache = new ParsedICalCache();
+                    }
+                    iCalFormatter.setParsedCache(parsedICalCache);
+                    log.info("Enabled parsed iCal cache: {}", parsedICalCache);
+                }
                 DefaultCalendarSearchService c = new DefaultCalendarSearchService(iCalFormatter, mainResourceFactory);
+                if (enableCalendarTimeRangeIndex) {
+                    if (calendarTimeRangeIndex == null) {
+                        calendarTimeRangeIndex = new CalendarTimeRangeIndex(iCalFormatter, mainResourceFactory);
+                    }
+                    getEventManager().registerEventListener(calendarTimeRangeIndex, PutEvent.class);
+                    getEventManager().registerEventListener(calendarTimeRangeIndex, DeleteEvent.class);
+                    getEventManager().registerEventListener(calendarTimeRangeIndex, MoveEvent.class);
+                    c.setTimeRangeIndex(calendarTimeRangeIndex);
+                    log.info("Enabled calendar time range index: {}", calendarTimeRangeIndex);
+                }
+                if (enableCalendarAttendeeIndex) {
+                    if (calendarAttendeeIndex == null) {
+                        calendarAttendeeIndex = new CalendarAttendeeIndex(iCalFormatter);
+                    }
+                    getEventManager().registerEventListener(calendarAttendeeIndex, PutEvent.class);
+                    getEventManager().registerEventListener(calendarAttendeeIndex, DeleteEvent.class);
+                    getEventManager().registerEventListener(calendarAttendeeIndex, MoveEvent.class);
+                    c.setAttendeeIndex(calendarAttendeeIndex);
+                    log.info("Enabled calendar attendee index: {}", calendarAttendeeIndex);
+                }
                 // Wrap the default in an annotations handler. It will forward requests to the wrapped
                 // instance for non-annotation resources
                 annotationsCalendarSearchService = new AnnotationsCalendarSearchService(c);
@@ -281,6 +333,75 @@ public class HttpManagerBuilderEnt extends HttpManagerBuilder {
         this.enableWellKnown = enableWellKnown;
     }
 
+    /**
+     * If true (the default) the ICalFormatter used by the default calendar
+     * search service caches parsed events, so each version of an event is
+     * only parsed once
+     *
+     * @return
+     */
+    public boolean isEnableParsedICalCache() {
+        return enableParsedICalCache;
+    }
+
+    public void setEnableParsedICalCache(boolean enableParsedICalCache) {
+        this.enableParsedICalCache = enableParsedICalCache;
+    }
+
+    public ParsedICalCache getParsedICalCache() {
+        return parsedICalCache;
+    }
+
+    public void setParsedICalCache(ParsedICalCache parsedICalCache) {
+        this.parsedICalCache = parsedICalCache;
+    }
+
+    /**
+     * If true (the default) the default calendar search service uses a
+     * CalendarTimeRangeIndex for date range queries, so events are only
+     * parsed when they change
+     *
+     * @return
+     */
+    public boolean isEnableCalendarTimeRangeIndex() {
+        return enableCalendarTimeRangeIndex;
+    }
+
+    public void setEnableCalendarTimeRangeIndex(boolean enableCalendarTimeRangeIndex) {
+        this.enableCalendarTimeRangeIndex = enableCalendarTimeRangeIndex;
+    }
+
+    public CalendarTimeRangeIndex getCalendarTimeRangeIndex() {
+        return calendarTimeRangeIndex;
+    }
+
+    public void setCalendarTimeRangeIndex(CalendarTimeRangeIndex calendarTimeRangeIndex) {
+        this.calendarTimeRangeIndex = calendarTimeRangeIndex;
+    }
+
+    /**
+     * If true (the default) the default calendar search service uses a
+     * CalendarAttendeeIndex to find scheduling invitations, instead of
+     * checking every event of every user
+     *
+     * @return
+     */
+    public boolean isEnableCalendarAttendeeIndex() {
+        return enableCalendarAttendeeIndex;
+    }
+
+    public void setEnableCalendarAttendeeIndex(boolean enableCalendarAttendeeIndex) {
+        this.enableCalendarAttendeeIndex = enableCalendarAttendeeIndex;
+    }
+
+    public CalendarAttendeeIndex getCalendarAttendeeIndex() {
+        return calendarAttendeeIndex;
+    }
+
+    public void setCalendarAttendeeIndex(CalendarAttendeeIndex calendarAttendeeIndex) {
+        this.calendarAttendeeIndex = calendarAttendeeIndex;
+    }
+
     public CalDavProtocol getCalDavProtocol() {
         return calDavProtocol;
     }
@@ -358,6 +479,22 @@ public class HttpManagerBuilderEnt extends HttpManagerBuilder {
         this.lockManager = lockManager;
     }
 
+    public boolean isEnableShardedLockManager() {
+        return enableShardedLockManager;
+    }
+
+    /**
+     * If true, and no lock manager has been set, a ShardedLockManager is
+     * created. It holds locks in this process only, so should not be used
+     * where locks must be shared through a clustered CacheManager. Default
+     * false, which uses a SimpleLockManager over the cache manager
+     *
+     * @param enableShardedLockManager
+     */
+    public void setEnableShardedLockManager(boolean enableShardedLockManager) {
+        this.enableShardedLockManager = enableShardedLockManager;
+    }
+
     /**
      * By default this wraps the default calendarsearchservice, and is only used
      * for resources which have appropriate annotations, otherwise processing
@@ -17,7 +17,7 @@ import io.milton.http.values.HrefList;
 import io.milton.http.webdav.PropertyMap;
 import io.milton.http.webdav.PropertyMap.StandardProperty;
 import io.milton.http.webdav.WebDavProtocol;
-import io.milton.property.PropertySource;
+import io.milton.property.CacheablePropertySource;
 import io.milton.http.caldav.PrincipalSearchPropertySetReport;
 import io.milton.http.webdav.PropFindPropertyBuilder;
 import io.milton.http.webdav.PropFindXmlGenerator;
@@ -38,7 +38,7 @@ import org.slf4j.LoggerFactory;
  *
  * @author brad
  */
-public class ACLProtocol implements HttpExtension, PropertySource {
+public class ACLProtocol implements HttpExtension, CacheablePropertySource {
 
     private static final Logger log = LoggerFactory.getLogger(ACLProtocol.class);
     private final PropertyMap propertyMap;
@@ -85,6 +85,14 @@ public class ACLProtocol implements HttpExtension, PropertySource {
         return propertyMap.getPropertyMetaData(name, r);
     }
 
+    /**
+     * All properties come from a PropertyMap, which only looks at the resource type
+     */
+    @Override
+    public boolean isPropertyMetaDataCacheable(Resource r) {
+        return true;
+    }
+
     @Override
     public void clearProperty(QName name, Resource r) {
         throw new UnsupportedOperationException("Not supported yet.");
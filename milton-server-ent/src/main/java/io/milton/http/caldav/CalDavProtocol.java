@@ -30,7 +30,7 @@ import io.milton.http.webdav.PropertyMap;
 import io.milton.http.webdav.PropertyMap.StandardProperty;
 import io.milton.http.webdav.WebDavProtocol;
 import io.milton.http.webdav.WebDavResponseHandler;
-import io.milton.property.PropertySource;
+import io.milton.property.CacheablePropertySource;
 import io.milton.resource.CalendarCollection;
 import io.milton.resource.CalendarResource;
 import io.milton.http.acl.ACLHandler;
@@ -57,7 +57,7 @@ import org.slf4j.LoggerFactory;
  *
  * @author brad
  */
-public class CalDavProtocol implements HttpExtension, PropertySource, WellKnownHandler {
+public class CalDavProtocol implements HttpExtension, CacheablePropertySource, WellKnownHandler {
 
     private static final Logger log = LoggerFactory.getLogger(CalDavProtocol.class);
     // Standard caldav properties
@@ -169,6 +169,14 @@ public class CalDavProtocol implements HttpExtension, PropertySource, WellKnownH
         }
     }
 
+    /**
+     * All properties come from a PropertyMap, which only looks at the resource type
+     */
+    @Override
+    public boolean isPropertyMetaDataCacheable(Resource r) {
+        return true;
+    }
+
     @Override
     public void clearProperty(QName name, Resource r) {
         throw new UnsupportedOperationException("Not supported yet.");
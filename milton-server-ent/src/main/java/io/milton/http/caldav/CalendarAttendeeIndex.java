@@ -0,0 +1,258 @@
+/*
+ * Copyright 2013 McEvoy Software Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.milton.http.caldav;
+
+import io.milton.event.DeleteEvent;
+import io.milton.event.Event;
+import io.milton.event.EventListener;
+import io.milton.event.MoveEvent;
+import io.milton.event.PutEvent;
+import io.milton.event.ResourceEvent;
+import io.milton.http.HttpManager;
+import io.milton.http.Request;
+import io.milton.mail.MailboxAddress;
+import io.milton.resource.ICalResource;
+import io.milton.resource.Resource;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Maps attendees to the hrefs of the events they are invited to, so that
+ * scheduling requests do not need to look through every user's calendars.
+ *
+ * Attendees are keyed on the user portion of their mailto address, which is
+ * what is compared to the principal name when checking attendance.
+ *
+ * The index for a host is built by a full scan the first time it is needed,
+ * and again after rebuildIntervalMillis in case events have been changed
+ * outside of milton. In between it is kept up to date from PUT, DELETE and
+ * MOVE events, using the path of the current request to find the event's
+ * href. So it must be registered with the EventManager for those events.
+ *
+ * Hrefs are held as decoded paths, as given to the ResourceFactory, so the
+ * encoded request and destination paths are decoded before use.
+ *
+ * @author brad
+ */
+public class CalendarAttendeeIndex implements EventListener {
+
+    private static final Logger log = LoggerFactory.getLogger(CalendarAttendeeIndex.class);
+
+    private final ICalFormatter formatter;
+    private final Map<String, HostIndex> hosts = new ConcurrentHashMap<>();
+    private long rebuildIntervalMillis = 10 * 60 * 1000;
+
+    public CalendarAttendeeIndex(ICalFormatter formatter) {
+        this.formatter = formatter;
+    }
+
+    /**
+     * 
+     * @param host
+     * @return - true if there is no index for the host, or it is due to be rebuilt
+     */
+    public boolean needsBuild(String host) {
+        HostIndex hi = hosts.get(host);
+        return hi == null || hi.stale || System.currentTimeMillis() - hi.built > rebuildIntervalMillis;
+    }
+
+    /**
+     * Replace the index for the host
+     *
+     * @param host
+     * @param attendeesByHref - the attendee mailtos for every event on the
+     * host, keyed on the decoded path of the event
+     */
+    public void replace(String host, Map<String, List<String>> attendeesByHref) {
+        HostIndex hi = new HostIndex();
+        for (Map.Entry<String, List<String>> e : attendeesByHref.entrySet()) {
+            hi.put(e.getKey(), e.getValue());
+        }
+        hosts.put(host, hi);
+        log.info("replace: indexed " + attendeesByHref.size() + " events for host: " + host);
+    }
+
+    /**
+     * 
+     * @param host
+     * @param attendee - the user portion of the attendee's mailto address
+     * @return - hrefs of events with the attendee, or an empty list
+     */
+    public List<String> findEventHrefs(String host, String attendee) {
+        HostIndex hi = hosts.get(host);
+        if (hi == null) {
+            return Collections.emptyList();
+        }
+        return hi.find(attendee);
+    }
+
+    /**
+     * Remove an event, or all events within a collection
+     *
+     * @param host
+     * @param href
+     */
+    public void remove(String host, String href) {
+        HostIndex hi = hosts.get(host);
+        if (hi != null) {
+            hi.remove(href);
+        }
+    }
+
+    @Override
+    public void onEvent(Event e) {
+        onEvent(e, HttpManager.request());
+    }
+
+    void onEvent(Event e, Request request) {
+        if (!(e instanceof PutEvent || e instanceof DeleteEvent || e instanceof MoveEvent)) {
+            return;
+        }
+        Resource r = ((ResourceEvent) e).getResource();
+        if (request == null) {
+            // cant tell where the change happened
+            for (HostIndex hi : hosts.values()) {
+                hi.stale = true;
+            }
+            return;
+        }
+        HostIndex hi = hosts.get(request.getHostHeader());
+        if (hi == null) {
+            return;
+        }
+        String href = HttpManager.decodeUrl(request.getAbsolutePath());
+        if (e instanceof PutEvent) {
+            if (r instanceof ICalResource) {
+                hi.put(href, formatter.parseAttendees(((ICalResource) r).getICalData()));
+            }
+        } else if (e instanceof DeleteEvent) {
+            hi.remove(href);
+        } else {
+            hi.remove(href);
+            if (r instanceof ICalResource && request.getDestinationHeader() != null) {
+                String dest = URI.create(request.getDestinationHeader()).getPath();
+                hi.put(dest, formatter.parseAttendees(((ICalResource) r).getICalData()));
+            } else {
+                // a collection of events might have moved
+                hi.stale = true;
+            }
+        }
+    }
+
+    public void clear() {
+        hosts.clear();
+    }
+
+    public long getRebuildIntervalMillis() {
+        return rebuildIntervalMillis;
+    }
+
+    public void setRebuildIntervalMillis(long rebuildIntervalMillis) {
+        this.rebuildIntervalMillis = rebuildIntervalMillis;
+    }
+
+    private static String attendeeKey(String mailto) {
+        if (mailto == null) {
+            return null;
+        }
+        try {
+            return MailboxAddress.parse(mailto).user;
+        } catch (IllegalArgumentException ex) {
+            log.warn("Ignoring invalid attendee: " + mailto);
+            return null;
+        }
+    }
+
+    private static class HostIndex {
+
+        private final long built = System.currentTimeMillis();
+        private volatile boolean stale;
+        private final Map<String, Set<String>> hrefsByAttendee = new HashMap<>();
+        private final NavigableMap<String, Collection<String>> attendeesByHref = new TreeMap<>();
+
+        synchronized List<String> find(String attendee) {
+            Set<String> hrefs = hrefsByAttendee.get(attendee);
+            if (hrefs == null) {
+                return Collections.emptyList();
+            }
+            return new ArrayList<>(hrefs);
+        }
+
+        synchronized void put(String href, List<String> mailtos) {
+            removeHref(href);
+            Set<String> attendees = new HashSet<>();
+            for (String mailto : mailtos) {
+                String key = attendeeKey(mailto);
+                if (key != null) {
+                    attendees.add(key);
+                }
+            }
+            if (attendees.isEmpty()) {
+                return;
+            }
+            attendeesByHref.put(href, attendees);
+            for (String a : attendees) {
+                Set<String> hrefs = hrefsByAttendee.get(a);
+                if (hrefs == null) {
+                    hrefs = new HashSet<>();
+                    hrefsByAttendee.put(a, hrefs);
+                }
+                hrefs.add(href);
+            }
+        }
+
+        /**
+         * Remove the href, and anything beneath it if it is a collection
+         */
+        synchronized void remove(String href) {
+            removeHref(href);
+            String prefix = href.endsWith("/") ? href : href + "/";
+            // hrefs are sorted, so those beneath the prefix are a contiguous range
+            List<String> toRemove = new ArrayList<>(attendeesByHref.subMap(prefix, true, prefix + Character.MAX_VALUE, false).keySet());
+            for (String s : toRemove) {
+                removeHref(s);
+            }
+        }
+
+        private void removeHref(String href) {
+            Collection<String> attendees = attendeesByHref.remove(href);
+            if (attendees == null) {
+                return;
+            }
+            for (String a : attendees) {
+                Set<String> hrefs = hrefsByAttendee.get(a);
+                if (hrefs != null) {
+                    hrefs.remove(href);
+                    if (hrefs.isEmpty()) {
+                        hrefsByAttendee.remove(a);
+                    }
+                }
+            }
+        }
+    }
+}
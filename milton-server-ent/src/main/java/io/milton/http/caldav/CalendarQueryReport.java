@@ -11,6 +11,7 @@ import io.milton.common.Utils;
 import io.milton.http.exceptions.BadRequestException;
 import io.milton.http.exceptions.NotAuthorizedException;
 import io.milton.http.report.QualifiedReport;
+import io.milton.http.report.StreamingReport;
 import io.milton.http.webdav.PropFindPropertyBuilder;
 import io.milton.http.webdav.PropFindResponse;
 import io.milton.http.webdav.PropFindXmlGenerator;
@@ -39,7 +40,7 @@ import org.slf4j.LoggerFactory;
  *
  * @author brad
  */
-public class CalendarQueryReport implements QualifiedReport {
+public class CalendarQueryReport implements QualifiedReport, StreamingReport {
 
     private static final Logger log = LoggerFactory.getLogger(CalendarQueryReport.class);
     private final PropFindPropertyBuilder propertyBuilder;
@@ -66,7 +67,7 @@ public class CalendarQueryReport implements QualifiedReport {
     }
 
     @Override
-    public String process(String host, String path, Resource resource, Document doc) throws BadRequestException, NotAuthorizedException {
+    public Body prepare(String host, String path, Resource resource, Document doc) throws BadRequestException, NotAuthorizedException {
         log.debug("process");
         // The requested properties
         Set<QName> props = ReportUtils.getProps(doc, NS_DAV);
@@ -99,7 +100,7 @@ public class CalendarQueryReport implements QualifiedReport {
             throw new BadRequestException(resource, "Resource is not a " + CalendarResource.class.getCanonicalName() + " is a: " + resource.getClass());
         }
 
-        return xmlGenerator.generate(respProps);
+        return out -> xmlGenerator.generate(respProps, out, null);
     }
 
 
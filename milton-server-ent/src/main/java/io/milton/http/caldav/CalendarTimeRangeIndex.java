@@ -0,0 +1,492 @@
+/*
+ * Copyright 2013 McEvoy Software Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.milton.http.caldav;
+
+import io.milton.common.Path;
+import io.milton.event.DeleteEvent;
+import io.milton.event.Event;
+import io.milton.event.EventListener;
+import io.milton.event.MoveEvent;
+import io.milton.event.PutEvent;
+import io.milton.event.ResourceEvent;
+import io.milton.http.HttpManager;
+import io.milton.http.Request;
+import io.milton.http.ResourceFactory;
+import io.milton.http.exceptions.BadRequestException;
+import io.milton.http.exceptions.NotAuthorizedException;
+import io.milton.resource.CalendarResource;
+import io.milton.resource.ICalResource;
+import io.milton.resource.Resource;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import net.fortuna.ical4j.data.ParserException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An index of event start and end times for each calendar, so that date range
+ * queries do not need to load and parse every event in the calendar.
+ *
+ * Events are held in start order, so a query only visits events which start
+ * within the requested range. The index for a calendar is trusted while the
+ * calendar's ctag is unchanged. When the ctag changes the children are listed
+ * again, but only events which are new or have a different modified date are
+ * parsed.
+ *
+ * Register with the EventManager for PUT, DELETE and MOVE events so that
+ * changes made through milton are picked up even if the ctag does not change.
+ * An indexed event is invalidated in the calendar it was found in. The
+ * calendar containing the request path, and for a MOVE the one containing the
+ * destination, are also re-listed on the next query, since a new event will
+ * not have been indexed anywhere yet. Those calendars are located with the
+ * ResourceFactory, and if there isn't one every calendar is re-listed.
+ *
+ * Calendars without a unique ID are not indexed, and find returns null for
+ * them.
+ *
+ * @author brad
+ */
+public class CalendarTimeRangeIndex implements EventListener {
+
+    private static final Logger log = LoggerFactory.getLogger(CalendarTimeRangeIndex.class);
+
+    private final ICalFormatter formatter;
+    private final ResourceFactory resourceFactory;
+    private final int maxCalendars;
+    private final Map<String, CalendarEntries> calendars;
+    /**
+     * Event unique ID to the calendar index it appears in, so events can be
+     * found when a resource is changed
+     */
+    private final Map<String, CalendarEntries> calendarsByEventId = new ConcurrentHashMap<>();
+
+    public CalendarTimeRangeIndex(ICalFormatter formatter) {
+        this(formatter, null, 1000);
+    }
+
+    public CalendarTimeRangeIndex(ICalFormatter formatter, ResourceFactory resourceFactory) {
+        this(formatter, resourceFactory, 1000);
+    }
+
+    /**
+     *
+     * @param formatter
+     * @param resourceFactory - used to find the calendar an event has been
+     * added to. May be null
+     * @param maxCalendars
+     */
+    public CalendarTimeRangeIndex(ICalFormatter formatter, ResourceFactory resourceFactory, final int maxCalendars) {
+        this.formatter = formatter;
+        this.resourceFactory = resourceFactory;
+        this.maxCalendars = maxCalendars;
+        this.calendars = new LinkedHashMap<String, CalendarEntries>(16, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CalendarEntries> eldest) {
+                if (size() > maxCalendars) {
+                    eldest.getValue().discard();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Find events in the calendar which are within the given range, ie the
+     * same events which would be found by checking each event with inRange
+     *
+     * @param calendar
+     * @param start - may be null
+     * @param end - may be null
+     * @return - the matching events, or null if the calendar cannot be indexed
+     * @throws NotAuthorizedException
+     * @throws BadRequestException
+     */
+    public List<Match> find(CalendarResource calendar, Date start, Date end) throws NotAuthorizedException, BadRequestException {
+        String key = calendar.getUniqueId();
+        if (key == null) {
+            return null;
+        }
+        CalendarEntries entries;
+        synchronized (calendars) {
+            entries = calendars.get(key);
+            if (entries == null) {
+                entries = new CalendarEntries();
+                calendars.put(key, entries);
+            }
+        }
+        return entries.find(calendar, start, end);
+    }
+
+    @Override
+    public void onEvent(Event e) {
+        onEvent(e, HttpManager.request());
+    }
+
+    void onEvent(Event e, Request request) {
+        if (!(e instanceof PutEvent || e instanceof DeleteEvent || e instanceof MoveEvent)) {
+            return;
+        }
+        Resource r = ((ResourceEvent) e).getResource();
+        if (!(r instanceof ICalResource)) {
+            return;
+        }
+        if (r.getUniqueId() != null) {
+            CalendarEntries entries = calendarsByEventId.get(r.getUniqueId());
+            if (entries != null) {
+                entries.invalidate(r.getName());
+            }
+        }
+        if (e instanceof DeleteEvent) {
+            return;
+        }
+        // the event might be new to its calendar, so not indexed yet
+        if (request == null) {
+            invalidateAll();
+            return;
+        }
+        String host = request.getHostHeader();
+        invalidateParent(host, HttpManager.decodeUrl(request.getAbsolutePath()));
+        if (e instanceof MoveEvent && request.getDestinationHeader() != null) {
+            invalidateParent(host, URI.create(request.getDestinationHeader()).getPath());
+        }
+    }
+
+    /**
+     * Mark the calendar containing the given event path as needing to be
+     * listed again
+     *
+     * @param host
+     * @param path - decoded path of an event
+     */
+    private void invalidateParent(String host, String path) {
+        if (resourceFactory == null) {
+            invalidateAll();
+            return;
+        }
+        Path parent = Path.path(path).getParent();
+        if (parent == null) {
+            return;
+        }
+        Resource col;
+        try {
+            col = resourceFactory.getResource(host, parent.toString());
+        } catch (NotAuthorizedException | BadRequestException ex) {
+            log.warn("invalidateParent: could not locate calendar: " + parent, ex);
+            invalidateAll();
+            return;
+        }
+        if (col instanceof CalendarResource && col.getUniqueId() != null) {
+            CalendarEntries entries;
+            synchronized (calendars) {
+                entries = calendars.get(col.getUniqueId());
+            }
+            if (entries != null) {
+                entries.markDirty();
+            }
+        }
+    }
+
+    private void invalidateAll() {
+        List<CalendarEntries> list;
+        synchronized (calendars) {
+            list = new ArrayList<>(calendars.values());
+        }
+        for (CalendarEntries entries : list) {
+            entries.markDirty();
+        }
+    }
+
+    public void clear() {
+        synchronized (calendars) {
+            for (CalendarEntries entries : calendars.values()) {
+                entries.discard();
+            }
+            calendars.clear();
+        }
+    }
+
+    /**
+     * 
+     * @return - the number of calendars currently indexed
+     */
+    public int size() {
+        synchronized (calendars) {
+            return calendars.size();
+        }
+    }
+
+    public int getMaxCalendars() {
+        return maxCalendars;
+    }
+
+    /**
+     * Check if an event with the given start and end is within the query
+     * range. An event with a missing start or end is only in range if the
+     * corresponding side of the query is open
+     *
+     * @param eventStart
+     * @param eventEnd
+     * @param start - may be null
+     * @param end - may be null
+     * @return
+     */
+    public static boolean inRange(Date eventStart, Date eventEnd, Date start, Date end) {
+        if (start != null) {
+            if (eventStart == null || eventStart.before(start)) {
+                return false;
+            }
+        }
+        if (end != null) {
+            if (eventEnd == null || eventEnd.after(end)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Read the start and end of the event
+     *
+     * @param formatter
+     * @param r
+     * @return
+     */
+    public static Match parse(ICalFormatter formatter, ICalResource r) {
+        if (r instanceof EventResource) {
+            EventResource event = (EventResource) r;
+            return new Match(r, event.getStart(), event.getEnd());
+        }
+        ParsedICal parsed;
+        try {
+            parsed = formatter.parse(r);
+        } catch (IOException | ParserException ex) {
+            throw new RuntimeException(ex);
+        }
+        return new Match(r, parsed.getStart(), parsed.getEnd());
+    }
+
+    /**
+     * An event found by a query, with its start and end
+     */
+    public static class Match {
+
+        private final ICalResource resource;
+        private final Date start;
+        private final Date end;
+
+        public Match(ICalResource resource, Date start, Date end) {
+            this.resource = resource;
+            this.start = start;
+            this.end = end;
+        }
+
+        public ICalResource getResource() {
+            return resource;
+        }
+
+        public Date getStart() {
+            return start;
+        }
+
+        public Date getEnd() {
+            return end;
+        }
+    }
+
+    private static class IndexedEvent {
+
+        private final String name;
+        private final String uniqueId;
+        private final Date start;
+        private final Date end;
+        private final long startMillis;
+        private final Date modified;
+
+        IndexedEvent(String name, String uniqueId, Date start, Date end, Date modified) {
+            this.name = name;
+            this.uniqueId = uniqueId;
+            this.start = start;
+            this.end = end;
+            this.startMillis = start == null ? Long.MIN_VALUE : start.getTime();
+            this.modified = modified;
+        }
+
+        /**
+         * Used as a bound for range queries on the sorted set
+         */
+        IndexedEvent(long startMillis, String name) {
+            this.name = name;
+            this.uniqueId = null;
+            this.start = null;
+            this.end = null;
+            this.startMillis = startMillis;
+            this.modified = null;
+        }
+    }
+
+    private static final Comparator<IndexedEvent> START_ORDER = new Comparator<IndexedEvent>() {
+
+        @Override
+        public int compare(IndexedEvent o1, IndexedEvent o2) {
+            int i = Long.compare(o1.startMillis, o2.startMillis);
+            if (i != 0) {
+                return i;
+            }
+            return o1.name.compareTo(o2.name);
+        }
+    };
+
+    /**
+     * The index for a single calendar
+     */
+    private class CalendarEntries {
+
+        private final Map<String, IndexedEvent> byName = new HashMap<>();
+        private final NavigableSet<IndexedEvent> byStart = new TreeSet<>(START_ORDER);
+        private String ctag;
+        private boolean dirty;
+
+        synchronized List<Match> find(CalendarResource calendar, Date start, Date end) throws NotAuthorizedException, BadRequestException {
+            String currentCtag = calendar.getCTag();
+            if (!dirty && currentCtag != null && currentCtag.equals(ctag)) {
+                List<Match> list = new ArrayList<>();
+                for (IndexedEvent e : query(start, end)) {
+                    Resource r = calendar.child(e.name);
+                    if (!(r instanceof ICalResource)) {
+                        log.warn("find: indexed event is missing, will re-index calendar: " + e.name);
+                        list = null;
+                        break;
+                    }
+                    list.add(new Match((ICalResource) r, e.start, e.end));
+                }
+                if (list != null) {
+                    return list;
+                }
+            }
+            Map<String, ICalResource> current = refresh(calendar);
+            ctag = currentCtag;
+            dirty = false;
+            List<Match> list = new ArrayList<>();
+            for (IndexedEvent e : query(start, end)) {
+                list.add(new Match(current.get(e.name), e.start, e.end));
+            }
+            return list;
+        }
+
+        synchronized void invalidate(String name) {
+            IndexedEvent e = byName.remove(name);
+            if (e != null) {
+                byStart.remove(e);
+            }
+            dirty = true;
+        }
+
+        synchronized void markDirty() {
+            dirty = true;
+        }
+
+        synchronized void discard() {
+            for (IndexedEvent e : byName.values()) {
+                if (e.uniqueId != null) {
+                    calendarsByEventId.remove(e.uniqueId, this);
+                }
+            }
+            byName.clear();
+            byStart.clear();
+            ctag = null;
+        }
+
+        private List<IndexedEvent> query(Date start, Date end) {
+            NavigableSet<IndexedEvent> candidates = byStart;
+            if (start != null) {
+                candidates = candidates.tailSet(new IndexedEvent(start.getTime(), ""), true);
+            }
+            List<IndexedEvent> list = new ArrayList<>();
+            for (IndexedEvent e : candidates) {
+                // events end after they start, so nothing further on can end before the range does
+                if (end != null && e.startMillis > end.getTime()) {
+                    break;
+                }
+                if (inRange(e.start, e.end, start, end)) {
+                    list.add(e);
+                }
+            }
+            return list;
+        }
+
+        /**
+         * List the calendar's children, parsing only those which are not
+         * already indexed with the same modified date
+         */
+        private Map<String, ICalResource> refresh(CalendarResource calendar) throws NotAuthorizedException, BadRequestException {
+            Map<String, ICalResource> current = new HashMap<>();
+            int parsed = 0;
+            for (Resource r : calendar.getChildren()) {
+                if (!(r instanceof ICalResource)) {
+                    continue;
+                }
+                ICalResource cr = (ICalResource) r;
+                current.put(cr.getName(), cr);
+                IndexedEvent existing = byName.get(cr.getName());
+                Date modified = cr.getModifiedDate();
+                if (existing != null && modified != null && modified.equals(existing.modified)) {
+                    continue;
+                }
+                if (existing != null) {
+                    byStart.remove(existing);
+                }
+                Match m = parse(formatter, cr);
+                parsed++;
+                IndexedEvent e = new IndexedEvent(cr.getName(), cr.getUniqueId(), m.getStart(), m.getEnd(), modified);
+                byName.put(e.name, e);
+                byStart.add(e);
+                if (e.uniqueId != null) {
+                    calendarsByEventId.put(e.uniqueId, this);
+                }
+            }
+            // remove anything which has gone
+            List<IndexedEvent> removed = new ArrayList<>();
+            for (IndexedEvent e : byName.values()) {
+                if (!current.containsKey(e.name)) {
+                    removed.add(e);
+                }
+            }
+            for (IndexedEvent e : removed) {
+                byName.remove(e.name);
+                byStart.remove(e);
+                if (e.uniqueId != null) {
+                    calendarsByEventId.remove(e.uniqueId, this);
+                }
+            }
+            if (log.isTraceEnabled()) {
+                log.trace("refresh: calendar=" + calendar.getName() + " events=" + byName.size() + " parsed=" + parsed + " removed=" + removed.size());
+            }
+            return current;
+        }
+    }
+}
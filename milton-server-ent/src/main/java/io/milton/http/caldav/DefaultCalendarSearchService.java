@@ -27,17 +27,15 @@ import io.milton.resource.ICalResource;
 import io.milton.resource.Resource;
 import io.milton.resource.SchedulingResponseItem;
 import java.io.IOException;
-import java.io.StringReader;
 import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
-import net.fortuna.ical4j.data.CalendarBuilder;
 import net.fortuna.ical4j.data.ParserException;
-import net.fortuna.ical4j.model.Calendar;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -55,6 +53,8 @@ public class DefaultCalendarSearchService implements CalendarSearchService {
     private String inboxName = "inbox";
     private String outBoxName = "outbox";
     private String usersBasePath = "/users/";
+    private CalendarTimeRangeIndex timeRangeIndex;
+    private CalendarAttendeeIndex attendeeIndex;
 
     public DefaultCalendarSearchService(ICalFormatter formatter, ResourceFactory resourceFactory) {
         if (resourceFactory == null) {
@@ -71,76 +71,64 @@ public class DefaultCalendarSearchService implements CalendarSearchService {
     
     @Override
     public List<ICalResource> findCalendarResources(CalendarResource calendar, Date start, Date end, AbstractMap.SimpleImmutableEntry<String, String> propFilter) throws NotAuthorizedException, BadRequestException {
-        // build a list of all calendar resources
         List<ICalResource> list = new ArrayList<>();
-        for (Resource r : calendar.getChildren()) {
-            if (r instanceof ICalResource) {
-                ICalResource cr = (ICalResource) r;
-                list.add(cr);
-            }
+        for (CalendarTimeRangeIndex.Match m : findInRange(calendar, start, end)) {
+            list.add(m.getResource());
         }
 
-        // So now we have (or might have) start and end dates, so filter list
-        Iterator<ICalResource> it = list.iterator();
-        while (it.hasNext()) {
-            ICalResource r = it.next();
-            if (outsideDates(r, start, end)) {
-                log.info("Not in range: " + r.getName());
-                it.remove();
+        if (propFilter != null) {
+            Iterator<ICalResource> it = list.iterator();
+            while (it.hasNext()) {
+                ICalResource r = it.next();
+                if (!matchesPropFilter(r, propFilter)) {
+                    log.info("Event do not match properties filter");
+                    it.remove();
+                }
             }
-
-			StringReader sin = new StringReader(r.getICalData());
-			CalendarBuilder builder = new CalendarBuilder();
-			Calendar cal = null;
-
-			try {
-				cal = builder.build(sin);
-			} catch(IOException e) {
-				log.error("Exception building calendar from ics", e);
-			} catch(ParserException e) {
-				log.error("Unable to parse ics", e);
-			}
-
-			if (propFilter != null) {
-				if (!cal.getComponent("VEVENT").getProperty(propFilter.getKey()).getValue().equals(propFilter.getValue())) {
-					log.info("Event do not match properties filter");
-					it.remove();
-				}
-			}
         }
         return list;
 
     }
 
-    private boolean outsideDates(ICalResource r, Date start, Date end) {
-        log.info("outsideDates: " + r.getName());
-        EventResource event;
-        if (r instanceof EventResource) {
-            event = (EventResource) r;
-        } else {
-            event = new EventResourceImpl();
-            try {
-                formatter.parseEvent(event, r.getICalData());
-            } catch (IOException | ParserException ex) {
-                throw new RuntimeException(ex);
+    /**
+     * Find events within the date range, with their start and end dates. Uses
+     * the time range index if there is one and it can index this calendar,
+     * otherwise checks every event in the calendar
+     */
+    private List<CalendarTimeRangeIndex.Match> findInRange(CalendarResource calendar, Date start, Date end) throws NotAuthorizedException, BadRequestException {
+        if (timeRangeIndex != null) {
+            List<CalendarTimeRangeIndex.Match> list = timeRangeIndex.find(calendar, start, end);
+            if (list != null) {
+                return list;
             }
         }
-
-        if (start != null) {
-            if (event.getStart().before(start)) {
-                log.info(" before start: " + event.getStart() + " < " + start);
-                return true;
+        List<CalendarTimeRangeIndex.Match> list = new ArrayList<>();
+        for (Resource r : calendar.getChildren()) {
+            if (r instanceof ICalResource) {
+                ICalResource cr = (ICalResource) r;
+                CalendarTimeRangeIndex.Match m = CalendarTimeRangeIndex.parse(formatter, cr);
+                if (CalendarTimeRangeIndex.inRange(m.getStart(), m.getEnd(), start, end)) {
+                    list.add(m);
+                } else {
+                    log.info("Not in range: " + cr.getName());
+                }
             }
         }
+        return list;
+    }
 
-        if (end != null) {
-            if (event.getEnd().after(end)) {
-                log.info(" after end: " + event.getEnd() + " < " + end);
-                return true;
-            }
+    private boolean matchesPropFilter(ICalResource r, AbstractMap.SimpleImmutableEntry<String, String> propFilter) {
+        String value;
+        try {
+            value = formatter.getEventProperty(r, propFilter.getKey());
+        } catch (IOException e) {
+            log.error("Exception building calendar from ics", e);
+            return false;
+        } catch (ParserException e) {
+            log.error("Unable to parse ics", e);
+            return false;
         }
-
-        return false;
+        return propFilter.getValue().equals(value);
     }
 
     @Override
@@ -172,11 +160,14 @@ public class DefaultCalendarSearchService implements CalendarSearchService {
     }
 
     /**
-     * Attempt to iterate over the entire users collection, and for each event
+     * Find events which the given user is an attendee of.
+     * 
+     * If there is an attendee index this just loads the events it lists.
+     * Otherwise iterate over the entire users collection, and for each event
      * in each user's calendar check if the given user is an attendee, and if
      * return it.
      * 
-     * Rather inefficient
+     * Rather inefficient without the index
      * 
      * @param user
      * @return
@@ -184,9 +175,52 @@ public class DefaultCalendarSearchService implements CalendarSearchService {
      * @throws BadRequestException 
      */
     @Override
-    public List<ICalResource> findAttendeeResources(CalDavPrincipal user) throws NotAuthorizedException, BadRequestException {
-        List<ICalResource> list = new ArrayList<>();
+    public List<ICalResource> findAttendeeResources(final CalDavPrincipal user) throws NotAuthorizedException, BadRequestException {
+        final List<ICalResource> list = new ArrayList<>();
         String host = HttpManager.request().getHostHeader();
+        if (attendeeIndex != null) {
+            if (attendeeIndex.needsBuild(host)) {
+                buildAttendeeIndex(host);
+            }
+            for (String href : attendeeIndex.findEventHrefs(host, user.getName())) {
+                Resource r = resourceFactory.getResource(host, href);
+                if (r instanceof ICalResource) {
+                    list.add((ICalResource) r);
+                } else {
+                    log.warn("findAttendeeResources: indexed event not found: " + href);
+                    attendeeIndex.remove(host, href);
+                }
+            }
+            return list;
+        }
+        forEachEvent(host, new EventVisitor() {
+
+            @Override
+            public void visit(String href, ICalResource event) {
+                if (isAttendeeOf(user, event)) {
+                    list.add(event);
+                }
+            }
+        });
+        return list;
+    }
+
+    private void buildAttendeeIndex(String host) throws NotAuthorizedException, BadRequestException {
+        final Map<String, List<String>> attendeesByHref = new HashMap<>();
+        forEachEvent(host, new EventVisitor() {
+
+            @Override
+            public void visit(String href, ICalResource event) {
+                attendeesByHref.put(href, formatter.parseAttendees(event.getICalData()));
+            }
+        });
+        attendeeIndex.replace(host, attendeesByHref);
+    }
+
+    /**
+     * Visit every event in every calendar of every user
+     */
+    private void forEachEvent(String host, EventVisitor visitor) throws NotAuthorizedException, BadRequestException {
         Resource rUsersHome = resourceFactory.getResource(host, usersBasePath);
         if( rUsersHome instanceof CollectionResource ) {
             CollectionResource usersHome = (CollectionResource) rUsersHome;
@@ -197,15 +231,14 @@ public class DefaultCalendarSearchService implements CalendarSearchService {
                         Resource rCalHome = resourceFactory.getResource(host, href);
                         if( rCalHome instanceof CollectionResource ) {
                             CollectionResource calHome = (CollectionResource) rCalHome;
+                            String homeHref = href.endsWith("/") ? href : href + "/";
                             for( Resource rCal : calHome.getChildren()) {
                                 if( rCal instanceof CalendarResource) {
                                     CalendarResource cal = (CalendarResource) rCal;
+                                    String calHref = homeHref + cal.getName() + "/";
                                     for( Resource rEvent : cal.getChildren()) {
                                         if( rEvent instanceof ICalResource) {
-                                            ICalResource event = (ICalResource) rEvent;
-                                            if( isAttendeeOf(user, event) ) {
-                                                list.add(event);
-                                            }
+                                            visitor.visit(calHref + rEvent.getName(), (ICalResource) rEvent);
                                         }
                                     }
                                 }
@@ -215,7 +248,11 @@ public class DefaultCalendarSearchService implements CalendarSearchService {
                 }
             }
         }
-        return list;
+    }
+
+    private interface EventVisitor {
+
+        void visit(String href, ICalResource event);
     }
 
     @Override
@@ -293,6 +330,34 @@ public class DefaultCalendarSearchService implements CalendarSearchService {
         }
     }
 
+    /**
+     * If set, date range queries use this index instead of parsing every
+     * event in the calendar
+     *
+     * @return
+     */
+    public CalendarTimeRangeIndex getTimeRangeIndex() {
+        return timeRangeIndex;
+    }
+
+    public void setTimeRangeIndex(CalendarTimeRangeIndex timeRangeIndex) {
+        this.timeRangeIndex = timeRangeIndex;
+    }
+
+    /**
+     * If set, attendee lookups for scheduling use this index instead of
+     * checking every event of every user
+     *
+     * @return
+     */
+    public CalendarAttendeeIndex getAttendeeIndex() {
+        return attendeeIndex;
+    }
+
+    public void setAttendeeIndex(CalendarAttendeeIndex attendeeIndex) {
+        this.attendeeIndex = attendeeIndex;
+    }
+
     public String getUsersBasePath() {
         return usersBasePath;
     }
@@ -330,26 +395,20 @@ public class DefaultCalendarSearchService implements CalendarSearchService {
                 for (Resource rColCal : calHome.getChildren()) {
                     if (rColCal instanceof CalendarResource) {
                         CalendarResource cal = (CalendarResource) rColCal;
-                        List<ICalResource> eventsInRange = findCalendarResources(cal, start, finish, null);
+                        List<CalendarTimeRangeIndex.Match> eventsInRange = findInRange(cal, start, finish);
                         if (log.isTraceEnabled()) {
                             log.trace("Process calendar: " + cal.getName() + " events in range=" + eventsInRange.size());
                             log.trace("  range= " + start + " - " + finish);
                         }
-                        for (ICalResource event : eventsInRange) {
-                            log.trace("Process event: " + event.getName());
-                            EventResourceImpl er = new EventResourceImpl();
-                            try {
-                                formatter.parseEvent(er, event.getICalData());
-                            } catch (IOException | ParserException ex) {
-                                throw new RuntimeException(ex);
-                            }
+                        for (CalendarTimeRangeIndex.Match event : eventsInRange) {
+                            log.trace("Process event: " + event.getResource().getName());
 
                             // write the freebusy statement, Eg:
                             // FREEBUSY;FBTYPE=BUSY:20090602T110000Z/20090602T120000Z
                             sb.append("FREEBUSY;FBTYPE=BUSY:");
-                            sb.append(formatter.formatDate(er.getStart()));
+                            sb.append(formatter.formatDate(event.getStart()));
                             sb.append("/");
-                            sb.append(formatter.formatDate(er.getEnd()));
+                            sb.append(formatter.formatDate(event.getEnd()));
                             sb.append("\n");
                         }
                     }
@@ -7,7 +7,7 @@ package io.milton.http.caldav;
 import io.milton.http.ResourceFactory;
 import io.milton.http.exceptions.BadRequestException;
 import io.milton.http.exceptions.NotAuthorizedException;
-import io.milton.http.report.Report;
+import io.milton.http.report.StreamingReport;
 import io.milton.http.values.HrefList;
 import io.milton.http.values.PropFindResponseList;
 import io.milton.http.values.ValueAndType;
@@ -143,7 +143,7 @@ DAV:version-history of http://www.webdav.org/foo.html are reported.
  *
  * @author bradm
  */
-public class ExpandPropertyReport implements Report {
+public class ExpandPropertyReport implements StreamingReport {
 
 	private static final Logger log = LoggerFactory.getLogger(MultiGetReport.class);
 	private final ResourceFactory resourceFactory;
@@ -157,7 +157,7 @@ public class ExpandPropertyReport implements Report {
 	}
 
 	@Override
-	public String process(String host, String path, Resource calendar, Document doc) throws NotAuthorizedException, BadRequestException {
+	public Body prepare(String host, String path, Resource calendar, Document doc) throws NotAuthorizedException, BadRequestException {
 		log.debug("process");
 
 		PropertiesRequest parseResult = parse(doc.getRootElement());
@@ -189,7 +189,8 @@ public class ExpandPropertyReport implements Report {
 
 		//show("",propFindResponses);
 
-		return xmlGenerator.generate(propFindResponses);
+		List<PropFindResponse> responses = propFindResponses;
+		return out -> xmlGenerator.generate(responses, out, null);
 	}
 
 	public PropertiesRequest parse(Element elProp) {
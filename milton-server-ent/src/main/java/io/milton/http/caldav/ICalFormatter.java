@@ -6,18 +6,24 @@ package io.milton.http.caldav;
 
 import io.milton.http.exceptions.BadRequestException;
 import io.milton.http.exceptions.NotAuthorizedException;
+import io.milton.resource.ICalResource;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import net.fortuna.ical4j.data.CalendarBuilder;
 import net.fortuna.ical4j.data.ParserException;
+import net.fortuna.ical4j.model.Property;
 import net.fortuna.ical4j.model.component.VEvent;
 
 /**
@@ -40,10 +46,95 @@ public class ICalFormatter {
     public static final String MAILTO = "mailto:";
     // Changed T to space. removed trailing Z
     private static final String PATTERN_ICAL = "yyyyMMdd HHmmss";
+    /**
+     * Short VEVENT properties which are commonly used in prop-filters
+     */
+    public static final Set<String> DEFAULT_FILTER_PROPERTIES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            Property.SUMMARY, Property.LOCATION, Property.STATUS, Property.CATEGORIES, Property.CLASS, Property.TRANSP)));
+
+    private ParsedICalCache parsedCache;
+    private Set<String> filterProperties = DEFAULT_FILTER_PROPERTIES;
 
     public ICalFormatter() {
     }
 
+    /**
+     * Get the parsed form of the resource's iCal data, from the parsed cache
+     * if one is set
+     *
+     * @param r
+     * @return
+     * @throws IOException
+     * @throws ParserException
+     */
+    public ParsedICal parse(ICalResource r) throws IOException, ParserException {
+        if (parsedCache != null) {
+            return parsedCache.get(r, this);
+        }
+        return parse(r.getICalData());
+    }
+
+    /**
+     * Get the value of the first VEVENT property with the given name, as
+     * checked by a prop-filter. This uses the parsed form if the property is
+     * kept in it, otherwise the data is parsed again
+     *
+     * @param r
+     * @param name - eg SUMMARY
+     * @return - null if there is no such property
+     * @throws IOException
+     * @throws ParserException
+     */
+    public String getEventProperty(ICalResource r, String name) throws IOException, ParserException {
+        if (Property.UID.equals(name)) {
+            return parse(r).getUid();
+        }
+        if (filterProperties.contains(name)) {
+            return parse(r).getProperty(name);
+        }
+        CalendarBuilder builder = new CalendarBuilder();
+        net.fortuna.ical4j.model.Calendar calendar = builder.build(new ByteArrayInputStream(r.getICalData().getBytes("UTF-8")));
+        VEvent ev = calendar == null ? null : event(calendar);
+        if (ev == null) {
+            return null;
+        }
+        Property p = ev.getProperty(name);
+        return p == null ? null : p.getValue();
+    }
+
+    /**
+     * Parse the data once, keeping only the information needed for calendar
+     * searches. Of the other VEVENT properties only the filterProperties are
+     * kept, since some, such as DESCRIPTION and ATTACH, can be large
+     *
+     * @param data
+     * @return
+     * @throws IOException
+     * @throws ParserException
+     */
+    public ParsedICal parse(String data) throws IOException, ParserException {
+        CalendarBuilder builder = new CalendarBuilder();
+        net.fortuna.ical4j.model.Calendar calendar = builder.build(new ByteArrayInputStream(data.getBytes("UTF-8")));
+        List<String> attendees = parseAttendees(data);
+        Map<String, String> props = new HashMap<>();
+        VEvent ev = calendar == null ? null : event(calendar);
+        if (ev == null) {
+            return new ParsedICal(null, null, null, null, null, attendees, props);
+        }
+        for (String name : filterProperties) {
+            Property p = ev.getProperty(name);
+            if (p != null) {
+                props.put(name, p.getValue());
+            }
+        }
+        String uid = ev.getUid() == null ? null : ev.getUid().getValue();
+        Date start = ev.getStartDate() == null ? null : ev.getStartDate().getDate();
+        Date end = ev.getEndDate() == null ? null : ev.getEndDate().getDate();
+        Property rrule = ev.getProperty(Property.RRULE);
+        String organizer = ev.getOrganizer() == null ? null : getMailTo(ev.getOrganizer().getValue());
+        return new ParsedICal(uid, start, end, rrule == null ? null : rrule.getValue(), organizer, attendees, props);
+    }
+
     public void parseEvent(EventResource r, String data) throws IOException, ParserException {
         CalendarBuilder builder = new CalendarBuilder();
         net.fortuna.ical4j.model.Calendar calendar = builder.build(new ByteArrayInputStream(data.getBytes("UTF-8")));
@@ -207,6 +298,34 @@ public class ICalFormatter {
         return (VEvent) cal.getComponent("VEVENT");
     }
 
+    public ParsedICalCache getParsedCache() {
+        return parsedCache;
+    }
+
+    /**
+     * If set, parse(ICalResource) results are cached
+     *
+     * @param parsedCache
+     */
+    public void setParsedCache(ParsedICalCache parsedCache) {
+        this.parsedCache = parsedCache;
+    }
+
+    public Set<String> getFilterProperties() {
+        return filterProperties;
+    }
+
+    /**
+     * The VEVENT properties, besides UID, which are kept in the parsed form
+     * for prop-filter matching. Set this before the formatter is used, since
+     * parsed forms may be cached
+     *
+     * @param filterProperties - defaults to DEFAULT_FILTER_PROPERTIES
+     */
+    public void setFilterProperties(Set<String> filterProperties) {
+        this.filterProperties = filterProperties;
+    }
+
     public String buildFreeBusyAttendeeResponse(List<? extends EventResource> events, ICalFormatter.FreeBusyRequest request, String domain, String attendeeMailto) throws NotAuthorizedException, BadRequestException {
         Map<String, String> source = request.getLines();
         StringBuilder sb = new StringBuilder();
@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.milton.http.caldav;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The parts of an iCalendar event which are needed by calendar searches, ie a
+ * compact alternative to holding on to the ical4j object model.
+ *
+ * Properties holds the value of the first occurrence of each of the
+ * formatter's filterProperties in the VEVENT, which is what prop-filter checks
+ * against. Other properties are not kept. Attendees are the mailto addresses
+ * found anywhere in the data, as per ICalFormatter.parseAttendees
+ *
+ * @author brad
+ */
+public class ParsedICal {
+
+    private final String uid;
+    private final Date start;
+    private final Date end;
+    private final String rrule;
+    private final String organizer;
+    private final List<String> attendees;
+    private final Map<String, String> properties;
+
+    public ParsedICal(String uid, Date start, Date end, String rrule, String organizer, List<String> attendees, Map<String, String> properties) {
+        this.uid = uid;
+        this.start = start;
+        this.end = end;
+        this.rrule = rrule;
+        this.organizer = organizer;
+        this.attendees = Collections.unmodifiableList(attendees);
+        this.properties = Collections.unmodifiableMap(properties);
+    }
+
+    public String getUid() {
+        return uid;
+    }
+
+    /**
+     * 
+     * @return - DTSTART of the event, or null if there is no VEVENT
+     */
+    public Date getStart() {
+        return start;
+    }
+
+    public Date getEnd() {
+        return end;
+    }
+
+    public String getRrule() {
+        return rrule;
+    }
+
+    public String getOrganizer() {
+        return organizer;
+    }
+
+    public List<String> getAttendees() {
+        return attendees;
+    }
+
+    /**
+     * 
+     * @param name - eg SUMMARY
+     * @return - the value of the first VEVENT property with the name, or null
+     * if there is none or it is not one of the filterProperties
+     */
+    public String getProperty(String name) {
+        return properties.get(name);
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.milton.http.caldav;
+
+import io.milton.resource.ICalResource;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import net.fortuna.ical4j.data.ParserException;
+
+/**
+ * A bounded cache of ParsedICal, so that the same event is not parsed again by
+ * each report or query which looks at it.
+ *
+ * Entries are keyed on a SHA-256 hash of the iCal data, so a change to the
+ * content is always seen, even if the modified date has not changed. The data
+ * is still read for each lookup, but hashing it is much cheaper than parsing
+ * it. Entries for old versions of an event are dropped as the least recently
+ * used.
+ *
+ * Set this on the ICalFormatter to have it used by everything which parses
+ * events with that formatter
+ *
+ * @author brad
+ */
+public class ParsedICalCache {
+
+    private final int maxEntries;
+    private final Map<String, ParsedICal> entries;
+    private long hits;
+    private long misses;
+
+    public ParsedICalCache() {
+        this(10000);
+    }
+
+    public ParsedICalCache(final int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<String, ParsedICal>(16, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ParsedICal> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public ParsedICal get(ICalResource r, ICalFormatter formatter) throws IOException, ParserException {
+        String data = r.getICalData();
+        if (data == null) {
+            return formatter.parse(data);
+        }
+        String key = hash(data);
+        synchronized (this) {
+            ParsedICal parsed = entries.get(key);
+            if (parsed != null) {
+                hits++;
+                return parsed;
+            }
+            misses++;
+        }
+        // parse outside the lock, the worst case is two threads parsing the same thing
+        ParsedICal parsed = formatter.parse(data);
+        synchronized (this) {
+            entries.put(key, parsed);
+        }
+        return parsed;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    private static String hash(String data) {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new RuntimeException(ex);
+        }
+        byte[] digest = md.digest(data.getBytes(StandardCharsets.UTF_8));
+        StringBuilder sb = new StringBuilder(digest.length * 2);
+        for (byte b : digest) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+}
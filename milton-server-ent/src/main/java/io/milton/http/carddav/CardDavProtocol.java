@@ -25,7 +25,7 @@ import io.milton.http.webdav.PropertyMap;
 import io.milton.http.webdav.PropertyMap.StandardProperty;
 import io.milton.http.webdav.WebDavProtocol;
 import io.milton.http.webdav.WebDavResponseHandler;
-import io.milton.property.PropertySource;
+import io.milton.property.CacheablePropertySource;
 import io.milton.common.LogUtils;
 import java.io.IOException;
 import java.io.OutputStream;
@@ -55,7 +55,7 @@ import io.milton.resource.Resource;
  *
  * @author bradm
  */
-public class CardDavProtocol implements HttpExtension, PropertySource, WellKnownHandler {
+public class CardDavProtocol implements HttpExtension, CacheablePropertySource, WellKnownHandler {
 
     private static final Logger log = LoggerFactory.getLogger(CardDavProtocol.class);
     // Standard caldav properties
@@ -120,6 +120,14 @@ public class CardDavProtocol implements HttpExtension, PropertySource, WellKnown
         return md;
     }
 
+    /**
+     * All properties come from a PropertyMap, which only looks at the resource type
+     */
+    @Override
+    public boolean isPropertyMetaDataCacheable(Resource r) {
+        return true;
+    }
+
     @Override
     public void clearProperty(QName name, Resource r) {
         throw new UnsupportedOperationException("Not supported yet.");
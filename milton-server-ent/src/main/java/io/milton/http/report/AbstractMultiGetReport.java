@@ -23,13 +23,15 @@ import javax.xml.namespace.QName;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
  * @author brad
  */
-public abstract class AbstractMultiGetReport implements QualifiedReport {
+public abstract class AbstractMultiGetReport implements QualifiedReport, StreamingReport {
 
     private static final Logger log = LoggerFactory.getLogger(AbstractMultiGetReport.class);
     protected final ResourceFactory resourceFactory;
@@ -47,7 +49,7 @@ public abstract class AbstractMultiGetReport implements QualifiedReport {
     }
 
     @Override
-    public String process(String host, String path, Resource calendar, Document doc) throws NotAuthorizedException, BadRequestException {
+    public Body prepare(String host, String path, Resource calendar, Document doc) throws NotAuthorizedException, BadRequestException {
         log.debug("process report: " + getName());
         // The requested properties
         Set<QName> props = getProps(doc);
@@ -56,23 +58,28 @@ public abstract class AbstractMultiGetReport implements QualifiedReport {
 
         PropertiesRequest parseResult = PropertiesRequest.toProperties(props);
 
-        // Generate the response
-        List<PropFindResponse> respProps = new ArrayList<>();
-
+        // Find the resources, then build their properties together so the
+        // property builder can resolve them in parallel if configured to
+        List<PropFindableResource> found = new ArrayList<>();
+        List<String> foundHrefs = new ArrayList<>();
+        List<String> fullHrefs = new ArrayList<>();
+        List<String> decodedHrefs = new ArrayList<>();
         for (String href : hrefs) {
             if(!href.startsWith("/")) {
                 href = Utils.suffixSlash(path) + href;
             }
-            String decodedHref = HttpManager.decodeUrl(href);
-            Resource r = resourceFactory.getResource(host, decodedHref);
+            fullHrefs.add(href);
+            decodedHrefs.add(HttpManager.decodeUrl(href));
+        }
+        // Resolve all together, so common parents are only located once
+        Map<String, Resource> resources = resourceFactory.getResources(host, new LinkedHashSet<>(decodedHrefs));
+        for (int i = 0; i < fullHrefs.size(); i++) {
+            String href = fullHrefs.get(i);
+            Resource r = resources.get(decodedHrefs.get(i));
             if (r != null) {
                 if (r instanceof PropFindableResource) {
-                    PropFindableResource pfr = (PropFindableResource) r;
-                    try {
-                        respProps.addAll(propertyBuilder.buildProperties(pfr, 0, parseResult, href));
-                    } catch (URISyntaxException ex) {
-                        throw new RuntimeException("There was an unencoded url requested: " + href, ex);
-                    }
+                    found.add((PropFindableResource) r);
+                    foundHrefs.add(href);
                 } else {
                     log.warn("requested href is for a non PropFindableResource: " + r.getClass() + " - " + href);
                 }
@@ -81,12 +88,14 @@ public abstract class AbstractMultiGetReport implements QualifiedReport {
             }
         }
 
-        String xml = xmlGenerator.generate(respProps);
-        if (log.isTraceEnabled()) {
-            log.trace(getName() + ": response");
-            log.trace(xml);
+        // Generate the response
+        List<PropFindResponse> respProps;
+        try {
+            respProps = propertyBuilder.buildProperties(found, foundHrefs, parseResult);
+        } catch (URISyntaxException ex) {
+            throw new RuntimeException("There was an unencoded url requested: " + foundHrefs, ex);
         }
-        return xml;
+        return out -> xmlGenerator.generate(respProps, out, null);
     }
 
     private List<String> getHrefs(Document doc) {
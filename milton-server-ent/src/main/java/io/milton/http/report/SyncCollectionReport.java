@@ -2,8 +2,10 @@ package io.milton.http.report;
 
 import io.milton.common.Utils;
 import io.milton.http.HttpManager;
+import io.milton.http.Request;
 import io.milton.http.Response;
 import io.milton.http.XmlWriter;
+import io.milton.http.XmlWriter.Type;
 import io.milton.http.exceptions.BadRequestException;
 import io.milton.http.exceptions.NotAuthorizedException;
 import io.milton.http.webdav.PropFindPropertyBuilder;
@@ -15,10 +17,13 @@ import io.milton.http.webdav.WebDavProtocol;
 import io.milton.resource.PropFindableResource;
 import io.milton.resource.RemovedResource;
 import io.milton.resource.Resource;
+import io.milton.resource.SyncChangeCursor;
 import io.milton.resource.SyncCollectionResource;
 
+import java.io.OutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
@@ -31,7 +36,7 @@ import org.jdom2.Document;
 import org.jdom2.Element;
 import org.jdom2.Namespace;
 
-public class SyncCollectionReport implements Report {
+public class SyncCollectionReport implements StreamingReport {
     protected final Namespace NS_DAV = Namespace.getNamespace(WebDavProtocol.NS_DAV.getPrefix(), WebDavProtocol.NS_DAV.getName());
     private enum SyncLevel {
       One,
@@ -39,6 +44,7 @@ public class SyncCollectionReport implements Report {
     }
     private final PropFindPropertyBuilder propertyBuilder;
     private final PropFindXmlGenerator xmlGenerator;
+    private int maxResults;
     
     public SyncCollectionReport(PropFindPropertyBuilder propertyBuilder, PropFindXmlGenerator xmlGenerator) {
         this.propertyBuilder = propertyBuilder;
@@ -51,7 +57,12 @@ public class SyncCollectionReport implements Report {
     }
   
     @Override
-    public String process(String host, String path, Resource r, Document doc)
+    public Body prepare(String host, String path, Resource r, Document doc)
+        throws BadRequestException, NotAuthorizedException {
+        return prepare(r, doc, HttpManager.request());
+    }
+
+    Body prepare(Resource r, Document doc, Request request)
         throws BadRequestException, NotAuthorizedException {
         if (!(r instanceof SyncCollectionResource)) {
             throw new BadRequestException(r, "This resource does not support sync-token.");
@@ -70,7 +81,7 @@ public class SyncCollectionReport implements Report {
            DAV:sync-collection report, i.e., the report targets only the
            collection being synchronized in a single request.
         */
-        if (HttpManager.request().getDepthHeader() != 0) {
+        if (request.getDepthHeader() != 0) {
         //throw new BadRequestException(r, "Depth header must be 0");
         // iOS 8.1 sends depth=1 with sync-collection, so ignore the spec
         }
@@ -126,12 +137,102 @@ public class SyncCollectionReport implements Report {
             }
         }
 
-        String parentHref = HttpManager.request().getAbsolutePath();
-        parentHref = Utils.suffixSlash(parentHref);
-        List<PropFindResponse> respProps = new ArrayList<>();
-        findResources(syncCollectionResource, doc, syncToken, lv, parentHref, respProps);
+        int clientLimit = findClientLimit(r, doc);
+        Set<QName> props = getProps(doc);
+        PropertiesRequest parseResult = PropertiesRequest.toProperties(props);
+
+        final String parentHref = Utils.suffixSlash(request.getAbsolutePath());
+        final boolean brief = isBriefHeader(request);
+        final URI fromToken = syncToken;
+        final SyncLevel level = lv;
+
+        /* 3.6.  Truncation of Results
+
+           A server MAY limit the number of member URLs in a response, for
+           example, to limit the amount of work expended in processing a
+           request, or as the result of an explicit limit set by the client.
+           If the result set is truncated, the response MUST use status code
+           207 (Multi-Status), return a DAV:multistatus response body, and
+           indicate a status of 507 (Insufficient Storage) for the request-URI.
+
+           Changes are read from a cursor, so only truncate at a point where
+           the cursor can give a token to resume from.
+        */
+        SyncChangeCursor cursor = syncCollectionResource.findChangesBySyncToken(syncToken);
+        if (clientLimit > 0) {
+            /* 3.7.  Limiting Results
+
+               If the server is unable to truncate the result at or below the
+               requested number, then it MUST fail the request with a
+               DAV:number-of-matches-within-limits post-condition error.
+
+               So read ahead up to the limit before anything is written
+            */
+            List<Map.Entry<String, Resource>> changes = new ArrayList<>();
+            int cut = 0;
+            int softCut = 0;
+            URI cutToken = null;
+            URI softCutToken = null;
+            boolean expanded = false;
+            while (changes.size() <= clientLimit && cursor.hasNext()) {
+                Map.Entry<String, Resource> change = cursor.next();
+                expanded |= collectChange(change.getKey(), change.getValue(), syncToken, lv, parentHref, changes, clientLimit + 1);
+                // changes in child collections can't be resumed from this collection's token
+                URI token = expanded ? null : cursor.getResumeToken();
+                if (token != null && changes.size() <= clientLimit) {
+                    cut = changes.size();
+                    cutToken = token;
+                    if (maxResults <= 0 || cut <= maxResults) {
+                        softCut = cut;
+                        softCutToken = token;
+                    }
+                }
+            }
+            if (changes.size() <= clientLimit && !cursor.hasNext()) {
+                URI resumeToken = cursor.getResumeToken();
+                URI nextSyncToken = resumeToken != null ? resumeToken : syncCollectionResource.getSyncToken();
+                return out -> {
+                    PropFindXmlGenerator.StreamingWriter writer = xmlGenerator.beginStreaming(out, props, brief);
+                    writeChanges(changes, changes.size(), parseResult, fromToken, writer);
+                    finish(writer, nextSyncToken);
+                };
+            } else if (cut > 0) {
+                final int count = softCut > 0 ? softCut : cut;
+                final URI nextSyncToken = softCut > 0 ? softCutToken : cutToken;
+                return out -> {
+                    PropFindXmlGenerator.StreamingWriter writer = xmlGenerator.beginStreaming(out, props, brief);
+                    writeChanges(changes, count, parseResult, fromToken, writer);
+                    writer.onResponse(new PropFindResponse(parentHref, Response.Status.SC_INSUFFICIENT_STORAGE));
+                    finish(writer, nextSyncToken);
+                };
+            } else {
+                return new LimitErrorBody();
+            }
+        }
+        // only limited by the server, which may go over to find a point it can resume from
+        return out -> {
+            PropFindXmlGenerator.StreamingWriter writer = xmlGenerator.beginStreaming(out, props, brief);
+            int count = 0;
+            boolean truncated = false;
+            while (cursor.hasNext()) {
+                if (maxResults > 0 && count >= maxResults && cursor.getResumeToken() != null) {
+                    truncated = true;
+                    break;
+                }
+                Map.Entry<String, Resource> change = cursor.next();
+                processChange(change.getKey(), change.getValue(), parseResult, fromToken, level, parentHref, writer);
+                count++;
+            }
+            URI resumeToken = cursor.getResumeToken();
+            URI nextSyncToken = resumeToken != null ? resumeToken : syncCollectionResource.getSyncToken();
+            if (truncated) {
+                writer.onResponse(new PropFindResponse(parentHref, Response.Status.SC_INSUFFICIENT_STORAGE));
+            }
+            finish(writer, nextSyncToken);
+        };
+    }
 
-        final URI nextSyncToken = syncCollectionResource.getSyncToken();
+    private void finish(PropFindXmlGenerator.StreamingWriter writer, final URI nextSyncToken) {
         /*
           <A:sync-collection xmlns:A="DAV:">
             <A:sync-token>http://example.org/sync/1414342005182</A:sync-token>
@@ -160,9 +261,7 @@ public class SyncCollectionReport implements Report {
            any DAV:propstat element.
          */
       
-        //List<PropFindResponse>
-
-        return xmlGenerator.generate(respProps, new PropFindXmlFooter() {
+        writer.finish(new PropFindXmlFooter() {
             @Override
             public void footer(XmlWriter writer) {
                 writer.writeProperty(WebDavProtocol.NS_DAV.getPrefix(), "sync-token", nextSyncToken.toString());
@@ -170,64 +269,172 @@ public class SyncCollectionReport implements Report {
         });
     }
   
-    private void findResources(SyncCollectionResource parent, Document doc, URI syncToken, SyncLevel syncLevel, String parentHref, List<PropFindResponse> respProps) throws NotAuthorizedException, BadRequestException {
-        Map<String, Resource> children = parent.findResourcesBySyncToken(syncToken);
-        for (String href : children.keySet()) {
-            Resource r = children.get(href);
-            //hrefs.add(parentHref + r.getName());
-      
-            if (r instanceof RemovedResource) {
-                /* 3.4.  Types of Changes Reported on Initial Synchronization
-
-                When the DAV:sync-collection request contains an empty DAV:sync-token
-                element, the server MUST return all member URLs of the collection
-                (taking account of the DAV:sync-level XML element value as per
-                Section 3.3, and optional truncation of the result set as per
-                Section 3.6) and it MUST NOT return any removed member URLs.  All
-                types of member (collection or non-collection) MUST be reported.
-                */
-                if (syncToken != null) {
-                    /* For members that have been removed, the DAV:response MUST
-                    contain one DAV:status with a value set to '404 Not Found' and
-                    MUST NOT contain any DAV:propstat element. */
-                    PropFindResponse resp = new PropFindResponse(href, Response.Status.SC_NOT_FOUND);
-                    
-                    // TODO 404 must be in just under the response
-                    respProps.add(resp);
-                }
-            } else if (r instanceof PropFindableResource) {
-                Set<QName> props = getProps(doc);
-                PropertiesRequest parseResult = PropertiesRequest.toProperties(props);
+    /**
+     * Only the changes directly in the request-URI count towards the limit,
+     * changes in child collections are always reported in full because their
+     * cursors can't be resumed from the request's sync-token
+     */
+    private void findResources(SyncCollectionResource parent, PropertiesRequest parseResult, URI syncToken, SyncLevel syncLevel, String parentHref, PropFindXmlGenerator.StreamingWriter writer) throws NotAuthorizedException, BadRequestException {
+        SyncChangeCursor cursor = parent.findChangesBySyncToken(syncToken);
+        while (cursor.hasNext()) {
+            Map.Entry<String, Resource> change = cursor.next();
+            processChange(change.getKey(), change.getValue(), parseResult, syncToken, syncLevel, parentHref, writer);
+        }
+    }
+
+    /**
+     * Add the change, and with sync-level infinite the changes in a child
+     * collection, to the list, stopping once the list has max entries
+     *
+     * @return - true if a child collection's changes were read
+     */
+    private boolean collectChange(String href, Resource r, URI syncToken, SyncLevel syncLevel, String parentHref, List<Map.Entry<String, Resource>> changes, int max) throws NotAuthorizedException, BadRequestException {
+        changes.add(new AbstractMap.SimpleImmutableEntry<>(href, r));
+        if (syncLevel != SyncLevel.Infinite || !(r instanceof SyncCollectionResource)) {
+            return false;
+        }
+        String currentHref = Utils.suffixSlash(parentHref + r.getName());
+        SyncChangeCursor cursor = ((SyncCollectionResource) r).findChangesBySyncToken(syncToken);
+        while (changes.size() < max && cursor.hasNext()) {
+            Map.Entry<String, Resource> change = cursor.next();
+            collectChange(change.getKey(), change.getValue(), syncToken, syncLevel, currentHref, changes, max);
+        }
+        return true;
+    }
+
+    private void writeChanges(List<Map.Entry<String, Resource>> changes, int count, PropertiesRequest parseResult, URI syncToken, PropFindXmlGenerator.StreamingWriter writer) throws NotAuthorizedException, BadRequestException {
+        for (int i = 0; i < count; i++) {
+            Map.Entry<String, Resource> change = changes.get(i);
+            writeChange(change.getKey(), change.getValue(), parseResult, syncToken, writer);
+        }
+    }
+
+    /**
+     * Responds with 507 and a DAV:number-of-matches-within-limits error, for
+     * when the changes can't be truncated within the client's DAV:limit
+     */
+    private static class LimitErrorBody implements Body {
+
+        @Override
+        public Response.Status getStatus() {
+            return Response.Status.SC_INSUFFICIENT_STORAGE;
+        }
+
+        @Override
+        public void write(OutputStream out) {
+            String prefix = WebDavProtocol.NS_DAV.getPrefix();
+            XmlWriter w = new XmlWriter(out);
+            w.writeXMLHeader();
+            w.writeElement(prefix, WebDavProtocol.NS_DAV.getName(), "error", Type.OPENING);
+            w.writeProperty(prefix, "number-of-matches-within-limits");
+            w.writeElement(prefix, "error", Type.CLOSING);
+            w.flush();
+        }
+    }
+
+    private void processChange(String href, Resource r, PropertiesRequest parseResult, URI syncToken, SyncLevel syncLevel, String parentHref, PropFindXmlGenerator.StreamingWriter writer) throws NotAuthorizedException, BadRequestException {
+        writeChange(href, r, parseResult, syncToken, writer);
+        if (syncLevel == SyncLevel.Infinite) {
+            /* When the client specifies the DAV:sync-level XML element with a
+            value of "infinite", all appropriate member URLs of the collection
+            specified as the request-URI are reported, provided child
+            collections themselves also support the DAV:sync-collection
+            report. */
+  	        if (r instanceof SyncCollectionResource) {
+                String currentHref = Utils.suffixSlash(parentHref + r.getName()); 
+                findResources((SyncCollectionResource) r, parseResult, syncToken, syncLevel, currentHref, writer);
+            }
+            /* For members that are collections and are unable to support the
+            DAV:sync-collection report, the DAV:response MUST contain one
+            DAV:status with a value set to '403 Forbidden', a DAV:error
+            containing DAV:supported-report or DAV:sync-traversal-supported
+            (see Section 3.3 for which is appropriate) and MUST NOT contain
+            any DAV:propstat element.
+            */
+        }
+    }
+
+    private void writeChange(String href, Resource r, PropertiesRequest parseResult, URI syncToken, PropFindXmlGenerator.StreamingWriter writer) throws NotAuthorizedException, BadRequestException {
+        if (r instanceof RemovedResource) {
+            /* 3.4.  Types of Changes Reported on Initial Synchronization
+
+            When the DAV:sync-collection request contains an empty DAV:sync-token
+            element, the server MUST return all member URLs of the collection
+            (taking account of the DAV:sync-level XML element value as per
+            Section 3.3, and optional truncation of the result set as per
+            Section 3.6) and it MUST NOT return any removed member URLs.  All
+            types of member (collection or non-collection) MUST be reported.
+            */
+            if (syncToken != null) {
+                /* For members that have been removed, the DAV:response MUST
+                contain one DAV:status with a value set to '404 Not Found' and
+                MUST NOT contain any DAV:propstat element. */
+                PropFindResponse resp = new PropFindResponse(href, Response.Status.SC_NOT_FOUND);
                 
-                PropFindableResource pfr = (PropFindableResource) r;
-                try {
-                    respProps.addAll(propertyBuilder.buildProperties(pfr, 0, parseResult, href));
-                } catch (URISyntaxException ex) {
-                    throw new RuntimeException("There was an unencoded url requested: " + href, ex);
+                writer.onResponse(resp);
+            }
+        } else if (r instanceof PropFindableResource) {
+            PropFindableResource pfr = (PropFindableResource) r;
+            try {
+                for (PropFindResponse resp : propertyBuilder.buildProperties(pfr, 0, parseResult, href)) {
+                    writer.onResponse(resp);
                 }
-            } else {
-                //log.warn("requested href is for a non PropFindableResource: " + r.getClass() + " - " + href);
+            } catch (URISyntaxException ex) {
+                throw new RuntimeException("There was an unencoded url requested: " + href, ex);
             }
-            
-            if (syncLevel == SyncLevel.Infinite) {
-                /* When the client specifies the DAV:sync-level XML element with a
-                value of "infinite", all appropriate member URLs of the collection
-                specified as the request-URI are reported, provided child
-                collections themselves also support the DAV:sync-collection
-                report. */
-      	        if (r instanceof SyncCollectionResource) {
-                    String currentHref = Utils.suffixSlash(parentHref + r.getName()); 
-                    findResources((SyncCollectionResource) r, doc, syncToken, syncLevel, currentHref, respProps);
+        } else {
+            //log.warn("requested href is for a non PropFindableResource: " + r.getClass() + " - " + href);
+        }
+    }
+
+    /**
+     * The number of changes the client asked for with DAV:limit/DAV:nresults.
+     * Zero means no limit
+     */
+    private int findClientLimit(Resource r, Document doc) throws BadRequestException {
+        int limit = 0;
+        Element elLimit = doc.getRootElement().getChild("limit", NS_DAV);
+        if (elLimit != null) {
+            Element elResults = elLimit.getChild("nresults", NS_DAV);
+            if (elResults != null) {
+                int nresults;
+                try {
+                    nresults = Integer.parseInt(elResults.getTextTrim());
+                } catch (NumberFormatException e) {
+                    throw new BadRequestException(r, "DAV:nresults must be a positive integer.");
                 }
-                /* For members that are collections and are unable to support the
-                DAV:sync-collection report, the DAV:response MUST contain one
-                DAV:status with a value set to '403 Forbidden', a DAV:error
-                containing DAV:supported-report or DAV:sync-traversal-supported
-                (see Section 3.3 for which is appropriate) and MUST NOT contain
-                any DAV:propstat element.
-                */
+                if (nresults < 1) {
+                    throw new BadRequestException(r, "DAV:nresults must be a positive integer.");
+                }
+                limit = nresults;
             }
         }
+        return limit;
+    }
+
+    private boolean isBriefHeader(Request request) {
+        String b = request.getHeaders().get("Brief");
+        return "t".equals(b);
+    }
+
+    /**
+     * The most changes to return in one response, after which the response is
+     * truncated with a 507 for the request-URI and a sync-token to continue
+     * from. Zero, the default, means only limit when the client asks to.
+     *
+     * This is only truncated where the changes can be resumed from, so may be
+     * exceeded. A limit given by the client is never exceeded; if the changes
+     * can't be truncated within it the request fails with a 507 and a
+     * DAV:number-of-matches-within-limits error, as per RFC 6578 section 3.7
+     *
+     * @return
+     */
+    public int getMaxResults() {
+        return maxResults;
+    }
+
+    public void setMaxResults(int maxResults) {
+        this.maxResults = maxResults;
     }
     
     private Set<QName> getProps(Document doc) {
@@ -190,7 +190,9 @@ public class LockHandler implements ResourceHandler {
             throw new RuntimeException("Exception reading request body", ex);
         }
 
-        if (handlerHelper.isLockedOut(request, r)) {
+        // a depth infinity lock conflicts with any lock under it, and any lock conflicts with depth infinity locks above it
+        boolean infinite = lockInfo.depth == LockInfo.LockDepth.INFINITY;
+        if (handlerHelper.isLockedOut(request, r) || handlerHelper.isLockedOut(request, Path.path(HandlerHelper.getDecodedPath(request)), infinite)) {
             this.responseHandler.respondLocked(request, response, r);
             return;
         }
@@ -6,7 +6,7 @@ package io.milton.http.webdav2;
 import io.milton.common.NameSpace;
 import io.milton.http.*;
 import io.milton.http.http11.CustomPostHandler;
-import io.milton.property.PropertySource;
+import io.milton.property.CacheablePropertySource;
 import io.milton.resource.LockableResource;
 import io.milton.resource.PropFindableResource;
 import io.milton.resource.Resource;
@@ -30,7 +30,7 @@ import org.slf4j.LoggerFactory;
  *
  * @author brad
  */
-public class WebDavLevel2Protocol implements HttpExtension, PropertySource {
+public class WebDavLevel2Protocol implements HttpExtension, CacheablePropertySource {
 
     private static final Logger log = LoggerFactory.getLogger(WebDavLevel2Protocol.class);
     public static final String DAV_URI = "DAV:";
@@ -98,6 +98,15 @@ public class WebDavLevel2Protocol implements HttpExtension, PropertySource {
         return propertyMetaData;
     }
 
+    /**
+     * The Nautilus workaround in getPropertyMetaData depends on property
+     * values, so only cache for other clients
+     */
+    @Override
+    public boolean isPropertyMetaDataCacheable(Resource r) {
+        return !userAgentHelper.isNautilus(HttpManager.request());
+    }
+
     @Override
     public void clearProperty(QName name, Resource r) {
         throw new UnsupportedOperationException("Not supported. Standard webdav properties are not writable");
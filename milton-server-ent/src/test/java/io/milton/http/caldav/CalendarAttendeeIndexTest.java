@@ -0,0 +1,96 @@
+/*
+ * Copyright 2013 McEvoy Software Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.milton.http.caldav;
+
+import io.milton.event.DeleteEvent;
+import io.milton.event.MoveEvent;
+import io.milton.event.PutEvent;
+import io.milton.http.Request;
+import io.milton.resource.ICalResource;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import junit.framework.TestCase;
+import static org.easymock.EasyMock.*;
+
+/**
+ *
+ * @author brad
+ */
+public class CalendarAttendeeIndexTest extends TestCase {
+
+    public void testFindAndRemove() {
+        CalendarAttendeeIndex index = new CalendarAttendeeIndex(new ICalFormatter());
+        assertTrue(index.needsBuild("host"));
+        Map<String, List<String>> events = new HashMap<>();
+        events.put("/users/a/cals/default/1.ics", Arrays.asList("joe@example.com", "fred@example.com"));
+        events.put("/users/a/cals/work/2.ics", Arrays.asList("joe@example.com"));
+        events.put("/users/b/cals/default/3.ics", Collections.singletonList("fred@example.com"));
+        events.put("/users/a/cals/workshop/4.ics", Collections.singletonList("jim@example.com"));
+        index.replace("host", events);
+        assertFalse(index.needsBuild("host"));
+
+        assertEquals(2, index.findEventHrefs("host", "joe").size());
+        assertEquals(2, index.findEventHrefs("host", "fred").size());
+        assertTrue(index.findEventHrefs("other", "joe").isEmpty());
+
+        index.remove("host", "/users/a/cals/default/1.ics");
+        assertEquals(Collections.singletonList("/users/a/cals/work/2.ics"), index.findEventHrefs("host", "joe"));
+
+        // removing a collection removes the events in it
+        index.remove("host", "/users/a/cals/work");
+        assertTrue(index.findEventHrefs("host", "joe").isEmpty());
+        assertEquals(Collections.singletonList("/users/b/cals/default/3.ics"), index.findEventHrefs("host", "fred"));
+        assertEquals(Collections.singletonList("/users/a/cals/workshop/4.ics"), index.findEventHrefs("host", "jim"));
+    }
+
+    public void testOnEvent_PathsMatchRebuild() {
+        CalendarAttendeeIndex index = new CalendarAttendeeIndex(new ICalFormatter());
+        Map<String, List<String>> events = new HashMap<>();
+        events.put("/users/a/cals/default/my event.ics", Collections.singletonList("joe@example.com"));
+        index.replace("host", events);
+        ICalResource event = event("ATTENDEE;CN=Joe:mailto:joe@example.com\nATTENDEE:mailto:fred@example.com");
+
+        index.onEvent(new PutEvent(event), request("/users/a/cals/default/my%20event.ics", null));
+        assertEquals(Collections.singletonList("/users/a/cals/default/my event.ics"), index.findEventHrefs("host", "joe"));
+        assertEquals(Collections.singletonList("/users/a/cals/default/my event.ics"), index.findEventHrefs("host", "fred"));
+
+        index.onEvent(new MoveEvent(event, null, "my event.ics"), request("/users/a/cals/default/my%20event.ics", "http://host/users/a/cals/work/my%20event.ics"));
+        assertEquals(Collections.singletonList("/users/a/cals/work/my event.ics"), index.findEventHrefs("host", "joe"));
+
+        index.onEvent(new DeleteEvent(event), request("/users/a/cals/work/my%20event.ics", null));
+        assertTrue(index.findEventHrefs("host", "joe").isEmpty());
+        assertTrue(index.findEventHrefs("host", "fred").isEmpty());
+    }
+
+    private ICalResource event(String data) {
+        ICalResource r = createNiceMock(ICalResource.class);
+        expect(r.getICalData()).andStubReturn(data);
+        replay(r);
+        return r;
+    }
+
+    private Request request(String path, String destination) {
+        Request request = createNiceMock(Request.class);
+        expect(request.getHostHeader()).andStubReturn("host");
+        expect(request.getAbsolutePath()).andStubReturn(path);
+        expect(request.getDestinationHeader()).andStubReturn(destination);
+        replay(request);
+        return request;
+    }
+}
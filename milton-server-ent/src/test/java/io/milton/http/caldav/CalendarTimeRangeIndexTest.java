@@ -0,0 +1,189 @@
+/*
+ * Copyright 2013 McEvoy Software Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.milton.http.caldav;
+
+import io.milton.event.MoveEvent;
+import io.milton.event.PutEvent;
+import io.milton.http.Request;
+import io.milton.http.ResourceFactory;
+import io.milton.resource.CalendarResource;
+import io.milton.resource.ICalResource;
+import io.milton.resource.Resource;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import junit.framework.TestCase;
+import net.fortuna.ical4j.data.ParserException;
+import org.easymock.EasyMock;
+import static org.easymock.EasyMock.*;
+
+/**
+ *
+ * @author brad
+ */
+public class CalendarTimeRangeIndexTest extends TestCase {
+
+    private static final long HOUR = 60 * 60 * 1000;
+
+    private CountingFormatter formatter;
+    private CalendarTimeRangeIndex index;
+    private Map<String, ICalResource> events;
+    private String ctag;
+    private int childCalls;
+    private CalendarResource calendar;
+
+    @Override
+    protected void setUp() throws Exception {
+        formatter = new CountingFormatter();
+        index = new CalendarTimeRangeIndex(formatter);
+        events = new LinkedHashMap<>();
+        ctag = "1";
+        calendar = createNiceMock(CalendarResource.class);
+        expect(calendar.getUniqueId()).andStubReturn("cal");
+        expect(calendar.getName()).andStubReturn("cal");
+        expect(calendar.getCTag()).andStubAnswer(() -> ctag);
+        EasyMock.<List<? extends Resource>>expect(calendar.getChildren()).andStubAnswer(() -> {
+            childCalls++;
+            return new ArrayList<>(events.values());
+        });
+        expect(calendar.child(anyObject(String.class))).andStubAnswer(() -> events.get((String) getCurrentArguments()[0]));
+        replay(calendar);
+        for (int i = 0; i < 100; i++) {
+            addEvent("e" + i, i * HOUR, new Date(1000));
+        }
+    }
+
+    public void testFind_SameAsScan() throws Exception {
+        Date start = new Date(10 * HOUR);
+        Date end = new Date(20 * HOUR);
+        List<CalendarTimeRangeIndex.Match> found = index.find(calendar, start, end);
+        List<String> expected = new ArrayList<>();
+        for (ICalResource r : events.values()) {
+            CalendarTimeRangeIndex.Match m = CalendarTimeRangeIndex.parse(formatter, r);
+            if (CalendarTimeRangeIndex.inRange(m.getStart(), m.getEnd(), start, end)) {
+                expected.add(r.getName());
+            }
+        }
+        assertEquals(expected, names(found));
+        assertEquals(10, found.size());
+        assertEquals(new Date(10 * HOUR), found.get(0).getStart());
+    }
+
+    public void testFind_ParsesOnlyChangedEvents() throws Exception {
+        index.find(calendar, null, null);
+        assertEquals(100, formatter.parsed);
+        assertEquals(1, childCalls);
+
+        // unchanged ctag, so the calendar is not listed again
+        assertEquals(5, index.find(calendar, new Date(0), new Date(5 * HOUR)).size());
+        assertEquals(100, formatter.parsed);
+        assertEquals(1, childCalls);
+
+        // change one event and remove another
+        addEvent("e3", 500 * HOUR, new Date(2000));
+        events.remove("e4");
+        ctag = "2";
+        assertEquals(Arrays.asList("e0", "e1", "e2"), names(index.find(calendar, new Date(0), new Date(5 * HOUR))));
+        assertEquals(101, formatter.parsed);
+        assertEquals(2, childCalls);
+        assertEquals(Arrays.asList("e3"), names(index.find(calendar, new Date(400 * HOUR), null)));
+    }
+
+    public void testOnEvent_InvalidatesEvenIfCtagUnchanged() throws Exception {
+        index.find(calendar, null, null);
+        ICalResource changed = addEvent("e7", 700 * HOUR, new Date(2000));
+        index.onEvent(new PutEvent(changed));
+        assertEquals(Arrays.asList("e7"), names(index.find(calendar, new Date(600 * HOUR), null)));
+        assertEquals(101, formatter.parsed);
+    }
+
+    public void testOnEvent_NewEventInvalidatesParentCalendar() throws Exception {
+        ResourceFactory rf = (host, path) -> path.equals("/cals/cal") ? calendar : null;
+        index = new CalendarTimeRangeIndex(formatter, rf);
+        index.find(calendar, null, null);
+        ICalResource added = addEvent("new 1.ics", 800 * HOUR, new Date(2000));
+        index.onEvent(new PutEvent(added), request("/cals/cal/new%201.ics", null));
+        assertEquals(Arrays.asList("new 1.ics"), names(index.find(calendar, new Date(600 * HOUR), null)));
+        assertEquals(2, childCalls);
+    }
+
+    public void testOnEvent_MoveInvalidatesDestinationCalendar() throws Exception {
+        ResourceFactory rf = (host, path) -> path.equals("/cals/cal") ? calendar : null;
+        index = new CalendarTimeRangeIndex(formatter, rf);
+        index.find(calendar, null, null);
+        ICalResource moved = addEvent("x.ics", 800 * HOUR, new Date(2000));
+        index.onEvent(new MoveEvent(moved, null, "x.ics"), request("/cals/other/x.ics", "http://localhost/cals/cal/x.ics"));
+        assertEquals(Arrays.asList("x.ics"), names(index.find(calendar, new Date(600 * HOUR), null)));
+    }
+
+    public void testOnEvent_NoResourceFactoryInvalidatesAll() throws Exception {
+        index.find(calendar, null, null);
+        ICalResource added = addEvent("e100", 800 * HOUR, new Date(2000));
+        index.onEvent(new PutEvent(added), request("/cals/cal/e100", null));
+        assertEquals(Arrays.asList("e100"), names(index.find(calendar, new Date(600 * HOUR), null)));
+    }
+
+    private Request request(String path, String destination) {
+        Request request = createNiceMock(Request.class);
+        expect(request.getHostHeader()).andStubReturn("localhost");
+        expect(request.getAbsolutePath()).andStubReturn(path);
+        expect(request.getDestinationHeader()).andStubReturn(destination);
+        replay(request);
+        return request;
+    }
+
+    private List<String> names(List<CalendarTimeRangeIndex.Match> list) {
+        List<String> names = new ArrayList<>();
+        for (CalendarTimeRangeIndex.Match m : list) {
+            names.add(m.getResource().getName());
+        }
+        return names;
+    }
+
+    private ICalResource addEvent(final String name, final long start, final Date modified) {
+        final String data = start + "/" + (start + HOUR);
+        ICalResource r = createNiceMock(ICalResource.class);
+        expect(r.getName()).andStubReturn(name);
+        expect(r.getUniqueId()).andStubReturn("uid-" + name);
+        expect(r.getModifiedDate()).andStubReturn(modified);
+        expect(r.getICalData()).andStubReturn(data);
+        replay(r);
+        events.put(name, r);
+        return r;
+    }
+
+    /**
+     * Reads "start/end" in millis rather than real iCal, and counts parses
+     */
+    private static class CountingFormatter extends ICalFormatter {
+
+        int parsed;
+
+        @Override
+        public ParsedICal parse(String data) throws IOException, ParserException {
+            parsed++;
+            String[] arr = data.split("/");
+            Date start = new Date(Long.parseLong(arr[0]));
+            Date end = new Date(Long.parseLong(arr[1]));
+            return new ParsedICal(null, start, end, null, null, Collections.<String>emptyList(), Collections.<String, String>emptyMap());
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.milton.http.caldav;
+
+import io.milton.resource.ICalResource;
+import java.util.Arrays;
+import java.util.Date;
+import junit.framework.TestCase;
+import static org.easymock.EasyMock.*;
+
+/**
+ *
+ * @author brad
+ */
+public class ParsedICalCacheTest extends TestCase {
+
+    private static final String ICAL = "BEGIN:VCALENDAR\r\n"
+            + "VERSION:2.0\r\n"
+            + "PRODID:-//milton.io//test//EN\r\n"
+            + "BEGIN:VEVENT\r\n"
+            + "UID:abc-123\r\n"
+            + "DTSTAMP:20130101T090000Z\r\n"
+            + "DTSTART:20130102T100000Z\r\n"
+            + "DTEND:20130102T110000Z\r\n"
+            + "SUMMARY:Planning\r\n"
+            + "DESCRIPTION:Agenda for the quarter\r\n"
+            + "RRULE:FREQ=WEEKLY;COUNT=4\r\n"
+            + "ORGANIZER:mailto:joe@example.com\r\n"
+            + "ATTENDEE;CN=Fred:mailto:fred@example.com\r\n"
+            + "ATTENDEE:mailto:jane@example.com\r\n"
+            + "END:VEVENT\r\n"
+            + "END:VCALENDAR\r\n";
+
+    private int dataCalls;
+    private String data = ICAL;
+
+    public void testParse() throws Exception {
+        ParsedICal p = new ICalFormatter().parse(ICAL);
+        assertEquals("abc-123", p.getUid());
+        assertEquals("Planning", p.getProperty("SUMMARY"));
+        assertEquals("FREQ=WEEKLY;COUNT=4", p.getRrule());
+        assertEquals("joe@example.com", p.getOrganizer());
+        assertEquals(Arrays.asList("fred@example.com", "jane@example.com"), p.getAttendees());
+        assertEquals(60 * 60 * 1000, p.getEnd().getTime() - p.getStart().getTime());
+    }
+
+    public void testParse_KeepsOnlyFilterProperties() throws Exception {
+        ICalFormatter formatter = new ICalFormatter();
+        assertNull(formatter.parse(ICAL).getProperty("DESCRIPTION"));
+        ICalResource r = resource();
+        assertEquals("Planning", formatter.getEventProperty(r, "SUMMARY"));
+        assertEquals("abc-123", formatter.getEventProperty(r, "UID"));
+        assertEquals("Agenda for the quarter", formatter.getEventProperty(r, "DESCRIPTION"));
+        assertNull(formatter.getEventProperty(r, "LOCATION"));
+    }
+
+    public void testGet_ReparsesWhenContentChanges() throws Exception {
+        ICalFormatter formatter = new ICalFormatter();
+        ParsedICalCache cache = new ParsedICalCache(10);
+        formatter.setParsedCache(cache);
+        ICalResource r = resource();
+        ParsedICal first = formatter.parse(r);
+        assertSame(first, formatter.parse(r));
+
+        // changed within the same second, so the modified date is unchanged
+        data = ICAL.replace("SUMMARY:Planning", "SUMMARY:Review");
+        ParsedICal second = formatter.parse(r);
+        assertNotSame(first, second);
+        assertEquals("Review", second.getProperty("SUMMARY"));
+        assertEquals(3, dataCalls);
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    private ICalResource resource() {
+        ICalResource r = createNiceMock(ICalResource.class);
+        expect(r.getUniqueId()).andStubReturn("abc-123");
+        expect(r.getModifiedDate()).andStubReturn(new Date(1000));
+        expect(r.getICalData()).andStubAnswer(() -> {
+            dataCalls++;
+            return data;
+        });
+        replay(r);
+        return r;
+    }
+}
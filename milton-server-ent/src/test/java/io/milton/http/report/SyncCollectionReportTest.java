@@ -0,0 +1,214 @@
+/*
+ * Copyright 2013 McEvoy Software Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.milton.http.report;
+
+import io.milton.http.Request;
+import io.milton.http.Response;
+import io.milton.http.values.ValueWriters;
+import io.milton.http.webdav.PropFindXmlGenerator;
+import io.milton.resource.RemovedResource;
+import io.milton.resource.Resource;
+import io.milton.resource.SyncChangeCursor;
+import io.milton.resource.SyncCollectionResource;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.net.URI;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import junit.framework.TestCase;
+import org.jdom2.Document;
+import org.jdom2.input.SAXBuilder;
+import static org.easymock.EasyMock.*;
+
+/**
+ *
+ * @author brad
+ */
+public class SyncCollectionReportTest extends TestCase {
+
+    private SyncCollectionReport report;
+    private Response.Status status;
+
+    @Override
+    protected void setUp() throws Exception {
+        report = new SyncCollectionReport(null, new PropFindXmlGenerator(new ValueWriters()));
+    }
+
+    public void testLimit_AllChangesWithinLimit() throws Exception {
+        String xml = run(collection(3, true), 5);
+        assertEquals(3, countHrefs(xml));
+        assertFalse(xml.contains("507"));
+        assertEquals("http://example.com/sync/3", syncToken(xml));
+        assertEquals(Response.Status.SC_MULTI_STATUS, status);
+    }
+
+    public void testLimit_TruncatedAtLimit() throws Exception {
+        String xml = run(collection(5, true), 2);
+        assertEquals(2, countHrefs(xml));
+        assertTrue(xml.contains("/cal/item0.ics"));
+        assertTrue(xml.contains("/cal/item1.ics"));
+        assertTrue(xml.contains("507"));
+        assertEquals("http://example.com/sync/2", syncToken(xml));
+        assertEquals(Response.Status.SC_MULTI_STATUS, status);
+    }
+
+    public void testLimit_ResumesFromTruncatedToken() throws Exception {
+        SyncCollectionResource col = collection(5, true);
+        String token = syncToken(run(col, "http://example.com/sync/0", 2));
+        String xml = run(col, token, 2);
+        assertEquals(2, countHrefs(xml));
+        assertTrue(xml.contains("/cal/item2.ics"));
+        assertTrue(xml.contains("/cal/item3.ics"));
+
+        xml = run(col, syncToken(xml), 2);
+        assertEquals(1, countHrefs(xml));
+        assertTrue(xml.contains("/cal/item4.ics"));
+        assertFalse(xml.contains("507"));
+        assertEquals("http://example.com/sync/5", syncToken(xml));
+    }
+
+    public void testLimit_NotResumableIsError() throws Exception {
+        String xml = run(collection(5, false), 2);
+        assertEquals(Response.Status.SC_INSUFFICIENT_STORAGE, status);
+        assertTrue(xml.contains("number-of-matches-within-limits"));
+        assertEquals(0, countHrefs(xml));
+    }
+
+    public void testMaxResults_TruncatedWithoutClientLimit() throws Exception {
+        report.setMaxResults(3);
+        String xml = run(collection(5, true), 0);
+        assertEquals(3, countHrefs(xml));
+        assertTrue(xml.contains("507"));
+        assertEquals("http://example.com/sync/3", syncToken(xml));
+    }
+
+    public void testMaxResults_UsedWithinClientLimit() throws Exception {
+        report.setMaxResults(2);
+        String xml = run(collection(5, true), 4);
+        assertEquals(2, countHrefs(xml));
+        assertEquals("http://example.com/sync/2", syncToken(xml));
+    }
+
+    private String run(SyncCollectionResource col, int limit) throws Exception {
+        return run(col, "http://example.com/sync/0", limit);
+    }
+
+    private String run(SyncCollectionResource col, String token, int limit) throws Exception {
+        String body = "<?xml version=\"1.0\" encoding=\"utf-8\" ?>"
+                + "<D:sync-collection xmlns:D=\"DAV:\">"
+                + "<D:sync-token>" + token + "</D:sync-token>"
+                + "<D:sync-level>1</D:sync-level>"
+                + (limit > 0 ? "<D:limit><D:nresults>" + limit + "</D:nresults></D:limit>" : "")
+                + "<D:prop><D:getetag/></D:prop>"
+                + "</D:sync-collection>";
+        Document doc = new SAXBuilder().build(new StringReader(body));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StreamingReport.Body prepared = report.prepare(col, doc, request());
+        status = prepared.getStatus();
+        prepared.write(out);
+        return out.toString("UTF-8");
+    }
+
+    private static int countHrefs(String xml) {
+        Matcher m = Pattern.compile("/cal/item\\d+\\.ics").matcher(xml);
+        int count = 0;
+        while (m.find()) {
+            count++;
+        }
+        return count;
+    }
+
+    private static String syncToken(String xml) {
+        Matcher m = Pattern.compile("sync-token>([^<]*)<").matcher(xml);
+        assertTrue(xml, m.find());
+        return m.group(1);
+    }
+
+    /**
+     * A collection whose changes since token N are the items from N on. If
+     * resumable, its cursor can resume after every change, otherwise it uses
+     * the default cursor which can only resume once all are read
+     */
+    private SyncCollectionResource collection(final int size, final boolean resumable) throws Exception {
+        final URI current = URI.create("http://example.com/sync/" + size);
+        SyncCollectionResource col = createNiceMock(SyncCollectionResource.class);
+        expect(col.getSyncToken()).andStubReturn(current);
+        expect(col.getName()).andStubReturn("cal");
+        expect(col.findChangesBySyncToken(anyObject(URI.class))).andStubAnswer(() -> {
+            URI token = (URI) getCurrentArguments()[0];
+            if (!resumable) {
+                Map<String, Resource> map = new LinkedHashMap<>();
+                for (Map.Entry<String, Resource> e : changes(token, size)) {
+                    map.put(e.getKey(), e.getValue());
+                }
+                return SyncChangeCursor.of(map, current);
+            }
+            return cursor(changes(token, size), tokenIndex(token));
+        });
+        replay(col);
+        return col;
+    }
+
+    private static int tokenIndex(URI token) {
+        String s = token.toString();
+        return Integer.parseInt(s.substring(s.lastIndexOf('/') + 1));
+    }
+
+    private static List<Map.Entry<String, Resource>> changes(URI token, int size) {
+        List<Map.Entry<String, Resource>> list = new ArrayList<>();
+        for (int i = tokenIndex(token); i < size; i++) {
+            Resource removed = createNiceMock(RemovedResource.class);
+            replay(removed);
+            list.add(new AbstractMap.SimpleImmutableEntry<>("/cal/item" + i + ".ics", removed));
+        }
+        return list;
+    }
+
+    private static SyncChangeCursor cursor(final List<Map.Entry<String, Resource>> changes, final int start) {
+        return new SyncChangeCursor() {
+            private int pos;
+
+            @Override
+            public URI getResumeToken() {
+                return URI.create("http://example.com/sync/" + (start + pos));
+            }
+
+            @Override
+            public boolean hasNext() {
+                return pos < changes.size();
+            }
+
+            @Override
+            public Map.Entry<String, Resource> next() {
+                return changes.get(pos++);
+            }
+        };
+    }
+
+    private Request request() {
+        Request request = createNiceMock(Request.class);
+        expect(request.getAbsolutePath()).andStubReturn("/cal/");
+        expect(request.getHeaders()).andStubReturn(Collections.<String, String>emptyMap());
+        replay(request);
+        return request;
+    }
+}